@@ -0,0 +1,29 @@
+-- 創建審計事件 Outbox 表
+-- 與實體變更在同一交易中寫入，由背景 relay 批次投遞至下游系統（資料倉儲、SIEM）
+
+CREATE TABLE pf_audit_outbox
+(
+    id             bigserial
+        constraint pf_audit_outbox_pk
+            primary key,
+    entity_type    varchar(100)                          not null,
+    entity_id      bigint,
+    operation      varchar(20)                           not null,
+    actor_id       bigint,
+    payload        jsonb                                 not null,
+    created_time   timestamp   default now()             not null,
+    delivered_time timestamp
+);
+
+COMMENT ON TABLE pf_audit_outbox IS '審計事件Outbox表';
+COMMENT ON COLUMN pf_audit_outbox.id IS '事件編號（遞增，可作為下游去重鍵）';
+COMMENT ON COLUMN pf_audit_outbox.entity_type IS '實體類型';
+COMMENT ON COLUMN pf_audit_outbox.entity_id IS '實體編號';
+COMMENT ON COLUMN pf_audit_outbox.operation IS '操作類型（CREATE/UPDATE/DELETE）';
+COMMENT ON COLUMN pf_audit_outbox.actor_id IS '操作人員ID';
+COMMENT ON COLUMN pf_audit_outbox.payload IS '變更後的實體內容';
+COMMENT ON COLUMN pf_audit_outbox.created_time IS '建立時間';
+COMMENT ON COLUMN pf_audit_outbox.delivered_time IS '投遞時間（NULL 表示尚未投遞）';
+
+-- 只索引尚未投遞的事件，relay 輪詢時只掃描待處理的少量資料
+CREATE INDEX pf_audit_outbox_pending_idx ON pf_audit_outbox (id) WHERE delivered_time IS NULL;
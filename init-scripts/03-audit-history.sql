@@ -0,0 +1,29 @@
+-- 創建審計歷史表
+-- 每次實體變更都在同一交易中寫入一筆，保存變更後的完整內容，供歷史查詢與封存
+
+CREATE TABLE pf_audit_history
+(
+    id           bigserial
+        constraint pf_audit_history_pk
+            primary key,
+    entity_type  varchar(100)                          not null,
+    entity_id    bigint                                not null,
+    operation    varchar(20)                           not null,
+    actor_id     bigint,
+    payload      jsonb                                 not null,
+    changed_time timestamp   default now()             not null
+);
+
+COMMENT ON TABLE pf_audit_history IS '審計歷史表';
+COMMENT ON COLUMN pf_audit_history.id IS '歷史編號';
+COMMENT ON COLUMN pf_audit_history.entity_type IS '實體類型';
+COMMENT ON COLUMN pf_audit_history.entity_id IS '實體編號';
+COMMENT ON COLUMN pf_audit_history.operation IS '操作類型（CREATE/UPDATE/DELETE）';
+COMMENT ON COLUMN pf_audit_history.actor_id IS '操作人員ID';
+COMMENT ON COLUMN pf_audit_history.payload IS '變更後的實體內容';
+COMMENT ON COLUMN pf_audit_history.changed_time IS '變更時間';
+
+-- 單一實體的歷史查詢
+CREATE INDEX pf_audit_history_entity_idx ON pf_audit_history (entity_type, entity_id, changed_time);
+-- 封存作業依時間挑選舊資料
+CREATE INDEX pf_audit_history_time_idx ON pf_audit_history (changed_time);
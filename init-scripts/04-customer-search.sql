@@ -0,0 +1,15 @@
+-- 顧客搜尋索引
+-- 子字串比對使用 pg_trgm 的 GIN 索引，前綴比對使用 text_pattern_ops 的 btree 索引，
+-- 兩者都建在 lower(欄位) 上，對應 CustomerSearchRepositoryImpl 的不分大小寫查詢
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX pf_customer_name_trgm_idx ON pf_customer USING gin (lower(name) gin_trgm_ops);
+CREATE INDEX pf_customer_email_trgm_idx ON pf_customer USING gin (lower(email) gin_trgm_ops);
+CREATE INDEX pf_customer_company_trgm_idx ON pf_customer USING gin (lower(company) gin_trgm_ops);
+CREATE INDEX pf_customer_phone_trgm_idx ON pf_customer USING gin (lower(phone) gin_trgm_ops);
+
+CREATE INDEX pf_customer_name_prefix_idx ON pf_customer (lower(name) text_pattern_ops, id);
+CREATE INDEX pf_customer_email_prefix_idx ON pf_customer (lower(email) text_pattern_ops, id);
+CREATE INDEX pf_customer_company_prefix_idx ON pf_customer (lower(company) text_pattern_ops, id);
+CREATE INDEX pf_customer_phone_prefix_idx ON pf_customer (lower(phone) text_pattern_ops, id);
@@ -0,0 +1,8 @@
+-- 實體版本欄位
+-- 每次更新遞增，作為 ETag 與樂觀鎖（@Version）的依據
+
+ALTER TABLE pf_user ADD COLUMN version bigint DEFAULT 0 NOT NULL;
+ALTER TABLE pf_customer ADD COLUMN version bigint DEFAULT 0 NOT NULL;
+
+COMMENT ON COLUMN pf_user.version IS '資料版本';
+COMMENT ON COLUMN pf_customer.version IS '資料版本';
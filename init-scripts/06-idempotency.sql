@@ -0,0 +1,31 @@
+-- 創建冪等鍵表
+-- 記錄帶有 Idempotency-Key 的建立請求與其回應，客戶端重試時直接回傳第一次的結果，
+-- 多個節點共用此表判斷同一個鍵是否已在其他節點執行
+
+CREATE TABLE pf_idempotency
+(
+    caller          varchar(255)                          not null,
+    idempotency_key varchar(255)                          not null,
+    request_hash    varchar(64)                           not null,
+    claim_token     uuid                                  not null,
+    state           varchar(20)                           not null,
+    response_body   text,
+    locked_until    timestamp,
+    created_time    timestamp   default now()             not null,
+    expires_time    timestamp                             not null,
+    constraint pf_idempotency_pk
+        primary key (caller, idempotency_key)
+);
+
+COMMENT ON TABLE pf_idempotency IS '冪等鍵表';
+COMMENT ON COLUMN pf_idempotency.caller IS '呼叫者令牌的 SHA-256（冪等鍵只在同一呼叫者內有效，不保存令牌本身）';
+COMMENT ON COLUMN pf_idempotency.idempotency_key IS '客戶端提供的 Idempotency-Key';
+COMMENT ON COLUMN pf_idempotency.request_hash IS '請求路徑與內容的 SHA-256，同一個鍵搭配不同內容時拒絕';
+COMMENT ON COLUMN pf_idempotency.claim_token IS '每次認領產生的新值，完成與釋放都以它為條件，逾期被接手後原節點無法再寫入';
+COMMENT ON COLUMN pf_idempotency.state IS '狀態（IN_PROGRESS/COMPLETED）';
+COMMENT ON COLUMN pf_idempotency.response_body IS '第一次執行的回應內容（JSON）';
+COMMENT ON COLUMN pf_idempotency.locked_until IS '執行中的節點持有此鍵的期限，逾期後可由重試接手';
+COMMENT ON COLUMN pf_idempotency.created_time IS '建立時間';
+COMMENT ON COLUMN pf_idempotency.expires_time IS '到期時間，背景作業定期刪除';
+
+CREATE INDEX pf_idempotency_expires_idx ON pf_idempotency (expires_time);
@@ -0,0 +1,48 @@
+-- 審計欄位字典編碼
+-- 公司、單位、姓名等審計字串重複度極高，改存 pf_audit_dict 的整數編號。
+-- 編號欄位預設為 NULL；未啟用字典編碼時仍讀寫原本的字串欄位，
+-- 啟用後（audit-dict profile）改讀寫編號欄位，既有資料由 AuditDictionaryMigration 分批轉換
+
+CREATE TABLE pf_audit_dict
+(
+    id    integer generated always as identity
+        constraint pf_audit_dict_pk
+            primary key,
+    value varchar(100) not null
+        constraint pf_audit_dict_un
+            unique
+);
+
+COMMENT ON TABLE pf_audit_dict IS '審計欄位字典表';
+COMMENT ON COLUMN pf_audit_dict.id IS '字典編號';
+COMMENT ON COLUMN pf_audit_dict.value IS '字串值';
+
+ALTER TABLE pf_user
+    ADD COLUMN created_company_id integer REFERENCES pf_audit_dict (id),
+    ADD COLUMN created_unit_id integer REFERENCES pf_audit_dict (id),
+    ADD COLUMN created_name_id integer REFERENCES pf_audit_dict (id),
+    ADD COLUMN modified_company_id integer REFERENCES pf_audit_dict (id),
+    ADD COLUMN modified_unit_id integer REFERENCES pf_audit_dict (id),
+    ADD COLUMN modified_name_id integer REFERENCES pf_audit_dict (id);
+
+ALTER TABLE pf_customer
+    ADD COLUMN created_company_id integer REFERENCES pf_audit_dict (id),
+    ADD COLUMN created_unit_id integer REFERENCES pf_audit_dict (id),
+    ADD COLUMN created_name_id integer REFERENCES pf_audit_dict (id),
+    ADD COLUMN modified_company_id integer REFERENCES pf_audit_dict (id),
+    ADD COLUMN modified_unit_id integer REFERENCES pf_audit_dict (id),
+    ADD COLUMN modified_name_id integer REFERENCES pf_audit_dict (id);
+
+COMMENT ON COLUMN pf_user.created_company_id IS '建立人員公司（字典編號）';
+COMMENT ON COLUMN pf_user.created_unit_id IS '建立人員單位（字典編號）';
+COMMENT ON COLUMN pf_user.created_name_id IS '建立人員姓名（字典編號）';
+COMMENT ON COLUMN pf_user.modified_company_id IS '修改人員公司（字典編號）';
+COMMENT ON COLUMN pf_user.modified_unit_id IS '修改人員單位（字典編號）';
+COMMENT ON COLUMN pf_user.modified_name_id IS '修改人員姓名（字典編號）';
+
+COMMENT ON COLUMN pf_customer.created_company_id IS '建立人員公司（字典編號）';
+COMMENT ON COLUMN pf_customer.created_unit_id IS '建立人員單位（字典編號）';
+COMMENT ON COLUMN pf_customer.created_name_id IS '建立人員姓名（字典編號）';
+COMMENT ON COLUMN pf_customer.modified_company_id IS '修改人員公司（字典編號）';
+COMMENT ON COLUMN pf_customer.modified_unit_id IS '修改人員單位（字典編號）';
+COMMENT ON COLUMN pf_customer.modified_name_id IS '修改人員姓名（字典編號）';
@@ -0,0 +1,243 @@
+-- 資料庫觸發器審計模式（audit.mode=trigger）
+-- 應用程式在每個寫入交易開始時以 set_config(..., true)（等同 SET LOCAL）設定 app.user_id、app.company、
+-- app.unit、app.name，觸發器據此填入 pf_user / pf_customer 的審計欄位，並以陳述式層級的轉移表
+-- 一次寫入整個陳述式的 pf_audit_history 與 pf_audit_outbox，批次 UPDATE 仍然只是一道 SQL。
+-- 交易中沒有設定 app.user_id 時（監聽器模式、維護作業）觸發器不做任何事
+
+-- 目前交易的操作人員，未設定時為 NULL
+CREATE OR REPLACE FUNCTION pf_audit_actor() RETURNS bigint
+    LANGUAGE sql STABLE AS
+$$
+SELECT NULLIF(current_setting('app.user_id', true), '')::bigint
+$$;
+
+-- 取得目前交易設定的審計字串，未設定或空字串時為 NULL
+CREATE OR REPLACE FUNCTION pf_audit_setting(setting_name text) RETURNS text
+    LANGUAGE sql STABLE AS
+$$
+SELECT NULLIF(current_setting(setting_name, true), '')
+$$;
+
+-- 取得審計字串的字典編號（audit-dict profile），結果記在交易變數中，同一交易的其他資料列不必再查
+CREATE OR REPLACE FUNCTION pf_audit_dict_id(setting_name text) RETURNS integer
+    LANGUAGE plpgsql AS
+$$
+DECLARE
+    dict_value text := pf_audit_setting(setting_name);
+    dict_id    integer := NULLIF(current_setting(setting_name || '_id', true), '')::integer;
+BEGIN
+    IF dict_value IS NULL OR dict_id IS NOT NULL THEN
+        RETURN dict_id;
+    END IF;
+    SELECT id INTO dict_id FROM pf_audit_dict WHERE value = dict_value;
+    IF dict_id IS NULL THEN
+        INSERT INTO pf_audit_dict (value) VALUES (dict_value) ON CONFLICT (value) DO NOTHING RETURNING id INTO dict_id;
+        IF dict_id IS NULL THEN
+            SELECT id INTO dict_id FROM pf_audit_dict WHERE value = dict_value;
+        END IF;
+    END IF;
+    PERFORM set_config(setting_name || '_id', dict_id::text, true);
+    RETURN dict_id;
+END
+$$;
+
+-- 寫入前填入審計欄位（兩個資料表的審計欄位相同）
+-- 修改者一律以交易變數為準；修改時間只在陳述式沒有自行設定時填入，JPA 寫入的時間（與回應中的 ETag）保持不變
+CREATE OR REPLACE FUNCTION pf_audit_fill() RETURNS trigger
+    LANGUAGE plpgsql AS
+$$
+DECLARE
+    actor bigint := pf_audit_actor();
+BEGIN
+    IF actor IS NULL THEN
+        RETURN NEW;
+    END IF;
+
+    NEW.modified_by := actor;
+    NEW.modified_company := pf_audit_setting('app.company');
+    NEW.modified_unit := pf_audit_setting('app.unit');
+    NEW.modified_name := pf_audit_setting('app.name');
+
+    IF TG_OP = 'INSERT' THEN
+        NEW.created_by := actor;
+        NEW.created_company := NEW.modified_company;
+        NEW.created_unit := NEW.modified_unit;
+        NEW.created_name := NEW.modified_name;
+    ELSE
+        -- 建立資訊不可被批次陳述式改寫
+        NEW.created_by := OLD.created_by;
+        NEW.created_time := OLD.created_time;
+        NEW.created_company := OLD.created_company;
+        NEW.created_unit := OLD.created_unit;
+        NEW.created_name := OLD.created_name;
+        NEW.created_company_id := OLD.created_company_id;
+        NEW.created_unit_id := OLD.created_unit_id;
+        NEW.created_name_id := OLD.created_name_id;
+        IF NEW.modified_time IS NOT DISTINCT FROM OLD.modified_time THEN
+            NEW.modified_time := localtimestamp;
+        END IF;
+        -- JPA 的更新已遞增版本；批次陳述式沒有遞增時由觸發器遞增，ETag 才會改變
+        IF NEW.version = OLD.version THEN
+            NEW.version := OLD.version + 1;
+        END IF;
+    END IF;
+
+    IF pf_audit_setting('app.audit_dict') = 'on' THEN
+        NEW.modified_company_id := pf_audit_dict_id('app.company');
+        NEW.modified_unit_id := pf_audit_dict_id('app.unit');
+        NEW.modified_name_id := pf_audit_dict_id('app.name');
+        IF TG_OP = 'INSERT' THEN
+            NEW.created_company_id := NEW.modified_company_id;
+            NEW.created_unit_id := NEW.modified_unit_id;
+            NEW.created_name_id := NEW.modified_name_id;
+        END IF;
+    END IF;
+    RETURN NEW;
+END
+$$;
+
+-- 審計內容，欄位名稱與 AuditPayloadSerializer 輸出的 JSON 相同；歷史與 outbox 共用
+CREATE OR REPLACE FUNCTION pf_customer_payload(c pf_customer) RETURNS jsonb
+    LANGUAGE sql STABLE AS
+$$
+SELECT jsonb_build_object(
+               'id', c.id,
+               'name', c.name,
+               'email', c.email,
+               'phone', c.phone,
+               'address', c.address,
+               'company', c.company,
+               'createdTime', c.created_time,
+               'modifiedTime', c.modified_time,
+               'createdCompany', c.created_company,
+               'createdUnit', c.created_unit,
+               'createdName', c.created_name,
+               'modifiedCompany', c.modified_company,
+               'modifiedUnit', c.modified_unit,
+               'modifiedName', c.modified_name,
+               'version', c.version)
+$$;
+
+-- 使用者審計內容，密碼不寫入
+CREATE OR REPLACE FUNCTION pf_user_payload(u pf_user) RETURNS jsonb
+    LANGUAGE sql STABLE AS
+$$
+SELECT jsonb_build_object(
+               'id', u.id,
+               'name', u.name,
+               'email', u.email,
+               'description', u.description,
+               'username', u.username,
+               'cellphone', u.cellphone,
+               'companyId', u.company_id,
+               'statusId', u.status_id,
+               'defaultLanguage', u.default_language,
+               'createdTime', u.created_time,
+               'modifiedTime', u.modified_time,
+               'createdCompany', u.created_company,
+               'createdUnit', u.created_unit,
+               'createdName', u.created_name,
+               'modifiedCompany', u.modified_company,
+               'modifiedUnit', u.modified_unit,
+               'modifiedName', u.modified_name,
+               'version', u.version)
+$$;
+
+-- 顧客歷史與審計事件：每個陳述式執行一次，從轉移表 changed 一次寫入所有變更的資料列。
+-- 啟用 outbox 時同時寫入 pf_audit_outbox，批次 UPDATE 也會產生事件；AuditOutboxWriter 在此模式下不再寫入
+CREATE OR REPLACE FUNCTION pf_customer_history() RETURNS trigger
+    LANGUAGE plpgsql AS
+$$
+BEGIN
+    IF pf_audit_actor() IS NULL THEN
+        RETURN NULL;
+    END IF;
+    IF pf_audit_setting('app.audit_history') = 'on' THEN
+        INSERT INTO pf_audit_history (entity_type, entity_id, operation, actor_id, payload, changed_time)
+        SELECT 'Customer',
+               c.id,
+               TG_ARGV[0],
+               pf_audit_actor(),
+               pf_customer_payload(c),
+               CASE WHEN TG_OP = 'DELETE' THEN localtimestamp ELSE c.modified_time END
+        FROM changed c;
+    END IF;
+    IF pf_audit_setting('app.audit_outbox') = 'on' THEN
+        INSERT INTO pf_audit_outbox (entity_type, entity_id, operation, actor_id, payload, created_time)
+        SELECT 'Customer', c.id, TG_ARGV[0], pf_audit_actor(), pf_customer_payload(c), localtimestamp
+        FROM changed c;
+    END IF;
+    RETURN NULL;
+END
+$$;
+
+-- 使用者歷史與審計事件
+CREATE OR REPLACE FUNCTION pf_user_history() RETURNS trigger
+    LANGUAGE plpgsql AS
+$$
+BEGIN
+    IF pf_audit_actor() IS NULL THEN
+        RETURN NULL;
+    END IF;
+    IF pf_audit_setting('app.audit_history') = 'on' THEN
+        INSERT INTO pf_audit_history (entity_type, entity_id, operation, actor_id, payload, changed_time)
+        SELECT 'User',
+               u.id,
+               TG_ARGV[0],
+               pf_audit_actor(),
+               pf_user_payload(u),
+               CASE WHEN TG_OP = 'DELETE' THEN localtimestamp ELSE u.modified_time END
+        FROM changed u;
+    END IF;
+    IF pf_audit_setting('app.audit_outbox') = 'on' THEN
+        INSERT INTO pf_audit_outbox (entity_type, entity_id, operation, actor_id, payload, created_time)
+        SELECT 'User', u.id, TG_ARGV[0], pf_audit_actor(), pf_user_payload(u), localtimestamp
+        FROM changed u;
+    END IF;
+    RETURN NULL;
+END
+$$;
+
+CREATE TRIGGER pf_customer_audit_fill
+    BEFORE INSERT OR UPDATE ON pf_customer
+    FOR EACH ROW EXECUTE FUNCTION pf_audit_fill();
+
+CREATE TRIGGER pf_user_audit_fill
+    BEFORE INSERT OR UPDATE ON pf_user
+    FOR EACH ROW EXECUTE FUNCTION pf_audit_fill();
+
+-- 轉移表只能用於單一事件的觸發器，因此新增、修改、刪除各一個
+CREATE TRIGGER pf_customer_history_insert
+    AFTER INSERT ON pf_customer
+    REFERENCING NEW TABLE AS changed
+    FOR EACH STATEMENT EXECUTE FUNCTION pf_customer_history('CREATE');
+
+CREATE TRIGGER pf_customer_history_update
+    AFTER UPDATE ON pf_customer
+    REFERENCING NEW TABLE AS changed
+    FOR EACH STATEMENT EXECUTE FUNCTION pf_customer_history('UPDATE');
+
+CREATE TRIGGER pf_customer_history_delete
+    AFTER DELETE ON pf_customer
+    REFERENCING OLD TABLE AS changed
+    FOR EACH STATEMENT EXECUTE FUNCTION pf_customer_history('DELETE');
+
+CREATE TRIGGER pf_user_history_insert
+    AFTER INSERT ON pf_user
+    REFERENCING NEW TABLE AS changed
+    FOR EACH STATEMENT EXECUTE FUNCTION pf_user_history('CREATE');
+
+CREATE TRIGGER pf_user_history_update
+    AFTER UPDATE ON pf_user
+    REFERENCING NEW TABLE AS changed
+    FOR EACH STATEMENT EXECUTE FUNCTION pf_user_history('UPDATE');
+
+CREATE TRIGGER pf_user_history_delete
+    AFTER DELETE ON pf_user
+    REFERENCING OLD TABLE AS changed
+    FOR EACH STATEMENT EXECUTE FUNCTION pf_user_history('DELETE');
+
+COMMENT ON FUNCTION pf_audit_actor() IS '目前交易的審計操作人員（app.user_id）';
+COMMENT ON FUNCTION pf_audit_fill() IS '觸發器審計模式：填入審計欄位';
+COMMENT ON FUNCTION pf_customer_history() IS '觸發器審計模式：寫入顧客審計歷史與審計事件';
+COMMENT ON FUNCTION pf_user_history() IS '觸發器審計模式：寫入使用者審計歷史與審計事件';
@@ -0,0 +1,35 @@
+-- 顧客近端快取失效通知
+-- 每個修改或刪除 pf_customer 的陳述式在交易提交時以 NOTIFY customer_changed 通知所有應用程式節點，
+-- 內容為逗號分隔的顧客編號；一次異動超過 300 筆（NOTIFY 內容上限 8000 位元組）時改送 '*'，收到後清空整個快取。
+-- 交易回滾時不會送出通知
+
+CREATE OR REPLACE FUNCTION pf_customer_notify() RETURNS trigger
+    LANGUAGE plpgsql AS
+$$
+DECLARE
+    changed_count integer;
+    changed_ids   text;
+BEGIN
+    SELECT count(*), string_agg(id::text, ',')
+    INTO changed_count, changed_ids
+    FROM (SELECT id FROM changed LIMIT 301) c;
+    IF changed_count = 0 THEN
+        RETURN NULL;
+    END IF;
+    PERFORM pg_notify('customer_changed', CASE WHEN changed_count > 300 THEN '*' ELSE changed_ids END);
+    RETURN NULL;
+END
+$$;
+
+-- 新增的顧客不在任何快取中，只需要處理修改與刪除
+CREATE TRIGGER pf_customer_notify_update
+    AFTER UPDATE ON pf_customer
+    REFERENCING NEW TABLE AS changed
+    FOR EACH STATEMENT EXECUTE FUNCTION pf_customer_notify();
+
+CREATE TRIGGER pf_customer_notify_delete
+    AFTER DELETE ON pf_customer
+    REFERENCING OLD TABLE AS changed
+    FOR EACH STATEMENT EXECUTE FUNCTION pf_customer_notify();
+
+COMMENT ON FUNCTION pf_customer_notify() IS '顧客快取失效通知（NOTIFY customer_changed）';
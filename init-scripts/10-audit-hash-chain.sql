@@ -0,0 +1,19 @@
+-- 審計歷史雜湊鏈
+-- 每筆歷史記錄保存同一實體前一筆記錄的雜湊（prev_hash）與自己的雜湊（hash）：
+--   hash = HMAC-SHA256(金鑰, prev_hash || 實體類型 \n 實體編號 \n 操作 \n 操作人員 \n payload \n 變更時間)
+-- 雜湊由應用程式的 AuditHistoryWriter 寫入時計算（內容格式見 AuditChainContent），金鑰（audit.chain.hmac-key）
+-- 只存在應用程式端，不會出現在連線設定、SQL 或資料庫函式中：只有資料庫權限的人（包括超級使用者）
+-- 修改記錄後無法重新計算出正確的雜湊。
+-- 手動修改任何一筆的內容或刪除中間的記錄，AuditChainVerifier 都會偵測到；刪除最舊或最新的記錄
+-- 由驗證器寫在資料庫之外的錨點檔（audit.chain.anchor-path）偵測。
+-- 建立此腳本之前的歷史與觸發器審計模式由資料庫寫入的歷史沒有雜湊，不在驗證範圍內
+
+ALTER TABLE pf_audit_history
+    ADD COLUMN prev_hash bytea,
+    ADD COLUMN hash      bytea;
+
+COMMENT ON COLUMN pf_audit_history.prev_hash IS '同一實體前一筆記錄的雜湊';
+COMMENT ON COLUMN pf_audit_history.hash IS '本筆記錄的雜湊（HMAC-SHA256）';
+
+-- 取得實體最後一筆的雜湊與依實體範圍驗證都依此順序
+CREATE INDEX pf_audit_history_chain_idx ON pf_audit_history (entity_type, entity_id, id);
@@ -0,0 +1,39 @@
+-- 創建撤銷令牌表
+-- 只保存令牌的 SHA-256，不保存令牌本身；每個節點把全部撤銷記錄載入記憶體的 Bloom filter，
+-- 請求只在 Bloom filter 命中時才查詢此表。新增撤銷時以 NOTIFY token_revoked 通知所有節點
+
+CREATE TABLE pf_revoked_token
+(
+    token_hash   bytea
+        constraint pf_revoked_token_pk
+            primary key,
+    reason       varchar(255),
+    revoked_by   bigint,
+    revoked_time timestamp   default now()             not null,
+    expires_time timestamp
+);
+
+COMMENT ON TABLE pf_revoked_token IS '撤銷令牌表';
+COMMENT ON COLUMN pf_revoked_token.token_hash IS '令牌的 SHA-256';
+COMMENT ON COLUMN pf_revoked_token.reason IS '撤銷原因';
+COMMENT ON COLUMN pf_revoked_token.revoked_by IS '撤銷人員ID';
+COMMENT ON COLUMN pf_revoked_token.revoked_time IS '撤銷時間';
+COMMENT ON COLUMN pf_revoked_token.expires_time IS '令牌本身的到期時間，之後不必再檢查，背景作業定期刪除；NULL 表示永久撤銷';
+
+CREATE INDEX pf_revoked_token_expires_idx ON pf_revoked_token (expires_time);
+
+-- 撤銷通知，內容為令牌雜湊的十六進位字串；交易回滾時不會送出
+CREATE OR REPLACE FUNCTION pf_revoked_token_notify() RETURNS trigger
+    LANGUAGE plpgsql AS
+$$
+BEGIN
+    PERFORM pg_notify('token_revoked', encode(NEW.token_hash, 'hex'));
+    RETURN NULL;
+END
+$$;
+
+CREATE TRIGGER pf_revoked_token_notify
+    AFTER INSERT ON pf_revoked_token
+    FOR EACH ROW EXECUTE FUNCTION pf_revoked_token_notify();
+
+COMMENT ON FUNCTION pf_revoked_token_notify() IS '令牌撤銷通知（NOTIFY token_revoked）';
@@ -0,0 +1,28 @@
+package com.example.auditingdemo.audit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * 審計內容序列化器
+ * 把實體轉成寫入 outbox 與歷史表的 JSON，並移除不應離開資料表的敏感欄位
+ */
+@Component
+public class AuditPayloadSerializer {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    public String serialize(Object entity) {
+        return toTree(entity).toString();
+    }
+
+    public ObjectNode toTree(Object entity) {
+        ObjectNode payload = objectMapper.valueToTree(entity);
+        payload.remove("password");
+        return payload;
+    }
+}
@@ -1,9 +1,14 @@
 package com.example.auditingdemo.audit;
 
+import java.util.Collection;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.AuditorAware;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
@@ -11,6 +16,8 @@ import org.springframework.transaction.annotation.Transactional;
 import com.example.auditingdemo.model.User;
 import com.example.auditingdemo.repository.UserRepository;
 import com.example.auditingdemo.service.TokenService;
+import com.example.auditingdemo.sharding.ShardContext;
+import com.example.auditingdemo.timing.RequestTiming;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -30,6 +37,26 @@ public class CustomAuditorAware implements AuditorAware<User> {
     
     // 系統管理員用戶ID - 用於解決循環依賴問題
     private static final Long SYSTEM_USER_ID = 1L;
+    
+    // 系統用戶在快取中的鍵，與帳號區隔
+    private static final String SYSTEM_USER_KEY = "#system";
+    
+    @Value("${audit.auditor-cache.ttl-seconds:300}")
+    private long cacheTtlSeconds;
+    
+    // 查無用戶只快取很短的時間，剛建立的用戶不必等到 ttl-seconds 才會被認得
+    @Value("${audit.auditor-cache.miss-ttl-seconds:5}")
+    private long missTtlSeconds;
+    
+    // 審計者快取：(分片, 帳號) -> 用戶，每次寫入不必再查兩次 pf_user
+    // 各分片的用戶編號各自獨立，因此以分片區分；用戶修改或刪除時由 AuditorCacheListener 移除
+    private final Map<CacheKey, CachedAuditor> auditorCache = new ConcurrentHashMap<>();
+    
+    private record CacheKey(String shard, String username) {
+    }
+    
+    private record CachedAuditor(User user, long expiresAt) {
+    }
 
     /**
      * 獲取當前操作用戶的物件
@@ -39,16 +66,24 @@ public class CustomAuditorAware implements AuditorAware<User> {
     @Override
     @Transactional(readOnly = true)
     public Optional<User> getCurrentAuditor() {
-        String token = UserContext.getCurrentUser();
-        
+        long start = System.nanoTime();
+        try {
+            return resolveAuditor(UserContext.getCurrentUser());
+        } finally {
+            RequestTiming.record(RequestTiming.Phase.AUDITOR, start);
+        }
+    }
+    
+    private Optional<User> resolveAuditor(String token) {
         // 首先檢查是否已有系統用戶存在，這是解決循環依賴問題的關鍵
-        Optional<User> systemUser = userRepository.findById(SYSTEM_USER_ID);
+        Optional<User> systemUser = findCached(SYSTEM_USER_KEY, () -> userRepository.findById(SYSTEM_USER_ID));
         if (systemUser.isPresent()) {
             // 如果有token，嘗試獲取實際用戶
             if (token != null && !token.isEmpty()) {
                 Map<String, String> userInfo = tokenService.getUserInfoFromToken(token);
                 if (userInfo != null && userInfo.containsKey("username")) {
-                    Optional<User> userOpt = userRepository.findByUsername(userInfo.get("username"));
+                    String username = userInfo.get("username");
+                    Optional<User> userOpt = findCached(username, () -> userRepository.findByUsername(username));
                     if (userOpt.isPresent()) {
                         log.debug("獲取審計者: {}", userOpt.get().getUsername());
                         return userOpt;
@@ -73,4 +108,55 @@ public class CustomAuditorAware implements AuditorAware<User> {
             return Optional.of(tempSystemUser);
         }
     }
-} 
\ No newline at end of file
+    
+    /**
+     * 預先載入系統用戶與指定令牌的審計者
+     * 啟動時呼叫，第一個寫入請求不必等待查詢 pf_user
+     *
+     * @return 快取中的審計者數量
+     */
+    @Transactional(readOnly = true)
+    public int warmUp(Collection<String> tokens) {
+        findCached(SYSTEM_USER_KEY, () -> userRepository.findById(SYSTEM_USER_ID));
+        for (String token : tokens) {
+            Map<String, String> userInfo = tokenService.getUserInfoFromToken(token);
+            if (userInfo != null && userInfo.containsKey("username")) {
+                String username = userInfo.get("username");
+                findCached(username, () -> userRepository.findByUsername(username));
+            }
+        }
+        return auditorCache.size();
+    }
+    
+    /**
+     * 移除目前分片中指定用戶的快取，於用戶修改或刪除後呼叫
+     * 以編號比對，改名前的帳號也會一併移除；新帳號先前查無的記錄同樣移除
+     */
+    public void evict(Long userId, String username) {
+        String shard = currentShard();
+        auditorCache.entrySet().removeIf(entry -> entry.getKey().shard().equals(shard)
+                && (entry.getKey().username().equals(username)
+                        || entry.getValue().user() != null && entry.getValue().user().getId().equals(userId)));
+    }
+    
+    /**
+     * 從快取取得用戶，未快取或已過期時查詢資料庫
+     */
+    private Optional<User> findCached(String username, Supplier<Optional<User>> loader) {
+        CacheKey key = new CacheKey(currentShard(), username);
+        long now = System.nanoTime();
+        CachedAuditor cached = auditorCache.get(key);
+        if (cached != null && now - cached.expiresAt() < 0) {
+            return Optional.ofNullable(cached.user());
+        }
+        Optional<User> user = loader.get();
+        long ttlSeconds = user.isPresent() ? cacheTtlSeconds : missTtlSeconds;
+        auditorCache.put(key, new CachedAuditor(user.orElse(null), now + TimeUnit.SECONDS.toNanos(ttlSeconds)));
+        return user;
+    }
+    
+    private static String currentShard() {
+        String shard = ShardContext.getCurrentShard();
+        return shard != null ? shard : "";
+    }
+}
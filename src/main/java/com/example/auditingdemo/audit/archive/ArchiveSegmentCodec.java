@@ -0,0 +1,257 @@
+package com.example.auditingdemo.audit.archive;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.example.auditingdemo.audit.history.AuditHistoryRecord;
+
+/**
+ * 封存段檔編碼
+ * 同一段檔只存放一種實體類型，依欄位分開存放並各自壓縮：
+ * <pre>
+ * 檔頭: magic(4) | version(1) | rowCount(4) | minTime(8) | maxTime(8) | minEntityId(8) | maxEntityId(8) |
+ *       minId(8) | maxId(8) | indexLength(4) | 實體編號索引(varint 差值)
+ * 欄位: id | entityId | operation | actorId | changedTime | payload，
+ *       每個欄位為 rawLength(4) | compressedLength(4) | deflate 資料
+ * </pre>
+ * 遞增的編號與時間以 varint 差值儲存，壓縮率遠高於逐列的 JSON。
+ */
+public final class ArchiveSegmentCodec {
+
+    static final int MAGIC = 0x41415231; // "AAR1"
+
+    static final byte VERSION = 1;
+
+    private static final String[] OPERATIONS = { "CREATE", "UPDATE", "DELETE" };
+
+    private ArchiveSegmentCodec() {
+    }
+
+    /**
+     * 編碼同一實體類型的歷史記錄
+     */
+    public static byte[] encode(List<AuditHistoryRecord> records) throws IOException {
+        List<AuditHistoryRecord> rows = new ArrayList<>(records);
+        rows.sort(Comparator.comparing(AuditHistoryRecord::getId));
+
+        long[] entityIds = rows.stream().mapToLong(AuditHistoryRecord::getEntityId).sorted().distinct().toArray();
+        long minTime = Long.MAX_VALUE;
+        long maxTime = Long.MIN_VALUE;
+
+        ByteArrayOutputStream ids = new ByteArrayOutputStream();
+        ByteArrayOutputStream entities = new ByteArrayOutputStream();
+        ByteArrayOutputStream operations = new ByteArrayOutputStream();
+        ByteArrayOutputStream actors = new ByteArrayOutputStream();
+        ByteArrayOutputStream times = new ByteArrayOutputStream();
+        ByteArrayOutputStream payloads = new ByteArrayOutputStream();
+
+        long previousId = 0;
+        long previousEntityId = 0;
+        long previousTime = 0;
+        for (AuditHistoryRecord row : rows) {
+            long time = ArchiveSegmentHeader.toMillis(row.getChangedTime());
+            minTime = Math.min(minTime, time);
+            maxTime = Math.max(maxTime, time);
+
+            writeVarLong(ids, row.getId() - previousId);
+            writeVarLong(entities, zigZag(row.getEntityId() - previousEntityId));
+            operations.write(operationCode(row.getOperation()));
+            writeVarLong(actors, row.getActorId() != null ? row.getActorId() + 1 : 0);
+            writeVarLong(times, zigZag(time - previousTime));
+            byte[] payload = row.getPayload().getBytes(StandardCharsets.UTF_8);
+            writeVarLong(payloads, payload.length);
+            payloads.write(payload);
+
+            previousId = row.getId();
+            previousEntityId = row.getEntityId();
+            previousTime = time;
+        }
+
+        ByteArrayOutputStream index = new ByteArrayOutputStream();
+        writeVarLong(index, entityIds.length);
+        long previous = 0;
+        for (long entityId : entityIds) {
+            writeVarLong(index, entityId - previous);
+            previous = entityId;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        data.writeInt(rows.size());
+        data.writeLong(minTime);
+        data.writeLong(maxTime);
+        data.writeLong(entityIds[0]);
+        data.writeLong(entityIds[entityIds.length - 1]);
+        data.writeLong(rows.get(0).getId());
+        data.writeLong(rows.get(rows.size() - 1).getId());
+        data.writeInt(index.size());
+        index.writeTo(data);
+        for (ByteArrayOutputStream column : List.of(ids, entities, operations, actors, times, payloads)) {
+            writeColumn(data, column.toByteArray());
+        }
+        data.flush();
+        return out.toByteArray();
+    }
+
+    /**
+     * 只讀取段檔檔頭，不解壓縮欄位資料
+     */
+    public static ArchiveSegmentHeader readHeader(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("不是有效的審計封存段檔");
+        }
+        byte version = data.readByte();
+        if (version != VERSION) {
+            throw new IOException("不支援的審計封存段檔版本: " + version);
+        }
+        int rowCount = data.readInt();
+        long minTime = data.readLong();
+        long maxTime = data.readLong();
+        long minEntityId = data.readLong();
+        long maxEntityId = data.readLong();
+        long minId = data.readLong();
+        long maxId = data.readLong();
+        byte[] indexBytes = new byte[data.readInt()];
+        data.readFully(indexBytes);
+
+        ByteBuffer index = ByteBuffer.wrap(indexBytes);
+        long[] entityIds = new long[(int) readVarLong(index)];
+        long previous = 0;
+        for (int i = 0; i < entityIds.length; i++) {
+            previous += readVarLong(index);
+            entityIds[i] = previous;
+        }
+        return new ArchiveSegmentHeader(rowCount, minTime, maxTime, minEntityId, maxEntityId, minId, maxId, entityIds);
+    }
+
+    /**
+     * 解碼整個段檔
+     */
+    public static List<AuditHistoryRecord> decode(byte[] segment, String entityType) throws IOException {
+        DataInputStream data = new DataInputStream(new ByteArrayInputStream(segment));
+        ArchiveSegmentHeader header = readHeader(data);
+        ByteBuffer ids = readColumn(data);
+        ByteBuffer entities = readColumn(data);
+        ByteBuffer operations = readColumn(data);
+        ByteBuffer actors = readColumn(data);
+        ByteBuffer times = readColumn(data);
+        ByteBuffer payloads = readColumn(data);
+
+        List<AuditHistoryRecord> rows = new ArrayList<>(header.getRowCount());
+        long id = 0;
+        long entityId = 0;
+        long time = 0;
+        for (int i = 0; i < header.getRowCount(); i++) {
+            id += readVarLong(ids);
+            entityId += unZigZag(readVarLong(entities));
+            time += unZigZag(readVarLong(times));
+            long actor = readVarLong(actors);
+            byte[] payload = new byte[(int) readVarLong(payloads)];
+            payloads.get(payload);
+            rows.add(AuditHistoryRecord.builder()
+                    .id(id)
+                    .entityType(entityType)
+                    .entityId(entityId)
+                    .operation(OPERATIONS[operations.get()])
+                    .actorId(actor != 0 ? actor - 1 : null)
+                    .changedTime(ArchiveSegmentHeader.fromMillis(time))
+                    .payload(new String(payload, StandardCharsets.UTF_8))
+                    .build());
+        }
+        return rows;
+    }
+
+    private static void writeColumn(DataOutputStream out, byte[] raw) throws IOException {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(chunk);
+                compressed.write(chunk, 0, n);
+            }
+            out.writeInt(raw.length);
+            out.writeInt(compressed.size());
+            compressed.writeTo(out);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static ByteBuffer readColumn(DataInputStream in) throws IOException {
+        byte[] raw = new byte[in.readInt()];
+        byte[] compressed = new byte[in.readInt()];
+        in.readFully(compressed);
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            int offset = 0;
+            while (offset < raw.length) {
+                int n = inflater.inflate(raw, offset, raw.length - offset);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new IOException("審計封存段檔欄位資料不完整");
+                }
+                offset += n;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("審計封存段檔欄位資料損毀", e);
+        } finally {
+            inflater.end();
+        }
+        return ByteBuffer.wrap(raw);
+    }
+
+    private static byte operationCode(String operation) {
+        for (byte i = 0; i < OPERATIONS.length; i++) {
+            if (OPERATIONS[i].equals(operation)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("未知的審計操作類型: " + operation);
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
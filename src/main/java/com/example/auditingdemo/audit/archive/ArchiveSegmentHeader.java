@@ -0,0 +1,65 @@
+package com.example.auditingdemo.audit.archive;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 封存段檔檔頭
+ * 記錄段檔的時間與實體編號範圍，以及排序後的實體編號索引，
+ * 查詢時只需讀取檔頭即可判斷是否能跳過整個段檔
+ */
+@Getter
+@AllArgsConstructor
+public class ArchiveSegmentHeader {
+
+    private final int rowCount;
+
+    // 以 UTC 換算的 epoch 毫秒，與 LocalDateTime 一一對應
+    private final long minTime;
+
+    private final long maxTime;
+
+    private final long minEntityId;
+
+    private final long maxEntityId;
+
+    private final long minId;
+
+    private final long maxId;
+
+    // 段檔內出現過的實體編號（已排序、不重複）
+    private final long[] entityIds;
+
+    /**
+     * 段檔時間範圍是否與查詢範圍重疊，null 表示不限制
+     */
+    public boolean overlaps(LocalDateTime start, LocalDateTime end) {
+        if (start != null && maxTime < toMillis(start)) {
+            return false;
+        }
+        return end == null || minTime <= toMillis(end);
+    }
+
+    /**
+     * 段檔是否可能包含指定實體
+     */
+    public boolean mayContain(long entityId) {
+        if (entityId < minEntityId || entityId > maxEntityId) {
+            return false;
+        }
+        return Arrays.binarySearch(entityIds, entityId) >= 0;
+    }
+
+    static long toMillis(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    static LocalDateTime fromMillis(long millis) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000),
+                (int) Math.floorMod(millis, 1000) * 1_000_000, ZoneOffset.UTC);
+    }
+}
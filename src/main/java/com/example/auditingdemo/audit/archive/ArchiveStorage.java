@@ -0,0 +1,31 @@
+package com.example.auditingdemo.audit.archive;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * 封存儲存空間
+ * 以物件儲存的方式（key 對應一整個物件）存取封存段檔，可替換為本機目錄或物件儲存服務
+ */
+public interface ArchiveStorage {
+
+    /**
+     * 寫入物件，完成前讀取端不可見
+     */
+    void put(String key, byte[] data) throws IOException;
+
+    byte[] get(String key) throws IOException;
+
+    /**
+     * 以串流開啟物件，用於只讀取段檔檔頭
+     */
+    InputStream open(String key) throws IOException;
+
+    /**
+     * 列出指定前綴下的所有 key
+     */
+    List<String> list(String prefix) throws IOException;
+
+    void delete(String key) throws IOException;
+}
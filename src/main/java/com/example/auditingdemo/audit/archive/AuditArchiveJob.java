@@ -0,0 +1,161 @@
+package com.example.auditingdemo.audit.archive;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.auditingdemo.audit.history.AuditHistoryRecord;
+import com.example.auditingdemo.sharding.ShardContext;
+import com.example.auditingdemo.sharding.ShardRouter;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 審計封存作業
+ * 把超過熱資料保留天數的 pf_audit_history 記錄搬到封存段檔，依實體類型分檔。
+ * 段檔寫入完成後才在同一交易中刪除資料列；交易回滾時刪除已寫入的段檔。
+ * 若在段檔寫入後、提交前當機，下次會再封存一次，讀取端以歷史編號去重。
+ * 啟用分片時依序封存每個分片，非預設分片的段檔放在「分片名稱/」之下，編號不會與其他分片混在一起。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "audit.archive.enabled", havingValue = "true")
+public class AuditArchiveJob {
+
+    private static final String SELECT_SQL =
+            "SELECT id, entity_type, entity_id, operation, actor_id, payload, changed_time "
+            + "FROM pf_audit_history WHERE changed_time < ? "
+            + "ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED";
+
+    private static final String DELETE_SQL = "DELETE FROM pf_audit_history WHERE id = ?";
+
+    private static final DateTimeFormatter KEY_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ArchiveStorage storage;
+
+    @Autowired
+    private AuditArchiveReader reader;
+
+    @Autowired
+    private ObjectProvider<ShardRouter> shardRouterProvider;
+
+    @Value("${audit.archive.hot-days:90}")
+    private int hotDays;
+
+    @Value("${audit.archive.batch-size:50000}")
+    private int batchSize;
+
+    /**
+     * 封存所有超過保留期間的歷史記錄
+     */
+    @Scheduled(cron = "${audit.archive.cron:0 30 2 * * *}")
+    public void archive() {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(hotDays);
+        ShardRouter router = shardRouterProvider.getIfAvailable();
+        List<String> shards = router != null ? List.copyOf(router.getShards().keySet()) : List.of("");
+        for (String shard : shards) {
+            ShardContext.runIn(shard, () -> archiveShard(shard, cutoff));
+        }
+    }
+
+    private void archiveShard(String shard, LocalDateTime cutoff) {
+        String keyPrefix = reader.shardPrefix(shard);
+        int total = 0;
+        try {
+            int archived;
+            do {
+                archived = transactionTemplate.execute(status -> archiveBatch(cutoff, keyPrefix));
+                total += archived;
+            } while (archived == batchSize);
+        } catch (Exception e) {
+            // 其他分片照常封存
+            log.error("審計封存失敗{}: {}", shard.isEmpty() ? "" : "（分片 " + shard + "）", e.getMessage(), e);
+        }
+        log.info("審計封存完成{}，封存 {} 筆早於 {} 的歷史記錄", shard.isEmpty() ? "" : "（分片 " + shard + "）",
+                total, cutoff);
+    }
+
+    private int archiveBatch(LocalDateTime cutoff, String keyPrefix) {
+        List<AuditHistoryRecord> records = jdbcTemplate.query(SELECT_SQL, (rs, rowNum) -> AuditHistoryRecord.builder()
+                .id(rs.getLong("id"))
+                .entityType(rs.getString("entity_type"))
+                .entityId(rs.getLong("entity_id"))
+                .operation(rs.getString("operation"))
+                .actorId(rs.getObject("actor_id", Long.class))
+                .payload(rs.getString("payload"))
+                .changedTime(rs.getTimestamp("changed_time").toLocalDateTime())
+                .build(), Timestamp.valueOf(cutoff), batchSize);
+        if (records.isEmpty()) {
+            return 0;
+        }
+
+        Map<String, List<AuditHistoryRecord>> byType = records.stream()
+                .collect(Collectors.groupingBy(AuditHistoryRecord::getEntityType));
+        List<String> writtenKeys = new ArrayList<>();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    discard(writtenKeys);
+                }
+            }
+        });
+
+        try {
+            for (Map.Entry<String, List<AuditHistoryRecord>> entry : byType.entrySet()) {
+                byte[] segment = ArchiveSegmentCodec.encode(entry.getValue());
+                ArchiveSegmentHeader header = ArchiveSegmentCodec.readHeader(new ByteArrayInputStream(segment));
+                String key = String.format("%s%s/%s-%d-%d.seg", keyPrefix, entry.getKey(),
+                        ArchiveSegmentHeader.fromMillis(header.getMinTime()).format(KEY_TIME_FORMAT),
+                        header.getMinId(), header.getMaxId());
+                storage.put(key, segment);
+                writtenKeys.add(key);
+                reader.register(key, header);
+                log.debug("寫入審計封存段檔 {}，{} 筆，{} bytes", key, header.getRowCount(), segment.length);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        jdbcTemplate.batchUpdate(DELETE_SQL, records.stream()
+                .map(record -> new Object[] { record.getId() })
+                .collect(Collectors.toList()));
+        return records.size();
+    }
+
+    private void discard(List<String> keys) {
+        for (String key : keys) {
+            reader.unregister(key);
+            try {
+                storage.delete(key);
+            } catch (IOException e) {
+                log.warn("無法刪除回滾的審計封存段檔 {}，讀取時將以歷史編號去重", key, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.auditingdemo.audit.archive;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.example.auditingdemo.audit.history.AuditHistoryRecord;
+import com.example.auditingdemo.sharding.ShardContext;
+import com.example.auditingdemo.sharding.ShardRouter;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 審計封存讀取器
+ * 啟動時載入所有段檔的檔頭，查詢時先以檔頭的時間範圍與實體編號索引過濾，只解碼可能命中的段檔。
+ * 啟用分片時各分片的歷史編號與實體編號各自遞增，非預設分片的段檔放在「分片名稱/」之下，只查詢目前分片的段檔
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "audit.archive.enabled", havingValue = "true")
+public class AuditArchiveReader {
+
+    @Autowired
+    private ArchiveStorage storage;
+
+    @Autowired
+    private ObjectProvider<ShardRouter> shardRouterProvider;
+
+    // key -> 段檔檔頭
+    private final Map<String, ArchiveSegmentHeader> headers = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void loadHeaders() throws IOException {
+        for (String key : storage.list("")) {
+            try (InputStream in = storage.open(key)) {
+                headers.put(key, ArchiveSegmentCodec.readHeader(in));
+            } catch (IOException e) {
+                log.error("無法讀取審計封存段檔檔頭，略過: {}", key, e);
+            }
+        }
+        log.info("載入審計封存段檔 {} 個", headers.size());
+    }
+
+    /**
+     * 分片段檔鍵的前綴：未啟用分片與預設分片為空字串（與啟用分片前的段檔相同），其他分片為「分片名稱/」
+     *
+     * @param shard 分片名稱，null 表示預設分片
+     */
+    public String shardPrefix(String shard) {
+        ShardRouter router = shardRouterProvider.getIfAvailable();
+        if (router == null || shard == null || shard.isEmpty() || shard.equals(router.getDefaultShard())) {
+            return "";
+        }
+        return shard + "/";
+    }
+
+    /**
+     * 登記新寫入的段檔
+     */
+    public void register(String key, ArchiveSegmentHeader header) {
+        headers.put(key, header);
+    }
+
+    /**
+     * 移除段檔登記，用於封存交易回滾時
+     */
+    public void unregister(String key) {
+        headers.remove(key);
+    }
+
+    /**
+     * 查詢封存中的實體歷史
+     *
+     * @param start 起始時間，null 表示不限制
+     * @param end 結束時間，null 表示不限制
+     */
+    public List<AuditHistoryRecord> find(String entityType, Long entityId, LocalDateTime start, LocalDateTime end) {
+        String prefix = shardPrefix(ShardContext.getCurrentShard()) + entityType + "/";
+        List<AuditHistoryRecord> result = new ArrayList<>();
+        int scanned = 0;
+        for (Map.Entry<String, ArchiveSegmentHeader> entry : headers.entrySet()) {
+            ArchiveSegmentHeader header = entry.getValue();
+            if (!entry.getKey().startsWith(prefix)
+                    || !header.overlaps(start, end)
+                    || !header.mayContain(entityId)) {
+                continue;
+            }
+            scanned++;
+            try {
+                for (AuditHistoryRecord record : ArchiveSegmentCodec.decode(storage.get(entry.getKey()), entityType)) {
+                    LocalDateTime time = record.getChangedTime();
+                    if (record.getEntityId().equals(entityId)
+                            && (start == null || !time.isBefore(start))
+                            && (end == null || !time.isAfter(end))) {
+                        result.add(record);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        log.debug("查詢審計封存 {} id={}，段檔 {} 個中解碼 {} 個", entityType, entityId, headers.size(), scanned);
+        return result;
+    }
+
+    /**
+     * 查詢封存中實體在指定時間點之前的最後一筆記錄
+     * 候選段檔依最大時間由新到舊解碼，已找到的記錄晚於下一個段檔的最大時間時停止，
+     * 通常只解碼一個段檔，與實體的歷史長度無關
+     */
+    public Optional<AuditHistoryRecord> findLatest(String entityType, Long entityId, LocalDateTime asOf) {
+        String prefix = shardPrefix(ShardContext.getCurrentShard()) + entityType + "/";
+        List<Map.Entry<String, ArchiveSegmentHeader>> candidates = new ArrayList<>();
+        for (Map.Entry<String, ArchiveSegmentHeader> entry : headers.entrySet()) {
+            ArchiveSegmentHeader header = entry.getValue();
+            if (entry.getKey().startsWith(prefix)
+                    && header.overlaps(null, asOf)
+                    && header.mayContain(entityId)) {
+                candidates.add(entry);
+            }
+        }
+        candidates.sort(Comparator.comparingLong(
+                (Map.Entry<String, ArchiveSegmentHeader> entry) -> entry.getValue().getMaxTime()).reversed());
+
+        AuditHistoryRecord latest = null;
+        int scanned = 0;
+        for (Map.Entry<String, ArchiveSegmentHeader> entry : candidates) {
+            // 檔頭時間為毫秒，同一毫秒內的記錄仍須解碼比較
+            if (latest != null && ArchiveSegmentHeader.toMillis(latest.getChangedTime()) > entry.getValue().getMaxTime()) {
+                break;
+            }
+            scanned++;
+            try {
+                for (AuditHistoryRecord record : ArchiveSegmentCodec.decode(storage.get(entry.getKey()), entityType)) {
+                    if (record.getEntityId().equals(entityId)
+                            && !record.getChangedTime().isAfter(asOf)
+                            && (latest == null || isLater(record, latest))) {
+                        latest = record;
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        log.debug("查詢審計封存 {} id={} 於 {} 的狀態，候選段檔 {} 個中解碼 {} 個", entityType, entityId, asOf,
+                candidates.size(), scanned);
+        return Optional.ofNullable(latest);
+    }
+
+    private static boolean isLater(AuditHistoryRecord record, AuditHistoryRecord than) {
+        int compare = record.getChangedTime().compareTo(than.getChangedTime());
+        return compare > 0 || (compare == 0 && record.getId() > than.getId());
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.auditingdemo.audit.chain;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 雜湊鏈錨點：存放在資料庫之外（audit.chain.anchor-path），記錄上次驗證通過時
+ * 每種實體、每一天（依變更時間）的歷史筆數與雜湊的 XOR。
+ * 雜湊鏈本身只能證明相鄰記錄之間沒有被刪除或插入，刪除某個實體最舊或最新的幾筆不會留下斷點；
+ * 下次驗證重新計算同一天的筆數與 XOR，與錨點不同就表示該天的歷史被刪除或替換。
+ * 只記錄 until 之前的完整日期，當天仍在寫入的歷史留給下一次驗證
+ */
+final class AuditChainAnchor {
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final LocalDate until;
+
+    private final Map<Day, Bucket> buckets;
+
+    AuditChainAnchor(LocalDate until, Map<Day, Bucket> buckets) {
+        this.until = until;
+        this.buckets = buckets;
+    }
+
+    Map<Day, Bucket> getBuckets() {
+        return buckets;
+    }
+
+    /**
+     * 實體類型與變更日期
+     */
+    record Day(String entityType, LocalDate day) {
+    }
+
+    /**
+     * 一天的歷史筆數與雜湊的 XOR，與記錄的順序無關，各範圍分別累計後再合併
+     */
+    static final class Bucket {
+
+        private long count;
+
+        private final byte[] xor = new byte[32];
+
+        void add(byte[] hash) {
+            count++;
+            for (int i = 0; i < xor.length && i < hash.length; i++) {
+                xor[i] ^= hash[i];
+            }
+        }
+
+        Bucket merge(Bucket other) {
+            count += other.count;
+            for (int i = 0; i < xor.length; i++) {
+                xor[i] ^= other.xor[i];
+            }
+            return this;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        String getXor() {
+            return HEX.formatHex(xor);
+        }
+    }
+
+    private record Entry(String entityType, String day, long count, String xor) {
+    }
+
+    private record Document(String until, List<Entry> days) {
+    }
+
+    /**
+     * 讀取錨點檔，不存在時回傳 null
+     */
+    static AuditChainAnchor read(Path path, ObjectMapper objectMapper) {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try {
+            Document document = objectMapper.readValue(path.toFile(), Document.class);
+            Map<Day, Bucket> buckets = new HashMap<>();
+            for (Entry entry : document.days()) {
+                Bucket bucket = new Bucket();
+                bucket.count = entry.count();
+                byte[] xor = HEX.parseHex(entry.xor());
+                System.arraycopy(xor, 0, bucket.xor, 0, Math.min(xor.length, bucket.xor.length));
+                buckets.put(new Day(entry.entityType(), LocalDate.parse(entry.day())), bucket);
+            }
+            return new AuditChainAnchor(LocalDate.parse(document.until()), buckets);
+        } catch (IOException e) {
+            throw new UncheckedIOException("無法讀取雜湊鏈錨點 " + path, e);
+        }
+    }
+
+    /**
+     * 先寫入暫存檔再取代，中斷時保留上一次的錨點
+     */
+    void write(Path path, ObjectMapper objectMapper) {
+        List<Entry> days = new ArrayList<>();
+        buckets.forEach((day, bucket) -> days.add(
+                new Entry(day.entityType(), day.day().toString(), bucket.getCount(), bucket.getXor())));
+        try {
+            Path absolute = path.toAbsolutePath();
+            Files.createDirectories(absolute.getParent());
+            Path temp = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+            objectMapper.writerWithDefaultPrettyPrinter()
+                    .writeValue(temp.toFile(), new Document(until.toString(), days));
+            Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("無法寫入雜湊鏈錨點 " + path, e);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.auditingdemo.audit.chain;
+
+/**
+ * 雜湊鏈驗證發現的異常
+ *
+ * @param entityType 實體類型
+ * @param entityId 實體編號
+ * @param historyId 發現異常的歷史編號
+ * @param kind 異常類型
+ * @param detail 說明
+ */
+public record AuditChainBreak(String entityType, long entityId, long historyId, Kind kind, String detail) {
+
+    public enum Kind {
+        // 記錄內容與自己的雜湊不符：歷史記錄被修改
+        HASH_MISMATCH,
+        // prev_hash 與前一筆的雜湊不符：中間的記錄被刪除或插入
+        LINK_BROKEN,
+        // 資料列的審計欄位與最後一筆歷史不符：資料列被繞過應用程式修改，或最後一筆歷史被刪除
+        HEAD_MISMATCH,
+        // 某一天的歷史筆數或雜湊與資料庫之外的錨點不符：最舊或最新的記錄被刪除或替換（實體與歷史編號為 0）
+        ANCHOR_MISMATCH
+    }
+}
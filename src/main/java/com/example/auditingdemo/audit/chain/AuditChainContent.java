@@ -0,0 +1,85 @@
+package com.example.auditingdemo.audit.chain;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * 雜湊內容：實體類型 \n 實體編號 \n 操作 \n 操作人員 \n payload \n 變更時間
+ * payload 存成 jsonb 後鍵的順序、空白與數字寫法都會被資料庫正規化，寫入端與驗證端都改用同一種標準形式：
+ * 鍵依字母順序、不含空白、數字去掉多餘的零且不使用科學記號；變更時間固定為微秒精度，與資料庫的精度相同
+ */
+public final class AuditChainContent {
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSSSSS");
+
+    private AuditChainContent() {
+    }
+
+    public static byte[] of(String entityType, long entityId, String operation, Long actorId, JsonNode payload,
+            LocalDateTime changedTime) {
+        StringBuilder content = new StringBuilder(256)
+                .append(entityType).append('\n')
+                .append(entityId).append('\n')
+                .append(operation).append('\n')
+                .append(actorId != null ? actorId.toString() : "").append('\n');
+        canonical(payload, content);
+        content.append('\n').append(TIME_FORMAT.format(changedTime));
+        return content.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void canonical(JsonNode node, StringBuilder out) {
+        if (node.isObject()) {
+            List<String> names = new ArrayList<>(node.size());
+            node.fieldNames().forEachRemaining(names::add);
+            Collections.sort(names);
+            out.append('{');
+            for (int i = 0; i < names.size(); i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                quote(names.get(i), out);
+                out.append(':');
+                canonical(node.get(names.get(i)), out);
+            }
+            out.append('}');
+        } else if (node.isArray()) {
+            out.append('[');
+            for (int i = 0; i < node.size(); i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                canonical(node.get(i), out);
+            }
+            out.append(']');
+        } else if (node.isTextual()) {
+            quote(node.textValue(), out);
+        } else if (node.isNumber()) {
+            out.append(number(node.asText()));
+        } else {
+            // true、false、null
+            out.append(node.asText());
+        }
+    }
+
+    private static void quote(String value, StringBuilder out) {
+        out.append('"');
+        JsonStringEncoder.getInstance().quoteAsString(value, out);
+        out.append('"');
+    }
+
+    private static String number(String text) {
+        try {
+            return new BigDecimal(text).stripTrailingZeros().toPlainString();
+        } catch (NumberFormatException e) {
+            return text;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.auditingdemo.audit.chain;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * 審計歷史雜湊鏈的 HMAC 金鑰（audit.chain.hmac-key）
+ * 金鑰只存在應用程式端，由 AuditHistoryWriter 寫入時計算雜湊、AuditChainVerifier 驗證時重新計算，
+ * 不會以任何形式傳到資料庫：連線設定、SQL 與資料庫函式都看不到金鑰
+ */
+public final class AuditChainKey {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private AuditChainKey() {
+    }
+
+    /**
+     * 建立以金鑰初始化的 HMAC，Mac 不是執行緒安全的，每個執行緒各自建立
+     */
+    public static Mac newMac(String key) {
+        if (key == null || key.isEmpty()) {
+            throw new IllegalStateException("未設定 audit.chain.hmac-key，無法計算或驗證審計歷史雜湊鏈");
+        }
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), ALGORITHM));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * hash = HMAC-SHA256(金鑰, prev_hash || 內容)，實體的第一筆沒有 prev_hash
+     */
+    public static byte[] hash(Mac mac, byte[] prevHash, byte[] content) {
+        if (prevHash != null) {
+            mac.update(prevHash);
+        }
+        return mac.doFinal(content);
+    }
+}
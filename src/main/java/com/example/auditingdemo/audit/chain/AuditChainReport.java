@@ -0,0 +1,21 @@
+package com.example.auditingdemo.audit.chain;
+
+import java.util.List;
+
+/**
+ * 雜湊鏈驗證結果
+ *
+ * @param records 驗證的歷史筆數
+ * @param entities 驗證的實體數
+ * @param breakCount 發現的異常總數
+ * @param breaks 異常明細，最多 audit.chain.max-reported-breaks 筆
+ * @param parallelism 驗證使用的執行緒數
+ * @param elapsedMs 耗時
+ */
+public record AuditChainReport(long records, long entities, long breakCount, List<AuditChainBreak> breaks,
+        int parallelism, long elapsedMs) {
+
+    public boolean isIntact() {
+        return breakCount == 0;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.auditingdemo.audit.chain;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 審計歷史雜湊鏈驗證作業
+ * 驗證所有審計實體的雜湊鏈並列出異常，有異常時以結束代碼 1 結束，可直接放入排程或合規檢查流程
+ *
+ * 執行: java -jar auditing-demo.jar --spring.main.web-application-type=none --audit.chain.verify=true
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "audit.chain.verify", havingValue = "true")
+public class AuditChainVerification implements ApplicationRunner {
+
+    @Autowired
+    private AuditChainVerifier verifier;
+
+    @Autowired
+    private ConfigurableApplicationContext applicationContext;
+
+    @Value("${audit.chain.verify-exit:true}")
+    private boolean exitWhenDone;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        AuditChainReport report = verifier.verifyAll();
+        for (AuditChainBreak chainBreak : report.breaks()) {
+            log.warn("雜湊鏈異常: {} id={} 歷史編號={} {} {}", chainBreak.entityType(), chainBreak.entityId(),
+                    chainBreak.historyId(), chainBreak.kind(), chainBreak.detail());
+        }
+        if (report.breakCount() > report.breaks().size()) {
+            log.warn("另有 {} 個異常未列出", report.breakCount() - report.breaks().size());
+        }
+        if (exitWhenDone) {
+            int exitCode = report.isIntact() ? 0 : 1;
+            System.exit(SpringApplication.exit(applicationContext, () -> exitCode));
+        }
+    }
+}
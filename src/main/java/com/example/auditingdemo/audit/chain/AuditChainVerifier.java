@@ -0,0 +1,509 @@
+package com.example.auditingdemo.audit.chain;
+
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import javax.crypto.Mac;
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.auditingdemo.audit.chain.AuditChainAnchor.Bucket;
+import com.example.auditingdemo.audit.chain.AuditChainAnchor.Day;
+import com.example.auditingdemo.audit.chain.AuditChainBreak.Kind;
+import com.example.auditingdemo.audit.metadata.AuditMetadataRegistry;
+import com.example.auditingdemo.model.base.BaseAuditEntity;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaxxer.hikari.HikariDataSource;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.Table;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 審計歷史雜湊鏈驗證器（雜湊由 AuditHistoryWriter 寫入時計算，內容格式見 AuditChainContent）
+ * 每種實體依實體編號範圍以 fork/join 切分到 range-size 以下，每個範圍在一個可重複讀取的唯讀交易中：
+ * 1. 依實體、歷史編號順序串流讀取歷史，以 audit.chain.hmac-key 重新計算每筆的 HMAC-SHA256，並確認 prev_hash 等於前一筆的雜湊
+ * 2. 比對資料列目前的版本、修改者、修改時間與修改者公司/單位/姓名是否與最後一筆歷史相同
+ * 3. 驗證所有實體時，依變更日期累計筆數與雜湊的 XOR，與上次驗證通過時寫在資料庫之外的錨點比對（AuditChainAnchor）
+ *
+ * 範圍之間沒有共用狀態，吞吐量隨執行緒數增加，上限為資料庫的 CPU 與連線數；
+ * 每個執行緒佔用一條連線，執行緒數不超過連線池大小。
+ * 封存作業會刪除較早的歷史，每個實體在資料庫中的第一筆視為鏈的起點，不檢查其 prev_hash；
+ * 最舊的記錄被刪除由錨點偵測，啟用封存時只比對封存保留期間內的日期
+ */
+@Slf4j
+@Component
+public class AuditChainVerifier {
+
+    private static final String RANGE_SQL =
+            "SELECT min(entity_id), max(entity_id) FROM pf_audit_history WHERE entity_type = ?";
+
+    private static final String CHAIN_SQL =
+            "SELECT h.id, h.entity_id, h.operation, h.actor_id, h.payload::text AS payload, h.prev_hash, h.hash, "
+            + "h.changed_time "
+            + "FROM pf_audit_history h "
+            + "WHERE h.entity_type = ? AND h.entity_id BETWEEN ? AND ? AND h.hash IS NOT NULL "
+            + "ORDER BY h.entity_id, h.id";
+
+    // 資料列目前的審計欄位，啟用字典編碼後字串欄位可能為 NULL，改取字典值
+    private static final String HEAD_SQL =
+            "SELECT e.id, e.version, e.modified_by, e.modified_time, "
+            + "COALESCE(e.modified_company, mc.value) AS modified_company, "
+            + "COALESCE(e.modified_unit, mu.value) AS modified_unit, "
+            + "COALESCE(e.modified_name, mn.value) AS modified_name "
+            + "FROM %s e "
+            + "LEFT JOIN pf_audit_dict mc ON mc.id = e.modified_company_id "
+            + "LEFT JOIN pf_audit_dict mu ON mu.id = e.modified_unit_id "
+            + "LEFT JOIN pf_audit_dict mn ON mn.id = e.modified_name_id "
+            + "WHERE e.id BETWEEN ? AND ?";
+
+    // 資料庫的時間精度為微秒，Java 端的修改時間可能多出奈秒
+    private static final Duration TIME_TOLERANCE = Duration.ofNanos(1_000);
+
+    // 無法取得連線池大小時採用 HikariCP 的預設值
+    private static final int DEFAULT_POOL_SIZE = 10;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private AuditMetadataRegistry metadataRegistry;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Value("${audit.chain.hmac-key:}")
+    private String hmacKey;
+
+    @Value("${audit.chain.anchor-path:target/audit-chain-anchor.json}")
+    private Path anchorPath;
+
+    @Value("${audit.chain.anchor-grace-seconds:300}")
+    private long anchorGraceSeconds;
+
+    @Value("${audit.archive.enabled:false}")
+    private boolean archiveEnabled;
+
+    @Value("${audit.archive.hot-days:90}")
+    private int archiveHotDays;
+
+    @Value("${audit.chain.parallelism:0}")
+    private int defaultParallelism;
+
+    @Value("${audit.chain.range-size:10000}")
+    private long rangeSize;
+
+    @Value("${audit.chain.fetch-size:1000}")
+    private int fetchSize;
+
+    @Value("${audit.chain.verify-heads:true}")
+    private boolean verifyHeads;
+
+    @Value("${audit.chain.max-reported-breaks:1000}")
+    private int maxReportedBreaks;
+
+    private TransactionTemplate rangeTransaction;
+
+    /**
+     * 要驗證的實體類型；table 為 null 表示只驗證歷史，不比對資料列
+     */
+    private record Target(String entityType, String table) {
+    }
+
+    private record Head(long historyId, String operation, Long actorId, String payload) {
+    }
+
+    @PostConstruct
+    public void init() {
+        // 同一範圍的歷史與資料列在同一個快照中讀取，驗證期間應用程式照常寫入也不會誤報
+        rangeTransaction = new TransactionTemplate(transactionManager);
+        rangeTransaction.setReadOnly(true);
+        rangeTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    }
+
+    /**
+     * 以設定的執行緒數驗證所有審計實體
+     */
+    public AuditChainReport verifyAll() {
+        return verifyAll(defaultParallelism);
+    }
+
+    /**
+     * 驗證所有審計實體，並與錨點比對；沒有異常時以這次的結果更新錨點
+     *
+     * @param parallelism 執行緒數，0 表示 CPU 核心數，不超過連線池大小
+     */
+    public AuditChainReport verifyAll(int parallelism) {
+        List<Target> targets = new ArrayList<>();
+        for (Class<?> entityClass : metadataRegistry.getScannedEntities()) {
+            Table table = entityClass.getAnnotation(Table.class);
+            boolean comparable = table != null && BaseAuditEntity.class.isAssignableFrom(entityClass);
+            targets.add(new Target(entityClass.getSimpleName(), comparable ? table.name() : null));
+        }
+        // 寬限時間內的交易可能尚未提交，錨點只涵蓋在那之前已經結束的日期
+        LocalDate anchorUntil = LocalDateTime.now().minusSeconds(anchorGraceSeconds).toLocalDate();
+        return verify(targets, parallelism, anchorUntil);
+    }
+
+    /**
+     * 只驗證指定實體類型的歷史，不比對資料列與錨點
+     */
+    public AuditChainReport verify(String entityType, int parallelism) {
+        return verify(List.of(new Target(entityType, null)), parallelism, null);
+    }
+
+    private AuditChainReport verify(List<Target> targets, int parallelism, LocalDate anchorUntil) {
+        int threads = threads(parallelism);
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<ForkJoinTask<RangeResult>> tasks = new ArrayList<>();
+            for (Target target : targets) {
+                Map<String, Object> range = jdbcTemplate.queryForMap(RANGE_SQL, target.entityType());
+                if (range.get("min") == null) {
+                    continue;
+                }
+                long from = ((Number) range.get("min")).longValue();
+                long to = ((Number) range.get("max")).longValue();
+                tasks.add(pool.submit(new RangeTask(target, from, to, anchorUntil)));
+            }
+            RangeResult total = new RangeResult();
+            for (ForkJoinTask<RangeResult> task : tasks) {
+                total.merge(task.join());
+            }
+            if (anchorUntil != null) {
+                verifyAnchor(targets, total);
+            }
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+            log.info("雜湊鏈驗證完成: {} 個實體、{} 筆歷史，{} 個異常，{} 執行緒耗時 {} ms",
+                    total.entities, total.records, total.breakCount, threads, elapsedMs);
+            if (anchorUntil != null && total.breakCount == 0) {
+                new AuditChainAnchor(anchorUntil, total.buckets).write(anchorPath, objectMapper);
+            }
+            return new AuditChainReport(total.records, total.entities, total.breakCount,
+                    List.copyOf(total.breaks), threads, elapsedMs);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * 每個範圍在交易中佔用一條連線，執行緒數超過連線池大小只會排隊等連線
+     */
+    private int threads(int parallelism) {
+        int requested = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        int poolSize = DEFAULT_POOL_SIZE;
+        try {
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                poolSize = dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+            }
+        } catch (SQLException e) {
+            log.debug("無法取得連線池大小，採用 {}", DEFAULT_POOL_SIZE, e);
+        }
+        if (requested > poolSize) {
+            log.info("雜湊鏈驗證執行緒數 {} 超過連線池大小 {}，改為 {}", requested, poolSize, poolSize);
+            return poolSize;
+        }
+        return requested;
+    }
+
+    /**
+     * 與上次驗證通過時的錨點比對：錨點中每一天的筆數與 XOR 都應與目前相同，
+     * 啟用封存時早於保留期間的日期可能已被封存，不比對
+     */
+    private void verifyAnchor(List<Target> targets, RangeResult total) {
+        AuditChainAnchor anchor = AuditChainAnchor.read(anchorPath, objectMapper);
+        if (anchor == null) {
+            log.info("尚無雜湊鏈錨點 {}，這次驗證通過後建立", anchorPath);
+            return;
+        }
+        Set<String> entityTypes = new HashSet<>();
+        targets.forEach(target -> entityTypes.add(target.entityType()));
+        LocalDate firstDay = archiveEnabled
+                ? LocalDate.now().minusDays(archiveHotDays).plusDays(1)
+                : LocalDate.MIN;
+        anchor.getBuckets().forEach((day, anchored) -> {
+            if (!entityTypes.contains(day.entityType()) || day.day().isBefore(firstDay)) {
+                return;
+            }
+            Bucket current = total.buckets.getOrDefault(day, new Bucket());
+            if (current.getCount() != anchored.getCount()) {
+                total.add(new AuditChainBreak(day.entityType(), 0, 0, Kind.ANCHOR_MISMATCH,
+                        day.day() + " 的歷史筆數與錨點不符：錨點 " + anchored.getCount() + "，目前 " + current.getCount()));
+            } else if (!current.getXor().equals(anchored.getXor())) {
+                total.add(new AuditChainBreak(day.entityType(), 0, 0, Kind.ANCHOR_MISMATCH,
+                        day.day() + " 的歷史雜湊與錨點不符"));
+            }
+        });
+    }
+
+    /**
+     * 範圍大於 range-size 時對半切分，左半交給其他執行緒竊取，右半由自己處理
+     */
+    private final class RangeTask extends RecursiveTask<RangeResult> {
+
+        private final Target target;
+
+        private final long from;
+
+        private final long to;
+
+        private final LocalDate anchorUntil;
+
+        private RangeTask(Target target, long from, long to, LocalDate anchorUntil) {
+            this.target = target;
+            this.from = from;
+            this.to = to;
+            this.anchorUntil = anchorUntil;
+        }
+
+        @Override
+        protected RangeResult compute() {
+            if (to - from < rangeSize) {
+                return verifyRange(target, from, to, anchorUntil);
+            }
+            long middle = from + (to - from) / 2;
+            RangeTask left = new RangeTask(target, from, middle, anchorUntil);
+            left.fork();
+            RangeResult result = new RangeTask(target, middle + 1, to, anchorUntil).compute();
+            return result.merge(left.join());
+        }
+    }
+
+    /**
+     * 單一範圍的驗證結果，合併時異常明細不超過 max-reported-breaks 筆
+     */
+    private final class RangeResult {
+
+        private long records;
+
+        private long entities;
+
+        private long breakCount;
+
+        private final List<AuditChainBreak> breaks = new ArrayList<>();
+
+        private final Map<Day, Bucket> buckets = new HashMap<>();
+
+        private void add(AuditChainBreak chainBreak) {
+            breakCount++;
+            if (breaks.size() < maxReportedBreaks) {
+                breaks.add(chainBreak);
+            }
+        }
+
+        private RangeResult merge(RangeResult other) {
+            records += other.records;
+            entities += other.entities;
+            breakCount += other.breakCount;
+            for (AuditChainBreak chainBreak : other.breaks) {
+                if (breaks.size() >= maxReportedBreaks) {
+                    break;
+                }
+                breaks.add(chainBreak);
+            }
+            other.buckets.forEach((day, bucket) -> buckets.merge(day, bucket, Bucket::merge));
+            return this;
+        }
+    }
+
+    private RangeResult verifyRange(Target target, long from, long to, LocalDate anchorUntil) {
+        RangeResult result = new RangeResult();
+        Map<Long, Head> heads = new HashMap<>();
+        rangeTransaction.executeWithoutResult(status -> {
+            // 交易中設定 fetch size，驅動程式以游標分批讀取，不會一次載入整個範圍
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(CHAIN_SQL);
+                statement.setFetchSize(fetchSize);
+                statement.setString(1, target.entityType());
+                statement.setLong(2, from);
+                statement.setLong(3, to);
+                return statement;
+            }, new ChainChecker(target.entityType(), result, heads, AuditChainKey.newMac(hmacKey), objectMapper,
+                    anchorUntil));
+            if (verifyHeads && target.table() != null && !heads.isEmpty()) {
+                verifyHeads(target, from, to, heads, result);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 逐筆重新計算雜湊並檢查與前一筆的連結，同時記下每個實體的最後一筆，並累計錨點日期之前的筆數與 XOR
+     */
+    private static final class ChainChecker implements RowCallbackHandler {
+
+        private final String entityType;
+
+        private final RangeResult result;
+
+        private final Map<Long, Head> heads;
+
+        private final Mac mac;
+
+        private final ObjectMapper objectMapper;
+
+        private final LocalDate anchorUntil;
+
+        private long currentEntityId = Long.MIN_VALUE;
+
+        private byte[] previousHash;
+
+        private ChainChecker(String entityType, RangeResult result, Map<Long, Head> heads, Mac mac,
+                ObjectMapper objectMapper, LocalDate anchorUntil) {
+            this.entityType = entityType;
+            this.result = result;
+            this.heads = heads;
+            this.mac = mac;
+            this.objectMapper = objectMapper;
+            this.anchorUntil = anchorUntil;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            long historyId = rs.getLong("id");
+            long entityId = rs.getLong("entity_id");
+            String operation = rs.getString("operation");
+            Long actorId = rs.getObject("actor_id", Long.class);
+            String payload = rs.getString("payload");
+            LocalDateTime changedTime = rs.getObject("changed_time", LocalDateTime.class);
+            byte[] prevHash = rs.getBytes("prev_hash");
+            byte[] hash = rs.getBytes("hash");
+
+            try {
+                byte[] content = AuditChainContent.of(entityType, entityId, operation, actorId,
+                        objectMapper.readTree(payload), changedTime);
+                if (!MessageDigest.isEqual(AuditChainKey.hash(mac, prevHash, content), hash)) {
+                    result.add(new AuditChainBreak(entityType, entityId, historyId, Kind.HASH_MISMATCH,
+                            "記錄內容與雜湊不符"));
+                }
+            } catch (JsonProcessingException e) {
+                result.add(new AuditChainBreak(entityType, entityId, historyId, Kind.HASH_MISMATCH,
+                        "無法解析歷史內容"));
+            }
+            if (entityId == currentEntityId) {
+                if (!Arrays.equals(prevHash, previousHash)) {
+                    result.add(new AuditChainBreak(entityType, entityId, historyId, Kind.LINK_BROKEN,
+                            "prev_hash 與前一筆記錄的雜湊不符"));
+                }
+            } else {
+                currentEntityId = entityId;
+                result.entities++;
+            }
+            previousHash = hash;
+            result.records++;
+            if (anchorUntil != null) {
+                LocalDate day = changedTime.toLocalDate();
+                if (day.isBefore(anchorUntil)) {
+                    result.buckets.computeIfAbsent(new Day(entityType, day), key -> new Bucket()).add(hash);
+                }
+            }
+            heads.put(entityId, new Head(historyId, operation, actorId, payload));
+        }
+    }
+
+    private void verifyHeads(Target target, long from, long to, Map<Long, Head> heads, RangeResult result) {
+        Set<Long> existing = new HashSet<>();
+        jdbcTemplate.query(HEAD_SQL.formatted(target.table()), rs -> {
+            long id = rs.getLong("id");
+            Head head = heads.get(id);
+            if (head == null) {
+                // 建立雜湊鏈之前寫入、之後未曾異動的資料列
+                return;
+            }
+            existing.add(id);
+            String mismatch = "DELETE".equals(head.operation())
+                    ? "最後一筆歷史為刪除，資料列仍存在"
+                    : compareHead(head, rs);
+            if (mismatch != null) {
+                result.add(new AuditChainBreak(target.entityType(), id, head.historyId(), Kind.HEAD_MISMATCH, mismatch));
+            }
+        }, from, to);
+        heads.forEach((id, head) -> {
+            if (!existing.contains(id) && !"DELETE".equals(head.operation())) {
+                result.add(new AuditChainBreak(target.entityType(), id, head.historyId(), Kind.HEAD_MISMATCH,
+                        "資料列已不存在，但沒有刪除記錄"));
+            }
+        });
+    }
+
+    /**
+     * 比對資料列與最後一筆歷史的審計欄位，相同時回傳 null；歷史中沒有的欄位不比對
+     */
+    private String compareHead(Head head, ResultSet rs) throws SQLException {
+        JsonNode payload;
+        try {
+            payload = objectMapper.readTree(head.payload());
+        } catch (JsonProcessingException e) {
+            return "無法解析歷史內容";
+        }
+        long version = rs.getLong("version");
+        if (payload.hasNonNull("version") && payload.get("version").asLong() != version) {
+            return "版本不符：歷史 " + payload.get("version").asLong() + "，資料列 " + version;
+        }
+        long modifiedBy = rs.getLong("modified_by");
+        if (head.actorId() != null && head.actorId() != modifiedBy) {
+            return "修改者不符：歷史 " + head.actorId() + "，資料列 " + modifiedBy;
+        }
+        Timestamp modifiedTime = rs.getTimestamp("modified_time");
+        if (payload.hasNonNull("modifiedTime") && modifiedTime != null) {
+            String recorded = payload.get("modifiedTime").asText();
+            try {
+                Duration difference = Duration.between(LocalDateTime.parse(recorded), modifiedTime.toLocalDateTime());
+                if (difference.abs().compareTo(TIME_TOLERANCE) > 0) {
+                    return "修改時間不符：歷史 " + recorded + "，資料列 " + modifiedTime;
+                }
+            } catch (DateTimeParseException e) {
+                return "無法解析歷史中的修改時間: " + recorded;
+            }
+        }
+        for (String[] field : new String[][] {
+                {"modifiedCompany", "modified_company"},
+                {"modifiedUnit", "modified_unit"},
+                {"modifiedName", "modified_name"}}) {
+            if (payload.hasNonNull(field[0])) {
+                String recorded = payload.get(field[0]).asText();
+                String current = rs.getString(field[1]);
+                if (!Objects.equals(recorded, current)) {
+                    return field[1] + " 不符：歷史 " + recorded + "，資料列 " + current;
+                }
+            }
+        }
+        return null;
+    }
+}
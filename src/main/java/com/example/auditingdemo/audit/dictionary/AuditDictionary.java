@@ -0,0 +1,176 @@
+package com.example.auditingdemo.audit.dictionary;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.auditingdemo.sharding.ShardContext;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 審計欄位字典
+ * 在記憶體中保存 pf_audit_dict 的雙向對照（字串 <-> 編號），字典很小，啟動時整份載入。
+ * 新字串在目前的交易中寫入字典表，交易提交後才放進快取，
+ * 交易回滾時字典列一併消失，快取不會留下不存在的編號。
+ * 啟用分片時每個分片各有自己的 pf_audit_dict，同一個字串在不同分片的編號不同，快取依分片分開保存；
+ * 啟動時只載入預設分片，其他分片在第一次使用時逐筆查詢
+ */
+@Slf4j
+@Component
+public class AuditDictionary {
+
+    private static final String LOAD_SQL = "SELECT id, value FROM pf_audit_dict";
+
+    private static final String SELECT_BY_ID_SQL = "SELECT value FROM pf_audit_dict WHERE id = ?";
+
+    private static final String SELECT_BY_VALUE_SQL = "SELECT id FROM pf_audit_dict WHERE value = ?";
+
+    // 已存在時不回傳任何列，也不鎖定既有的字典列
+    private static final String INSERT_SQL =
+            "INSERT INTO pf_audit_dict (value) VALUES (?) ON CONFLICT (value) DO NOTHING RETURNING id";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${audit.dictionary.enabled:false}")
+    private boolean enabled;
+
+    // 分片名稱 -> 該分片的字典，未設定分片（預設分片）為空字串
+    private final Map<String, ShardDictionary> dictionaries = new ConcurrentHashMap<>();
+
+    private static final class ShardDictionary {
+
+        final Map<String, Integer> idsByValue = new ConcurrentHashMap<>();
+
+        final Map<Integer, String> valuesById = new ConcurrentHashMap<>();
+
+        void put(Integer id, String value) {
+            valuesById.put(id, value);
+            idsByValue.put(value, id);
+        }
+    }
+
+    @PostConstruct
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        ShardDictionary dictionary = currentDictionary();
+        jdbcTemplate.query(LOAD_SQL, rs -> {
+            dictionary.put(rs.getInt("id"), rs.getString("value"));
+        });
+        log.info("已載入審計字典 {} 筆", dictionary.valuesById.size());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 取得字串的編號，字典中沒有時新增
+     */
+    public Integer encode(String value) {
+        if (value == null) {
+            return null;
+        }
+        ShardDictionary dictionary = currentDictionary();
+        Integer id = dictionary.idsByValue.get(value);
+        if (id != null) {
+            return id;
+        }
+        Map<String, Integer> pending = pendingInTransaction(dictionary);
+        if (pending != null && (id = pending.get(value)) != null) {
+            return id;
+        }
+
+        List<Integer> inserted = jdbcTemplate.queryForList(INSERT_SQL, Integer.class, value);
+        id = inserted.isEmpty() ? jdbcTemplate.queryForObject(SELECT_BY_VALUE_SQL, Integer.class, value) : inserted.get(0);
+        if (pending != null) {
+            pending.put(value, id);
+        } else {
+            dictionary.put(id, value);
+        }
+        return id;
+    }
+
+    /**
+     * 取得編號對應的字串，快取中沒有時（其他節點新增的）查詢字典表
+     */
+    public String decode(Integer id) {
+        if (id == null) {
+            return null;
+        }
+        ShardDictionary dictionary = currentDictionary();
+        String value = dictionary.valuesById.get(id);
+        if (value != null) {
+            return value;
+        }
+        Map<String, Integer> pending = pendingInTransaction(dictionary);
+        if (pending != null) {
+            for (Map.Entry<String, Integer> entry : pending.entrySet()) {
+                if (entry.getValue().equals(id)) {
+                    return entry.getKey();
+                }
+            }
+        }
+        value = jdbcTemplate.queryForObject(SELECT_BY_ID_SQL, String.class, id);
+        dictionary.put(id, value);
+        return value;
+    }
+
+    /**
+     * 回傳字典中同值的共用字串實例，避免每筆實體各自持有一份相同內容的字串
+     * 未啟用字典編碼時原樣回傳
+     */
+    public String canonical(String value) {
+        if (!enabled || value == null) {
+            return value;
+        }
+        Integer id = encode(value);
+        String shared = currentDictionary().valuesById.get(id);
+        return shared != null ? shared : value;
+    }
+
+    private ShardDictionary currentDictionary() {
+        String shard = ShardContext.getCurrentShard();
+        return dictionaries.computeIfAbsent(shard != null ? shard : "", key -> new ShardDictionary());
+    }
+
+    /**
+     * 目前交易中新增、尚未提交的字典項目，提交後放進交易所在分片的字典；不在交易中時回傳 null
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Integer> pendingInTransaction(ShardDictionary dictionary) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        Map<String, Integer> pending = (Map<String, Integer>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            Map<String, Integer> created = new HashMap<>();
+            TransactionSynchronizationManager.bindResource(this, created);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    created.forEach((value, id) -> dictionary.put(id, value));
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(AuditDictionary.this);
+                }
+            });
+            pending = created;
+        }
+        return pending;
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.auditingdemo.audit.dictionary;
+
+import org.springframework.beans.factory.annotation.Autowired;
+
+import jakarta.persistence.AttributeConverter;
+
+/**
+ * 審計字串欄位與字典編號的轉換器
+ * 只在 audit-dict profile 的 META-INF/audit-dict-orm.xml 中套用到 BaseAuditEntity 的審計字串欄位；
+ * 由 Hibernate 透過 Spring 建立，因此可以注入 AuditDictionary
+ */
+public class AuditDictionaryConverter implements AttributeConverter<String, Integer> {
+
+    @Autowired
+    private AuditDictionary auditDictionary;
+
+    @Override
+    public Integer convertToDatabaseColumn(String attribute) {
+        return auditDictionary.encode(attribute);
+    }
+
+    @Override
+    public String convertToEntityAttribute(Integer dbData) {
+        return auditDictionary.decode(dbData);
+    }
+}
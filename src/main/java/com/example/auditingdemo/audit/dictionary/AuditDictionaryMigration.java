@@ -0,0 +1,140 @@
+package com.example.auditingdemo.audit.dictionary;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.auditingdemo.audit.trigger.AuditSessionVariables;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 審計欄位字典編碼轉換工具
+ * 依主鍵順序分批把既有資料的審計字串轉成字典編號，每批一個短交易並在批次間暫停，
+ * 轉換期間應用程式可以照常讀寫。
+ *
+ * 建議步驟：
+ * 1. 以原模式執行一次，補上所有編號欄位（字串欄位保留）
+ * 2. 以 audit-dict profile 重新部署應用程式
+ * 3. 加上 audit.dictionary.clear-text=true 再執行一次，補上切換期間新增的資料並清空字串欄位
+ *
+ * 字典模式的應用程式只更新編號欄位，字串欄位留著轉換前的舊值，因此以 audit-dict profile 執行時
+ * 已有編號的欄位保留編號，只有編號為空的欄位才由字串編碼；清空字串欄位必須以 audit-dict profile 執行
+ *
+ * 執行: java -jar auditing-demo.jar --spring.main.web-application-type=none --audit.dictionary.migrate=true
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "audit.dictionary.migrate", havingValue = "true")
+public class AuditDictionaryMigration implements ApplicationRunner {
+
+    private static final List<String> TABLES = List.of("pf_user", "pf_customer");
+
+    private static final List<String> COLUMNS = List.of(
+            "created_company", "created_unit", "created_name",
+            "modified_company", "modified_unit", "modified_name");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private AuditDictionary auditDictionary;
+
+    @Autowired
+    private ConfigurableApplicationContext applicationContext;
+
+    @Value("${audit.dictionary.migrate-batch-size:1000}")
+    private int batchSize;
+
+    @Value("${audit.dictionary.migrate-pause-ms:50}")
+    private long pauseMs;
+
+    @Value("${audit.dictionary.clear-text:false}")
+    private boolean clearText;
+
+    @Value("${audit.dictionary.migrate-exit:true}")
+    private boolean exitWhenDone;
+
+    @Override
+    public void run(ApplicationArguments args) throws InterruptedException {
+        if (clearText && !auditDictionary.isEnabled()) {
+            throw new IllegalStateException("清空字串欄位須以 audit-dict profile 執行，否則應用程式仍讀取字串欄位");
+        }
+        for (String table : TABLES) {
+            migrateTable(table);
+        }
+        if (exitWhenDone) {
+            System.exit(SpringApplication.exit(applicationContext, () -> 0));
+        }
+    }
+
+    private void migrateTable(String table) throws InterruptedException {
+        String selectSql = "SELECT id, "
+                + COLUMNS.stream().map(column -> column + ", " + column + "_id").collect(Collectors.joining(", "))
+                + " FROM " + table + " WHERE id > ? AND ("
+                + COLUMNS.stream().map(this::pendingCondition).collect(Collectors.joining(" OR "))
+                + ") ORDER BY id LIMIT ? FOR NO KEY UPDATE";
+        String updateSql = "UPDATE " + table + " SET "
+                + COLUMNS.stream().map(column -> column + "_id = ?").collect(Collectors.joining(", "))
+                + (clearText ? ", " + COLUMNS.stream().map(column -> column + " = NULL").collect(Collectors.joining(", ")) : "")
+                + " WHERE id = ?";
+
+        long lastId = 0;
+        long total = 0;
+        long start = System.nanoTime();
+        while (true) {
+            long afterId = lastId;
+            List<Object[]> batch = transactionTemplate.execute(status -> {
+                // 轉換不是業務異動，觸發器審計模式下也不應改動修改者與版本
+                jdbcTemplate.execute(AuditSessionVariables.SUPPRESS_SQL);
+                List<Object[]> updates = new ArrayList<>();
+                jdbcTemplate.query(selectSql, rs -> {
+                    Object[] params = new Object[COLUMNS.size() + 1];
+                    for (int i = 0; i < COLUMNS.size(); i++) {
+                        String text = rs.getString(COLUMNS.get(i));
+                        Integer existing = rs.getObject(COLUMNS.get(i) + "_id", Integer.class);
+                        params[i] = existing != null && auditDictionary.isEnabled()
+                                ? existing
+                                : text != null ? auditDictionary.encode(text) : existing;
+                    }
+                    params[COLUMNS.size()] = rs.getLong("id");
+                    updates.add(params);
+                }, afterId, batchSize);
+                jdbcTemplate.batchUpdate(updateSql, updates);
+                return updates;
+            });
+            if (batch.isEmpty()) {
+                break;
+            }
+            lastId = (Long) batch.get(batch.size() - 1)[COLUMNS.size()];
+            total += batch.size();
+            log.info("{} 已轉換 {} 筆，目前編號 {}", table, total, lastId);
+            Thread.sleep(pauseMs);
+        }
+        log.info("{} 字典編碼轉換完成，共 {} 筆，耗時 {} ms", table, total, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * 需要處理的資料列：清空字串時處理所有仍有字串的列（已有編號的欄位只清空字串，不以舊字串覆寫編號），
+     * 否則只處理尚未有編號的列
+     */
+    private String pendingCondition(String column) {
+        return clearText
+                ? column + " IS NOT NULL"
+                : "(" + column + " IS NOT NULL AND " + column + "_id IS NULL)";
+    }
+}
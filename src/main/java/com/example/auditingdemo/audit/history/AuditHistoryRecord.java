@@ -0,0 +1,37 @@
+package com.example.auditingdemo.audit.history;
+
+import java.time.LocalDateTime;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 審計歷史記錄
+ * 對應 pf_audit_history 表或封存段檔中的一筆記錄
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuditHistoryRecord {
+
+    private Long id;
+
+    private String entityType;
+
+    private Long entityId;
+
+    private String operation;
+
+    private Long actorId;
+
+    // 已是 JSON 字串，直接輸出避免二次跳脫
+    @JsonRawValue
+    private String payload;
+
+    private LocalDateTime changedTime;
+}
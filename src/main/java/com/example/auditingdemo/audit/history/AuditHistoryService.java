@@ -0,0 +1,138 @@
+package com.example.auditingdemo.audit.history;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.example.auditingdemo.audit.archive.AuditArchiveReader;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 審計歷史查詢服務
+ * 熱資料從 pf_audit_history 查詢；查詢範圍早於熱資料保留期間時，一併讀取封存段檔並合併
+ */
+@Slf4j
+@Service
+public class AuditHistoryService {
+
+    private static final String SELECT_SQL =
+            "SELECT id, entity_type, entity_id, operation, actor_id, payload, changed_time "
+            + "FROM pf_audit_history WHERE entity_type = ? AND entity_id = ? "
+            + "AND changed_time >= ? AND changed_time <= ? ORDER BY changed_time, id";
+
+    // 指定時間點之前的最後一筆，沿 pf_audit_history_entity_idx 反向讀取一筆
+    private static final String SELECT_AS_OF_SQL =
+            "SELECT id, entity_type, entity_id, operation, actor_id, payload, changed_time "
+            + "FROM pf_audit_history WHERE entity_type = ? AND entity_id = ? AND changed_time <= ? "
+            + "ORDER BY changed_time DESC, id DESC LIMIT 1";
+
+    // 依變更時間與編號由新到舊
+    private static final Comparator<AuditHistoryRecord> LATEST_FIRST = Comparator
+            .comparing(AuditHistoryRecord::getChangedTime)
+            .thenComparing(AuditHistoryRecord::getId)
+            .reversed();
+
+    private static final LocalDateTime MIN_TIME = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private static final LocalDateTime MAX_TIME = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectProvider<AuditArchiveReader> archiveReaderProvider;
+
+    @Value("${audit.archive.hot-days:90}")
+    private int hotDays;
+
+    /**
+     * 查詢實體的變更歷史
+     *
+     * @param entityType 實體類型（類別簡單名稱）
+     * @param entityId 實體編號
+     * @param start 起始時間，null 表示不限制
+     * @param end 結束時間，null 表示不限制
+     * @return 依變更時間排序的歷史記錄
+     */
+    public List<AuditHistoryRecord> findHistory(String entityType, Long entityId, LocalDateTime start, LocalDateTime end) {
+        List<AuditHistoryRecord> hot = jdbcTemplate.query(SELECT_SQL, AuditHistoryService::mapRecord,
+                entityType, entityId,
+                Timestamp.valueOf(start != null ? start : MIN_TIME),
+                Timestamp.valueOf(end != null ? end : MAX_TIME));
+
+        AuditArchiveReader archiveReader = archiveReaderProvider.getIfAvailable();
+        LocalDateTime hotWindowStart = LocalDateTime.now().minusDays(hotDays);
+        if (archiveReader == null || (start != null && !start.isBefore(hotWindowStart))) {
+            return hot;
+        }
+
+        // 封存作業可能重複寫入同一筆記錄，以歷史編號去重
+        Map<Long, AuditHistoryRecord> merged = new LinkedHashMap<>();
+        for (AuditHistoryRecord record : archiveReader.find(entityType, entityId, start, end)) {
+            merged.put(record.getId(), record);
+        }
+        for (AuditHistoryRecord record : hot) {
+            merged.put(record.getId(), record);
+        }
+        List<AuditHistoryRecord> result = new ArrayList<>(merged.values());
+        result.sort(Comparator.comparing(AuditHistoryRecord::getChangedTime).thenComparing(AuditHistoryRecord::getId));
+        log.debug("查詢 {} id={} 歷史，熱資料 {} 筆，合併後 {} 筆", entityType, entityId, hot.size(), result.size());
+        return result;
+    }
+
+    /**
+     * 查詢實體在指定時間點的狀態
+     * 每筆歷史記錄都保存變更後的完整內容，時間點之前的最後一筆就是當時的狀態，不必重播之前的變更：
+     * 熱資料為一次索引查詢；只有熱資料中沒有足夠新的記錄時才查詢封存，且只解碼最新的候選段檔
+     *
+     * @param entityType 實體類型（類別簡單名稱）
+     * @param entityId 實體編號
+     * @param asOf 時間點
+     * @return 當時的歷史記錄；當時尚未建立、已刪除或沒有歷史記錄時為空
+     */
+    public Optional<AuditHistoryRecord> findAsOf(String entityType, Long entityId, LocalDateTime asOf) {
+        AuditHistoryRecord latest = jdbcTemplate.query(SELECT_AS_OF_SQL, AuditHistoryService::mapRecord,
+                entityType, entityId, Timestamp.valueOf(asOf)).stream().findFirst().orElse(null);
+
+        // 封存的記錄都早於封存當時的保留期間起點，熱資料中已有較新的記錄時不必查詢封存
+        AuditArchiveReader archiveReader = archiveReaderProvider.getIfAvailable();
+        LocalDateTime hotWindowStart = LocalDateTime.now().minusDays(hotDays);
+        if (archiveReader != null && (latest == null || latest.getChangedTime().isBefore(hotWindowStart))) {
+            AuditHistoryRecord archived = archiveReader.findLatest(entityType, entityId, asOf).orElse(null);
+            if (archived != null && (latest == null || LATEST_FIRST.compare(archived, latest) < 0)) {
+                latest = archived;
+            }
+        }
+        if (latest == null || "DELETE".equals(latest.getOperation())) {
+            return Optional.empty();
+        }
+        log.debug("查詢 {} id={} 於 {} 的狀態，使用歷史編號 {}", entityType, entityId, asOf, latest.getId());
+        return Optional.of(latest);
+    }
+
+    private static AuditHistoryRecord mapRecord(ResultSet rs, int rowNum) throws SQLException {
+        return AuditHistoryRecord.builder()
+                .id(rs.getLong("id"))
+                .entityType(rs.getString("entity_type"))
+                .entityId(rs.getLong("entity_id"))
+                .operation(rs.getString("operation"))
+                .actorId(rs.getObject("actor_id", Long.class))
+                .payload(rs.getString("payload"))
+                .changedTime(rs.getTimestamp("changed_time").toLocalDateTime())
+                .build();
+    }
+}
@@ -0,0 +1,276 @@
+package com.example.auditingdemo.audit.history;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.crypto.Mac;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.auditingdemo.audit.AuditPayloadSerializer;
+import com.example.auditingdemo.audit.chain.AuditChainContent;
+import com.example.auditingdemo.audit.chain.AuditChainKey;
+import com.example.auditingdemo.model.base.BaseAuditEntity;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 審計歷史寫入器
+ * 與 outbox 相同，使用目前交易綁定的 JDBC 連線寫入 pf_audit_history。
+ * 批次作業可以先累積目前執行緒的歷史記錄，提交前以一次 JDBC batch 寫入
+ *
+ * 寫入時以 audit.chain.hmac-key 計算雜湊鏈（prev_hash、hash），金鑰不離開應用程式。
+ * 每個實體在目前交易中最後一筆的雜湊綁定在交易上，同一交易的後續記錄直接串接；
+ * 交易中第一次寫入某個實體時才查詢它最後一筆的雜湊，新建立的實體不查詢，批次寫入時整批只查詢一次。
+ * 歷史都在實體的資料列寫入之後（或同一交易稍後以版本檢查寫入），並行修改同一實體的交易會在資料列上排隊，
+ * 後到的交易因版本不符回滾，連同它的歷史一起捨棄，鏈不會分岔
+ */
+@Slf4j
+@Component
+public class AuditHistoryWriter {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO pf_audit_history (entity_type, entity_id, operation, actor_id, payload, changed_time, prev_hash, hash) "
+            + "VALUES (?, ?, ?, ?, CAST(? AS jsonb), ?, ?, ?)";
+
+    // 每個實體最後一筆有雜湊的歷史，依 (entity_type, entity_id, id) 索引反向讀取一筆
+    private static final String HEADS_SQL =
+            "SELECT k.entity_type, k.entity_id, h.hash "
+            + "FROM unnest(CAST(? AS text[]), CAST(? AS bigint[])) AS k(entity_type, entity_id) "
+            + "CROSS JOIN LATERAL (SELECT hash FROM pf_audit_history h "
+            + "WHERE h.entity_type = k.entity_type AND h.entity_id = k.entity_id AND h.hash IS NOT NULL "
+            + "ORDER BY h.id DESC LIMIT 1) h";
+
+    private static final Object CHAIN_HEADS_KEY = new Object();
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private AuditPayloadSerializer payloadSerializer;
+
+    @Value("${audit.history.enabled:false}")
+    private boolean enabled;
+
+    // 觸發器審計模式下由資料庫觸發器寫入歷史
+    @Value("${audit.mode:listener}")
+    private String auditMode;
+
+    @Value("${audit.chain.hmac-key:}")
+    private String hmacKey;
+
+    // 累積中的歷史記錄，null 表示逐筆寫入
+    private final ThreadLocal<List<Row>> deferred = new ThreadLocal<>();
+
+    private final ThreadLocal<Mac> mac = ThreadLocal.withInitial(() -> AuditChainKey.newMac(hmacKey));
+
+    private record Chain(String entityType, long entityId) {
+    }
+
+    /**
+     * 一筆待寫入的歷史，雜湊內容在建立時就已決定，寫入時才串上前一筆的雜湊
+     */
+    private record Row(Chain chain, String operation, Long actorId, String payload, LocalDateTime changedTime,
+            byte[] content) {
+
+        private Object[] args(byte[] prevHash, byte[] hash) {
+            return new Object[] {chain.entityType(), chain.entityId(), operation, actorId, payload,
+                    Timestamp.valueOf(changedTime), prevHash, hash};
+        }
+    }
+
+    /**
+     * 會寫入歷史且需要雜湊時，未設定金鑰就拒絕啟動；本機開發以 dev profile 提供金鑰
+     */
+    @PostConstruct
+    public void init() {
+        if (chained() && (hmacKey == null || hmacKey.isEmpty())) {
+            throw new IllegalStateException("已啟用審計歷史但未設定 audit.chain.hmac-key（環境變數 AUDIT_CHAIN_HMAC_KEY），"
+                    + "本機開發請以 --spring.profiles.active=dev 啟動");
+        }
+    }
+
+    /**
+     * 寫入一筆歷史記錄
+     *
+     * @param entity 變更的實體
+     * @param operation 操作類型（CREATE/UPDATE/DELETE）
+     */
+    public void append(BaseAuditEntity entity, String operation) {
+        if (!enabled || "trigger".equals(auditMode)) {
+            return;
+        }
+        insert(entity, operation);
+    }
+
+    /**
+     * 寫入合併寫入（write-behind）時被後續修改覆蓋的中間狀態
+     * 中間狀態沒有對應的資料庫陳述式，觸發器審計模式下同樣由此寫入
+     *
+     * @param entity 套用該次修改後的實體，修改者與修改時間為該次修改的值
+     */
+    public void appendIntermediate(BaseAuditEntity entity) {
+        if (!enabled) {
+            return;
+        }
+        insert(entity, "UPDATE");
+    }
+
+    /**
+     * 開始累積目前執行緒寫入的歷史記錄
+     * 須在交易內呼叫，並在同一交易提交前呼叫 flushDeferred；內容在累積時就已序列化
+     */
+    public void beginDeferred() {
+        deferred.set(new ArrayList<>());
+    }
+
+    /**
+     * 以一次 JDBC batch 寫入累積的歷史記錄並停止累積
+     *
+     * @return 寫入筆數
+     */
+    public int flushDeferred() {
+        List<Row> rows = deferred.get();
+        deferred.remove();
+        if (rows == null || rows.isEmpty()) {
+            return 0;
+        }
+        write(rows);
+        log.debug("批次寫入審計歷史 {} 筆", rows.size());
+        return rows.size();
+    }
+
+    /**
+     * 停止累積並捨棄尚未寫入的記錄，用於交易回滾時
+     */
+    public void discardDeferred() {
+        deferred.remove();
+    }
+
+    /**
+     * 觸發器審計模式下資料庫寫入的歷史沒有雜湊，中間狀態也不計算，雜湊鏈只涵蓋監聽器模式
+     */
+    private boolean chained() {
+        return enabled && !"trigger".equals(auditMode);
+    }
+
+    private void insert(BaseAuditEntity entity, String operation) {
+        LocalDateTime modifiedTime = entity.getModifiedTime() != null ? entity.getModifiedTime() : LocalDateTime.now();
+        // 資料庫只保存到微秒，雜湊內容與寫入的值一致
+        LocalDateTime changedTime = modifiedTime.truncatedTo(ChronoUnit.MICROS);
+        Chain chain = new Chain(entity.getClass().getSimpleName(), entity.getId());
+        Long actorId = entity.getModifiedBy() != null ? entity.getModifiedBy().getId() : null;
+        ObjectNode payload = payloadSerializer.toTree(entity);
+        byte[] content = chained()
+                ? AuditChainContent.of(chain.entityType(), chain.entityId(), operation, actorId, payload, changedTime)
+                : null;
+        Row row = new Row(chain, operation, actorId, payload.toString(), changedTime, content);
+        List<Row> rows = deferred.get();
+        if (rows != null) {
+            rows.add(row);
+        } else {
+            write(List.of(row));
+        }
+        log.debug("寫入審計歷史: {} {} id={}", operation, chain.entityType(), chain.entityId());
+    }
+
+    private void write(List<Row> rows) {
+        List<Object[]> args = new ArrayList<>(rows.size());
+        if (chained()) {
+            Map<Chain, byte[]> heads = chainHeads();
+            loadHeads(rows, heads);
+            Mac hmac = mac.get();
+            for (Row row : rows) {
+                byte[] prevHash = heads.get(row.chain());
+                byte[] hash = AuditChainKey.hash(hmac, prevHash, row.content());
+                heads.put(row.chain(), hash);
+                args.add(row.args(prevHash, hash));
+            }
+        } else {
+            rows.forEach(row -> args.add(row.args(null, null)));
+        }
+        if (args.size() == 1) {
+            jdbcTemplate.update(INSERT_SQL, args.get(0));
+        } else {
+            jdbcTemplate.batchUpdate(INSERT_SQL, args);
+        }
+    }
+
+    /**
+     * 目前交易中每個實體最後一筆的雜湊，交易結束時解除；沒有交易同步時每次重新查詢
+     */
+    @SuppressWarnings("unchecked")
+    private Map<Chain, byte[]> chainHeads() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return new HashMap<>();
+        }
+        Map<Chain, byte[]> heads = (Map<Chain, byte[]>) TransactionSynchronizationManager.getResource(CHAIN_HEADS_KEY);
+        if (heads == null) {
+            heads = new HashMap<>();
+            TransactionSynchronizationManager.bindResource(CHAIN_HEADS_KEY, heads);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(CHAIN_HEADS_KEY);
+                }
+            });
+        }
+        return heads;
+    }
+
+    /**
+     * 補上這次寫入涉及、目前交易尚未知道的實體的最後一筆雜湊；
+     * 第一筆是 CREATE 的實體是新資料列，沒有前一筆，其餘以一次查詢取得
+     */
+    private void loadHeads(List<Row> rows, Map<Chain, byte[]> heads) {
+        Set<Chain> missing = new LinkedHashSet<>();
+        for (Row row : rows) {
+            if (heads.containsKey(row.chain()) || missing.contains(row.chain())) {
+                continue;
+            }
+            if ("CREATE".equals(row.operation())) {
+                heads.put(row.chain(), null);
+            } else {
+                missing.add(row.chain());
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        String[] entityTypes = new String[missing.size()];
+        Long[] entityIds = new Long[missing.size()];
+        int i = 0;
+        for (Chain chain : missing) {
+            entityTypes[i] = chain.entityType();
+            entityIds[i] = chain.entityId();
+            heads.put(chain, null);
+            i++;
+        }
+        jdbcTemplate.query(connection -> {
+            Array types = connection.createArrayOf("text", entityTypes);
+            Array ids = connection.createArrayOf("bigint", entityIds);
+            PreparedStatement statement = connection.prepareStatement(HEADS_SQL);
+            statement.setArray(1, types);
+            statement.setArray(2, ids);
+            return statement;
+        }, (RowCallbackHandler) rs ->
+                heads.put(new Chain(rs.getString("entity_type"), rs.getLong("entity_id")), rs.getBytes("hash")));
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.auditingdemo.audit.metadata;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.autoconfigure.AutoConfigurationPackages;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import com.example.auditingdemo.audit.AuditableInterface;
+import com.example.auditingdemo.model.base.AuditBase;
+import com.example.auditingdemo.model.base.BaseAuditEntity;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.Entity;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 審計中繼資料登錄表
+ * 啟動時掃描所有繼承 BaseAuditEntity / AuditBase（或實作 AuditableInterface）的實體，
+ * 為每個類別產生一份填寫策略：setter 以 LambdaMetafactory 產生存取器，執行時不再做 instanceof 判斷或反射呼叫。
+ * 掃描不到的類別（例如 Hibernate 代理子類別）在第一次使用時補上
+ */
+@Slf4j
+@Component
+public class AuditMetadataRegistry {
+
+    @Autowired
+    private BeanFactory beanFactory;
+
+    private final Map<Class<?>, AuditStampStrategy> strategies = new ConcurrentHashMap<>();
+
+    private final Set<Class<?>> scannedEntities = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void scan() {
+        ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false);
+        scanner.addIncludeFilter(new AnnotationTypeFilter(Entity.class));
+        ClassLoader classLoader = ClassUtils.getDefaultClassLoader();
+        for (String basePackage : AutoConfigurationPackages.get(beanFactory)) {
+            for (BeanDefinition candidate : scanner.findCandidateComponents(basePackage)) {
+                Class<?> entityClass = ClassUtils.resolveClassName(candidate.getBeanClassName(), classLoader);
+                if (isAudited(entityClass)) {
+                    scannedEntities.add(entityClass);
+                    log.info("審計中繼資料: {}", register(entityClass));
+                }
+            }
+        }
+    }
+
+    /**
+     * 取得實體類別的填寫策略
+     */
+    public AuditStampStrategy strategyFor(Class<?> entityClass) {
+        AuditStampStrategy strategy = strategies.get(entityClass);
+        if (strategy != null) {
+            return strategy;
+        }
+        return strategies.computeIfAbsent(entityClass, type -> isAudited(type) ? compile(type) : AuditStampStrategy.NONE);
+    }
+
+    /**
+     * 啟動時掃描到的審計實體類別
+     */
+    public Set<Class<?>> getScannedEntities() {
+        return Collections.unmodifiableSet(scannedEntities);
+    }
+
+    /**
+     * 為實體類別產生並登錄填寫策略
+     */
+    public AuditStampStrategy register(Class<?> entityClass) {
+        return strategies.computeIfAbsent(entityClass, AuditMetadataRegistry::compile);
+    }
+
+    private static boolean isAudited(Class<?> type) {
+        return BaseAuditEntity.class.isAssignableFrom(type)
+                || AuditBase.class.isAssignableFrom(type)
+                || AuditableInterface.class.isAssignableFrom(type);
+    }
+
+    private static AuditStampStrategy compile(Class<?> entityClass) {
+        return new AuditStampStrategy(entityClass,
+                setter(entityClass, "setCreatedCompany"),
+                setter(entityClass, "setCreatedUnit"),
+                setter(entityClass, "setCreatedName"),
+                setter(entityClass, "setModifiedCompany"),
+                setter(entityClass, "setModifiedUnit"),
+                setter(entityClass, "setModifiedName"));
+    }
+
+    /**
+     * 產生呼叫 setter 的 BiConsumer，呼叫成本與直接呼叫方法相同；類別沒有公開的 setter 時回傳 null
+     */
+    @SuppressWarnings("unchecked")
+    private static BiConsumer<Object, String> setter(Class<?> entityClass, String methodName) {
+        Method method;
+        try {
+            method = entityClass.getMethod(methodName, String.class);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+        if (Modifier.isStatic(method.getModifiers())) {
+            return null;
+        }
+        Class<?> declaringClass = method.getDeclaringClass();
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(declaringClass, MethodHandles.lookup());
+            CallSite callSite = LambdaMetafactory.metafactory(lookup,
+                    "accept",
+                    MethodType.methodType(BiConsumer.class),
+                    MethodType.methodType(void.class, Object.class, Object.class),
+                    lookup.unreflect(method),
+                    MethodType.methodType(void.class, declaringClass, String.class));
+            return (BiConsumer<Object, String>) callSite.getTarget().invokeExact();
+        } catch (Throwable e) {
+            throw new IllegalStateException("無法產生 " + entityClass.getName() + "." + methodName + " 的存取器", e);
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.auditingdemo.audit.metadata;
+
+/**
+ * 一次寫入要填入的擴展審計值（公司、單位、姓名），同一次 flush 的所有實體共用
+ */
+public record AuditStamp(String company, String unit, String name) {
+}
@@ -0,0 +1,97 @@
+package com.example.auditingdemo.audit.metadata;
+
+import java.util.function.BiConsumer;
+
+/**
+ * 單一實體類別的審計欄位填寫策略
+ * 每個欄位是啟動時產生的 setter 存取器，類別沒有該欄位時為 null
+ */
+public final class AuditStampStrategy {
+
+    static final AuditStampStrategy NONE = new AuditStampStrategy(Object.class, null, null, null, null, null, null);
+
+    private final Class<?> entityClass;
+
+    private final BiConsumer<Object, String> createdCompany;
+
+    private final BiConsumer<Object, String> createdUnit;
+
+    private final BiConsumer<Object, String> createdName;
+
+    private final BiConsumer<Object, String> modifiedCompany;
+
+    private final BiConsumer<Object, String> modifiedUnit;
+
+    private final BiConsumer<Object, String> modifiedName;
+
+    AuditStampStrategy(Class<?> entityClass,
+            BiConsumer<Object, String> createdCompany, BiConsumer<Object, String> createdUnit, BiConsumer<Object, String> createdName,
+            BiConsumer<Object, String> modifiedCompany, BiConsumer<Object, String> modifiedUnit, BiConsumer<Object, String> modifiedName) {
+        this.entityClass = entityClass;
+        this.createdCompany = createdCompany;
+        this.createdUnit = createdUnit;
+        this.createdName = createdName;
+        this.modifiedCompany = modifiedCompany;
+        this.modifiedUnit = modifiedUnit;
+        this.modifiedName = modifiedName;
+    }
+
+    public Class<?> getEntityClass() {
+        return entityClass;
+    }
+
+    /**
+     * 是否沒有任何需要填寫的欄位
+     */
+    public boolean isEmpty() {
+        return modifiedCompany == null && modifiedUnit == null && modifiedName == null
+                && createdCompany == null && createdUnit == null && createdName == null;
+    }
+
+    /**
+     * 建立時填入建立與修改欄位，使初始的修改者資訊與建立者一致
+     */
+    public void stampCreate(Object entity, AuditStamp stamp) {
+        set(createdCompany, entity, stamp.company());
+        set(createdUnit, entity, stamp.unit());
+        set(createdName, entity, stamp.name());
+        stampUpdate(entity, stamp);
+    }
+
+    /**
+     * 更新時只填入修改欄位
+     */
+    public void stampUpdate(Object entity, AuditStamp stamp) {
+        set(modifiedCompany, entity, stamp.company());
+        set(modifiedUnit, entity, stamp.unit());
+        set(modifiedName, entity, stamp.name());
+    }
+
+    private static void set(BiConsumer<Object, String> setter, Object entity, String value) {
+        if (setter != null) {
+            setter.accept(entity, value);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return entityClass.getSimpleName() + (isEmpty() ? "[無審計欄位]" : "[" + describe() + "]");
+    }
+
+    private String describe() {
+        StringBuilder fields = new StringBuilder();
+        append(fields, createdCompany, "createdCompany");
+        append(fields, createdUnit, "createdUnit");
+        append(fields, createdName, "createdName");
+        append(fields, modifiedCompany, "modifiedCompany");
+        append(fields, modifiedUnit, "modifiedUnit");
+        append(fields, modifiedName, "modifiedName");
+        return fields.toString();
+    }
+
+    private static void append(StringBuilder fields, Object setter, String name) {
+        if (setter != null) {
+            fields.append(fields.isEmpty() ? "" : ", ").append(name);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.auditingdemo.audit.outbox;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 審計事件投遞目標
+ * relay 每次以一個批次呼叫 publish，拋出例外時整批事件會在下次輪詢重送
+ */
+public interface AuditEventSink {
+
+    /**
+     * 投遞一批審計事件
+     *
+     * @param events 依事件編號排序的審計事件
+     * @throws IOException 投遞失敗
+     */
+    void publish(List<AuditOutboxEvent> events) throws IOException;
+}
@@ -0,0 +1,43 @@
+package com.example.auditingdemo.audit.outbox;
+
+import java.time.LocalDateTime;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 審計事件
+ * 對應 pf_audit_outbox 表中的一筆記錄，也是投遞給下游 sink 的資料格式
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuditOutboxEvent {
+
+    // 事件編號，單調遞增，下游可用於去重
+    private Long id;
+
+    private String entityType;
+
+    private Long entityId;
+
+    private String operation;
+
+    private Long actorId;
+
+    // 已是 JSON 字串，直接輸出避免二次跳脫
+    @JsonRawValue
+    private String payload;
+
+    private LocalDateTime createdTime;
+
+    // 啟用分片時事件所在的分片，事件編號只在同一分片內唯一；未啟用時不輸出
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String shard;
+}
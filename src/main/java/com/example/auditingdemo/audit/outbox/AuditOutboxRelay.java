@@ -0,0 +1,141 @@
+package com.example.auditingdemo.audit.outbox;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.auditingdemo.sharding.ShardContext;
+import com.example.auditingdemo.sharding.ShardRouter;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 審計事件 Outbox relay
+ * 定期以 FOR UPDATE SKIP LOCKED 認領一批尚未投遞的事件，投遞成功後在同一交易中標記或刪除。
+ * 多個應用節點同時輪詢時，各自只會鎖到不同的資料列，因此不會重複投遞；
+ * 若投遞成功但提交失敗，事件會再次送出（at-least-once），下游可用事件編號去重。
+ * 啟用分片時每個分片各有自己的 pf_audit_outbox，依序輪詢每個分片，事件帶上分片名稱。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "audit.outbox.enabled", havingValue = "true")
+public class AuditOutboxRelay {
+
+    private static final String CLAIM_SQL =
+            "SELECT id, entity_type, entity_id, operation, actor_id, payload, created_time "
+            + "FROM pf_audit_outbox WHERE delivered_time IS NULL "
+            + "ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED";
+
+    private static final String MARK_SQL = "UPDATE pf_audit_outbox SET delivered_time = now() WHERE id = ?";
+
+    private static final String DELETE_SQL = "DELETE FROM pf_audit_outbox WHERE id = ?";
+
+    // 單次輪詢最多處理的批次數，避免積壓時長時間佔用排程執行緒
+    private static final int MAX_BATCHES_PER_POLL = 50;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private AuditEventSink sink;
+
+    @Autowired
+    private ObjectProvider<ShardRouter> shardRouterProvider;
+
+    @Value("${audit.outbox.batch-size:200}")
+    private int batchSize;
+
+    @Value("${audit.outbox.delete-delivered:false}")
+    private boolean deleteDelivered;
+
+    /**
+     * 輪詢並投遞待處理事件，批次滿載時持續處理直到積壓清空
+     */
+    @Scheduled(fixedDelayString = "${audit.outbox.poll-interval-ms:1000}")
+    public void relay() {
+        for (String shard : shards()) {
+            ShardContext.runIn(shard, () -> relayShard(shard));
+        }
+    }
+
+    private void relayShard(String shard) {
+        try {
+            for (int i = 0; i < MAX_BATCHES_PER_POLL; i++) {
+                Integer delivered = transactionTemplate.execute(status -> relayBatch(shard));
+                if (delivered == null || delivered < batchSize) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            // 交易已回滾，資料列鎖釋放，下次輪詢會重試；其他分片照常投遞
+            log.error("審計事件投遞失敗{}: {}", shard.isEmpty() ? "" : "（分片 " + shard + "）", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 要輪詢的分片，未啟用分片時只有預設資料來源（空字串）
+     */
+    private List<String> shards() {
+        ShardRouter router = shardRouterProvider.getIfAvailable();
+        return router != null ? List.copyOf(router.getShards().keySet()) : List.of("");
+    }
+
+    /**
+     * 在目前交易中認領、投遞並確認一批事件
+     *
+     * @return 本批投遞的事件數
+     */
+    private int relayBatch(String shard) {
+        List<AuditOutboxEvent> events = jdbcTemplate.query(CLAIM_SQL, this::mapEvent, batchSize);
+        if (events.isEmpty()) {
+            return 0;
+        }
+        if (!shard.isEmpty()) {
+            events.forEach(event -> event.setShard(shard));
+        }
+
+        try {
+            sink.publish(events);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        List<Object[]> ids = events.stream()
+                .map(event -> new Object[] { event.getId() })
+                .collect(Collectors.toList());
+        jdbcTemplate.batchUpdate(deleteDelivered ? DELETE_SQL : MARK_SQL, ids);
+
+        log.debug("投遞審計事件 {} 筆，編號 {} - {}",
+                events.size(), events.get(0).getId(), events.get(events.size() - 1).getId());
+        return events.size();
+    }
+
+    private AuditOutboxEvent mapEvent(ResultSet rs, int rowNum) throws SQLException {
+        Timestamp createdTime = rs.getTimestamp("created_time");
+        return AuditOutboxEvent.builder()
+                .id(rs.getLong("id"))
+                .entityType(rs.getString("entity_type"))
+                .entityId(rs.getObject("entity_id", Long.class))
+                .operation(rs.getString("operation"))
+                .actorId(rs.getObject("actor_id", Long.class))
+                .payload(rs.getString("payload"))
+                .createdTime(createdTime != null ? createdTime.toLocalDateTime() : null)
+                .build();
+    }
+}
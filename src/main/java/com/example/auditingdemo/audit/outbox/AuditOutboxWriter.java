@@ -0,0 +1,144 @@
+package com.example.auditingdemo.audit.outbox;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.auditingdemo.audit.AuditPayloadSerializer;
+import com.example.auditingdemo.audit.spool.AuditSpool;
+import com.example.auditingdemo.audit.spool.SpoolRecord;
+import com.example.auditingdemo.model.base.BaseAuditEntity;
+import com.example.auditingdemo.sharding.ShardContext;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 審計事件 Outbox 寫入器
+ * 透過 JdbcTemplate 寫入 pf_audit_outbox，JpaTransactionManager 會把同一條 JDBC 連線綁定到目前交易，
+ * 因此事件與實體變更一起提交或一起回滾。
+ * 啟用本機 spool 時，事件在交易中連同 spool 配發的交易編號附加到 spool，不存取資料庫，
+ * 交易結束後再附加交易結果，由背景消費者只把已提交交易的事件批次寫入資料庫；
+ * spool 已滿時仍在同一交易中直接寫入，不會遺失。
+ * 觸發器審計模式下事件由資料庫觸發器寫入（批次 UPDATE 也會產生事件），這裡不再寫入
+ */
+@Slf4j
+@Component
+public class AuditOutboxWriter {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO pf_audit_outbox (entity_type, entity_id, operation, actor_id, payload, created_time) "
+            + "VALUES (?, ?, ?, ?, CAST(? AS jsonb), ?)";
+
+    // 目前交易的 spool 交易編號，綁定在交易資源上，同一交易只配發一次
+    private static final Object TRANSACTION_ID_KEY = new Object();
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private AuditPayloadSerializer payloadSerializer;
+
+    // spool 依賴本類別寫入資料庫，延遲取得避免循環依賴
+    @Autowired
+    private ObjectProvider<AuditSpool> spoolProvider;
+
+    @Value("${audit.outbox.enabled:false}")
+    private boolean enabled;
+
+    @Value("${audit.mode:listener}")
+    private String auditMode;
+
+    /**
+     * 寫入一筆審計事件
+     *
+     * @param entity 變更的實體
+     * @param operation 操作類型（CREATE/UPDATE/DELETE）
+     */
+    public void append(BaseAuditEntity entity, String operation) {
+        if (!enabled || "trigger".equals(auditMode)) {
+            return;
+        }
+
+        AuditOutboxEvent event = AuditOutboxEvent.builder()
+                .entityType(entity.getClass().getSimpleName())
+                .entityId(entity.getId())
+                .operation(operation)
+                .actorId(entity.getModifiedBy() != null ? entity.getModifiedBy().getId() : null)
+                .payload(payloadSerializer.serialize(entity))
+                .createdTime(LocalDateTime.now())
+                .build();
+
+        AuditSpool spool = spoolProvider.getIfAvailable();
+        if (spool != null && TransactionSynchronizationManager.isActualTransactionActive()) {
+            // 提交前就附加到 spool，消費者看到交易已提交的結果後才寫入，回滾的交易會被略過
+            if (spool.append(SpoolRecord.event(event, currentTransactionId(spool), ShardContext.getCurrentShard()))) {
+                return;
+            }
+            log.warn("審計 spool 已滿，改在同一交易中寫入資料庫: {} id={}", operation, event.getEntityId());
+        }
+
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            log.warn("審計事件寫入時沒有進行中的交易，事件將無法與實體變更保持一致: {}", event.getEntityType());
+        }
+        insert(event);
+        log.debug("寫入審計事件: {} {} id={}", operation, event.getEntityType(), event.getEntityId());
+    }
+
+    /**
+     * 批次寫入審計事件，供 spool 消費者使用
+     */
+    public void insertBatch(List<AuditOutboxEvent> events) {
+        List<Object[]> args = events.stream()
+                .map(this::toArgs)
+                .collect(Collectors.toList());
+        jdbcTemplate.batchUpdate(INSERT_SQL, args);
+    }
+
+    /**
+     * 取得目前交易的 spool 交易編號，第一次取得時註冊在交易結束後附加交易結果
+     */
+    private long currentTransactionId(AuditSpool spool) {
+        Long transactionId = (Long) TransactionSynchronizationManager.getResource(TRANSACTION_ID_KEY);
+        if (transactionId == null) {
+            long id = spool.nextTransactionId();
+            transactionId = id;
+            TransactionSynchronizationManager.bindResource(TRANSACTION_ID_KEY, transactionId);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(TRANSACTION_ID_KEY);
+                    spool.appendOutcome(switch (status) {
+                        case STATUS_COMMITTED -> SpoolRecord.Type.COMMITTED;
+                        case STATUS_ROLLED_BACK -> SpoolRecord.Type.ROLLED_BACK;
+                        default -> SpoolRecord.Type.UNKNOWN;
+                    }, id);
+                }
+            });
+        }
+        return transactionId;
+    }
+
+    private void insert(AuditOutboxEvent event) {
+        jdbcTemplate.update(INSERT_SQL, toArgs(event));
+    }
+
+    private Object[] toArgs(AuditOutboxEvent event) {
+        return new Object[] {
+                event.getEntityType(),
+                event.getEntityId(),
+                event.getOperation(),
+                event.getActorId(),
+                event.getPayload(),
+                Timestamp.valueOf(event.getCreatedTime())
+        };
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.auditingdemo.audit.outbox;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 檔案審計事件投遞
+ * 每個事件寫成一行 JSON（JSON Lines），適合本機測試或交給檔案收集器轉送
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "audit.outbox.sink", havingValue = "file", matchIfMissing = true)
+public class FileAuditEventSink implements AuditEventSink {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${audit.outbox.file.path:target/audit-events.jsonl}")
+    private String path;
+
+    @Override
+    public synchronized void publish(List<AuditOutboxEvent> events) throws IOException {
+        Path file = Paths.get(path);
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (AuditOutboxEvent event : events) {
+                writer.write(objectMapper.writeValueAsString(event));
+                writer.newLine();
+            }
+        }
+        log.debug("寫入 {} 筆審計事件至 {}", events.size(), file);
+    }
+}
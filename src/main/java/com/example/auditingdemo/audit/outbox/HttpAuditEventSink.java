@@ -0,0 +1,57 @@
+package com.example.auditingdemo.audit.outbox;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * HTTP 審計事件投遞
+ * 每個批次以一個 JSON 陣列 POST 到設定的 URL，非 2xx 回應視為投遞失敗
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "audit.outbox.sink", havingValue = "http")
+public class HttpAuditEventSink implements AuditEventSink {
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${audit.outbox.http.url:http://localhost:8080/stub/audit-events}")
+    private String url;
+
+    @Override
+    public void publish(List<AuditOutboxEvent> events) throws IOException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofSeconds(10))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(events)))
+                .build();
+        try {
+            HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() / 100 != 2) {
+                throw new IOException("審計事件投遞失敗，HTTP狀態碼: " + response.statusCode());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("審計事件投遞被中斷", e);
+        }
+        log.debug("投遞 {} 筆審計事件至 {}", events.size(), url);
+    }
+}
@@ -0,0 +1,440 @@
+package com.example.auditingdemo.audit.spool;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.auditingdemo.audit.outbox.AuditOutboxEvent;
+import com.example.auditingdemo.audit.outbox.AuditOutboxWriter;
+import com.example.auditingdemo.sharding.ShardContext;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 審計事件本機 spool
+ * 資料庫變慢時，審計事件先附加到本機記憶體映射段檔並立即返回，
+ * 再由背景消費者批次寫入 pf_audit_outbox。段檔內記錄已消費位置，重啟後會重放尚未寫入資料庫的事件。
+ * 若消費者在資料庫提交後、記錄位置前當機，該批事件會重複寫入一次（at-least-once）。
+ *
+ * 事件在交易進行中就附加，連同 spool 配發的交易編號與分片，附加時不存取資料庫；
+ * 交易結束時 {@link AuditOutboxWriter} 再附加一筆交易結果。消費者依序掃描，
+ * 已提交交易的事件寫入資料庫，回滾的略過，尚未看到結果的交易暫存在記憶體中，不阻擋後面其他交易的事件。
+ * 已消費位置停在最早一筆未決交易的事件上，重啟後從那裡重放。
+ * 結果不明的交易（交易管理器回報 UNKNOWN，或程序在交易結束與附加結果之間當機，重啟後已不可能再有結果）
+ * 不投遞，寫入隔離檔 quarantine.jsonl 並記錄錯誤，由人工對照資料庫處理
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "audit.spool.enabled", havingValue = "true")
+public class AuditSpool {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+
+    private static final String SEGMENT_SUFFIX = ".spool";
+
+    private static final String QUARANTINE_FILE = "quarantine.jsonl";
+
+    @Autowired
+    private AuditOutboxWriter outboxWriter;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${audit.spool.dir:target/audit-spool}")
+    private String dir;
+
+    @Value("${audit.spool.segment-size-bytes:16777216}")
+    private int segmentSize;
+
+    @Value("${audit.spool.max-segments:64}")
+    private int maxSegments;
+
+    @Value("${audit.spool.batch-size:500}")
+    private int batchSize;
+
+    @Value("${audit.spool.force-on-write:false}")
+    private boolean forceOnWrite;
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+
+    // 依序號排列，最後一個為目前寫入中的段檔；只在持有 appendLock 時修改
+    private final Deque<SpoolSegment> segments = new ArrayDeque<>();
+
+    private volatile SpoolSegment active;
+
+    // segments 的大小，只在持有 appendLock 時修改
+    private volatile int segmentCount;
+
+    private long nextSequence;
+
+    // 本次啟動建立的第一個段檔序號，交易編號的高 32 位元，據此分辨上次啟動留下的交易
+    private long runSequence;
+
+    private final AtomicLong nextTransactionId = new AtomicLong();
+
+    // 以下只由 drain 執行緒（synchronized）存取
+    // 掃描位置：下一筆要讀取的段檔與位置
+    private SpoolSegment scanSegment;
+
+    private int scanOffset;
+
+    // 已看到事件、尚未看到結果的交易，依第一筆事件的位置排序
+    private final Map<Long, PendingTransaction> pending = new LinkedHashMap<>();
+
+    // 上次啟動留下的段檔是否已掃描完
+    private boolean previousRunScanned;
+
+    /**
+     * 尚未看到結果的交易
+     */
+    private static final class PendingTransaction {
+
+        private final SpoolSegment segment;
+
+        private final int offset;
+
+        private final List<SpoolRecord> records = new ArrayList<>();
+
+        private PendingTransaction(SpoolSegment segment, int offset) {
+            this.segment = segment;
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * 載入既有段檔並建立新的寫入段檔
+     */
+    @PostConstruct
+    public void recover() throws IOException {
+        Path directory = Paths.get(dir);
+        Files.createDirectories(directory);
+
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream
+                    .filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX)
+                            && path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+
+        for (Path file : files) {
+            long sequence = parseSequence(file);
+            nextSequence = Math.max(nextSequence, sequence + 1);
+            SpoolSegment segment = SpoolSegment.open(file, sequence);
+            if (segment.isFullyConsumed()) {
+                segment.delete();
+            } else {
+                log.info("重放審計 spool 段檔: {}，待處理 {} bytes",
+                        file, segment.getWritePosition() - segment.getConsumedOffset());
+                segments.addLast(segment);
+            }
+        }
+        runSequence = nextSequence;
+        nextTransactionId.set(runSequence << 32);
+        roll();
+    }
+
+    /**
+     * 配發交易編號，在交易中第一次附加事件時呼叫，不存取資料庫
+     */
+    public long nextTransactionId() {
+        return nextTransactionId.incrementAndGet();
+    }
+
+    /**
+     * 附加審計事件，在寫入事件的交易提交前呼叫
+     *
+     * @return spool 已滿時回傳 false，呼叫端應改為在同一交易中直接寫入資料庫
+     */
+    public boolean append(SpoolRecord record) {
+        return append(SpoolRecordCodec.encode(record), false);
+    }
+
+    /**
+     * 附加交易結果，在交易結束後呼叫
+     * 交易的事件已在段檔中，結果不受段檔數上限限制，否則事件會一直停在未決狀態
+     */
+    public void appendOutcome(SpoolRecord.Type type, long transactionId) {
+        append(SpoolRecordCodec.encode(SpoolRecord.outcome(type, transactionId)), true);
+    }
+
+    private boolean append(byte[] data, boolean ignoreLimit) {
+        if (data.length + SpoolSegment.RECORD_HEADER_SIZE > segmentSize - SpoolSegment.HEADER_SIZE) {
+            return false;
+        }
+        appendLock.lock();
+        try {
+            if (!active.append(data)) {
+                if (segmentCount >= maxSegments && !ignoreLimit) {
+                    return false;
+                }
+                active.seal();
+                roll();
+                active.append(data);
+            }
+            if (forceOnWrite) {
+                active.force();
+            }
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * 將段檔中的事件批次寫入資料庫
+     */
+    @Scheduled(fixedDelayString = "${audit.spool.drain-interval-ms:200}")
+    public synchronized void drain() {
+        try {
+            while (drainBatch()) {
+                // 持續消費直到追上寫入端
+            }
+        } catch (Exception e) {
+            log.error("審計 spool 寫入資料庫失敗，稍後重試: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 關閉前把映射內容寫回磁碟，未消費的事件在下次啟動時重放
+     */
+    @PreDestroy
+    public void shutdown() {
+        drain();
+        appendLock.lock();
+        try {
+            segments.forEach(SpoolSegment::force);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * 從掃描位置讀取一批記錄並處理
+     * 寫入資料庫成功後才更新未決交易與掃描位置，失敗時下一輪從同一位置重新處理
+     *
+     * @return 是否還有更多資料需要處理
+     */
+    private boolean drainBatch() throws IOException {
+        if (scanSegment == null) {
+            scanSegment = nextSegment(null);
+            if (scanSegment == null) {
+                return false;
+            }
+            scanOffset = scanSegment.getConsumedOffset();
+        }
+        if (!previousRunScanned && scanSegment.getSequence() >= runSequence) {
+            quarantineOrphans();
+        }
+
+        List<byte[]> data = new ArrayList<>();
+        int end = scanSegment.read(scanOffset, batchSize, data);
+        if (data.isEmpty()) {
+            SpoolSegment next = scanSegment.isSealed() ? nextSegment(scanSegment) : null;
+            if (next == null) {
+                return false;
+            }
+            scanSegment = next;
+            scanOffset = next.getConsumedOffset();
+            release();
+            return true;
+        }
+
+        // 本批新看到的事件（尚未寫入 pending）與本批看到結果的交易
+        Map<Long, PendingTransaction> opened = new LinkedHashMap<>();
+        Map<Long, SpoolRecord.Type> outcomes = new HashMap<>();
+        Map<String, List<AuditOutboxEvent>> eventsByShard = new LinkedHashMap<>();
+        List<SpoolRecord> quarantined = new ArrayList<>();
+        int offset = scanOffset;
+        for (byte[] bytes : data) {
+            SpoolRecord record = SpoolRecordCodec.decode(bytes);
+            if (record.type() == SpoolRecord.Type.EVENT) {
+                if (record.transactionId() == SpoolRecord.NO_TRANSACTION) {
+                    addEvent(eventsByShard, record);
+                } else {
+                    int position = offset;
+                    opened.computeIfAbsent(record.transactionId(), id -> new PendingTransaction(scanSegment, position))
+                            .records.add(record);
+                }
+            } else {
+                outcomes.put(record.transactionId(), record.type());
+                List<SpoolRecord> records = new ArrayList<>();
+                PendingTransaction earlier = pending.get(record.transactionId());
+                if (earlier != null) {
+                    records.addAll(earlier.records);
+                }
+                PendingTransaction current = opened.remove(record.transactionId());
+                if (current != null) {
+                    records.addAll(current.records);
+                }
+                if (record.type() == SpoolRecord.Type.COMMITTED) {
+                    records.forEach(event -> addEvent(eventsByShard, event));
+                } else if (record.type() == SpoolRecord.Type.ROLLED_BACK) {
+                    log.debug("略過已回滾交易 {} 的 {} 筆審計事件", record.transactionId(), records.size());
+                } else {
+                    quarantined.addAll(records);
+                }
+            }
+            offset += SpoolSegment.RECORD_HEADER_SIZE + bytes.length;
+        }
+
+        eventsByShard.forEach((shard, events) -> ShardContext.runIn(shard,
+                () -> transactionTemplate.executeWithoutResult(status -> outboxWriter.insertBatch(events))));
+        quarantine(quarantined, "交易結果不明");
+
+        outcomes.keySet().forEach(pending::remove);
+        opened.forEach((id, transaction) -> {
+            PendingTransaction earlier = pending.get(id);
+            if (earlier != null) {
+                earlier.records.addAll(transaction.records);
+            } else {
+                pending.put(id, transaction);
+            }
+        });
+        scanOffset = end;
+        release();
+        return true;
+    }
+
+    /**
+     * 上次啟動的交易已不可能再附加結果，掃描到本次啟動的段檔時仍未決的就是結果不明
+     * 第 2 版記錄的交易編號是資料庫交易編號，同樣歸入此類
+     */
+    private void quarantineOrphans() throws IOException {
+        List<SpoolRecord> orphans = new ArrayList<>();
+        Iterator<Map.Entry<Long, PendingTransaction>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, PendingTransaction> entry = iterator.next();
+            if (entry.getKey() >>> 32 < runSequence) {
+                orphans.addAll(entry.getValue().records);
+                iterator.remove();
+            }
+        }
+        quarantine(orphans, "交易在上次程序結束前沒有留下結果");
+        previousRunScanned = true;
+    }
+
+    /**
+     * 把結果不明的事件寫入隔離檔，不投遞
+     */
+    private void quarantine(List<SpoolRecord> records, String reason) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+        Path file = Paths.get(dir, QUARANTINE_FILE);
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (SpoolRecord record : records) {
+                AuditOutboxEvent event = record.event();
+                event.setShard(record.shard());
+                writer.write(objectMapper.writeValueAsString(event));
+                writer.newLine();
+            }
+        }
+        log.error("{}，{} 筆審計事件未投遞，已寫入 {}，請對照資料庫確認", reason, records.size(), file);
+    }
+
+    /**
+     * 推進已消費位置到最早一筆未決交易（沒有未決交易時為掃描位置），並刪除之前已消費完的段檔
+     */
+    private void release() throws IOException {
+        PendingTransaction earliest = pending.isEmpty() ? null : pending.values().iterator().next();
+        SpoolSegment limitSegment = earliest != null ? earliest.segment : scanSegment;
+        int limitOffset = earliest != null ? earliest.offset : scanOffset;
+        while (true) {
+            SpoolSegment head;
+            appendLock.lock();
+            try {
+                head = segments.peekFirst();
+                if (head == limitSegment) {
+                    head.commit(limitOffset);
+                    return;
+                }
+                // 比限制位置更舊的段檔一定已封存且掃描完畢
+                segments.pollFirst();
+                segmentCount = segments.size();
+            } finally {
+                appendLock.unlock();
+            }
+            head.commit(head.getWritePosition());
+            head.delete();
+            log.debug("審計 spool 段檔已消費完畢並刪除: {}", head.getFile());
+        }
+    }
+
+    /**
+     * 取得 current 之後的段檔，current 為 null 時取第一個
+     */
+    private SpoolSegment nextSegment(SpoolSegment current) {
+        appendLock.lock();
+        try {
+            boolean found = current == null;
+            for (SpoolSegment segment : segments) {
+                if (found) {
+                    return segment;
+                }
+                found = segment == current;
+            }
+            return null;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private static void addEvent(Map<String, List<AuditOutboxEvent>> eventsByShard, SpoolRecord record) {
+        eventsByShard.computeIfAbsent(shardKey(record.shard()), key -> new ArrayList<>()).add(record.event());
+    }
+
+    /**
+     * 預設分片以空字串作為鍵
+     */
+    private static String shardKey(String shard) {
+        return shard != null ? shard : "";
+    }
+
+    private void roll() throws IOException {
+        long sequence = nextSequence++;
+        Path file = Paths.get(dir, String.format("%s%020d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+        active = SpoolSegment.create(file, sequence, segmentSize);
+        segments.addLast(active);
+        segmentCount = segments.size();
+    }
+
+    private static long parseSequence(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.auditingdemo.audit.spool;
+
+import com.example.auditingdemo.audit.outbox.AuditOutboxEvent;
+
+/**
+ * spool 中的一筆記錄：審計事件，或寫入事件的交易結束時附加的結果
+ *
+ * @param type 記錄類型
+ * @param event 審計事件，結果記錄為 null
+ * @param transactionId spool 配發的交易編號，{@link #NO_TRANSACTION} 表示已知已提交
+ * @param shard 交易所在的分片，null 表示預設分片
+ */
+public record SpoolRecord(Type type, AuditOutboxEvent event, long transactionId, String shard) {
+
+    // 第 1 版記錄在交易提交後才附加，一律視為已提交
+    public static final long NO_TRANSACTION = 0;
+
+    public enum Type {
+        EVENT,
+        COMMITTED,
+        ROLLED_BACK,
+        // 交易管理器無法確定結果（例如提交時連線中斷）
+        UNKNOWN
+    }
+
+    public static SpoolRecord event(AuditOutboxEvent event, long transactionId, String shard) {
+        return new SpoolRecord(Type.EVENT, event, transactionId, shard);
+    }
+
+    public static SpoolRecord outcome(Type type, long transactionId) {
+        return new SpoolRecord(type, null, transactionId, null);
+    }
+}
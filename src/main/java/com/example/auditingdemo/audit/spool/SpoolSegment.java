@@ -0,0 +1,200 @@
+package com.example.auditingdemo.audit.spool;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * 審計 spool 段檔
+ * 固定大小的記憶體映射檔案，格式為 16 bytes 檔頭加上連續的記錄：
+ * <pre>
+ * 檔頭: magic(4) | version(4) | consumedOffset(4) | reserved(4)
+ * 記錄: length(4) | crc32(4) | data(length)
+ * </pre>
+ * 檔案建立時內容全為 0，length 為 0 即代表已寫入資料的結尾。
+ * 寫入不是執行緒安全的，由 {@link AuditSpool} 持鎖呼叫；讀取只讀到已發布的寫入位置，可與寫入並行。
+ */
+public class SpoolSegment {
+
+    static final int MAGIC = 0x41535031; // "ASP1"
+
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 16;
+
+    static final int RECORD_HEADER_SIZE = 8;
+
+    private static final int CONSUMED_OFFSET_POSITION = 8;
+
+    private final Path file;
+
+    private final long sequence;
+
+    private final MappedByteBuffer buffer;
+
+    private final int capacity;
+
+    // 寫入執行緒發布、消費執行緒讀取
+    private volatile int writePosition;
+
+    private volatile boolean sealed;
+
+    private SpoolSegment(Path file, long sequence, MappedByteBuffer buffer, int writePosition) {
+        this.file = file;
+        this.sequence = sequence;
+        this.buffer = buffer;
+        this.capacity = buffer.capacity();
+        this.writePosition = writePosition;
+    }
+
+    /**
+     * 建立新的段檔
+     */
+    public static SpoolSegment create(Path file, long sequence, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(CONSUMED_OFFSET_POSITION, HEADER_SIZE);
+            return new SpoolSegment(file, sequence, buffer, HEADER_SIZE);
+        }
+    }
+
+    /**
+     * 開啟既有段檔並找出寫入結尾
+     * 從已消費位置往後掃描，遇到 length 為 0、超出範圍或 CRC 不符（寫到一半當機）時視為結尾
+     */
+    public static SpoolSegment open(Path file, long sequence) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+                throw new IOException("不是有效的審計 spool 段檔: " + file);
+            }
+            int position = buffer.getInt(CONSUMED_OFFSET_POSITION);
+            while (true) {
+                int next = nextRecordOffset(buffer, position);
+                if (next < 0) {
+                    break;
+                }
+                position = next;
+            }
+            SpoolSegment segment = new SpoolSegment(file, sequence, buffer, position);
+            // 重啟後的舊段檔不再寫入，待消費完即刪除
+            segment.sealed = true;
+            return segment;
+        }
+    }
+
+    /**
+     * 附加一筆記錄
+     *
+     * @return 空間不足時回傳 false，呼叫端應換新的段檔
+     */
+    public boolean append(byte[] data) {
+        int position = writePosition;
+        int end = position + RECORD_HEADER_SIZE + data.length;
+        if (sealed || end > capacity) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        buffer.put(position + RECORD_HEADER_SIZE, data);
+        buffer.putInt(position + 4, (int) crc.getValue());
+        // 最後才寫入長度，讀取端看到非 0 長度時資料已完整
+        buffer.putInt(position, data.length);
+        writePosition = end;
+        return true;
+    }
+
+    /**
+     * 從指定位置讀取最多 maxRecords 筆記錄
+     *
+     * @return 讀取後的下一個位置，可在資料提交成功後傳給 {@link #commit(int)}
+     */
+    public int read(int offset, int maxRecords, List<byte[]> out) {
+        int limit = writePosition;
+        int position = offset;
+        for (int i = 0; i < maxRecords && position < limit; i++) {
+            int length = buffer.getInt(position);
+            byte[] data = new byte[length];
+            buffer.get(position + RECORD_HEADER_SIZE, data);
+            out.add(data);
+            position += RECORD_HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    /**
+     * 記錄已消費位置，重啟後從此處繼續重放
+     */
+    public void commit(int offset) {
+        buffer.putInt(CONSUMED_OFFSET_POSITION, offset);
+    }
+
+    /**
+     * 將映射內容強制寫回磁碟
+     */
+    public void force() {
+        buffer.force();
+    }
+
+    public void seal() {
+        sealed = true;
+    }
+
+    public boolean isSealed() {
+        return sealed;
+    }
+
+    public int getConsumedOffset() {
+        return buffer.getInt(CONSUMED_OFFSET_POSITION);
+    }
+
+    public int getWritePosition() {
+        return writePosition;
+    }
+
+    public boolean isFullyConsumed() {
+        return getConsumedOffset() >= writePosition;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public void delete() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * 驗證 position 上的記錄並回傳下一筆記錄的位置，無有效記錄時回傳 -1
+     */
+    private static int nextRecordOffset(MappedByteBuffer buffer, int position) {
+        if (position + RECORD_HEADER_SIZE > buffer.capacity()) {
+            return -1;
+        }
+        int length = buffer.getInt(position);
+        int end = position + RECORD_HEADER_SIZE + length;
+        if (length <= 0 || end > buffer.capacity()) {
+            return -1;
+        }
+        byte[] data = new byte[length];
+        buffer.get(position + RECORD_HEADER_SIZE, data);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+            return -1;
+        }
+        return end;
+    }
+}
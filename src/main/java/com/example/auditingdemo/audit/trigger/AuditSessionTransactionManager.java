@@ -0,0 +1,46 @@
+package com.example.auditingdemo.audit.trigger;
+
+import org.hibernate.Session;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.EntityTransaction;
+
+/**
+ * 觸發器審計模式的交易管理器
+ * 每個新的讀寫交易開始後立即設定審計交易變數，交易內的 JPA 寫入、JPQL/SQL 批次陳述式
+ * 與 JdbcTemplate 寫入都由資料庫觸發器填入審計欄位。唯讀交易不設定
+ */
+public class AuditSessionTransactionManager extends JpaTransactionManager {
+
+    private final AuditSessionVariables sessionVariables;
+
+    public AuditSessionTransactionManager(EntityManagerFactory entityManagerFactory, AuditSessionVariables sessionVariables) {
+        super(entityManagerFactory);
+        this.sessionVariables = sessionVariables;
+    }
+
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+        super.doBegin(transaction, definition);
+        if (definition.isReadOnly()) {
+            return;
+        }
+        EntityManagerHolder holder = (EntityManagerHolder) TransactionSynchronizationManager.getResource(obtainEntityManagerFactory());
+        try {
+            holder.getEntityManager().unwrap(Session.class).doWork(sessionVariables::apply);
+        } catch (RuntimeException e) {
+            // 沒有審計者就不能寫入：結束剛開始的交易並解除綁定，與 JpaTransactionManager 開始交易失敗時的處理相同
+            EntityTransaction entityTransaction = holder.getEntityManager().getTransaction();
+            if (entityTransaction.isActive()) {
+                entityTransaction.rollback();
+            }
+            doCleanupAfterCompletion(transaction);
+            throw new CannotCreateTransactionException("無法設定審計交易變數", e);
+        }
+    }
+}
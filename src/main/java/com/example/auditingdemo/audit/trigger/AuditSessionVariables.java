@@ -0,0 +1,89 @@
+package com.example.auditingdemo.audit.trigger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Map;
+
+import com.example.auditingdemo.audit.UserContext;
+import com.example.auditingdemo.service.TokenService;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 審計交易變數
+ * 觸發器審計模式下，每個寫入交易開始時把目前的審計者寫入 PostgreSQL 的交易變數
+ * （set_config 第三個參數為 true，等同 SET LOCAL，交易結束即失效，連線歸還連線池後不會殘留），
+ * 由 init-scripts/08-audit-triggers.sql 的觸發器讀取
+ */
+@Slf4j
+public class AuditSessionVariables {
+
+    /**
+     * 審計者的解析方式與 CustomAuditorAware、AuditEntityListener 相同：
+     * 令牌對應的帳號找不到用戶時使用系統用戶（ID=1），沒有令牌時公司、單位、姓名為「系統」。
+     * 帳號查詢與所有變數在同一次往返中完成
+     */
+    private static final String SET_SQL = "SELECT "
+            + "set_config('app.user_id', COALESCE((SELECT id FROM pf_user WHERE username = ?), 1)::text, true), "
+            + "set_config('app.company', ?, true), "
+            + "set_config('app.unit', ?, true), "
+            + "set_config('app.name', ?, true), "
+            + "set_config('app.audit_history', ?, true), "
+            + "set_config('app.audit_outbox', ?, true), "
+            + "set_config('app.audit_dict', ?, true)";
+
+    /**
+     * 清除目前交易的審計者，觸發器不再填寫審計欄位；供不應改動修改者與版本的維護作業使用
+     */
+    public static final String SUPPRESS_SQL = "SELECT set_config('app.user_id', '', true)";
+
+    private static final String SYSTEM = "系統";
+
+    private final TokenService tokenService;
+
+    private final boolean historyEnabled;
+
+    private final boolean outboxEnabled;
+
+    private final boolean dictionaryEnabled;
+
+    public AuditSessionVariables(TokenService tokenService, boolean historyEnabled, boolean outboxEnabled,
+                                 boolean dictionaryEnabled) {
+        this.tokenService = tokenService;
+        this.historyEnabled = historyEnabled;
+        this.outboxEnabled = outboxEnabled;
+        this.dictionaryEnabled = dictionaryEnabled;
+    }
+
+    /**
+     * 在交易綁定的連線上設定目前審計者
+     */
+    public void apply(Connection connection) throws SQLException {
+        String token = UserContext.getCurrentUser();
+        Map<String, String> userInfo = token != null && !token.isEmpty() ? tokenService.getUserInfoFromToken(token) : null;
+
+        try (PreparedStatement statement = connection.prepareStatement(SET_SQL)) {
+            statement.setString(1, userInfo != null ? userInfo.get("username") : null);
+            statement.setString(2, value(userInfo, "company"));
+            statement.setString(3, value(userInfo, "unit"));
+            statement.setString(4, value(userInfo, "name"));
+            statement.setString(5, historyEnabled ? "on" : "off");
+            statement.setString(6, outboxEnabled ? "on" : "off");
+            statement.setString(7, dictionaryEnabled ? "on" : "off");
+            statement.execute();
+        }
+        log.debug("設定審計交易變數: token={}", token);
+    }
+
+    /**
+     * 觸發器把空字串視為 NULL，與監聽器寫入的值一致
+     */
+    private static String value(Map<String, String> userInfo, String key) {
+        if (userInfo == null) {
+            return SYSTEM;
+        }
+        String value = userInfo.get(key);
+        return value != null ? value : "";
+    }
+}
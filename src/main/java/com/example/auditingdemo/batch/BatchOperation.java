@@ -0,0 +1,15 @@
+package com.example.auditingdemo.batch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * 批次中的單一作業
+ *
+ * @param op 作業類型：create、update 或 delete
+ * @param entity 實體：customer 或 user
+ * @param id 實體編號，update 與 delete 必填
+ * @param ifMatch 與 If-Match 標頭相同，只在版本相符時更新或刪除
+ * @param data 新增或更新的欄位，格式與單筆端點的請求內容相同
+ */
+public record BatchOperation(String op, String entity, Long id, String ifMatch, JsonNode data) {
+}
@@ -0,0 +1,22 @@
+package com.example.auditingdemo.batch;
+
+import org.springframework.http.HttpStatus;
+
+import lombok.Getter;
+
+/**
+ * 批次中的作業失敗，整個批次回滾
+ */
+@Getter
+public class BatchOperationException extends RuntimeException {
+
+    private final int index;
+
+    private final HttpStatus status;
+
+    public BatchOperationException(int index, HttpStatus status, String message) {
+        super(message);
+        this.index = index;
+        this.status = status;
+    }
+}
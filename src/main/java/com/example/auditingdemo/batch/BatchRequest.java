@@ -0,0 +1,11 @@
+package com.example.auditingdemo.batch;
+
+import java.util.List;
+
+/**
+ * 批次請求
+ *
+ * @param operations 依序執行的作業
+ */
+public record BatchRequest(List<BatchOperation> operations) {
+}
@@ -0,0 +1,17 @@
+package com.example.auditingdemo.batch;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * 單一作業的結果
+ *
+ * @param index 作業在請求中的位置
+ * @param op 作業類型
+ * @param entity 實體
+ * @param status 與單筆端點相同的狀態碼（新增 201、更新 200、刪除 204）
+ * @param id 實體編號
+ * @param etag 新增或更新後的 ETag，刪除時為 null
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BatchResult(int index, String op, String entity, int status, Long id, String etag) {
+}
@@ -0,0 +1,265 @@
+package com.example.auditingdemo.batch;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.auditingdemo.audit.history.AuditHistoryWriter;
+import com.example.auditingdemo.cache.CustomerNearCache;
+import com.example.auditingdemo.model.Customer;
+import com.example.auditingdemo.model.User;
+import com.example.auditingdemo.model.base.BaseAuditEntity;
+import com.example.auditingdemo.repository.CustomerRepository;
+import com.example.auditingdemo.repository.UserRepository;
+import com.example.auditingdemo.util.CustomerPatch;
+import com.example.auditingdemo.util.ETagUtils;
+import com.example.auditingdemo.util.UserPatch;
+import com.example.auditingdemo.writebehind.CustomerWriteBehind;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.OptimisticLockException;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.PersistenceException;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 多作業批次服務
+ * 在一個交易中依序執行用戶與顧客的新增、更新與刪除，任何一個作業失敗時整個批次回滾。
+ * 更新與刪除累積到最後由 Hibernate 以 JDBC batch 送出，監聽器寫入的審計歷史也累積後以一次 JDBC batch 寫入；
+ * 新增使用 IDENTITY 主鍵，Hibernate 無法批次，仍逐筆 INSERT
+ */
+@Slf4j
+@Service
+public class BatchService {
+
+    private static final String CUSTOMER = "customer";
+
+    private static final String USER = "user";
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private AuditHistoryWriter historyWriter;
+
+    @Autowired
+    private CustomerWriteBehind customerWriteBehind;
+
+    @Autowired
+    private CustomerNearCache customerNearCache;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${batch.jdbc-batch-size:50}")
+    private int jdbcBatchSize;
+
+    @Value("${sharding.enabled:false}")
+    private boolean shardingEnabled;
+
+    /**
+     * 依序執行所有作業
+     * 呼叫前須已設定 UserContext，整個批次使用同一個審計者
+     *
+     * @return 每個作業的結果，順序與請求相同
+     * @throws BatchOperationException 作業內容不正確或執行失敗，整個批次已回滾
+     */
+    public List<BatchResult> execute(List<BatchOperation> operations) {
+        for (int i = 0; i < operations.size(); i++) {
+            validate(i, operations.get(i));
+        }
+
+        // 合併寫入使用自己的交易，須在批次交易開始前寫入累積中的修改，避免與批次中的更新交錯
+        Set<Long> customerIds = new LinkedHashSet<>();
+        for (BatchOperation operation : operations) {
+            if (CUSTOMER.equals(operation.entity()) && operation.id() != null) {
+                customerIds.add(operation.id());
+            }
+        }
+        customerIds.forEach(customerWriteBehind::flush);
+
+        List<BatchResult> results = transactionTemplate.execute(status -> apply(operations));
+
+        // 本節點立即失效，其他節點由資料庫通知失效
+        customerIds.forEach(customerNearCache::invalidate);
+        log.info("批次執行 {} 個作業成功", operations.size());
+        return results;
+    }
+
+    private void validate(int index, BatchOperation operation) {
+        if (operation == null) {
+            throw badRequest(index, "作業不可為空");
+        }
+        if (!CUSTOMER.equals(operation.entity()) && !USER.equals(operation.entity())) {
+            throw badRequest(index, "不支援的實體: " + operation.entity());
+        }
+        // 用戶由 /api/users 寫入預設分片，批次則依呼叫者公司路由，兩者不在同一個分片
+        if (shardingEnabled && USER.equals(operation.entity())) {
+            throw badRequest(index, "啟用分片時批次不支援用戶作業");
+        }
+        String op = operation.op() != null ? operation.op() : "";
+        switch (op) {
+            case "create" -> requireData(index, operation);
+            case "update" -> {
+                requireId(index, operation);
+                requireData(index, operation);
+            }
+            case "delete" -> requireId(index, operation);
+            default -> throw badRequest(index, "不支援的作業: " + operation.op());
+        }
+    }
+
+    private List<BatchResult> apply(List<BatchOperation> operations) {
+        // 只影響本次交易的 Session
+        entityManager.unwrap(Session.class).setJdbcBatchSize(jdbcBatchSize);
+        historyWriter.beginDeferred();
+        try {
+            List<BaseAuditEntity> entities = new ArrayList<>(operations.size());
+            for (int i = 0; i < operations.size(); i++) {
+                entities.add(applyOne(i, operations.get(i)));
+            }
+            // 更新與刪除在 flush 時才送出，監聽器也在此時累積歷史
+            flush(entities);
+            historyWriter.flushDeferred();
+
+            List<BatchResult> results = new ArrayList<>(operations.size());
+            for (int i = 0; i < operations.size(); i++) {
+                BatchOperation operation = operations.get(i);
+                BaseAuditEntity entity = entities.get(i);
+                results.add(switch (operation.op()) {
+                    case "create" -> new BatchResult(i, operation.op(), operation.entity(),
+                            HttpStatus.CREATED.value(), entity.getId(), ETagUtils.etag(entity));
+                    case "update" -> new BatchResult(i, operation.op(), operation.entity(),
+                            HttpStatus.OK.value(), entity.getId(), ETagUtils.etag(entity));
+                    default -> new BatchResult(i, operation.op(), operation.entity(),
+                            HttpStatus.NO_CONTENT.value(), entity.getId(), null);
+                });
+            }
+            return results;
+        } finally {
+            historyWriter.discardDeferred();
+        }
+    }
+
+    private BaseAuditEntity applyOne(int index, BatchOperation operation) {
+        boolean customer = CUSTOMER.equals(operation.entity());
+        try {
+            switch (operation.op()) {
+                case "create": {
+                    if (customer) {
+                        Customer created = read(index, operation, Customer.class);
+                        created.setId(null);
+                        return customerRepository.save(created);
+                    }
+                    User created = read(index, operation, User.class);
+                    created.setId(null);
+                    return userRepository.save(created);
+                }
+                case "update": {
+                    BaseAuditEntity existing = find(index, operation);
+                    if (customer) {
+                        CustomerPatch.apply((Customer) existing, read(index, operation, Customer.class));
+                    } else {
+                        UserPatch.apply((User) existing, read(index, operation, User.class));
+                    }
+                    return existing;
+                }
+                default: {
+                    BaseAuditEntity existing = find(index, operation);
+                    if (customer) {
+                        customerRepository.delete((Customer) existing);
+                    } else {
+                        userRepository.delete((User) existing);
+                    }
+                    return existing;
+                }
+            }
+        } catch (DataIntegrityViolationException e) {
+            throw new BatchOperationException(index, HttpStatus.CONFLICT,
+                    "違反資料約束: " + e.getMostSpecificCause().getMessage());
+        }
+    }
+
+    /**
+     * 載入要更新或刪除的實體，If-Match 不符表示客戶端持有的是舊版本
+     */
+    private BaseAuditEntity find(int index, BatchOperation operation) {
+        Optional<? extends BaseAuditEntity> found;
+        if (CUSTOMER.equals(operation.entity())) {
+            found = customerRepository.findById(operation.id());
+        } else {
+            found = userRepository.findById(operation.id());
+        }
+        BaseAuditEntity entity = found.orElseThrow(() -> new BatchOperationException(index, HttpStatus.NOT_FOUND,
+                operation.entity() + " id=" + operation.id() + " 不存在"));
+        if (operation.ifMatch() != null && !ETagUtils.matches(operation.ifMatch(), ETagUtils.etag(entity))) {
+            throw new BatchOperationException(index, HttpStatus.PRECONDITION_FAILED, "If-Match 不符");
+        }
+        return entity;
+    }
+
+    /**
+     * 送出累積的更新與刪除；版本衝突時找出對應的作業
+     */
+    private void flush(List<BaseAuditEntity> entities) {
+        try {
+            entityManager.flush();
+        } catch (OptimisticLockException e) {
+            int index = -1;
+            for (int i = 0; i < entities.size(); i++) {
+                if (entities.get(i) == e.getEntity()) {
+                    index = i;
+                    break;
+                }
+            }
+            throw new BatchOperationException(index, HttpStatus.PRECONDITION_FAILED, "讀取後已被其他請求修改");
+        } catch (PersistenceException e) {
+            throw new BatchOperationException(-1, HttpStatus.CONFLICT, "提交批次失敗: " + e.getMessage());
+        }
+    }
+
+    private <T> T read(int index, BatchOperation operation, Class<T> type) {
+        try {
+            return objectMapper.treeToValue(operation.data(), type);
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            throw badRequest(index, "無法解析 data: " + e.getMessage());
+        }
+    }
+
+    private static void requireId(int index, BatchOperation operation) {
+        if (operation.id() == null) {
+            throw badRequest(index, operation.op() + " 需要 id");
+        }
+    }
+
+    private static void requireData(int index, BatchOperation operation) {
+        if (operation.data() == null || !operation.data().isObject()) {
+            throw badRequest(index, operation.op() + " 需要 data 物件");
+        }
+    }
+
+    private static BatchOperationException badRequest(int index, String message) {
+        return new BatchOperationException(index, HttpStatus.BAD_REQUEST, message);
+    }
+}
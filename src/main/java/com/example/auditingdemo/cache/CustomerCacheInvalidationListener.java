@@ -0,0 +1,78 @@
+package com.example.auditingdemo.cache;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.auditingdemo.util.PgNotificationListener;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 顧客快取失效監聽器
+ * LISTEN customer_changed（見 init-scripts/09-customer-cache-notify.sql），
+ * 收到通知後移除快取中對應的顧客。任何節點（包含批次 UPDATE 與合併寫入）提交異動後，
+ * 所有節點通常在數毫秒內收到通知。連線中斷期間可能漏掉通知，因此中斷與重新連線時清空整個快取
+ */
+@Slf4j
+@Component
+public class CustomerCacheInvalidationListener extends PgNotificationListener {
+
+    @Autowired
+    private CustomerNearCache customerNearCache;
+
+    @Value("${customer.cache.listen-timeout-ms:1000}")
+    private int listenTimeoutMs;
+
+    @Value("${customer.cache.reconnect-delay-ms:2000}")
+    private long reconnectDelayMs;
+
+    public CustomerCacheInvalidationListener() {
+        super("customer_changed");
+    }
+
+    @Override
+    protected boolean isActive() {
+        return customerNearCache.isEnabled();
+    }
+
+    @Override
+    protected int getListenTimeoutMs() {
+        return listenTimeoutMs;
+    }
+
+    @Override
+    protected long getReconnectDelayMs() {
+        return reconnectDelayMs;
+    }
+
+    @Override
+    protected void onConnected() {
+        customerNearCache.invalidateAll();
+    }
+
+    @Override
+    protected void onDisconnected() {
+        customerNearCache.invalidateAll();
+    }
+
+    /**
+     * 通知內容為逗號分隔的顧客編號，或表示清空整個快取的 '*'
+     */
+    @Override
+    protected void onNotification(String payload) {
+        if ("*".equals(payload)) {
+            customerNearCache.invalidateAll();
+            return;
+        }
+        for (String id : payload.split(",")) {
+            try {
+                customerNearCache.invalidate(Long.valueOf(id.trim()));
+            } catch (NumberFormatException e) {
+                log.warn("無法解析的顧客快取失效通知: {}", payload);
+                customerNearCache.invalidateAll();
+                return;
+            }
+        }
+    }
+}
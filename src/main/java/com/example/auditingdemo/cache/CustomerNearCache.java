@@ -0,0 +1,218 @@
+package com.example.auditingdemo.cache;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.auditingdemo.model.Customer;
+import com.example.auditingdemo.repository.CustomerRepository;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 顧客近端快取
+ * 每個節點各自保存最近讀取的顧客，依筆數上限與存活時間淘汰，
+ * 資料異動時由 CustomerCacheInvalidationListener 收到資料庫的 NOTIFY 後移除。
+ *
+ * 同一顧客同時未命中時只有一個請求查詢資料庫（single-flight），其他請求等待同一個結果。
+ * 查詢期間若收到任何失效通知，查詢結果照常回傳但不放入快取，避免把失效前讀到的舊資料留在快取中
+ */
+@Slf4j
+@Component
+public class CustomerNearCache {
+
+    // 超過上限時抽樣幾筆，淘汰其中最早到期的一筆
+    private static final int EVICTION_SAMPLES = 8;
+
+    // 抽樣起點的最大隨機位移，限制每次淘汰走訪的筆數
+    private static final int EVICTION_MAX_SKIP = 64;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${customer.cache.enabled:false}")
+    private boolean enabled;
+
+    @Value("${customer.cache.max-size:10000}")
+    private int maxSize;
+
+    @Value("${customer.cache.ttl-seconds:60}")
+    private long ttlSeconds;
+
+    @Value("${sharding.enabled:false}")
+    private boolean shardingEnabled;
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    private final Map<Long, CompletableFuture<Optional<Customer>>> loading = new ConcurrentHashMap<>();
+
+    // 每次失效遞增，查詢前後不同表示查詢期間資料可能已變更
+    private final AtomicLong invalidationEpoch = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder loads = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongAdder invalidations = new LongAdder();
+
+    private record Entry(Customer customer, long expiresAt) {
+    }
+
+    @PostConstruct
+    public void init() {
+        if (enabled && shardingEnabled) {
+            // 各分片的顧客編號各自遞增，且失效通知只來自主要資料庫
+            log.warn("已啟用分片，停用顧客近端快取");
+            enabled = false;
+        }
+        if (!enabled) {
+            return;
+        }
+        Gauge.builder("customer.cache.size", entries, Map::size)
+                .description("快取中的顧客數")
+                .register(meterRegistry);
+        Gauge.builder("customer.cache.hit.ratio", this, CustomerNearCache::getHitRatio)
+                .description("快取命中率")
+                .register(meterRegistry);
+        FunctionCounter.builder("customer.cache.requests", hits, LongAdder::sum)
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("customer.cache.requests", misses, LongAdder::sum)
+                .tag("result", "miss")
+                .register(meterRegistry);
+        FunctionCounter.builder("customer.cache.loads", loads, LongAdder::sum)
+                .description("實際查詢資料庫的次數，同一顧客同時未命中只算一次")
+                .register(meterRegistry);
+        FunctionCounter.builder("customer.cache.evictions", evictions, LongAdder::sum)
+                .description("因筆數上限淘汰的筆數")
+                .register(meterRegistry);
+        FunctionCounter.builder("customer.cache.invalidations", invalidations, LongAdder::sum)
+                .description("收到的失效次數")
+                .register(meterRegistry);
+        log.info("已啟用顧客近端快取，上限 {} 筆，存活 {} 秒", maxSize, ttlSeconds);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 取得顧客，未命中時查詢資料庫
+     */
+    public Optional<Customer> get(Long id) {
+        long now = System.nanoTime();
+        Entry entry = entries.get(id);
+        if (entry != null) {
+            if (now - entry.expiresAt() < 0) {
+                hits.increment();
+                return Optional.of(entry.customer());
+            }
+            entries.remove(id, entry);
+        }
+        misses.increment();
+
+        CompletableFuture<Optional<Customer>> created = new CompletableFuture<>();
+        CompletableFuture<Optional<Customer>> inFlight = loading.putIfAbsent(id, created);
+        if (inFlight != null) {
+            try {
+                return inFlight.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+        try {
+            Optional<Customer> customer = load(id);
+            created.complete(customer);
+            return customer;
+        } catch (RuntimeException e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(id, created);
+        }
+    }
+
+    private Optional<Customer> load(Long id) {
+        long epoch = invalidationEpoch.get();
+        loads.increment();
+        Optional<Customer> customer = customerRepository.findById(id);
+        if (customer.isPresent() && invalidationEpoch.get() == epoch) {
+            if (entries.size() >= maxSize) {
+                evictOne();
+            }
+            entries.put(id, new Entry(customer.get(), System.nanoTime() + TimeUnit.SECONDS.toNanos(ttlSeconds)));
+            // 放入後才收到失效時，失效已移除這筆；放入前收到時在這裡補移除
+            if (invalidationEpoch.get() != epoch) {
+                entries.remove(id);
+            }
+        }
+        return customer;
+    }
+
+    /**
+     * 移除指定顧客
+     */
+    public void invalidate(Long id) {
+        invalidationEpoch.incrementAndGet();
+        invalidations.increment();
+        entries.remove(id);
+    }
+
+    /**
+     * 清空快取，用於一次異動太多筆或與資料庫的通知連線中斷後
+     */
+    public void invalidateAll() {
+        invalidationEpoch.incrementAndGet();
+        invalidations.increment();
+        entries.clear();
+    }
+
+    public double getHitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * 抽樣淘汰：從雜湊表前段的隨機位置開始取幾筆，移除最早到期的一筆（過期的優先），不必維護全域的存取順序
+     */
+    private void evictOne() {
+        int skip = ThreadLocalRandom.current().nextInt(Math.min(EVICTION_MAX_SKIP, Math.max(entries.size() - EVICTION_SAMPLES, 1)));
+        Iterator<Map.Entry<Long, Entry>> iterator = entries.entrySet().iterator();
+        for (int i = 0; i < skip && iterator.hasNext(); i++) {
+            iterator.next();
+        }
+        Map.Entry<Long, Entry> victim = null;
+        for (int i = 0; i < EVICTION_SAMPLES && iterator.hasNext(); i++) {
+            Map.Entry<Long, Entry> candidate = iterator.next();
+            if (victim == null || candidate.getValue().expiresAt() - victim.getValue().expiresAt() < 0) {
+                victim = candidate;
+            }
+        }
+        if (victim != null && entries.remove(victim.getKey(), victim.getValue())) {
+            evictions.increment();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.auditingdemo.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * 資料來源配置類
+ * 類別路徑上有 R2DBC 時 Spring Boot 會建立 ConnectionFactory，DataSourceAutoConfiguration 因此不再建立 JDBC 資料來源，
+ * JPA 與 Repository 也跟著不會建立，所以未啟用分片時在這裡依 spring.datasource.* 明確建立；
+ * 啟用分片時由 ShardingConfig 提供路由資料來源
+ */
+@Configuration
+@EnableConfigurationProperties(DataSourceProperties.class)
+@ConditionalOnProperty(name = "sharding.enabled", havingValue = "false", matchIfMissing = true)
+public class DataSourceConfig {
+
+    @Bean
+    @Primary
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource dataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+}
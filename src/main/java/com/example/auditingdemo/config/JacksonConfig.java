@@ -0,0 +1,35 @@
+package com.example.auditingdemo.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import com.example.auditingdemo.timing.TimingJackson2HttpMessageConverter;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+
+/**
+ * Jackson配置類
+ * Spring Boot 會把 Module bean 註冊到共用的 ObjectMapper
+ */
+@Configuration
+public class JacksonConfig {
+
+    /**
+     * Blackbird 以 LambdaMetafactory 在執行期產生屬性存取器，取代反射呼叫 getter/setter，
+     * 是 Afterburner 在 Java 11 以上的替代方案
+     */
+    @Bean
+    public Module blackbirdModule() {
+        return new BlackbirdModule();
+    }
+
+    /**
+     * 取代 Spring Boot 預設的 JSON 轉換器，記錄序列化時間供 Server-Timing 與慢請求記錄使用
+     */
+    @Bean
+    public MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(ObjectMapper objectMapper) {
+        return new TimingJackson2HttpMessageConverter(objectMapper);
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.auditingdemo.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+
+/**
+ * JPA 審計配置類
+ * 啟用 @CreatedBy、@LastModifiedBy 等標準審計欄位，審計者由 CustomAuditorAware 依目前令牌解析
+ */
+@Configuration
+@EnableJpaAuditing(auditorAwareRef = "customAuditorAware")
+public class JpaAuditingConfig {
+}
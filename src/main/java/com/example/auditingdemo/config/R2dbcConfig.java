@@ -0,0 +1,21 @@
+package com.example.auditingdemo.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import io.r2dbc.spi.ConnectionFactory;
+
+/**
+ * R2DBC配置類
+ * Spring Boot 依 spring.r2dbc.* 建立 ConnectionFactory 連線池，
+ * 這裡只提供非阻塞審計查詢使用的 DatabaseClient
+ */
+@Configuration
+public class R2dbcConfig {
+
+    @Bean
+    public DatabaseClient databaseClient(ConnectionFactory connectionFactory) {
+        return DatabaseClient.create(connectionFactory);
+    }
+}
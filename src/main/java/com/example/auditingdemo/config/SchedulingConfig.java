@@ -0,0 +1,13 @@
+package com.example.auditingdemo.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * 排程配置類
+ * 啟用背景排程任務，例如審計事件 outbox relay
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
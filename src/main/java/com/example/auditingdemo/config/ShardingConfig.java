@@ -0,0 +1,70 @@
+package com.example.auditingdemo.config;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import com.example.auditingdemo.sharding.ShardRouter;
+import com.example.auditingdemo.sharding.ShardRoutingDataSource;
+import com.example.auditingdemo.sharding.ShardingProperties;
+import com.zaxxer.hikari.HikariDataSource;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 分片配置類
+ * 啟用後以 ShardRoutingDataSource 取代單一資料來源，JPA 與 JdbcTemplate 都經由它取得連線
+ */
+@Slf4j
+@Configuration
+@EnableConfigurationProperties(ShardingProperties.class)
+@ConditionalOnProperty(name = "sharding.enabled", havingValue = "true")
+public class ShardingConfig {
+
+    /**
+     * 建立每個分片的連線池
+     */
+    @Bean
+    public ShardRouter shardRouter(ShardingProperties properties) {
+        if (properties.getShards().isEmpty()) {
+            throw new IllegalStateException("已啟用分片但未設定任何 sharding.shards");
+        }
+        Map<String, DataSource> shards = new LinkedHashMap<>();
+        properties.getShards().forEach((name, shard) -> {
+            HikariDataSource dataSource = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(shard.getUrl())
+                    .username(shard.getUsername())
+                    .password(shard.getPassword())
+                    .build();
+            dataSource.setPoolName("shard-" + name);
+            shards.put(name, dataSource);
+        });
+        ShardRouter router = ShardRouter.of(shards, properties);
+        log.info("已啟用分片: {}，預設分片: {}", router.describe(), router.getDefaultShard());
+        return router;
+    }
+
+    /**
+     * 依分片上下文路由的主要資料來源
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardRouter shardRouter) {
+        ShardRoutingDataSource dataSource = new ShardRoutingDataSource();
+        dataSource.setTargetDataSources(new HashMap<>(shardRouter.getShards()));
+        dataSource.setDefaultTargetDataSource(shardRouter.getShards().get(shardRouter.getDefaultShard()));
+        // 分片名稱打錯時寧可失敗，不要默默寫進預設分片
+        dataSource.setLenientFallback(false);
+        return dataSource;
+    }
+}
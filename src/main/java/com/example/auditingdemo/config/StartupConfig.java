@@ -0,0 +1,66 @@
+package com.example.auditingdemo.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.MethodIntrospector;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import com.example.auditingdemo.audit.CustomAuditorAware;
+import com.example.auditingdemo.service.TokenService;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 啟動配置類
+ * 搭配 fast-startup profile 的延遲初始化：
+ * 令牌服務、審計者提供者與帶有排程方法的元件仍在啟動時建立，
+ * 並在應用程式回報就緒前預熱審計者快取
+ */
+@Slf4j
+@Configuration
+public class StartupConfig {
+
+    @Autowired
+    private TokenService tokenService;
+
+    @Autowired
+    private CustomAuditorAware customAuditorAware;
+
+    /**
+     * 不延遲初始化的 bean
+     * 排程方法只在 bean 建立時註冊，延遲初始化會讓 outbox relay、封存等排程永遠不執行
+     */
+    @Bean
+    public static LazyInitializationExcludeFilter eagerStartupBeans() {
+        return (beanName, beanDefinition, beanType) -> TokenService.class.isAssignableFrom(beanType)
+                || CustomAuditorAware.class.isAssignableFrom(beanType)
+                || hasScheduledMethods(beanType);
+    }
+
+    private static boolean hasScheduledMethods(Class<?> beanType) {
+        return !MethodIntrospector.selectMethods(beanType, (MethodIntrospector.MetadataLookup<Scheduled>) method ->
+                AnnotatedElementUtils.findMergedAnnotation(method, Scheduled.class)).isEmpty();
+    }
+
+    /**
+     * 預熱審計者快取
+     * ApplicationRunner 完成後 readiness 才轉為 ACCEPTING_TRAFFIC；失敗時只記錄警告，第一次寫入時會再查詢
+     */
+    @Bean
+    public ApplicationRunner auditorCacheWarmer() {
+        return (ApplicationArguments args) -> {
+            long start = System.nanoTime();
+            try {
+                int cached = customAuditorAware.warmUp(tokenService.getKnownTokens());
+                log.info("審計者快取預熱完成: {} 筆，耗時 {} ms", cached, (System.nanoTime() - start) / 1_000_000);
+            } catch (RuntimeException e) {
+                log.warn("審計者快取預熱失敗: {}", e.getMessage());
+            }
+        };
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.auditingdemo.config;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.transaction.TransactionManagerCustomizers;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.example.auditingdemo.audit.trigger.AuditSessionTransactionManager;
+import com.example.auditingdemo.audit.trigger.AuditSessionVariables;
+import com.example.auditingdemo.service.TokenService;
+
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 觸發器審計模式配置類
+ * 以 AuditSessionTransactionManager 取代 Spring Boot 預設的 JpaTransactionManager，
+ * 審計欄位、歷史與 outbox 事件改由 init-scripts/08-audit-triggers.sql 的觸發器寫入
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "audit.mode", havingValue = "trigger")
+public class TriggerAuditConfig {
+
+    @Bean
+    public AuditSessionVariables auditSessionVariables(TokenService tokenService,
+            @Value("${audit.history.enabled:false}") boolean historyEnabled,
+            @Value("${audit.outbox.enabled:false}") boolean outboxEnabled,
+            @Value("${audit.dictionary.enabled:false}") boolean dictionaryEnabled) {
+        log.info("已啟用觸發器審計模式，審計歷史: {}，審計事件: {}，字典編碼: {}", historyEnabled, outboxEnabled, dictionaryEnabled);
+        return new AuditSessionVariables(tokenService, historyEnabled, outboxEnabled, dictionaryEnabled);
+    }
+
+    @Bean
+    public PlatformTransactionManager transactionManager(EntityManagerFactory entityManagerFactory,
+            AuditSessionVariables auditSessionVariables,
+            ObjectProvider<TransactionManagerCustomizers> transactionManagerCustomizers) {
+        AuditSessionTransactionManager transactionManager =
+                new AuditSessionTransactionManager(entityManagerFactory, auditSessionVariables);
+        transactionManagerCustomizers.ifAvailable(customizers -> customizers.customize(transactionManager));
+        return transactionManager;
+    }
+}
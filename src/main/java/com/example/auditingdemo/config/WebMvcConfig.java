@@ -1,10 +1,14 @@
 package com.example.auditingdemo.config;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import com.example.auditingdemo.interceptor.ConcurrencyLimitInterceptor;
+import com.example.auditingdemo.interceptor.RequestTimingInterceptor;
+import com.example.auditingdemo.interceptor.ShardRoutingInterceptor;
 import com.example.auditingdemo.interceptor.UserTokenInterceptor;
 
 /**
@@ -17,13 +21,40 @@ public class WebMvcConfig implements WebMvcConfigurer {
     @Autowired
     private UserTokenInterceptor userTokenInterceptor;
     
+    @Autowired
+    private ConcurrencyLimitInterceptor concurrencyLimitInterceptor;
+    
+    @Autowired
+    private RequestTimingInterceptor requestTimingInterceptor;
+    
+    // 只有啟用分片時才存在
+    @Autowired
+    private ObjectProvider<ShardRoutingInterceptor> shardRoutingInterceptorProvider;
+    
     /**
      * 添加攔截器
      */
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
+        // 請求計時排在最前面，涵蓋其他攔截器的耗時
+        if (requestTimingInterceptor.isEnabled()) {
+            registry.addInterceptor(requestTimingInterceptor)
+                    .addPathPatterns("/**");
+        }
+        
+        // 併發限制放在最前面，超過上限的請求不必解析令牌
+        registry.addInterceptor(concurrencyLimitInterceptor)
+                .addPathPatterns("/api/**");
+        
         // 註冊使用者Token攔截器，應用於所有請求
         registry.addInterceptor(userTokenInterceptor)
                 .addPathPatterns("/**"); // 攔截所有請求
+        
+        // 分片路由需要令牌解析出的公司，排在使用者Token攔截器之後
+        ShardRoutingInterceptor shardRoutingInterceptor = shardRoutingInterceptorProvider.getIfAvailable();
+        if (shardRoutingInterceptor != null) {
+            registry.addInterceptor(shardRoutingInterceptor)
+                    .addPathPatterns("/api/customers/**", "/api/batch");
+        }
     }
 } 
\ No newline at end of file
@@ -0,0 +1,54 @@
+package com.example.auditingdemo.controller;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.auditingdemo.audit.UserContext;
+import com.example.auditingdemo.service.TokenService;
+import com.example.auditingdemo.timing.SlowRequest;
+import com.example.auditingdemo.timing.SlowRequestLog;
+
+/**
+ * 管理控制器
+ * 提供營運診斷用的API，只限 ADMIN/SUPER_ADMIN 角色的令牌
+ */
+@RestController
+@RequestMapping("/api/admin")
+public class AdminController {
+
+    @Autowired
+    private TokenService tokenService;
+
+    @Autowired
+    private SlowRequestLog slowRequestLog;
+
+    /**
+     * 最近的慢請求，由新到舊
+     */
+    @GetMapping("/slow-requests")
+    public ResponseEntity<Map<String, Object>> getSlowRequests(@RequestParam(defaultValue = "50") int limit) {
+        String caller = UserContext.getCurrentUser();
+        if (caller == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if (!tokenService.isAdmin(caller)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        List<SlowRequest> requests = slowRequestLog.list();
+        Map<String, Object> response = new HashMap<>();
+        response.put("thresholdMs", slowRequestLog.getThresholdMs());
+        response.put("totalCaptured", slowRequestLog.getTotalCaptured());
+        response.put("requests", requests.subList(0, Math.min(Math.max(limit, 0), requests.size())));
+        return ResponseEntity.ok(response);
+    }
+}
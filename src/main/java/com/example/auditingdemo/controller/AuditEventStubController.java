@@ -0,0 +1,70 @@
+package com.example.auditingdemo.controller;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 審計事件接收樁
+ * 模擬下游系統接收 HttpAuditEventSink 投遞的事件，方便本機測試 outbox relay
+ */
+@Slf4j
+@RestController
+@RequestMapping("/stub/audit-events")
+@ConditionalOnProperty(name = "audit.outbox.stub.enabled", havingValue = "true")
+public class AuditEventStubController {
+
+    // 只保留最近的事件，避免長時間測試佔用記憶體
+    private static final int MAX_RECENT_EVENTS = 100;
+
+    private final Deque<JsonNode> recentEvents = new ArrayDeque<>();
+
+    private final AtomicLong receivedCount = new AtomicLong();
+
+    /**
+     * 接收一批審計事件
+     */
+    @PostMapping
+    public ResponseEntity<Void> receive(@RequestBody List<JsonNode> events) {
+        synchronized (recentEvents) {
+            for (JsonNode event : events) {
+                recentEvents.addLast(event);
+                if (recentEvents.size() > MAX_RECENT_EVENTS) {
+                    recentEvents.removeFirst();
+                }
+            }
+        }
+        long total = receivedCount.addAndGet(events.size());
+        log.info("接收審計事件 {} 筆，累計 {} 筆", events.size(), total);
+        return ResponseEntity.ok().build();
+    }
+
+    /**
+     * 查詢已接收的事件數與最近的事件
+     */
+    @GetMapping
+    public Map<String, Object> getReceived() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("receivedCount", receivedCount.get());
+        synchronized (recentEvents) {
+            response.put("recentEvents", new ArrayList<>(recentEvents));
+        }
+        return response;
+    }
+}
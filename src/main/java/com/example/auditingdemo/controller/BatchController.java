@@ -0,0 +1,102 @@
+package com.example.auditingdemo.controller;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.auditingdemo.audit.UserContext;
+import com.example.auditingdemo.batch.BatchOperationException;
+import com.example.auditingdemo.batch.BatchRequest;
+import com.example.auditingdemo.batch.BatchResult;
+import com.example.auditingdemo.batch.BatchService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 多作業批次控制器
+ * 一次請求依序執行多個用戶與顧客的新增、更新與刪除，只解析一次令牌、只提交一次交易
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/batch")
+public class BatchController {
+
+    @Autowired
+    private BatchService batchService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${batch.max-operations:100}")
+    private int maxOperations;
+
+    @Value("${batch.max-payload-bytes:1048576}")
+    private int maxPayloadBytes;
+
+    /**
+     * 執行批次
+     * 全部成功時回傳 200 與每個作業的結果；任一作業失敗時整個批次回滾，
+     * 回傳該作業的狀態碼（400/404/409/412）與 failedIndex
+     */
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> execute(HttpServletRequest request) throws IOException {
+        if (UserContext.getCurrentUser() == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        // 自行讀取請求內容，未宣告長度的請求也不會讀入超過上限的內容
+        if (request.getContentLengthLong() > maxPayloadBytes) {
+            return error(HttpStatus.PAYLOAD_TOO_LARGE, -1, "請求內容超過 " + maxPayloadBytes + " bytes");
+        }
+        byte[] body = request.getInputStream().readNBytes(maxPayloadBytes + 1);
+        if (body.length > maxPayloadBytes) {
+            return error(HttpStatus.PAYLOAD_TOO_LARGE, -1, "請求內容超過 " + maxPayloadBytes + " bytes");
+        }
+
+        BatchRequest batch;
+        try {
+            batch = objectMapper.readValue(body, BatchRequest.class);
+        } catch (JsonProcessingException e) {
+            return error(HttpStatus.BAD_REQUEST, -1, "無法解析請求: " + e.getOriginalMessage());
+        }
+        if (batch.operations() == null || batch.operations().isEmpty()) {
+            return error(HttpStatus.BAD_REQUEST, -1, "operations 不可為空");
+        }
+        if (batch.operations().size() > maxOperations) {
+            return error(HttpStatus.PAYLOAD_TOO_LARGE, -1, "作業數超過 " + maxOperations);
+        }
+
+        try {
+            List<BatchResult> results = batchService.execute(batch.operations());
+            Map<String, Object> response = new HashMap<>();
+            response.put("results", results);
+            return ResponseEntity.ok(response);
+        } catch (BatchOperationException e) {
+            log.warn("批次作業 {} 失敗，整個批次回滾: {}", e.getIndex(), e.getMessage());
+            return error(e.getStatus(), e.getIndex(), e.getMessage());
+        }
+    }
+
+    /**
+     * 錯誤回應，index 小於 0 表示不屬於特定作業
+     */
+    private ResponseEntity<Map<String, Object>> error(HttpStatus status, int index, String message) {
+        Map<String, Object> response = new HashMap<>();
+        if (index >= 0) {
+            response.put("failedIndex", index);
+        }
+        response.put("error", message);
+        return ResponseEntity.status(status).body(response);
+    }
+}
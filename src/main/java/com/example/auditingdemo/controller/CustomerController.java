@@ -1,22 +1,52 @@
 package com.example.auditingdemo.controller;
 
+import java.net.URI;
 import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.example.auditingdemo.audit.UserContext;
+import com.example.auditingdemo.cache.CustomerNearCache;
+import com.example.auditingdemo.audit.history.AuditHistoryRecord;
+import com.example.auditingdemo.audit.history.AuditHistoryService;
+import com.example.auditingdemo.idempotency.IdempotencyResult;
+import com.example.auditingdemo.idempotency.IdempotencyService;
+import com.example.auditingdemo.job.BatchJob;
+import com.example.auditingdemo.job.BatchJobRejectedException;
+import com.example.auditingdemo.job.CustomerBatchJobService;
 import com.example.auditingdemo.model.Customer;
+import com.example.auditingdemo.model.CustomerAuditReport;
+import com.example.auditingdemo.model.CustomerSearchPage;
+import com.example.auditingdemo.model.CustomerSummary;
+import com.example.auditingdemo.model.EntityVersion;
 import com.example.auditingdemo.repository.CustomerRepository;
+import com.example.auditingdemo.repository.CustomerSearchRepository;
+import com.example.auditingdemo.service.CustomerAuditReportService;
+import com.example.auditingdemo.service.CustomerBulkService;
+import com.example.auditingdemo.service.JsonStreamingService;
+import com.example.auditingdemo.util.AuditJsonRows;
+import com.example.auditingdemo.util.CustomerPatch;
+import com.example.auditingdemo.util.ETagUtils;
+import com.example.auditingdemo.writebehind.CustomerWriteBehind;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -31,32 +61,179 @@ public class CustomerController {
     @Autowired
     private CustomerRepository customerRepository;
     
+    @Autowired
+    private AuditHistoryService auditHistoryService;
+    
+    @Autowired
+    private JsonStreamingService jsonStreamingService;
+    
+    @Autowired
+    private CustomerAuditReportService customerAuditReportService;
+    
+    @Autowired
+    private IdempotencyService idempotencyService;
+    
+    @Autowired
+    private CustomerBulkService customerBulkService;
+    
+    @Autowired
+    private CustomerWriteBehind customerWriteBehind;
+    
+    @Autowired
+    private CustomerNearCache customerNearCache;
+    
+    @Autowired
+    private CustomerBatchJobService customerBatchJobService;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    // 預先建立的 ObjectWriter，避免每次請求重新解析序列化設定
+    private ObjectWriter customerWriter;
+    
+    // 搜尋每頁筆數上限
+    private static final int MAX_SEARCH_LIMIT = 100;
+    
+    // Idempotency-Key 長度上限，與 pf_idempotency.idempotency_key 欄位相同
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+    
+    @PostConstruct
+    public void init() {
+        // 串流輸出時由 JsonStreamingService 控制 flush，不要每列都 flush
+        customerWriter = objectMapper.writerFor(Customer.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+    
     /**
      * 獲取所有顧客
+     * 以資料庫游標逐列串流輸出，不在記憶體中組出完整清單
      */
     @GetMapping
-    public List<Customer> getAllCustomers() {
-        return customerRepository.findAll();
+    public ResponseEntity<StreamingResponseBody> getAllCustomers() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(jsonStreamingService.streamArray(customerRepository::streamAll, customerWriter::writeValue));
+    }
+    
+    /**
+     * 搜尋顧客
+     * 以前綴（mode=prefix）或子字串（mode=contains）不分大小寫比對 name、email、company、phone，
+     * 依編號做 keyset 分頁：把回應中的 nextCursor 當作下一頁的 after 參數
+     */
+    @GetMapping("/search")
+    public ResponseEntity<CustomerSearchPage> searchCustomers(
+            @RequestParam String q,
+            @RequestParam(required = false) List<String> fields,
+            @RequestParam(defaultValue = "contains") String mode,
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "20") int limit) {
+        if (q.isBlank() || limit <= 0 || !(mode.equals("prefix") || mode.equals("contains"))) {
+            return ResponseEntity.badRequest().build();
+        }
+        
+        List<CustomerSearchRepository.Field> searchFields = new ArrayList<>();
+        try {
+            if (fields == null || fields.isEmpty()) {
+                searchFields.addAll(List.of(CustomerSearchRepository.Field.values()));
+            } else {
+                for (String field : fields) {
+                    searchFields.add(CustomerSearchRepository.Field.valueOf(field.trim().toUpperCase()));
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            log.warn("不支援的搜尋欄位: {}", fields);
+            return ResponseEntity.badRequest().build();
+        }
+        
+        int pageSize = Math.min(limit, MAX_SEARCH_LIMIT);
+        // 多查一筆判斷是否還有下一頁
+        List<CustomerSummary> items = customerRepository.search(
+                q.trim(), searchFields, mode.equals("prefix"), after, pageSize + 1);
+        Long nextCursor = null;
+        if (items.size() > pageSize) {
+            items = items.subList(0, pageSize);
+            nextCursor = items.get(pageSize - 1).getId();
+        }
+        return ResponseEntity.ok(new CustomerSearchPage(items, nextCursor));
     }
     
     /**
      * 根據ID獲取顧客
+     * 回應帶有 ETag 與 Last-Modified，支援條件式請求
      */
     @GetMapping("/{id}")
-    public ResponseEntity<Customer> getCustomerById(@PathVariable Long id) {
+    public ResponseEntity<Customer> getCustomerById(@PathVariable Long id, WebRequest request) {
+        // 啟用近端快取時直接以快取中的顧客判斷條件式請求
+        if (customerNearCache.isEnabled()) {
+            Optional<Customer> cached = customerNearCache.get(id);
+            if (cached.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            if (request.checkNotModified(ETagUtils.etag(cached.get()), ETagUtils.lastModified(cached.get()))) {
+                return null;
+            }
+            return ResponseEntity.ok()
+                    .eTag(ETagUtils.etag(cached.get()))
+                    .lastModified(ETagUtils.lastModified(cached.get()))
+                    .body(cached.get());
+        }
+        
+        // 條件式請求先以版本查詢判斷 If-None-Match / If-Modified-Since，未變更時直接回傳 304；
+        // 一般請求直接載入，只查詢一次
+        if (ETagUtils.isConditional(request)) {
+            Optional<EntityVersion> version = customerRepository.findVersionById(id);
+            if (version.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            if (request.checkNotModified(ETagUtils.etag(version.get()), ETagUtils.lastModified(version.get()))) {
+                return null;
+            }
+        }
+        
         return customerRepository.findById(id)
-                .map(ResponseEntity::ok)
+                .map(customer -> ResponseEntity.ok()
+                        .eTag(ETagUtils.etag(customer))
+                        .lastModified(ETagUtils.lastModified(customer))
+                        .body(customer))
+                .orElse(ResponseEntity.notFound().build());
+    }
+    
+    /**
+     * 查詢顧客在指定時間點的狀態
+     * 時間點不早於目前的修改時間時回傳目前的顧客；否則回傳變更歷史中當時的完整內容，
+     * 當時尚未建立或已刪除時回傳 404
+     */
+    @GetMapping(value = "/{id}", params = "asOf")
+    public ResponseEntity<?> getCustomerAsOf(
+            @PathVariable Long id,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime asOf) {
+        Optional<EntityVersion> version = customerRepository.findVersionById(id);
+        if (version.isPresent() && !version.get().getModifiedTime().isAfter(asOf)) {
+            return customerRepository.findById(id)
+                    .<ResponseEntity<?>>map(customer -> ResponseEntity.ok()
+                            .eTag(ETagUtils.etag(customer))
+                            .lastModified(ETagUtils.lastModified(customer))
+                            .body(customer))
+                    .orElse(ResponseEntity.notFound().build());
+        }
+        // 歷史記錄的內容即當時的 JSON，直接輸出
+        return auditHistoryService.findAsOf(Customer.class.getSimpleName(), id, asOf)
+                .<ResponseEntity<?>>map(record -> ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .lastModified(ETagUtils.lastModified(record.getChangedTime()))
+                        .body(record.getPayload()))
                 .orElse(ResponseEntity.notFound().build());
     }
     
     /**
      * 創建新顧客
      * 使用 Authorization header 作為 token 獲取當前用戶信息
+     * 帶有 Idempotency-Key 時，相同鍵的重試回傳第一次建立的結果
      */
     @PostMapping
-    public Customer createCustomer(
+    public ResponseEntity<?> createCustomer(
             @RequestBody Customer customer,
-            @RequestHeader(value = "Authorization", required = true) String authHeader) {
+            @RequestHeader(value = "Authorization", required = true) String authHeader,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         try {
             // 提取token
             String token = extractToken(authHeader);
@@ -65,12 +242,15 @@ public class CustomerController {
             // 設置當前用戶 token
             UserContext.setCurrentUser(token);
             
-            // 保存顧客
-            Customer savedCustomer = customerRepository.save(customer);
-            log.info("顧客創建成功，ID={}, 審計信息: createdBy={}", 
-                    savedCustomer.getId(), savedCustomer.getCreatedBy().getUsername());
-            
-            return savedCustomer;
+            if (idempotencyKey == null) {
+                return ResponseEntity.ok(saveCustomer(customer));
+            }
+            if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+                return ResponseEntity.badRequest().build();
+            }
+            String requestHash = idempotencyService.requestHash("POST /api/customers", customer);
+            return toResponse(idempotencyKey,
+                    idempotencyService.execute(token, idempotencyKey, requestHash, () -> saveCustomer(customer)));
         } finally {
             // 清除 ThreadLocal
             UserContext.clear();
@@ -79,64 +259,174 @@ public class CustomerController {
 
     /**
      * 批量創建顧客
+     * 帶有 Idempotency-Key 時，相同鍵的重試回傳第一次建立的結果；
+     * async=true 時回傳 202 與作業編號，由背景工作執行緒分區塊寫入，進度以 GET /api/jobs/{id} 查詢
      */
     @PostMapping("/batch")
-    public List<Customer> createCustomers(
+    public ResponseEntity<?> createCustomers(
             @RequestBody List<Customer> customers,
-            @RequestHeader(value = "Authorization", required = true) String authHeader) {
+            @RequestHeader(value = "Authorization", required = true) String authHeader,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @RequestParam(defaultValue = "false") boolean async) {
         try {
             String token = extractToken(authHeader);
             log.info("從Authorization頭中提取到令牌: {}", token);
             UserContext.setCurrentUser(token);
             
-            List<Customer> savedCustomers = customerRepository.saveAll(customers);
-            log.info("批量創建顧客成功，數量: {}", savedCustomers.size());
-            
-            return savedCustomers;
+            if (async) {
+                // 作業結果不在回應中，無法重播
+                if (idempotencyKey != null) {
+                    return ResponseEntity.badRequest().build();
+                }
+                return submitBatchJob(customers, token);
+            }
+            if (idempotencyKey == null) {
+                return ResponseEntity.ok(saveCustomers(customers));
+            }
+            if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+                return ResponseEntity.badRequest().build();
+            }
+            String requestHash = idempotencyService.requestHash("POST /api/customers/batch", customers);
+            return toResponse(idempotencyKey,
+                    idempotencyService.execute(token, idempotencyKey, requestHash, () -> saveCustomers(customers)));
         } finally {
             UserContext.clear();
         }
     }
     
+    private ResponseEntity<?> submitBatchJob(List<Customer> customers, String token) {
+        try {
+            BatchJob job = customerBatchJobService.submit(customers, token);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/jobs/" + job.getId()))
+                    .body(job.toStatus());
+        } catch (BatchJobRejectedException e) {
+            log.warn("無法受理顧客批次作業: {}", e.getMessage());
+            ResponseEntity.BodyBuilder response = ResponseEntity.status(e.getStatus());
+            if (e.getStatus() != HttpStatus.PAYLOAD_TOO_LARGE) {
+                response.header("Retry-After", "5");
+            }
+            return response.body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    private Customer saveCustomer(Customer customer) {
+        Customer savedCustomer = customerRepository.save(customer);
+        log.info("顧客創建成功，ID={}, 審計信息: createdBy={}", 
+                savedCustomer.getId(), savedCustomer.getCreatedBy().getUsername());
+        return savedCustomer;
+    }
+    
+    private List<Customer> saveCustomers(List<Customer> customers) {
+        List<Customer> savedCustomers = customerRepository.saveAll(customers);
+        log.info("批量創建顧客成功，數量: {}", savedCustomers.size());
+        return savedCustomers;
+    }
+    
+    /**
+     * 把冪等處理結果轉成回應
+     * 重複請求原樣回傳第一次的 JSON，並加上 Idempotent-Replayed 標頭
+     */
+    private ResponseEntity<?> toResponse(String idempotencyKey, IdempotencyResult<?> result) {
+        switch (result.outcome()) {
+            case EXECUTED:
+                return ResponseEntity.ok(result.body());
+            case REPLAYED:
+                return ResponseEntity.ok()
+                        .header("Idempotent-Replayed", "true")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(result.responseJson());
+            case KEY_REUSED:
+                log.warn("Idempotency-Key {} 已用於不同的請求內容", idempotencyKey);
+                return ResponseEntity.unprocessableEntity().build();
+            default:
+                // 第一次請求仍在執行，稍後重試
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .header("Retry-After", "1")
+                        .build();
+        }
+    }
+
     /**
      * 更新顧客
+     * 啟用合併寫入且沒有 If-Match 時回傳 202，更新稍後寫入
      */
     @PutMapping("/{id}")
     public ResponseEntity<Customer> updateCustomer(
             @PathVariable Long id,
             @RequestBody Customer customerDetails,
-            @RequestHeader(value = "Authorization", required = true) String authHeader) {
+            @RequestHeader(value = "Authorization", required = true) String authHeader,
+            @RequestHeader(value = "If-Match", required = false) String ifMatch) {
         try {
             String token = extractToken(authHeader);
             log.info("從Authorization頭中提取到令牌: {}", token);
             
             UserContext.setCurrentUser(token);
             
-            return customerRepository.findById(id)
+            // 合併寫入模式：沒有 If-Match 的更新先累積在記憶體，稍後與同一顧客的其他更新合併寫入
+            if (ifMatch == null && customerWriteBehind.isEnabled()) {
+                if (!customerWriteBehind.isPending(id) && !customerRepository.existsById(id)) {
+                    return ResponseEntity.notFound().build();
+                }
+                if (customerWriteBehind.submit(id, customerDetails, token)) {
+                    return ResponseEntity.accepted().build();
+                }
+            }
+            // 同步更新前先寫入累積中的更新，避免順序顛倒；仍在重試時不能寫入，否則舊的修改會覆蓋這次更新
+            if (!customerWriteBehind.flush(id)) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "1").build();
+            }
+            
+            Optional<Customer> existing = customerRepository.findById(id);
+            if (existing.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            // If-Match 不符表示客戶端持有的是舊版本，拒絕更新避免覆蓋他人的修改
+            if (ifMatch != null && !ETagUtils.matches(ifMatch, ETagUtils.etag(existing.get()))) {
+                log.warn("顧客ID={} 的 If-Match 不符，拒絕更新", id);
+                return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+            }
+            
+            return existing
                     .map(customer -> {
-                        if (customerDetails.getName() != null) {
-                            customer.setName(customerDetails.getName());
-                        }
-                        if (customerDetails.getEmail() != null) {
-                            customer.setEmail(customerDetails.getEmail());
-                        }
-                        if (customerDetails.getPhone() != null) {
-                            customer.setPhone(customerDetails.getPhone());
-                        }
-                        if (customerDetails.getAddress() != null) {
-                            customer.setAddress(customerDetails.getAddress());
-                        }
-                        if (customerDetails.getCompany() != null) {
-                            customer.setCompany(customerDetails.getCompany());
-                        }
+                        CustomerPatch.apply(customer, customerDetails);
                         
                         Customer updatedCustomer = customerRepository.save(customer);
+                        // 本節點立即失效，其他節點由資料庫通知失效
+                        customerNearCache.invalidate(id);
                         log.info("顧客更新成功，ID={}, 審計信息: modifiedBy={}", 
                                 updatedCustomer.getId(), updatedCustomer.getModifiedBy().getUsername());
                         
-                        return ResponseEntity.ok(updatedCustomer);
+                        return ResponseEntity.ok()
+                                .eTag(ETagUtils.etag(updatedCustomer))
+                                .lastModified(ETagUtils.lastModified(updatedCustomer))
+                                .body(updatedCustomer);
                     })
                     .orElse(ResponseEntity.notFound().build());
+        } catch (ObjectOptimisticLockingFailureException e) {
+            // 讀取後到寫入前已被其他請求修改
+            log.warn("顧客ID={} 更新時版本衝突", id);
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+        } finally {
+            UserContext.clear();
+        }
+    }
+
+    /**
+     * 批次修改公司名稱
+     * 觸發器審計模式下為單一 UPDATE，監聽器模式下逐筆載入並儲存
+     */
+    @PutMapping("/batch/company")
+    public Map<String, Integer> renameCompany(
+            @RequestParam String from,
+            @RequestParam String to,
+            @RequestHeader(value = "Authorization", required = true) String authHeader) {
+        try {
+            String token = extractToken(authHeader);
+            log.info("從Authorization頭中提取到令牌: {}", token);
+            UserContext.setCurrentUser(token);
+            
+            return Map.of("updated", customerBulkService.renameCompany(from, to));
         } finally {
             UserContext.clear();
         }
@@ -144,19 +434,35 @@ public class CustomerController {
 
     /**
      * 刪除顧客
+     * 帶有 If-Match 時只在版本相符時刪除
      */
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteCustomer(
             @PathVariable Long id,
-            @RequestHeader(value = "Authorization", required = true) String authHeader) {
+            @RequestHeader(value = "Authorization", required = true) String authHeader,
+            @RequestHeader(value = "If-Match", required = false) String ifMatch) {
         try {
             String token = extractToken(authHeader);
             log.info("從Authorization頭中提取到令牌: {}", token);
             UserContext.setCurrentUser(token);
+            if (!customerWriteBehind.flush(id)) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "1").build();
+            }
             
-            return customerRepository.findById(id)
+            Optional<Customer> existing = customerRepository.findById(id);
+            if (existing.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            // If-Match 不符表示客戶端持有的是舊版本，拒絕刪除
+            if (ifMatch != null && !ETagUtils.matches(ifMatch, ETagUtils.etag(existing.get()))) {
+                log.warn("顧客ID={} 的 If-Match 不符，拒絕刪除", id);
+                return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+            }
+            
+            return existing
                     .map(customer -> {
                         customerRepository.delete(customer);
+                        customerNearCache.invalidate(id);
                         log.info("顧客刪除成功，ID={}", id);
                         return ResponseEntity.ok().<Void>build();
                     })
@@ -168,37 +474,13 @@ public class CustomerController {
     
     /**
      * 獲取所有顧客的審計信息
+     * 逐列直接輸出 JSON，不為每列建立 Map
      */
     @GetMapping("/audit")
-    public List<Map<String, Object>> getAuditInfo() {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-        ZoneId zoneId = ZoneId.of("Asia/Taipei");
-        
-        return customerRepository.findAll().stream()
-                .map(customer -> {
-                    Map<String, Object> auditInfo = new HashMap<>();
-                    auditInfo.put("customerId", customer.getId());
-                    auditInfo.put("customerName", customer.getName());
-                    
-                    // 創建者信息
-                    auditInfo.put("createdBy", customer.getCreatedBy().getUsername());
-                    auditInfo.put("createdByName", customer.getCreatedBy().getName());
-                    auditInfo.put("createdTime", customer.getCreatedTime().atZone(zoneId).format(formatter));
-                    auditInfo.put("createdCompany", customer.getCreatedCompany());
-                    auditInfo.put("createdUnit", customer.getCreatedUnit());
-                    auditInfo.put("createdName", customer.getCreatedName());
-                    
-                    // 修改者信息
-                    auditInfo.put("modifiedBy", customer.getModifiedBy().getUsername());
-                    auditInfo.put("modifiedByName", customer.getModifiedBy().getName());
-                    auditInfo.put("modifiedTime", customer.getModifiedTime().atZone(zoneId).format(formatter));
-                    auditInfo.put("modifiedCompany", customer.getModifiedCompany());
-                    auditInfo.put("modifiedUnit", customer.getModifiedUnit());
-                    auditInfo.put("modifiedName", customer.getModifiedName());
-                    
-                    return auditInfo;
-                })
-                .collect(Collectors.toList());
+    public ResponseEntity<StreamingResponseBody> getAuditInfo() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(jsonStreamingService.streamArray(customerRepository::streamAll, AuditJsonRows::writeCustomerAudit));
     }
 
     /**
@@ -208,20 +490,13 @@ public class CustomerController {
     public List<Map<String, Object>> getModifiedInRange(
             @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
             @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end) {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-        ZoneId zoneId = ZoneId.of("Asia/Taipei");
-        
-        return customerRepository.findAll().stream()
-                .filter(customer -> {
-                    LocalDateTime modifiedTime = customer.getModifiedTime();
-                    return !modifiedTime.isBefore(start) && !modifiedTime.isAfter(end);
-                })
+        return customerRepository.findModifiedBetween(start, end).stream()
                 .map(customer -> {
                     Map<String, Object> auditInfo = new HashMap<>();
                     auditInfo.put("customerId", customer.getId());
                     auditInfo.put("customerName", customer.getName());
                     auditInfo.put("modifiedBy", customer.getModifiedBy().getUsername());
-                    auditInfo.put("modifiedTime", customer.getModifiedTime().atZone(zoneId).format(formatter));
+                    auditInfo.put("modifiedTime", AuditJsonRows.format(customer.getModifiedTime()));
                     auditInfo.put("modifiedCompany", customer.getModifiedCompany());
                     auditInfo.put("modifiedUnit", customer.getModifiedUnit());
                     auditInfo.put("modifiedName", customer.getModifiedName());
@@ -230,6 +505,29 @@ public class CustomerController {
                 .collect(Collectors.toList());
     }
     
+    /**
+     * 跨公司顧客異動報表
+     * 啟用分片時會同時查詢所有分片並依公司合併
+     */
+    @GetMapping("/audit/report")
+    public CustomerAuditReport getAuditReport(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end) {
+        return customerAuditReportService.summarize(start, end);
+    }
+    
+    /**
+     * 查詢顧客的變更歷史
+     * 查詢範圍早於熱資料保留期間時，會一併讀取封存段檔
+     */
+    @GetMapping("/{id}/history")
+    public List<AuditHistoryRecord> getHistory(
+            @PathVariable Long id,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end) {
+        return auditHistoryService.findHistory(Customer.class.getSimpleName(), id, start, end);
+    }
+    
     /**
      * 從 Authorization 頭中提取令牌
      */
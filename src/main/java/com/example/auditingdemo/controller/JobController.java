@@ -0,0 +1,45 @@
+package com.example.auditingdemo.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.auditingdemo.audit.UserContext;
+import com.example.auditingdemo.job.BatchJobStatus;
+import com.example.auditingdemo.job.CustomerBatchJobService;
+import com.example.auditingdemo.service.TokenService;
+
+/**
+ * 非同步作業控制器
+ * 查詢 POST /api/customers/batch?async=true 受理的作業進度，只有提交者與管理員可以查詢
+ */
+@RestController
+@RequestMapping("/api/jobs")
+public class JobController {
+
+    @Autowired
+    private CustomerBatchJobService customerBatchJobService;
+
+    @Autowired
+    private TokenService tokenService;
+
+    /**
+     * 查詢作業狀態、進度、失敗的區塊與吞吐量
+     * 其他人的作業與不存在的作業同樣回傳 404，不透露作業是否存在
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<BatchJobStatus> getJob(@PathVariable String id) {
+        String caller = UserContext.getCurrentUser();
+        if (caller == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        return customerBatchJobService.find(id)
+                .filter(job -> caller.equals(job.getOwner()) || tokenService.isAdmin(caller))
+                .map(job -> ResponseEntity.ok(job.toStatus()))
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
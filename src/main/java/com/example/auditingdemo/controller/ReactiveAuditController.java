@@ -0,0 +1,90 @@
+package com.example.auditingdemo.controller;
+
+import java.time.LocalDateTime;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.auditingdemo.audit.history.AuditHistoryRecord;
+import com.example.auditingdemo.model.Customer;
+import com.example.auditingdemo.model.CustomerAuditRow;
+import com.example.auditingdemo.model.User;
+import com.example.auditingdemo.service.ReactiveAuditQueryService;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * 非阻塞審計查詢控制器
+ * 與 /api/customers、/api/users 的審計端點回傳相同資料，但以 R2DBC 查詢並以 NDJSON 逐列輸出：
+ * 等待資料庫時不佔用 servlet 執行緒，Spring MVC 每寫出一列才向資料庫要下一列。
+ * R2DBC 只連到 spring.r2dbc.url 一個資料庫，啟用分片時無法依公司路由，所有端點回傳 501
+ */
+@RestController
+@RequestMapping(value = "/api/reactive", produces = MediaType.APPLICATION_NDJSON_VALUE)
+public class ReactiveAuditController {
+
+    @Autowired
+    private ReactiveAuditQueryService reactiveAuditQueryService;
+
+    @Value("${sharding.enabled:false}")
+    private boolean shardingEnabled;
+
+    /**
+     * 獲取所有顧客的審計信息
+     */
+    @GetMapping("/customers/audit")
+    public ResponseEntity<Flux<CustomerAuditRow>> getCustomerAudit() {
+        return respond(reactiveAuditQueryService.customerAudit());
+    }
+
+    /**
+     * 查詢特定時間範圍內修改的顧客
+     */
+    @GetMapping("/customers/audit/modified")
+    public ResponseEntity<Flux<CustomerAuditRow>> getCustomerModifiedInRange(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end) {
+        return respond(reactiveAuditQueryService.customerAuditModified(start, end));
+    }
+
+    /**
+     * 查詢顧客的變更歷史
+     */
+    @GetMapping("/customers/{id}/history")
+    public ResponseEntity<Flux<AuditHistoryRecord>> getCustomerHistory(
+            @PathVariable Long id,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end) {
+        return respond(reactiveAuditQueryService.history(Customer.class.getSimpleName(), id, start, end));
+    }
+
+    /**
+     * 查詢用戶的變更歷史
+     */
+    @GetMapping("/users/{id}/history")
+    public ResponseEntity<Flux<AuditHistoryRecord>> getUserHistory(
+            @PathVariable Long id,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end) {
+        return respond(reactiveAuditQueryService.history(User.class.getSimpleName(), id, start, end));
+    }
+
+    /**
+     * 啟用分片時拒絕查詢，避免只回傳單一分片的資料
+     */
+    private <T> ResponseEntity<Flux<T>> respond(Flux<T> rows) {
+        if (shardingEnabled) {
+            return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).build();
+        }
+        return ResponseEntity.ok(rows);
+    }
+}
@@ -4,12 +4,20 @@ import java.util.HashMap;
 import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.example.auditingdemo.audit.CustomAuditorAware;
+import com.example.auditingdemo.audit.UserContext;
+import com.example.auditingdemo.model.User;
+import com.example.auditingdemo.revocation.TokenRevocationRequest;
+import com.example.auditingdemo.revocation.TokenRevocationService;
 import com.example.auditingdemo.service.TokenService;
 
 import lombok.extern.slf4j.Slf4j;
@@ -25,6 +33,12 @@ public class TokenController {
 
     @Autowired
     private TokenService tokenService;
+
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
+    @Autowired
+    private CustomAuditorAware auditorAware;
     
     /**
      * 獲取指定用戶的令牌
@@ -74,6 +88,36 @@ public class TokenController {
         return ResponseEntity.ok(response);
     }
     
+    /**
+     * 撤銷令牌，所有節點立即拒絕此令牌
+     * 只能撤銷自己的令牌，管理員可以撤銷任何令牌
+     */
+    @PostMapping("/revocations")
+    public ResponseEntity<Map<String, Object>> revoke(@RequestBody TokenRevocationRequest request) {
+        String caller = UserContext.getCurrentUser();
+        if (caller == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if (request.token() == null || request.token().isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (!caller.equals(request.token()) && !tokenService.isAdmin(caller)) {
+            log.warn("無權撤銷其他使用者的令牌");
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        if (!tokenRevocationService.isEnabled()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+
+        Long revokedBy = auditorAware.getCurrentAuditor().map(User::getId).orElse(null);
+        boolean created = tokenRevocationService.revoke(request.token(), request.reason(), revokedBy, request.expiresTime());
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("revoked", true);
+        response.put("alreadyRevoked", !created);
+        return ResponseEntity.status(created ? HttpStatus.CREATED : HttpStatus.OK).body(response);
+    }
+    
     /**
      * 生成curl示例命令
      */
@@ -1,14 +1,15 @@
 package com.example.auditingdemo.controller;
 
-import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
+import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -16,13 +17,27 @@ import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.example.auditingdemo.audit.UserContext;
+import com.example.auditingdemo.audit.history.AuditHistoryRecord;
+import com.example.auditingdemo.audit.history.AuditHistoryService;
+import com.example.auditingdemo.model.EntityVersion;
 import com.example.auditingdemo.model.User;
 import com.example.auditingdemo.repository.UserRepository;
+import com.example.auditingdemo.service.JsonStreamingService;
 import com.example.auditingdemo.service.TokenService;
+import com.example.auditingdemo.util.AuditJsonRows;
+import com.example.auditingdemo.util.ETagUtils;
+import com.example.auditingdemo.util.UserPatch;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -40,21 +55,85 @@ public class UserController {
     @Autowired
     private TokenService tokenService;
     
+    @Autowired
+    private AuditHistoryService auditHistoryService;
+    
+    @Autowired
+    private JsonStreamingService jsonStreamingService;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    // 預先建立的 ObjectWriter，避免每次請求重新解析序列化設定
+    private ObjectWriter userWriter;
+    
+    @PostConstruct
+    public void init() {
+        // 串流輸出時由 JsonStreamingService 控制 flush，不要每列都 flush
+        userWriter = objectMapper.writerFor(User.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+    
     /**
      * 獲取所有用戶
+     * 以資料庫游標逐列串流輸出，不在記憶體中組出完整清單
      */
     @GetMapping
-    public List<User> getAllUsers() {
-        return userRepository.findAll();
+    public ResponseEntity<StreamingResponseBody> getAllUsers() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(jsonStreamingService.streamArray(userRepository::streamAll, userWriter::writeValue));
     }
     
     /**
      * 根據ID獲取用戶
+     * 回應帶有 ETag 與 Last-Modified，支援條件式請求
      */
     @GetMapping("/{id}")
-    public ResponseEntity<User> getUserById(@PathVariable Long id) {
+    public ResponseEntity<User> getUserById(@PathVariable Long id, WebRequest request) {
+        // 條件式請求先以版本查詢判斷 If-None-Match / If-Modified-Since，未變更時直接回傳 304；
+        // 一般請求直接載入，只查詢一次
+        if (ETagUtils.isConditional(request)) {
+            Optional<EntityVersion> version = userRepository.findVersionById(id);
+            if (version.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            if (request.checkNotModified(ETagUtils.etag(version.get()), ETagUtils.lastModified(version.get()))) {
+                return null;
+            }
+        }
+        
         return userRepository.findById(id)
-                .map(ResponseEntity::ok)
+                .map(user -> ResponseEntity.ok()
+                        .eTag(ETagUtils.etag(user))
+                        .lastModified(ETagUtils.lastModified(user))
+                        .body(user))
+                .orElse(ResponseEntity.notFound().build());
+    }
+    
+    /**
+     * 查詢用戶在指定時間點的狀態
+     * 時間點不早於目前的修改時間時回傳目前的用戶；否則回傳變更歷史中當時的完整內容，
+     * 當時尚未建立或已刪除時回傳 404
+     */
+    @GetMapping(value = "/{id}", params = "asOf")
+    public ResponseEntity<?> getUserAsOf(
+            @PathVariable Long id,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime asOf) {
+        Optional<EntityVersion> version = userRepository.findVersionById(id);
+        if (version.isPresent() && !version.get().getModifiedTime().isAfter(asOf)) {
+            return userRepository.findById(id)
+                    .<ResponseEntity<?>>map(user -> ResponseEntity.ok()
+                            .eTag(ETagUtils.etag(user))
+                            .lastModified(ETagUtils.lastModified(user))
+                            .body(user))
+                    .orElse(ResponseEntity.notFound().build());
+        }
+        // 歷史記錄的內容即當時的 JSON，直接輸出
+        return auditHistoryService.findAsOf(User.class.getSimpleName(), id, asOf)
+                .<ResponseEntity<?>>map(record -> ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .lastModified(ETagUtils.lastModified(record.getChangedTime()))
+                        .body(record.getPayload()))
                 .orElse(ResponseEntity.notFound().build());
     }
     
@@ -95,7 +174,8 @@ public class UserController {
     public ResponseEntity<User> updateUser(
             @PathVariable Long id,
             @RequestBody User userDetails,
-            @RequestHeader(value = "Authorization", required = true) String authHeader) {
+            @RequestHeader(value = "Authorization", required = true) String authHeader,
+            @RequestHeader(value = "If-Match", required = false) String ifMatch) {
         try {
             // 提取token
             String token = extractToken(authHeader);
@@ -104,30 +184,19 @@ public class UserController {
             // 設置當前用戶 token
             UserContext.setCurrentUser(token);
             
-            return userRepository.findById(id)
+            Optional<User> existing = userRepository.findById(id);
+            if (existing.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            // If-Match 不符表示客戶端持有的是舊版本，拒絕更新避免覆蓋他人的修改
+            if (ifMatch != null && !ETagUtils.matches(ifMatch, ETagUtils.etag(existing.get()))) {
+                log.warn("用戶ID={} 的 If-Match 不符，拒絕更新", id);
+                return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+            }
+            
+            return existing
                     .map(user -> {
-                        // 更新用戶基本信息
-                        if (userDetails.getName() != null) {
-                            user.setName(userDetails.getName());
-                        }
-                        if (userDetails.getEmail() != null) {
-                            user.setEmail(userDetails.getEmail());
-                        }
-                        if (userDetails.getDescription() != null) {
-                            user.setDescription(userDetails.getDescription());
-                        }
-                        if (userDetails.getCellphone() != null) {
-                            user.setCellphone(userDetails.getCellphone());
-                        }
-                        if (userDetails.getCompanyId() != null) {
-                            user.setCompanyId(userDetails.getCompanyId());
-                        }
-                        if (userDetails.getStatusId() != null) {
-                            user.setStatusId(userDetails.getStatusId());
-                        }
-                        if (userDetails.getDefaultLanguage() != null) {
-                            user.setDefaultLanguage(userDetails.getDefaultLanguage());
-                        }
+                        UserPatch.apply(user, userDetails);
                         
                         // 保存更新後的用戶
                         User updatedUser = userRepository.save(user);
@@ -135,9 +204,16 @@ public class UserController {
                                 updatedUser.getId(), updatedUser.getModifiedBy(), 
                                 updatedUser.getModifiedCompany(), updatedUser.getModifiedUnit());
                         
-                        return ResponseEntity.ok(updatedUser);
+                        return ResponseEntity.ok()
+                                .eTag(ETagUtils.etag(updatedUser))
+                                .lastModified(ETagUtils.lastModified(updatedUser))
+                                .body(updatedUser);
                     })
                     .orElse(ResponseEntity.notFound().build());
+        } catch (ObjectOptimisticLockingFailureException e) {
+            // 讀取後到寫入前已被其他請求修改
+            log.warn("用戶ID={} 更新時版本衝突", id);
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
         } finally {
             // 清除 ThreadLocal
             UserContext.clear();
@@ -146,35 +222,26 @@ public class UserController {
     
     /**
      * 獲取所有用戶的審計信息
+     * 逐列直接輸出 JSON，不為每列建立 Map
      */
     @GetMapping("/audit")
-    public List<Map<String, Object>> getAuditInfo() {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-        ZoneId zoneId = ZoneId.of("Asia/Taipei");
-        
-        return userRepository.findAll().stream()
-                .map(user -> {
-                    Map<String, Object> auditInfo = new HashMap<>();
-                    auditInfo.put("userId", user.getId());
-                    auditInfo.put("username", user.getUsername());
-                    
-                    // 創建者信息
-                    auditInfo.put("createdBy", user.getCreatedBy());
-                    auditInfo.put("createdTime", user.getCreatedTime().atZone(zoneId).format(formatter));
-                    auditInfo.put("createdCompany", user.getCreatedCompany());
-                    auditInfo.put("createdUnit", user.getCreatedUnit());
-                    auditInfo.put("createdName", user.getCreatedName());
-                    
-                    // 修改者信息
-                    auditInfo.put("modifiedBy", user.getModifiedBy());
-                    auditInfo.put("modifiedTime", user.getModifiedTime().atZone(zoneId).format(formatter));
-                    auditInfo.put("modifiedCompany", user.getModifiedCompany());
-                    auditInfo.put("modifiedUnit", user.getModifiedUnit());
-                    auditInfo.put("modifiedName", user.getModifiedName());
-                    
-                    return auditInfo;
-                })
-                .collect(Collectors.toList());
+    public ResponseEntity<StreamingResponseBody> getAuditInfo() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(jsonStreamingService.streamArray(userRepository::streamAll,
+                        (gen, user) -> AuditJsonRows.writeUserAudit(gen, user, userWriter)));
+    }
+    
+    /**
+     * 查詢用戶的變更歷史
+     * 查詢範圍早於熱資料保留期間時，會一併讀取封存段檔
+     */
+    @GetMapping("/{id}/history")
+    public List<AuditHistoryRecord> getHistory(
+            @PathVariable Long id,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end) {
+        return auditHistoryService.findHistory(User.class.getSimpleName(), id, start, end);
     }
     
     /**
@@ -0,0 +1,34 @@
+package com.example.auditingdemo.idempotency;
+
+/**
+ * 冪等請求的處理結果
+ *
+ * @param outcome 處理方式
+ * @param body 第一次執行時的回應物件
+ * @param responseJson 重複請求時，第一次執行所儲存的回應 JSON
+ */
+public record IdempotencyResult<T>(Outcome outcome, T body, String responseJson) {
+
+    public enum Outcome {
+        // 第一次執行
+        EXECUTED,
+        // 重複請求，回傳第一次執行的結果
+        REPLAYED,
+        // 同一個鍵搭配不同的請求內容
+        KEY_REUSED,
+        // 第一次執行尚未完成，等待逾時
+        IN_PROGRESS
+    }
+
+    static <T> IdempotencyResult<T> executed(T body) {
+        return new IdempotencyResult<>(Outcome.EXECUTED, body, null);
+    }
+
+    static <T> IdempotencyResult<T> replayed(String responseJson) {
+        return new IdempotencyResult<>(Outcome.REPLAYED, null, responseJson);
+    }
+
+    static <T> IdempotencyResult<T> of(Outcome outcome) {
+        return new IdempotencyResult<>(outcome, null, null);
+    }
+}
@@ -0,0 +1,392 @@
+package com.example.auditingdemo.idempotency;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 冪等鍵服務
+ * 帶有相同 Idempotency-Key 的請求只執行一次，之後的重試回傳第一次的回應。
+ * 同一節點上的並發重複請求等待記憶體中執行中的結果；跨節點以 pf_idempotency 的一列作為認領標記，
+ * 業務寫入與回應內容在同一個交易中提交，交易回滾時刪除認領，重試可以重新執行。
+ * 每次認領寫入新的 claim_token，完成與釋放都以它為條件：執行超過 lock-timeout-seconds 被其他節點接手後，
+ * 原節點的完成更新不到任何列，整個業務交易回滾，不會與接手者重複寫入或覆蓋接手者的認領。
+ * 呼叫者令牌只以 SHA-256 保存在資料庫與記憶體中，外洩 pf_idempotency 或堆積傾印不會洩漏令牌
+ */
+@Slf4j
+@Service
+public class IdempotencyService {
+
+    // 新增認領；已存在的鍵只有在過期，或執行中的節點逾期未完成（且請求內容相同）時才能接手
+    private static final String CLAIM_SQL =
+            "INSERT INTO pf_idempotency AS i "
+            + "(caller, idempotency_key, request_hash, claim_token, state, locked_until, created_time, expires_time) "
+            + "VALUES (?, ?, ?, ?, 'IN_PROGRESS', now() + make_interval(secs => ?), now(), now() + make_interval(secs => ?)) "
+            + "ON CONFLICT (caller, idempotency_key) DO UPDATE SET "
+            + "request_hash = EXCLUDED.request_hash, claim_token = EXCLUDED.claim_token, "
+            + "state = 'IN_PROGRESS', response_body = NULL, "
+            + "locked_until = EXCLUDED.locked_until, created_time = EXCLUDED.created_time, expires_time = EXCLUDED.expires_time "
+            + "WHERE i.expires_time < now() "
+            + "OR (i.state = 'IN_PROGRESS' AND i.locked_until < now() AND i.request_hash = EXCLUDED.request_hash)";
+
+    private static final String SELECT_SQL =
+            "SELECT state, request_hash, response_body FROM pf_idempotency WHERE caller = ? AND idempotency_key = ?";
+
+    private static final String COMPLETE_SQL =
+            "UPDATE pf_idempotency SET state = 'COMPLETED', response_body = ?, locked_until = NULL "
+            + "WHERE caller = ? AND idempotency_key = ? AND claim_token = ? AND state = 'IN_PROGRESS'";
+
+    private static final String RELEASE_SQL =
+            "DELETE FROM pf_idempotency "
+            + "WHERE caller = ? AND idempotency_key = ? AND claim_token = ? AND state = 'IN_PROGRESS'";
+
+    private static final String PURGE_SQL =
+            "DELETE FROM pf_idempotency WHERE ctid IN "
+            + "(SELECT ctid FROM pf_idempotency WHERE expires_time < now() LIMIT ?)";
+
+    private static final String COMPLETED = "COMPLETED";
+
+    // 等待其他節點完成時的輪詢間隔
+    private static final long POLL_INTERVAL_MS = 50;
+
+    private static final int PURGE_BATCH_SIZE = 5000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${idempotency.enabled:true}")
+    private boolean enabled;
+
+    @Value("${idempotency.ttl-seconds:86400}")
+    private long ttlSeconds;
+
+    @Value("${idempotency.lock-timeout-seconds:60}")
+    private long lockTimeoutSeconds;
+
+    @Value("${idempotency.wait-timeout-ms:10000}")
+    private long waitTimeoutMs;
+
+    @Value("${idempotency.max-local-entries:10000}")
+    private int maxLocalEntries;
+
+    @Value("${idempotency.max-local-bytes:16777216}")
+    private long maxLocalBytes;
+
+    // 本節點的冪等鍵：呼叫者指紋 + 鍵 -> 執行中或已完成的回應
+    private final Map<String, LocalEntry> localEntries = new ConcurrentHashMap<>();
+
+    // 本節點保存的回應內容大小，以字元數 x 2 估算
+    private final AtomicLong localBytes = new AtomicLong();
+
+    private static final class LocalEntry {
+
+        final String requestHash;
+
+        final long expiresAt;
+
+        final CompletableFuture<String> response = new CompletableFuture<>();
+
+        // 計入 localBytes 的大小；移除後為 -1，之後完成的回應不再計入
+        final AtomicLong chargedBytes = new AtomicLong();
+
+        LocalEntry(String requestHash, long expiresAt) {
+            this.requestHash = requestHash;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+
+        boolean charge(long bytes) {
+            return chargedBytes.compareAndSet(0, bytes);
+        }
+
+        long discharge() {
+            return Math.max(0, chargedBytes.getAndSet(-1));
+        }
+    }
+
+    private record StoredKey(String state, String requestHash, String responseBody) {
+    }
+
+    /**
+     * 認領已被其他節點接手，用來回滾目前的業務交易
+     */
+    private static final class ClaimLostException extends RuntimeException {
+
+        ClaimLostException(String key) {
+            super("冪等鍵 " + key + " 的認領已被其他節點接手");
+        }
+    }
+
+    /**
+     * 計算請求指紋，同一個鍵搭配不同指紋的請求會被拒絕
+     */
+    public String requestHash(String path, Object requestBody) {
+        try {
+            MessageDigest digest = sha256();
+            digest.update(path.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            digest.update(objectMapper.writeValueAsBytes(requestBody));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("無法計算請求指紋", e);
+        }
+    }
+
+    /**
+     * 呼叫者令牌的指紋，資料庫與本節點只保存這個值
+     */
+    static String callerHash(String caller) {
+        return HexFormat.of().formatHex(sha256().digest(caller.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("JVM 不支援 SHA-256", e);
+        }
+    }
+
+    /**
+     * 以冪等方式執行建立操作
+     *
+     * @param token 呼叫者令牌，冪等鍵只在同一呼叫者內比對；只保存其 SHA-256
+     * @param key 客戶端提供的 Idempotency-Key
+     * @param requestHash 請求指紋
+     * @param action 實際的建立操作，會在交易中執行
+     */
+    public <T> IdempotencyResult<T> execute(String token, String key, String requestHash, Supplier<T> action) {
+        if (!enabled) {
+            return IdempotencyResult.executed(action.get());
+        }
+        String caller = callerHash(token);
+        String localKey = caller + '\n' + key;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitTimeoutMs);
+        while (true) {
+            long now = System.nanoTime();
+            LocalEntry entry = new LocalEntry(requestHash, now + TimeUnit.SECONDS.toNanos(ttlSeconds));
+            LocalEntry existing = localEntries.putIfAbsent(localKey, entry);
+            if (existing == null) {
+                evictIfFull(now);
+                return executeOwned(localKey, entry, caller, key, requestHash, deadline, action);
+            }
+            if (existing.isExpired(now)) {
+                removeLocal(localKey, existing);
+                continue;
+            }
+            if (!existing.requestHash.equals(requestHash)) {
+                return IdempotencyResult.of(IdempotencyResult.Outcome.KEY_REUSED);
+            }
+            try {
+                String json = existing.response.get(Math.max(0, deadline - now), TimeUnit.NANOSECONDS);
+                log.debug("冪等鍵 {} 重複請求，回傳本節點已完成的結果", key);
+                return IdempotencyResult.replayed(json);
+            } catch (TimeoutException e) {
+                return IdempotencyResult.of(IdempotencyResult.Outcome.IN_PROGRESS);
+            } catch (ExecutionException | CancellationException e) {
+                // 第一次執行失敗且已移除，重新認領執行
+                if (System.nanoTime() - deadline >= 0) {
+                    return IdempotencyResult.of(IdempotencyResult.Outcome.IN_PROGRESS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return IdempotencyResult.of(IdempotencyResult.Outcome.IN_PROGRESS);
+            }
+        }
+    }
+
+    /**
+     * 本節點持有此鍵：先在資料庫認領，再執行或等待其他節點的結果
+     */
+    private <T> IdempotencyResult<T> executeOwned(String localKey, LocalEntry entry, String caller, String key,
+                                                  String requestHash, long deadline, Supplier<T> action) {
+        IdempotencyResult<T> result;
+        try {
+            result = claimAndExecute(caller, key, requestHash, deadline, action, entry);
+        } catch (RuntimeException | Error e) {
+            removeLocal(localKey, entry);
+            entry.response.completeExceptionally(e);
+            throw e;
+        }
+        if (result.outcome() == IdempotencyResult.Outcome.KEY_REUSED
+                || result.outcome() == IdempotencyResult.Outcome.IN_PROGRESS) {
+            // 沒有可共用的結果，讓等待中的請求自行重試
+            removeLocal(localKey, entry);
+            entry.response.cancel(false);
+        } else {
+            // 等待中的請求已取得結果，再依大小決定是否保留
+            long bytes = entry.response.getNow("").length() * 2L;
+            if (entry.charge(bytes)) {
+                localBytes.addAndGet(bytes);
+            }
+            evictIfFull(System.nanoTime());
+        }
+        return result;
+    }
+
+    private <T> IdempotencyResult<T> claimAndExecute(String caller, String key, String requestHash, long deadline,
+                                                     Supplier<T> action, LocalEntry entry) {
+        while (true) {
+            UUID claimToken = UUID.randomUUID();
+            int claimed = jdbcTemplate.update(CLAIM_SQL, caller, key, requestHash, claimToken,
+                    (double) lockTimeoutSeconds, (double) ttlSeconds);
+            if (claimed == 1) {
+                return executeClaimed(caller, key, claimToken, action, entry);
+            }
+
+            List<StoredKey> stored = jdbcTemplate.query(SELECT_SQL, (rs, rowNum) -> new StoredKey(
+                    rs.getString("state"), rs.getString("request_hash"), rs.getString("response_body")),
+                    caller, key);
+            if (stored.isEmpty()) {
+                // 其他節點執行失敗已釋放，重新認領
+                continue;
+            }
+            StoredKey row = stored.get(0);
+            if (!row.requestHash().equals(requestHash)) {
+                return IdempotencyResult.of(IdempotencyResult.Outcome.KEY_REUSED);
+            }
+            if (COMPLETED.equals(row.state())) {
+                log.debug("冪等鍵 {} 重複請求，回傳已儲存的結果", key);
+                entry.response.complete(row.responseBody());
+                return IdempotencyResult.replayed(row.responseBody());
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                log.warn("冪等鍵 {} 在其他節點執行中，等待逾時", key);
+                return IdempotencyResult.of(IdempotencyResult.Outcome.IN_PROGRESS);
+            }
+            try {
+                Thread.sleep(POLL_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return IdempotencyResult.of(IdempotencyResult.Outcome.IN_PROGRESS);
+            }
+        }
+    }
+
+    /**
+     * 在同一個交易中執行建立操作並儲存回應；失敗時刪除認領
+     * 認領已被接手時回滾整個交易，回傳執行中，由客戶端稍後重試取得接手者的結果
+     */
+    private <T> IdempotencyResult<T> executeClaimed(String caller, String key, UUID claimToken,
+                                                    Supplier<T> action, LocalEntry entry) {
+        String[] json = new String[1];
+        T body;
+        try {
+            body = transactionTemplate.execute(status -> {
+                T value = action.get();
+                json[0] = toJson(value);
+                if (jdbcTemplate.update(COMPLETE_SQL, json[0], caller, key, claimToken) == 0) {
+                    throw new ClaimLostException(key);
+                }
+                return value;
+            });
+        } catch (ClaimLostException e) {
+            log.warn("{}，已回滾本節點的寫入", e.getMessage());
+            return IdempotencyResult.of(IdempotencyResult.Outcome.IN_PROGRESS);
+        } catch (RuntimeException | Error e) {
+            jdbcTemplate.update(RELEASE_SQL, caller, key, claimToken);
+            throw e;
+        }
+        entry.response.complete(json[0]);
+        return IdempotencyResult.executed(body);
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("無法序列化回應內容", e);
+        }
+    }
+
+    /**
+     * 本節點的鍵數或回應內容大小超過上限時，先移除過期的，仍超過則移除已完成的
+     * 執行中的鍵有請求在等待，不移除；單一回應超過大小上限時完成後立即移除，重試改由資料庫回放
+     */
+    private void evictIfFull(long now) {
+        if (!isLocalFull()) {
+            return;
+        }
+        removeLocalIf(entry -> entry.isExpired(now) && entry.response.isDone(), false);
+        removeLocalIf(entry -> entry.response.isDone(), true);
+    }
+
+    private boolean isLocalFull() {
+        return localEntries.size() > maxLocalEntries || localBytes.get() > maxLocalBytes;
+    }
+
+    private void removeLocalIf(Predicate<LocalEntry> predicate, boolean untilBelowLimit) {
+        for (Iterator<Map.Entry<String, LocalEntry>> it = localEntries.entrySet().iterator(); it.hasNext();) {
+            if (untilBelowLimit && !isLocalFull()) {
+                return;
+            }
+            Map.Entry<String, LocalEntry> e = it.next();
+            if (predicate.test(e.getValue())) {
+                removeLocal(e.getKey(), e.getValue());
+            }
+        }
+    }
+
+    private void removeLocal(String localKey, LocalEntry entry) {
+        if (localEntries.remove(localKey, entry)) {
+            localBytes.addAndGet(-entry.discharge());
+        }
+    }
+
+    /**
+     * 定期清除過期的冪等鍵
+     */
+    @Scheduled(fixedDelayString = "${idempotency.purge-interval-ms:60000}")
+    public void purgeExpired() {
+        if (!enabled) {
+            return;
+        }
+        long now = System.nanoTime();
+        removeLocalIf(entry -> entry.isExpired(now) && entry.response.isDone(), false);
+
+        int total = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(PURGE_SQL, PURGE_BATCH_SIZE);
+            total += deleted;
+        } while (deleted == PURGE_BATCH_SIZE);
+        if (total > 0) {
+            log.info("清除過期冪等鍵 {} 筆", total);
+        }
+    }
+}
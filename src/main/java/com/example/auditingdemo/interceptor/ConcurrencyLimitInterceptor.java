@@ -0,0 +1,160 @@
+package com.example.auditingdemo.interceptor;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import com.example.auditingdemo.util.AdaptiveConcurrencyLimiter;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 併發限制攔截器
+ * 讀取、單筆寫入與批次寫入各自使用一個自適應併發限制器，超過上限的請求立即以 503 拒絕，
+ * 避免突發流量耗盡連線池後所有請求的延遲一起崩潰
+ */
+@Slf4j
+@Component
+public class ConcurrencyLimitInterceptor implements HandlerInterceptor {
+
+    private static final String PERMIT_ATTRIBUTE = ConcurrencyLimitInterceptor.class.getName() + ".permit";
+
+    /**
+     * 請求類別
+     */
+    public enum RequestClass {
+        READ, WRITE, BATCH_WRITE
+    }
+
+    /**
+     * 已取得的許可，保存在請求屬性中
+     */
+    private record Permit(AdaptiveConcurrencyLimiter limiter, long startNanos, int inFlightAtStart) {
+    }
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${concurrency.limit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${concurrency.limit.retry-after-seconds:1}")
+    private int retryAfterSeconds;
+
+    @Value("${concurrency.limit.read.initial:100}")
+    private int readInitial;
+
+    @Value("${concurrency.limit.read.min:10}")
+    private int readMin;
+
+    @Value("${concurrency.limit.read.max:400}")
+    private int readMax;
+
+    @Value("${concurrency.limit.write.initial:20}")
+    private int writeInitial;
+
+    @Value("${concurrency.limit.write.min:4}")
+    private int writeMin;
+
+    @Value("${concurrency.limit.write.max:100}")
+    private int writeMax;
+
+    @Value("${concurrency.limit.batch.initial:4}")
+    private int batchInitial;
+
+    @Value("${concurrency.limit.batch.min:1}")
+    private int batchMin;
+
+    @Value("${concurrency.limit.batch.max:20}")
+    private int batchMax;
+
+    private final Map<RequestClass, AdaptiveConcurrencyLimiter> limiters = new EnumMap<>(RequestClass.class);
+
+    @PostConstruct
+    public void init() {
+        limiters.put(RequestClass.READ, new AdaptiveConcurrencyLimiter("read", readInitial, readMin, readMax));
+        limiters.put(RequestClass.WRITE, new AdaptiveConcurrencyLimiter("write", writeInitial, writeMin, writeMax));
+        limiters.put(RequestClass.BATCH_WRITE,
+                new AdaptiveConcurrencyLimiter("batch", batchInitial, batchMin, batchMax));
+
+        for (AdaptiveConcurrencyLimiter limiter : limiters.values()) {
+            Gauge.builder("concurrency.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                    .tag("class", limiter.getName())
+                    .description("目前的併發上限")
+                    .register(meterRegistry);
+            Gauge.builder("concurrency.inflight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                    .tag("class", limiter.getName())
+                    .description("執行中的請求數")
+                    .register(meterRegistry);
+            FunctionCounter.builder("concurrency.rejected", limiter, AdaptiveConcurrencyLimiter::getRejected)
+                    .tag("class", limiter.getName())
+                    .description("因超過併發上限而拒絕的請求數")
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * 在請求處理之前取得許可，取得失敗時回傳 503 與 Retry-After
+     */
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // 非同步串流回應結束後會再次分派，許可已在第一次分派時取得
+        if (!enabled || request.getAttribute(PERMIT_ATTRIBUTE) != null) {
+            return true;
+        }
+
+        AdaptiveConcurrencyLimiter limiter = limiters.get(classify(request));
+        if (!limiter.tryAcquire()) {
+            log.warn("併發上限已滿，拒絕請求: {} {} (類別={}, 上限={})",
+                    request.getMethod(), request.getRequestURI(), limiter.getName(), limiter.getLimit());
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader("Retry-After", String.valueOf(retryAfterSeconds));
+            return false;
+        }
+        request.setAttribute(PERMIT_ATTRIBUTE, new Permit(limiter, System.nanoTime(), limiter.getInFlight()));
+        return true;
+    }
+
+    /**
+     * 請求完成後釋放許可並回報延遲
+     * 被呼叫者限流的 429 沒有經過實際處理，延遲不具代表性，與例外、5xx 一樣回報為失敗
+     */
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response,
+                               Object handler, Exception ex) {
+        Object attribute = request.getAttribute(PERMIT_ATTRIBUTE);
+        if (!(attribute instanceof Permit permit)) {
+            return;
+        }
+        request.removeAttribute(PERMIT_ATTRIBUTE);
+        if (ex != null || response.getStatus() >= 500
+                || response.getStatus() == HttpStatus.TOO_MANY_REQUESTS.value()) {
+            permit.limiter().onDropped();
+        } else {
+            permit.limiter().onSuccess(System.nanoTime() - permit.startNanos(), permit.inFlightAtStart());
+        }
+    }
+
+    /**
+     * 依 HTTP 方法與路徑判斷請求類別
+     */
+    static RequestClass classify(HttpServletRequest request) {
+        String method = request.getMethod();
+        if ("GET".equals(method) || "HEAD".equals(method) || "OPTIONS".equals(method)) {
+            return RequestClass.READ;
+        }
+        String uri = request.getRequestURI();
+        return uri.endsWith("/batch") || uri.contains("/batch/") ? RequestClass.BATCH_WRITE : RequestClass.WRITE;
+    }
+}
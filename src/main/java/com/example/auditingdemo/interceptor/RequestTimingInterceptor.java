@@ -0,0 +1,69 @@
+package com.example.auditingdemo.interceptor;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import com.example.auditingdemo.timing.RequestTiming;
+import com.example.auditingdemo.timing.SlowRequestLog;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * 請求計時攔截器
+ * 排在所有攔截器之前開始量測，請求完成時交給 SlowRequestLog 判斷是否為慢請求。
+ * 非同步串流回應在重新分派時沿用同一份量測
+ */
+@Component
+public class RequestTimingInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String TIMING_ATTRIBUTE = RequestTimingInterceptor.class.getName() + ".timing";
+
+    /**
+     * 請求完成後保存量測結果的請求屬性，供測試讀取 SQL 次數
+     */
+    public static final String COMPLETED_ATTRIBUTE = RequestTimingInterceptor.class.getName() + ".completed";
+
+    @Autowired
+    private SlowRequestLog slowRequestLog;
+
+    @Value("${request-timing.enabled:false}")
+    private boolean enabled;
+
+    @Value("${request-timing.server-timing-header:false}")
+    private boolean serverTimingHeader;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getAttribute(TIMING_ATTRIBUTE) instanceof RequestTiming timing) {
+            RequestTiming.attach(timing);
+            return true;
+        }
+        request.setAttribute(TIMING_ATTRIBUTE, RequestTiming.start(serverTimingHeader));
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        RequestTiming.clear();
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response,
+                                Object handler, Exception ex) {
+        Object attribute = request.getAttribute(TIMING_ATTRIBUTE);
+        RequestTiming.clear();
+        if (attribute instanceof RequestTiming timing) {
+            request.removeAttribute(TIMING_ATTRIBUTE);
+            request.setAttribute(COMPLETED_ATTRIBUTE, timing);
+            slowRequestLog.complete(timing, request, response.getStatus());
+        }
+    }
+}
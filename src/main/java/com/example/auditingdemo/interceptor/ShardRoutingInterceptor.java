@@ -0,0 +1,66 @@
+package com.example.auditingdemo.interceptor;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import com.example.auditingdemo.audit.UserContext;
+import com.example.auditingdemo.service.TokenService;
+import com.example.auditingdemo.sharding.ShardContext;
+import com.example.auditingdemo.sharding.ShardRouter;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 分片路由攔截器
+ * 依呼叫者所屬公司（與 AuditEntityListener 寫入 created_company 的值相同）決定本次請求使用的分片，
+ * 必須排在 UserTokenInterceptor 之後
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "sharding.enabled", havingValue = "true")
+public class ShardRoutingInterceptor implements AsyncHandlerInterceptor {
+
+    @Autowired
+    private TokenService tokenService;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        String company = null;
+        String token = UserContext.getCurrentUser();
+        if (token != null) {
+            Map<String, String> userInfo = tokenService.getUserInfoFromToken(token);
+            if (userInfo != null) {
+                company = userInfo.get("company");
+            }
+        }
+        String shard = shardRouter.shardFor(company);
+        ShardContext.setCurrentShard(shard);
+        log.debug("公司 {} 路由到分片 {}", company, shard);
+        return true;
+    }
+
+    /**
+     * 串流輸出的第一次分派結束時不會呼叫 afterCompletion，在這裡清除，
+     * 否則同一條容器執行緒之後不在路由範圍內的請求（例如 /api/users）會寫入這個分片
+     */
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        ShardContext.clear();
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response,
+                               Object handler, Exception ex) {
+        ShardContext.clear();
+    }
+}
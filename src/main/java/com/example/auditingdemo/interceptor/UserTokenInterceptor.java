@@ -1,14 +1,23 @@
 package com.example.auditingdemo.interceptor;
 
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
 
 import com.example.auditingdemo.audit.UserContext;
+import com.example.auditingdemo.revocation.TokenRevocationService;
 import com.example.auditingdemo.service.TokenService;
+import com.example.auditingdemo.timing.RequestTiming;
+import com.example.auditingdemo.util.TokenBucketRateLimiter;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
@@ -20,17 +29,65 @@ import lombok.extern.slf4j.Slf4j;
  */
 @Slf4j
 @Component
-public class UserTokenInterceptor implements HandlerInterceptor {
+public class UserTokenInterceptor implements AsyncHandlerInterceptor {
 
     @Autowired
     private TokenService tokenService;
 
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
+    @Value("${rate-limit.enabled:true}")
+    private boolean rateLimitEnabled;
+
+    @Value("${rate-limit.token.rate-per-second:50}")
+    private double tokenRatePerSecond;
+
+    @Value("${rate-limit.token.burst:100}")
+    private int tokenBurst;
+
+    @Value("${rate-limit.company.rate-per-second:200}")
+    private double companyRatePerSecond;
+
+    @Value("${rate-limit.company.burst:400}")
+    private int companyBurst;
+
+    @Value("${rate-limit.max-callers:10000}")
+    private int maxCallers;
+
+    @Value("${rate-limit.stripes:16}")
+    private int stripes;
+
+    // 每個令牌與每個公司各自的限流器
+    private TokenBucketRateLimiter tokenRateLimiter;
+
+    private TokenBucketRateLimiter companyRateLimiter;
+
+    @PostConstruct
+    public void initRateLimiters() {
+        tokenRateLimiter = new TokenBucketRateLimiter(tokenRatePerSecond, tokenBurst, maxCallers, stripes);
+        companyRateLimiter = new TokenBucketRateLimiter(companyRatePerSecond, companyBurst, maxCallers, stripes);
+    }
+
     /**
      * 在請求處理之前執行
      * 從請求頭中獲取用戶Token並設置到UserContext中
      */
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        long start = System.nanoTime();
+        try {
+            return resolveToken(request, response);
+        } finally {
+            RequestTiming.record(RequestTiming.Phase.TOKEN, start);
+        }
+    }
+    
+    private boolean resolveToken(HttpServletRequest request, HttpServletResponse response) {
+        // preHandle 回傳 false 時 Spring 不會呼叫本攔截器的 afterCompletion，
+        // 先清掉同一條容器執行緒上可能殘留的身分，沒有令牌的請求不會沿用上一個呼叫者
+        UserContext.clear();
+        
         // 從請求頭中獲取授權令牌
         String authHeader = request.getHeader("Authorization");
         
@@ -48,8 +105,12 @@ public class UserTokenInterceptor implements HandlerInterceptor {
                 log.debug("用戶ID: {} -> 令牌: {}", userId, token);
             }
             
-            // 設置當前用戶令牌
-            UserContext.setCurrentUser(token);
+            // 已撤銷的令牌直接拒絕；絕大多數令牌只經過記憶體中的 Bloom filter
+            if (tokenRevocationService.isRevoked(token)) {
+                log.warn("已撤銷的令牌: {}", maskToken(token));
+                response.setStatus(HttpStatus.UNAUTHORIZED.value());
+                return false;
+            }
             
             // 從令牌中獲取用戶信息
             Map<String, String> userInfo = tokenService.getUserInfoFromToken(token);
@@ -60,6 +121,16 @@ public class UserTokenInterceptor implements HandlerInterceptor {
             } else {
                 log.warn("令牌無效，無法獲取用戶信息");
             }
+            
+            // 依令牌與公司限流，避免單一呼叫者拖垮所有人；
+            // 串流回應結束後的非同步分派屬於同一個請求，已在第一次分派時計算過
+            if (rateLimitEnabled && request.getDispatcherType() != DispatcherType.ASYNC
+                    && !checkRateLimit(token, userInfo, response)) {
+                return false;
+            }
+            
+            // 通過所有檢查後才設置當前用戶令牌，被拒絕的請求不留下身分
+            UserContext.setCurrentUser(token);
         } else {
             log.debug("請求中沒有找到授權令牌");
         }
@@ -68,6 +139,53 @@ public class UserTokenInterceptor implements HandlerInterceptor {
         return true;
     }
     
+    /**
+     * 檢查令牌與公司的請求速率
+     * 被限流時回傳 429 與 Retry-After；被公司限流時歸還已取得的令牌配額
+     *
+     * @return 是否允許請求繼續
+     */
+    private boolean checkRateLimit(String token, Map<String, String> userInfo, HttpServletResponse response) {
+        long waitNanos = tokenRateLimiter.tryAcquire(token);
+        String company = userInfo != null ? userInfo.get("company") : null;
+        if (waitNanos == 0 && company != null) {
+            waitNanos = companyRateLimiter.tryAcquire(company);
+            if (waitNanos > 0) {
+                tokenRateLimiter.refund(token);
+            }
+        }
+        if (waitNanos == 0) {
+            return true;
+        }
+        
+        long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L));
+        log.warn("請求過於頻繁，已限流: 令牌={}, 公司={}", maskToken(token), company);
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader("Retry-After", String.valueOf(retryAfterSeconds));
+        return false;
+    }
+    
+    /**
+     * 定期移除閒置呼叫者的令牌桶
+     */
+    @Scheduled(fixedDelayString = "${rate-limit.evict-interval-ms:60000}")
+    public void evictIdleCallers() {
+        int evicted = tokenRateLimiter.evictIdle() + companyRateLimiter.evictIdle();
+        if (evicted > 0) {
+            log.debug("移除閒置呼叫者 {} 個，目前追蹤令牌 {} 個", evicted, tokenRateLimiter.size());
+        }
+    }
+    
+    /**
+     * 非同步請求（串流輸出）的第一次分派結束時執行
+     * 此時不會呼叫 afterCompletion，必須在這裡清理，否則同一條容器執行緒的下一個請求會沿用這個令牌
+     */
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        UserContext.clear();
+    }
+    
     /**
      * 在請求完成後執行
      * 清理ThreadLocal避免內存洩漏
@@ -0,0 +1,119 @@
+package com.example.auditingdemo.job;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 非同步批次作業
+ * 由單一工作執行緒依區塊更新進度，查詢端隨時可取得一致的快照
+ */
+public class BatchJob {
+
+    public enum Status {
+        QUEUED, RUNNING, SUCCEEDED, PARTIALLY_FAILED, FAILED
+    }
+
+    private final String id;
+
+    // 提交者令牌，作業以此身分寫入審計欄位，也只有提交者與管理員能查詢
+    private final String owner;
+
+    private final String shard;
+
+    private final int total;
+
+    private final int maxReportedFailures;
+
+    private final LocalDateTime submittedTime = LocalDateTime.now();
+
+    private final Long[] ids;
+
+    private final List<BatchJobFailure> failures = new ArrayList<>();
+
+    private Status status = Status.QUEUED;
+
+    private int succeeded;
+
+    private int failed;
+
+    private int failedChunks;
+
+    private long startNanos;
+
+    private long finishNanos;
+
+    private LocalDateTime startedTime;
+
+    private LocalDateTime finishedTime;
+
+    BatchJob(String id, String owner, String shard, int total, int maxReportedFailures) {
+        this.id = id;
+        this.owner = owner;
+        this.shard = shard;
+        this.total = total;
+        this.maxReportedFailures = maxReportedFailures;
+        this.ids = new Long[total];
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public String getShard() {
+        return shard;
+    }
+
+    public synchronized LocalDateTime getFinishedTime() {
+        return finishedTime;
+    }
+
+    synchronized void start() {
+        status = Status.RUNNING;
+        startedTime = LocalDateTime.now();
+        startNanos = System.nanoTime();
+    }
+
+    synchronized void chunkSucceeded(int fromIndex, List<Long> savedIds) {
+        for (int i = 0; i < savedIds.size(); i++) {
+            ids[fromIndex + i] = savedIds.get(i);
+        }
+        succeeded += savedIds.size();
+    }
+
+    synchronized void chunkFailed(int chunk, int fromIndex, int toIndex, String error) {
+        failed += toIndex - fromIndex;
+        failedChunks++;
+        if (failures.size() < maxReportedFailures) {
+            failures.add(new BatchJobFailure(chunk, fromIndex, toIndex, error));
+        }
+    }
+
+    synchronized void finish() {
+        finishedTime = LocalDateTime.now();
+        finishNanos = System.nanoTime();
+        if (failed == 0) {
+            status = Status.SUCCEEDED;
+        } else {
+            status = succeeded == 0 ? Status.FAILED : Status.PARTIALLY_FAILED;
+        }
+    }
+
+    public synchronized BatchJobStatus toStatus() {
+        double itemsPerSecond = 0;
+        if (startedTime != null) {
+            long elapsedNanos = (finishedTime != null ? finishNanos : System.nanoTime()) - startNanos;
+            itemsPerSecond = elapsedNanos > 0 ? (succeeded + failed) * 1e9 / elapsedNanos : 0;
+        }
+        return new BatchJobStatus(id, status, total, succeeded + failed, succeeded, failed,
+                Math.round(itemsPerSecond * 10) / 10.0, submittedTime, startedTime, finishedTime,
+                finishedTime != null ? Arrays.asList(ids.clone()) : null,
+                failures.isEmpty() ? null : List.copyOf(failures),
+                failedChunks > failures.size());
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.auditingdemo.job;
+
+/**
+ * 失敗的區塊，區塊內的資料全部回滾，可依範圍重新送出
+ *
+ * @param chunk 區塊序號
+ * @param fromIndex 起始位置（含）
+ * @param toIndex 結束位置（不含）
+ * @param error 錯誤訊息
+ */
+public record BatchJobFailure(int chunk, int fromIndex, int toIndex, String error) {
+}
@@ -0,0 +1,19 @@
+package com.example.auditingdemo.job;
+
+import org.springframework.http.HttpStatus;
+
+import lombok.Getter;
+
+/**
+ * 無法受理非同步批次作業
+ */
+@Getter
+public class BatchJobRejectedException extends RuntimeException {
+
+    private final HttpStatus status;
+
+    public BatchJobRejectedException(HttpStatus status, String message) {
+        super(message);
+        this.status = status;
+    }
+}
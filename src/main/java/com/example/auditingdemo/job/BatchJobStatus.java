@@ -0,0 +1,29 @@
+package com.example.auditingdemo.job;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * 非同步批次作業的狀態
+ *
+ * @param id 作業編號
+ * @param status 作業狀態
+ * @param total 總筆數
+ * @param processed 已處理筆數（成功與失敗）
+ * @param succeeded 成功筆數
+ * @param failed 失敗筆數
+ * @param itemsPerSecond 開始處理後的平均每秒筆數
+ * @param submittedTime 受理時間
+ * @param startedTime 開始處理時間
+ * @param finishedTime 完成時間
+ * @param ids 與請求順序相同的顧客編號，失敗的區塊為 null；完成後才列出
+ * @param failures 失敗的區塊
+ * @param failuresTruncated 失敗的區塊超過上限，只列出前面幾個
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BatchJobStatus(String id, BatchJob.Status status, int total, int processed, int succeeded, int failed,
+        double itemsPerSecond, LocalDateTime submittedTime, LocalDateTime startedTime, LocalDateTime finishedTime,
+        List<Long> ids, List<BatchJobFailure> failures, boolean failuresTruncated) {
+}
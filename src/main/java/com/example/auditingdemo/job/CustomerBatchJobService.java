@@ -0,0 +1,218 @@
+package com.example.auditingdemo.job;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.auditingdemo.audit.UserContext;
+import com.example.auditingdemo.model.Customer;
+import com.example.auditingdemo.repository.CustomerRepository;
+import com.example.auditingdemo.sharding.ShardContext;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 顧客批次新增的非同步作業
+ * 受理後立即回傳作業編號，由固定大小的工作執行緒池依 chunk-size 分區塊寫入，每個區塊一個交易：
+ * 失敗的區塊回滾並記錄範圍，其他區塊照常寫入。工作執行緒沿用提交者的令牌與分片，審計欄位與同步新增相同。
+ *
+ * 每個呼叫者同時排隊與執行中的作業不超過 max-per-caller；作業狀態保存在本節點記憶體，
+ * 完成後保留 retention-seconds 供查詢。
+ * 排隊與執行中作業的請求內容也在記憶體中，除了作業數 max-queued 之外，總筆數也不超過 max-queued-items，
+ * 否則 max-items x max-queued 筆顧客可能耗盡堆積
+ */
+@Slf4j
+@Service
+public class CustomerBatchJobService {
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${job.worker-threads:4}")
+    private int workerThreads;
+
+    @Value("${job.max-queued:100}")
+    private int maxQueued;
+
+    @Value("${job.max-per-caller:2}")
+    private int maxPerCaller;
+
+    @Value("${job.max-items:100000}")
+    private int maxItems;
+
+    @Value("${job.max-queued-items:200000}")
+    private long maxQueuedItems;
+
+    @Value("${job.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${job.max-reported-failures:100}")
+    private int maxReportedFailures;
+
+    @Value("${job.retention-seconds:3600}")
+    private long retentionSeconds;
+
+    @Value("${job.shutdown-timeout-ms:30000}")
+    private long shutdownTimeoutMs;
+
+    private final Map<String, BatchJob> jobs = new ConcurrentHashMap<>();
+
+    // 呼叫者 -> 排隊與執行中的作業數
+    private final Map<String, Integer> activeByCaller = new ConcurrentHashMap<>();
+
+    // 排隊與執行中作業的總筆數
+    private final AtomicLong queuedItems = new AtomicLong();
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        executor = new ThreadPoolExecutor(workerThreads, workerThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxQueued),
+                Thread.ofPlatform().name("batch-job-", 0).daemon().factory());
+    }
+
+    /**
+     * 受理批次新增
+     *
+     * @param customers 要新增的顧客
+     * @param owner 提交者令牌
+     * @return 已排入的作業
+     * @throws BatchJobRejectedException 筆數超過上限（413）、呼叫者的作業數已達上限（429）、
+     *         工作佇列已滿或排隊筆數已達上限（503）
+     */
+    public BatchJob submit(List<Customer> customers, String owner) {
+        if (customers.size() > maxItems) {
+            throw new BatchJobRejectedException(HttpStatus.PAYLOAD_TOO_LARGE, "筆數超過 " + maxItems);
+        }
+        if (!acquire(owner)) {
+            throw new BatchJobRejectedException(HttpStatus.TOO_MANY_REQUESTS,
+                    "同時進行的作業已達 " + maxPerCaller + " 個");
+        }
+        if (!reserveItems(customers.size())) {
+            release(owner);
+            throw new BatchJobRejectedException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "排隊中的作業已達 " + maxQueuedItems + " 筆");
+        }
+        BatchJob job = new BatchJob(UUID.randomUUID().toString(), owner, ShardContext.getCurrentShard(),
+                customers.size(), maxReportedFailures);
+        jobs.put(job.getId(), job);
+        try {
+            executor.execute(() -> run(job, customers));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            queuedItems.addAndGet(-customers.size());
+            release(owner);
+            throw new BatchJobRejectedException(HttpStatus.SERVICE_UNAVAILABLE, "作業佇列已滿");
+        }
+        log.info("受理顧客批次作業 {}，共 {} 筆", job.getId(), customers.size());
+        return job;
+    }
+
+    public Optional<BatchJob> find(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    private void run(BatchJob job, List<Customer> customers) {
+        // 工作執行緒沿用提交者的身分與分片
+        UserContext.setCurrentUser(job.getOwner());
+        if (job.getShard() != null) {
+            ShardContext.setCurrentShard(job.getShard());
+        }
+        job.start();
+        try {
+            int chunk = 0;
+            for (int from = 0; from < customers.size(); from += chunkSize, chunk++) {
+                int to = Math.min(from + chunkSize, customers.size());
+                List<Customer> slice = customers.subList(from, to);
+                try {
+                    List<Customer> saved = transactionTemplate.execute(status -> customerRepository.saveAll(slice));
+                    job.chunkSucceeded(from, saved.stream().map(Customer::getId).toList());
+                } catch (RuntimeException e) {
+                    log.warn("顧客批次作業 {} 的區塊 {}（{}-{}）失敗: {}", job.getId(), chunk, from, to, e.getMessage());
+                    job.chunkFailed(chunk, from, to, e.getMessage());
+                }
+            }
+        } finally {
+            job.finish();
+            queuedItems.addAndGet(-customers.size());
+            release(job.getOwner());
+            UserContext.clear();
+            ShardContext.clear();
+            BatchJobStatus status = job.toStatus();
+            log.info("顧客批次作業 {} 完成: {}，成功 {} 筆，失敗 {} 筆，每秒 {} 筆",
+                    job.getId(), status.status(), status.succeeded(), status.failed(), status.itemsPerSecond());
+        }
+    }
+
+    private boolean reserveItems(int items) {
+        long current;
+        do {
+            current = queuedItems.get();
+            if (current + items > maxQueuedItems) {
+                return false;
+            }
+        } while (!queuedItems.compareAndSet(current, current + items));
+        return true;
+    }
+
+    private boolean acquire(String owner) {
+        boolean[] acquired = {false};
+        activeByCaller.compute(owner, (key, count) -> {
+            int active = count != null ? count : 0;
+            if (active >= maxPerCaller) {
+                return count;
+            }
+            acquired[0] = true;
+            return active + 1;
+        });
+        return acquired[0];
+    }
+
+    private void release(String owner) {
+        activeByCaller.computeIfPresent(owner, (key, count) -> count <= 1 ? null : count - 1);
+    }
+
+    /**
+     * 移除完成超過保留時間的作業
+     */
+    @Scheduled(fixedDelayString = "${job.purge-interval-ms:60000}")
+    public void purgeFinished() {
+        LocalDateTime cutoff = LocalDateTime.now().minusSeconds(retentionSeconds);
+        jobs.values().removeIf(job -> {
+            LocalDateTime finishedTime = job.getFinishedTime();
+            return finishedTime != null && finishedTime.isBefore(cutoff);
+        });
+    }
+
+    /**
+     * 關閉時不再受理新作業，等待已受理的作業完成
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(shutdownTimeoutMs, TimeUnit.MILLISECONDS)) {
+            log.warn("關閉前仍有 {} 個顧客批次作業未完成", executor.getActiveCount() + executor.getQueue().size());
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.auditingdemo.listener;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.example.auditingdemo.audit.history.AuditHistoryWriter;
+import com.example.auditingdemo.model.base.BaseAuditEntity;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * 審計歷史監聽器
+ * 在實體寫入資料庫後（仍在同一交易內）把變更後的內容記錄到 pf_audit_history
+ */
+@Component
+public class AuditHistoryListener {
+
+    @Autowired
+    private AuditHistoryWriter historyWriter;
+
+    @PostPersist
+    public void postPersist(Object entity) {
+        record(entity, "CREATE");
+    }
+
+    @PostUpdate
+    public void postUpdate(Object entity) {
+        record(entity, "UPDATE");
+    }
+
+    @PostRemove
+    public void postRemove(Object entity) {
+        record(entity, "DELETE");
+    }
+
+    private void record(Object entity, String operation) {
+        if (entity instanceof BaseAuditEntity auditEntity) {
+            historyWriter.append(auditEntity, operation);
+        }
+    }
+}
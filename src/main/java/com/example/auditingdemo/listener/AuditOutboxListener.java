@@ -0,0 +1,46 @@
+package com.example.auditingdemo.listener;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.example.auditingdemo.audit.outbox.AuditOutboxWriter;
+import com.example.auditingdemo.model.base.BaseAuditEntity;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 審計事件 Outbox 監聽器
+ * 在實體寫入資料庫後（仍在同一交易內）把變更記錄到 outbox，
+ * 不直接呼叫下游系統，避免拖慢請求執行緒
+ */
+@Slf4j
+@Component
+public class AuditOutboxListener {
+
+    @Autowired
+    private AuditOutboxWriter outboxWriter;
+
+    @PostPersist
+    public void postPersist(Object entity) {
+        record(entity, "CREATE");
+    }
+
+    @PostUpdate
+    public void postUpdate(Object entity) {
+        record(entity, "UPDATE");
+    }
+
+    @PostRemove
+    public void postRemove(Object entity) {
+        record(entity, "DELETE");
+    }
+
+    private void record(Object entity, String operation) {
+        if (entity instanceof BaseAuditEntity auditEntity) {
+            outboxWriter.append(auditEntity, operation);
+        }
+    }
+}
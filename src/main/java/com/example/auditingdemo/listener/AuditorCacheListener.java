@@ -0,0 +1,41 @@
+package com.example.auditingdemo.listener;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.auditingdemo.audit.CustomAuditorAware;
+import com.example.auditingdemo.model.User;
+
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * 審計者快取監聽器
+ * 用戶修改或刪除後移除 CustomAuditorAware 中的快取；交易結束時再移除一次，
+ * 避免其他請求在提交前讀到舊資料又放回快取。
+ * CustomAuditorAware 依賴 UserRepository，建立 EntityManagerFactory 時還不能取得，因此延後到使用時才取得
+ */
+@Component
+public class AuditorCacheListener {
+
+    @Autowired
+    private ObjectProvider<CustomAuditorAware> customAuditorAwareProvider;
+
+    @PostUpdate
+    @PostRemove
+    public void evict(User user) {
+        CustomAuditorAware customAuditorAware = customAuditorAwareProvider.getObject();
+        customAuditorAware.evict(user.getId(), user.getUsername());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    customAuditorAware.evict(user.getId(), user.getUsername());
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.auditingdemo.model;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 單一公司在查詢期間內的顧客異動統計
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CompanyAuditSummary {
+
+    private String company;
+
+    private long modifiedCount;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime lastModifiedTime;
+
+    // 資料所在的分片，公司搬移分片期間可能出現在多個分片
+    private List<String> shards;
+}
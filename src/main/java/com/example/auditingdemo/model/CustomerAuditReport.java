@@ -0,0 +1,21 @@
+package com.example.auditingdemo.model;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 跨公司顧客異動報表
+ * failedShards 不為空時表示部分分片查詢失敗或逾時，報表不完整
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CustomerAuditReport {
+
+    private List<CompanyAuditSummary> companies;
+
+    private List<String> failedShards;
+}
@@ -0,0 +1,53 @@
+package com.example.auditingdemo.model;
+
+import java.time.LocalDateTime;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 顧客審計資訊列
+ * 非阻塞查詢直接從 SQL 結果組出，欄位與 AuditJsonRows.writeCustomerAudit 輸出的相同
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CustomerAuditRow {
+
+    private Long customerId;
+
+    private String customerName;
+
+    // 創建者信息
+    private String createdBy;
+
+    private String createdByName;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime createdTime;
+
+    private String createdCompany;
+
+    private String createdUnit;
+
+    private String createdName;
+
+    // 修改者信息
+    private String modifiedBy;
+
+    private String modifiedByName;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime modifiedTime;
+
+    private String modifiedCompany;
+
+    private String modifiedUnit;
+
+    private String modifiedName;
+}
@@ -0,0 +1,21 @@
+package com.example.auditingdemo.model;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 顧客搜尋結果頁
+ * nextCursor 為本頁最後一筆的顧客編號，作為下一頁的 after 參數；沒有下一頁時為 null
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CustomerSearchPage {
+
+    private List<CustomerSummary> items;
+
+    private Long nextCursor;
+}
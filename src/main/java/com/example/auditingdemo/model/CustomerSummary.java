@@ -0,0 +1,25 @@
+package com.example.auditingdemo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 顧客摘要
+ * 搜尋結果的投影，只查詢列表需要的欄位，不載入審計關聯的用戶實體
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CustomerSummary {
+
+    private Long id;
+
+    private String name;
+
+    private String email;
+
+    private String phone;
+
+    private String company;
+}
@@ -0,0 +1,21 @@
+package com.example.auditingdemo.model;
+
+import java.time.LocalDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 實體版本資訊
+ * 條件式請求只需比對版本與修改時間，不必載入整個實體
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EntityVersion {
+
+    private Long version;
+
+    private LocalDateTime modifiedTime;
+}
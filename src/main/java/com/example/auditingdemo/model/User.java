@@ -1,9 +1,7 @@
 package com.example.auditingdemo.model;
 
-import org.springframework.data.jpa.domain.support.AuditingEntityListener;
-
 import com.example.auditingdemo.audit.UserAuditableInterface;
-import com.example.auditingdemo.listener.AuditEntityListener;
+import com.example.auditingdemo.listener.AuditorCacheListener;
 import com.example.auditingdemo.model.base.BaseAuditEntity;
 
 import jakarta.persistence.Column;
@@ -25,7 +23,7 @@ import lombok.NoArgsConstructor;
  */
 @Entity
 @Table(name = "pf_user")
-@EntityListeners({AuditingEntityListener.class, AuditEntityListener.class})
+@EntityListeners(AuditorCacheListener.class)
 @Data
 @EqualsAndHashCode(callSuper = true)
 @Builder
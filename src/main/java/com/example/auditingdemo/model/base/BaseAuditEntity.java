@@ -8,23 +8,33 @@ import org.springframework.data.annotation.LastModifiedBy;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
+import com.example.auditingdemo.listener.AuditEntityListener;
+import com.example.auditingdemo.listener.AuditHistoryListener;
+import com.example.auditingdemo.listener.AuditOutboxListener;
 import com.example.auditingdemo.model.User;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.EntityListeners;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.MappedSuperclass;
+import jakarta.persistence.Version;
 import lombok.Getter;
 import lombok.Setter;
 
 @Getter
 @Setter
 @MappedSuperclass
-@EntityListeners(AuditingEntityListener.class)
+@EntityListeners({AuditingEntityListener.class, AuditEntityListener.class, AuditHistoryListener.class, AuditOutboxListener.class})
 public abstract class BaseAuditEntity {
     
+    /**
+     * 實體主鍵，由子類別的 @Id 欄位提供
+     */
+    public abstract Long getId();
+    
     @CreatedBy
     @ManyToOne
     @JoinColumn(name = "created_by", nullable = false, updatable = false)
@@ -62,4 +72,10 @@ public abstract class BaseAuditEntity {
     
     @Column(name = "modified_name")
     private String modifiedName;
+    
+    // 資料版本，每次更新遞增，用於 ETag 與樂觀鎖
+    @Version
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @Column(name = "version", nullable = false)
+    private Long version;
 } 
\ No newline at end of file
@@ -1,12 +1,54 @@
 package com.example.auditingdemo.repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 import com.example.auditingdemo.model.Customer;
+import com.example.auditingdemo.model.EntityVersion;
+
+import jakarta.persistence.QueryHint;
 
 /**
  * 顧客資料訪問接口
  */
-public interface CustomerRepository extends JpaRepository<Customer, Long> {
+public interface CustomerRepository extends JpaRepository<Customer, Long>, CustomerSearchRepository {
+    
+    /**
+     * 只查詢版本與修改時間，供條件式請求判斷是否需要回傳完整內容
+     */
+    @Query("select new com.example.auditingdemo.model.EntityVersion(c.version, c.modifiedTime) from Customer c where c.id = :id")
+    Optional<EntityVersion> findVersionById(@Param("id") Long id);
+    
+    /**
+     * 以資料庫游標串流讀取全部資料，並一次載入審計用戶，須在交易內使用並關閉串流
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select c from Customer c join fetch c.createdBy join fetch c.modifiedBy")
+    Stream<Customer> streamAll();
+    
+    /**
+     * 查詢修改時間在範圍內的顧客，並一次載入創建者與修改者，避免逐筆載入審計用戶
+     * 創建者是立即載入的關聯，沒有一起載入時，創建者與修改者不同的顧客仍會逐筆查詢
+     */
+    @Query("select c from Customer c join fetch c.createdBy join fetch c.modifiedBy "
+            + "where c.modifiedTime between :start and :end")
+    List<Customer> findModifiedBetween(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+    
+    List<Customer> findByCompany(String company);
     
-} 
\ No newline at end of file
+    /**
+     * 以單一 UPDATE 修改公司名稱，不經過實體監聽器；審計欄位與歷史只在觸發器審計模式下會寫入
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("update Customer c set c.company = :to where c.company = :from")
+    int updateCompany(@Param("from") String from, @Param("to") String to);
+}
@@ -0,0 +1,39 @@
+package com.example.auditingdemo.repository;
+
+import java.util.List;
+
+import com.example.auditingdemo.model.CustomerSummary;
+
+/**
+ * 顧客搜尋資料訪問接口
+ */
+public interface CustomerSearchRepository {
+
+    /**
+     * 可搜尋的顧客欄位
+     */
+    enum Field {
+        NAME("name"), EMAIL("email"), COMPANY("company"), PHONE("phone");
+
+        private final String property;
+
+        Field(String property) {
+            this.property = property;
+        }
+
+        public String getProperty() {
+            return property;
+        }
+    }
+
+    /**
+     * 以前綴或子字串不分大小寫搜尋顧客，依編號遞增做 keyset 分頁
+     *
+     * @param query 搜尋字串
+     * @param fields 搜尋的欄位，任一欄位符合即可
+     * @param prefix true 為前綴比對，false 為子字串比對
+     * @param afterId 上一頁最後一筆的編號，第一頁為 null
+     * @param limit 最多回傳筆數
+     */
+    List<CustomerSummary> search(String query, List<Field> fields, boolean prefix, Long afterId, int limit);
+}
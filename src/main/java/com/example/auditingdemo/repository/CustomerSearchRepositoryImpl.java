@@ -0,0 +1,45 @@
+package com.example.auditingdemo.repository;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.example.auditingdemo.model.CustomerSummary;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+/**
+ * 顧客搜尋實作
+ * 條件寫成 lower(欄位) LIKE，對應 init-scripts 中建立在 lower(欄位) 上的 trigram 與 text_pattern_ops 索引
+ */
+public class CustomerSearchRepositoryImpl implements CustomerSearchRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<CustomerSummary> search(String query, List<Field> fields, boolean prefix, Long afterId, int limit) {
+        String escaped = query.toLowerCase()
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+        String pattern = prefix ? escaped + "%" : "%" + escaped + "%";
+
+        String condition = fields.stream()
+                .map(field -> "lower(c." + field.getProperty() + ") like :pattern escape '\\'")
+                .collect(Collectors.joining(" or ", "(", ")"));
+        String jpql = "select new com.example.auditingdemo.model.CustomerSummary(c.id, c.name, c.email, c.phone, c.company) "
+                + "from Customer c where " + condition
+                + (afterId != null ? " and c.id > :afterId" : "")
+                + " order by c.id";
+
+        TypedQuery<CustomerSummary> typedQuery = entityManager.createQuery(jpql, CustomerSummary.class)
+                .setParameter("pattern", pattern)
+                .setMaxResults(limit);
+        if (afterId != null) {
+            typedQuery.setParameter("afterId", afterId);
+        }
+        return typedQuery.getResultList();
+    }
+}
@@ -1,12 +1,33 @@
 package com.example.auditingdemo.repository;
 
 import java.util.Optional;
+import java.util.stream.Stream;
 
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import com.example.auditingdemo.model.EntityVersion;
 import com.example.auditingdemo.model.User;
 
+import jakarta.persistence.QueryHint;
+
 public interface UserRepository extends JpaRepository<User, Long> {
     
     Optional<User> findByUsername(String username);
+    
+    /**
+     * 只查詢版本與修改時間，供條件式請求判斷是否需要回傳完整內容
+     */
+    @Query("select new com.example.auditingdemo.model.EntityVersion(u.version, u.modifiedTime) from User u where u.id = :id")
+    Optional<EntityVersion> findVersionById(@Param("id") Long id);
+    
+    /**
+     * 以資料庫游標串流讀取全部資料，並一次載入審計用戶，須在交易內使用並關閉串流
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select u from User u left join fetch u.createdBy left join fetch u.modifiedBy")
+    Stream<User> streamAll();
 }
\ No newline at end of file
@@ -0,0 +1,65 @@
+package com.example.auditingdemo.revocation;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import com.example.auditingdemo.util.PgNotificationListener;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 令牌撤銷通知監聽器
+ * LISTEN token_revoked，任何節點撤銷令牌並提交後，所有節點立即把它加入 Bloom filter。
+ * 每次開始接收通知（包含重新連線）時重建 Bloom filter，補上沒有收到通知的撤銷
+ */
+@Slf4j
+@Component
+public class TokenRevocationListener extends PgNotificationListener {
+
+    @Autowired
+    private TokenRevocationService revocationService;
+
+    @Value("${token.revocation.listen-timeout-ms:1000}")
+    private int listenTimeoutMs;
+
+    @Value("${token.revocation.reconnect-delay-ms:2000}")
+    private long reconnectDelayMs;
+
+    public TokenRevocationListener() {
+        super("token_revoked");
+    }
+
+    @Override
+    protected boolean isActive() {
+        return revocationService.isEnabled();
+    }
+
+    @Override
+    protected int getListenTimeoutMs() {
+        return listenTimeoutMs;
+    }
+
+    @Override
+    protected long getReconnectDelayMs() {
+        return reconnectDelayMs;
+    }
+
+    /**
+     * 開始 LISTEN 之後重建，涵蓋上一次載入到開始接收通知之間的撤銷
+     */
+    @Override
+    protected void onConnected() {
+        try {
+            revocationService.rebuild();
+        } catch (DataAccessException e) {
+            log.error("重新連線後重建令牌撤銷 Bloom filter 失敗: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    protected void onNotification(String payload) {
+        revocationService.onRevoked(payload);
+    }
+}
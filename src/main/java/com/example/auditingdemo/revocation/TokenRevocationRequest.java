@@ -0,0 +1,13 @@
+package com.example.auditingdemo.revocation;
+
+import java.time.LocalDateTime;
+
+/**
+ * 撤銷令牌請求
+ *
+ * @param token 要撤銷的令牌（Authorization 標頭中 Bearer 之後的值）
+ * @param reason 撤銷原因
+ * @param expiresTime 令牌本身的到期時間，null 表示永久撤銷
+ */
+public record TokenRevocationRequest(String token, String reason, LocalDateTime expiresTime) {
+}
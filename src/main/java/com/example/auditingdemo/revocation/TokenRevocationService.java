@@ -0,0 +1,239 @@
+package com.example.auditingdemo.revocation;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.auditingdemo.util.BloomFilter;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 令牌撤銷服務
+ * 每個節點把 pf_revoked_token 的全部撤銷記錄載入記憶體的 Bloom filter（見 init-scripts/11-revoked-token.sql）：
+ * 絕大多數請求的令牌不在 Bloom filter 中，不查詢資料庫就放行；命中時才以主鍵確認，結果暫存到下一次重建。
+ *
+ * 新的撤銷由 TokenRevocationListener 收到 NOTIFY token_revoked 後立即加入 Bloom filter，
+ * 並定期重建以移除已到期的撤銷、補上通知連線中斷期間漏掉的撤銷
+ */
+@Slf4j
+@Service
+public class TokenRevocationService {
+
+    private static final String ACTIVE_CONDITION = "(expires_time IS NULL OR expires_time > now())";
+
+    private static final String COUNT_SQL = "SELECT count(*) FROM pf_revoked_token WHERE " + ACTIVE_CONDITION;
+
+    private static final String LOAD_SQL = "SELECT token_hash FROM pf_revoked_token WHERE " + ACTIVE_CONDITION;
+
+    private static final String EXISTS_SQL =
+            "SELECT EXISTS (SELECT 1 FROM pf_revoked_token WHERE token_hash = ? AND " + ACTIVE_CONDITION + ")";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO pf_revoked_token (token_hash, reason, revoked_by, expires_time) VALUES (?, ?, ?, ?) "
+            + "ON CONFLICT (token_hash) DO NOTHING";
+
+    private static final String PURGE_SQL = "DELETE FROM pf_revoked_token WHERE expires_time < now()";
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${token.revocation.enabled:false}")
+    private boolean enabled;
+
+    @Value("${token.revocation.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    // Bloom filter 的最小容量；重建時容量為撤銷筆數的兩倍，保留兩次重建之間新增撤銷的空間
+    @Value("${token.revocation.min-capacity:10000}")
+    private long minCapacity;
+
+    @Value("${token.revocation.max-cached-results:10000}")
+    private int maxCachedResults;
+
+    private final Object filterLock = new Object();
+
+    private volatile BloomFilter filter;
+
+    // 重建期間收到的撤銷同時加入新的 Bloom filter
+    private BloomFilter building;
+
+    // Bloom filter 命中後的確認結果（令牌雜湊 -> 是否撤銷），重建時清空
+    private final Map<String, Boolean> confirmed = new ConcurrentHashMap<>();
+
+    // 每次加入撤銷遞增，確認查詢前後不同時結果不暫存，避免把撤銷前查到的結果留下
+    private final AtomicLong revocationEpoch = new AtomicLong();
+
+    private final LongAdder negatives = new LongAdder();
+
+    private final LongAdder falsePositives = new LongAdder();
+
+    private final LongAdder revokedHits = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        filter = new BloomFilter(minCapacity, falsePositiveRate);
+        if (!enabled) {
+            return;
+        }
+        FunctionCounter.builder("token.revocation.checks", negatives, LongAdder::sum)
+                .tag("result", "negative")
+                .description("Bloom filter 判定未撤銷、不查詢資料庫的次數")
+                .register(meterRegistry);
+        FunctionCounter.builder("token.revocation.checks", falsePositives, LongAdder::sum)
+                .tag("result", "false_positive")
+                .register(meterRegistry);
+        FunctionCounter.builder("token.revocation.checks", revokedHits, LongAdder::sum)
+                .tag("result", "revoked")
+                .register(meterRegistry);
+        rebuild();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 令牌是否已撤銷
+     * 確認查詢失敗時視為已撤銷，只影響 Bloom filter 命中的令牌
+     */
+    public boolean isRevoked(String token) {
+        if (!enabled) {
+            return false;
+        }
+        byte[] hash = hash(token);
+        if (!filter.mightContain(hash)) {
+            negatives.increment();
+            return false;
+        }
+        String key = HEX.formatHex(hash);
+        Boolean cached = confirmed.get(key);
+        if (cached == null) {
+            long epoch = revocationEpoch.get();
+            try {
+                cached = Boolean.TRUE.equals(jdbcTemplate.queryForObject(EXISTS_SQL, Boolean.class, hash));
+            } catch (DataAccessException e) {
+                log.error("令牌撤銷確認查詢失敗，拒絕請求: {}", e.getMessage());
+                return true;
+            }
+            if (confirmed.size() >= maxCachedResults) {
+                confirmed.clear();
+            }
+            confirmed.put(key, cached);
+            if (revocationEpoch.get() != epoch) {
+                confirmed.remove(key);
+            }
+        }
+        (cached ? revokedHits : falsePositives).increment();
+        return cached;
+    }
+
+    /**
+     * 撤銷令牌，提交後由資料庫通知所有節點
+     *
+     * @param expiresTime 令牌本身的到期時間，null 表示永久撤銷
+     * @return false 表示令牌先前已撤銷
+     */
+    public boolean revoke(String token, String reason, Long revokedBy, LocalDateTime expiresTime) {
+        byte[] hash = hash(token);
+        int inserted = jdbcTemplate.update(INSERT_SQL, hash, reason, revokedBy,
+                expiresTime != null ? Timestamp.valueOf(expiresTime) : null);
+        onRevoked(HEX.formatHex(hash));
+        log.info("已撤銷令牌 {}，原因: {}", HEX.formatHex(hash, 0, 8), reason);
+        return inserted > 0;
+    }
+
+    /**
+     * 加入新的撤銷，供撤銷通知與本節點撤銷後呼叫
+     *
+     * @param hexHash 令牌雜湊的十六進位字串
+     */
+    public void onRevoked(String hexHash) {
+        byte[] hash;
+        try {
+            hash = HEX.parseHex(hexHash);
+        } catch (IllegalArgumentException e) {
+            log.warn("無法解析的令牌撤銷通知: {}", hexHash);
+            return;
+        }
+        revocationEpoch.incrementAndGet();
+        synchronized (filterLock) {
+            filter.put(hash);
+            if (building != null) {
+                building.put(hash);
+            }
+        }
+        confirmed.remove(hexHash);
+    }
+
+    /**
+     * 重建 Bloom filter：刪除已到期的撤銷，依目前筆數配置新的位元陣列後整批替換
+     */
+    @Scheduled(fixedDelayString = "${token.revocation.rebuild-interval-ms:300000}",
+            initialDelayString = "${token.revocation.rebuild-interval-ms:300000}")
+    public void scheduledRebuild() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            rebuild();
+        } catch (DataAccessException e) {
+            log.error("重建令牌撤銷 Bloom filter 失敗，沿用目前的資料: {}", e.getMessage());
+        }
+    }
+
+    public void rebuild() {
+        long start = System.nanoTime();
+        int purged = jdbcTemplate.update(PURGE_SQL);
+        Long count = jdbcTemplate.queryForObject(COUNT_SQL, Long.class);
+        BloomFilter next = new BloomFilter(Math.max(minCapacity, (count != null ? count : 0) * 2), falsePositiveRate);
+        synchronized (filterLock) {
+            building = next;
+        }
+        try {
+            jdbcTemplate.query(LOAD_SQL, rs -> {
+                next.put(rs.getBytes(1));
+            });
+            synchronized (filterLock) {
+                filter = next;
+            }
+            confirmed.clear();
+        } finally {
+            synchronized (filterLock) {
+                building = null;
+            }
+        }
+        log.info("令牌撤銷 Bloom filter 已重建: {} 筆撤銷，{} 位元，{} 個雜湊，刪除到期 {} 筆，耗時 {} ms",
+                count, next.getBitSize(), next.getHashCount(), purged, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static byte[] hash(String token) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
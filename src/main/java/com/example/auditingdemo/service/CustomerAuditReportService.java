@@ -0,0 +1,159 @@
+package com.example.auditingdemo.service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.example.auditingdemo.model.CompanyAuditSummary;
+import com.example.auditingdemo.model.CustomerAuditReport;
+import com.example.auditingdemo.sharding.ShardRouter;
+import com.example.auditingdemo.timing.RequestTiming;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 跨公司顧客審計報表服務
+ * 啟用分片時同時對每個分片查詢（scatter），再依公司合併（gather）；
+ * 未啟用分片時只有一個分片，也就是主要資料來源
+ */
+@Slf4j
+@Service
+public class CustomerAuditReportService {
+
+    // 修改人員公司可能是字串欄位，或啟用字典編碼後的編號欄位；
+    // 字典模式只更新編號欄位，字串欄位可能是轉換前的舊值，兩者都有時以編號為準
+    private static final String SUMMARY_SQL =
+            "SELECT COALESCE(d.value, c.modified_company) AS modified_company, count(*) AS modified_count, "
+            + "max(c.modified_time) AS last_modified_time "
+            + "FROM pf_customer c LEFT JOIN pf_audit_dict d ON d.id = c.modified_company_id "
+            + "WHERE c.modified_time >= ? AND c.modified_time <= ? "
+            + "GROUP BY 1";
+
+    // 未啟用分片時的分片名稱
+    private static final String SINGLE_SHARD = "default";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ObjectProvider<ShardRouter> shardRouterProvider;
+
+    @Value("${sharding.scatter-timeout-ms:10000}")
+    private long scatterTimeoutMs;
+
+    // 每個分片查詢各用一條虛擬執行緒，等待資料庫時不佔用平台執行緒
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * 單一分片的查詢結果列
+     */
+    private record ShardRow(String shard, String company, long modifiedCount, LocalDateTime lastModifiedTime) {
+    }
+
+    /**
+     * 統計查詢期間內各公司的顧客異動
+     * 單一分片失敗或逾時不會讓整份報表失敗，而是列在 failedShards
+     */
+    public CustomerAuditReport summarize(LocalDateTime start, LocalDateTime end) {
+        Map<String, CompletableFuture<List<ShardRow>>> futures = new LinkedHashMap<>();
+        // 分片查詢在虛擬執行緒上執行，SQL 仍計入發出請求的計時
+        RequestTiming timing = RequestTiming.current();
+        shards().forEach((shard, shardDataSource) -> futures.put(shard,
+                CompletableFuture.supplyAsync(() -> {
+                    RequestTiming.attach(timing);
+                    try {
+                        return queryShard(shard, shardDataSource, start, end);
+                    } finally {
+                        RequestTiming.clear();
+                    }
+                }, executor)));
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(scatterTimeoutMs);
+        List<ShardRow> rows = new ArrayList<>();
+        List<String> failedShards = new ArrayList<>();
+        futures.forEach((shard, future) -> {
+            try {
+                rows.addAll(future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                failedShards.add(shard);
+                log.warn("分片 {} 查詢逾時", shard);
+            } catch (ExecutionException e) {
+                failedShards.add(shard);
+                log.warn("分片 {} 查詢失敗: {}", shard, e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failedShards.add(shard);
+            }
+        });
+        return new CustomerAuditReport(merge(rows), failedShards);
+    }
+
+    private Map<String, DataSource> shards() {
+        ShardRouter shardRouter = shardRouterProvider.getIfAvailable();
+        if (shardRouter != null) {
+            return shardRouter.getShards();
+        }
+        return Map.of(SINGLE_SHARD, dataSource);
+    }
+
+    private List<ShardRow> queryShard(String shard, DataSource shardDataSource,
+                                      LocalDateTime start, LocalDateTime end) {
+        // 直接使用分片的資料來源，不經過依請求路由的主要資料來源
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(shardDataSource);
+        jdbcTemplate.setQueryTimeout((int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(scatterTimeoutMs)));
+        return jdbcTemplate.query(SUMMARY_SQL, (rs, rowNum) -> new ShardRow(
+                shard,
+                rs.getString("modified_company"),
+                rs.getLong("modified_count"),
+                rs.getTimestamp("last_modified_time").toLocalDateTime()),
+                Timestamp.valueOf(start), Timestamp.valueOf(end));
+    }
+
+    /**
+     * 依公司合併各分片的結果，依異動筆數由多到少排序
+     */
+    private List<CompanyAuditSummary> merge(List<ShardRow> rows) {
+        Map<String, CompanyAuditSummary> byCompany = new HashMap<>();
+        for (ShardRow row : rows) {
+            CompanyAuditSummary summary = byCompany.computeIfAbsent(row.company(), company -> CompanyAuditSummary.builder()
+                    .company(company)
+                    .shards(new ArrayList<>())
+                    .build());
+            summary.setModifiedCount(summary.getModifiedCount() + row.modifiedCount());
+            if (summary.getLastModifiedTime() == null || row.lastModifiedTime().isAfter(summary.getLastModifiedTime())) {
+                summary.setLastModifiedTime(row.lastModifiedTime());
+            }
+            summary.getShards().add(row.shard());
+        }
+        List<CompanyAuditSummary> result = new ArrayList<>(byCompany.values());
+        result.sort(Comparator.comparingLong(CompanyAuditSummary::getModifiedCount).reversed()
+                .thenComparing(CompanyAuditSummary::getCompany, Comparator.nullsLast(Comparator.naturalOrder())));
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.auditingdemo.service;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.auditingdemo.audit.history.AuditHistoryWriter;
+import com.example.auditingdemo.model.Customer;
+import com.example.auditingdemo.repository.CustomerRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 顧客批次異動服務
+ * 觸發器審計模式下直接執行單一 UPDATE，由資料庫觸發器填入審計欄位、歷史與 outbox 事件；
+ * 監聽器模式下 JPA 監聽器只在實體寫入時觸發，只能逐筆載入後儲存
+ */
+@Slf4j
+@Service
+public class CustomerBulkService {
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private AuditHistoryWriter historyWriter;
+
+    @Value("${audit.mode:listener}")
+    private String auditMode;
+
+    /**
+     * 把指定公司的所有顧客改到另一個公司
+     *
+     * @return 異動筆數
+     */
+    @Transactional
+    public int renameCompany(String from, String to) {
+        int updated;
+        if ("trigger".equals(auditMode)) {
+            updated = customerRepository.updateCompany(from, to);
+        } else {
+            List<Customer> customers = customerRepository.findByCompany(from);
+            customers.forEach(customer -> customer.setCompany(to));
+            // 歷史累積到 flush 之後整批寫入，雜湊鏈也只查詢一次這些顧客最後一筆的雜湊
+            historyWriter.beginDeferred();
+            try {
+                customerRepository.saveAllAndFlush(customers);
+                historyWriter.flushDeferred();
+            } finally {
+                historyWriter.discardDeferred();
+            }
+            updated = customers.size();
+        }
+        log.info("批次修改顧客公司 {} -> {}，共 {} 筆，審計模式: {}", from, to, updated, auditMode);
+        return updated;
+    }
+}
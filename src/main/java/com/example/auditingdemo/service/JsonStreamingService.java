@@ -0,0 +1,106 @@
+package com.example.auditingdemo.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.example.auditingdemo.sharding.ShardContext;
+import com.example.auditingdemo.timing.RequestTiming;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * JSON 串流輸出服務
+ * 在唯讀交易中以資料庫游標逐列讀取，並用 JsonGenerator 邊讀邊寫到回應，
+ * 回應大小不再受限於記憶體中完整的 List
+ */
+@Slf4j
+@Service
+public class JsonStreamingService {
+
+    // 每處理這麼多列就清空持久化上下文，避免已輸出的實體累積在記憶體中
+    private static final int CLEAR_INTERVAL = 500;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private TransactionTemplate readOnlyTransaction;
+
+    /**
+     * 單列輸出方式
+     */
+    @FunctionalInterface
+    public interface RowWriter<T> {
+        void write(JsonGenerator gen, T row) throws IOException;
+    }
+
+    @PostConstruct
+    public void init() {
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * 以 JSON 陣列串流輸出資料
+     *
+     * @param source 在交易內開啟的資料串流（例如 Spring Data 的 Stream 查詢）
+     * @param rowWriter 單列輸出方式
+     */
+    public <T> StreamingResponseBody streamArray(Supplier<Stream<T>> source, RowWriter<T> rowWriter) {
+        // 回應在非同步執行緒上輸出，要帶著請求執行緒的分片與計時過去
+        String shard = ShardContext.getCurrentShard();
+        RequestTiming timing = RequestTiming.current();
+        return out -> {
+            ShardContext.setCurrentShard(shard);
+            RequestTiming.attach(timing);
+            try {
+                writeArray(out, source, rowWriter);
+            } finally {
+                ShardContext.clear();
+                RequestTiming.clear();
+            }
+        };
+    }
+
+    private <T> void writeArray(OutputStream out, Supplier<Stream<T>> source, RowWriter<T> rowWriter) {
+        readOnlyTransaction.executeWithoutResult(status -> {
+            int count = 0;
+            try (Stream<T> stream = source.get();
+                    JsonGenerator gen = objectMapper.getFactory().createGenerator(out)) {
+                // 由容器負責關閉回應串流
+                gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                gen.writeStartArray();
+                for (Iterator<T> it = stream.iterator(); it.hasNext();) {
+                    rowWriter.write(gen, it.next());
+                    if (++count % CLEAR_INTERVAL == 0) {
+                        entityManager.clear();
+                    }
+                }
+                gen.writeEndArray();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            log.debug("串流輸出 {} 列", count);
+        });
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.auditingdemo.service;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+
+import com.example.auditingdemo.audit.archive.AuditArchiveReader;
+import com.example.auditingdemo.audit.history.AuditHistoryRecord;
+import com.example.auditingdemo.model.CustomerAuditRow;
+
+import io.r2dbc.spi.Readable;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * 非阻塞審計查詢服務
+ * 以 R2DBC 查詢審計資料，等待資料庫時不佔用 servlet 執行緒；
+ * 每次向資料庫取 FETCH_SIZE 列，客戶端讀得慢時不會再往下取，記憶體用量與結果筆數無關。
+ * 寫入仍走 JPA，這裡只有唯讀查詢
+ */
+@Slf4j
+@Service
+public class ReactiveAuditQueryService {
+
+    private static final int FETCH_SIZE = 500;
+
+    // 審計字串欄位啟用字典編碼後只更新編號欄位，在資料庫端解碼，不在 R2DBC 執行緒上查字典；
+    // 轉換期間字串欄位可能仍留著舊值，兩者都有時以編號為準
+    private static final String CUSTOMER_AUDIT_SQL =
+            "SELECT c.id, c.name, "
+            + "cu.username AS created_by, cu.name AS created_by_name, c.created_time, "
+            + "COALESCE(dcc.value, c.created_company) AS created_company, "
+            + "COALESCE(dcu.value, c.created_unit) AS created_unit, "
+            + "COALESCE(dcn.value, c.created_name) AS created_name, "
+            + "mu.username AS modified_by, mu.name AS modified_by_name, c.modified_time, "
+            + "COALESCE(dmc.value, c.modified_company) AS modified_company, "
+            + "COALESCE(dmu.value, c.modified_unit) AS modified_unit, "
+            + "COALESCE(dmn.value, c.modified_name) AS modified_name "
+            + "FROM pf_customer c "
+            + "JOIN pf_user cu ON cu.id = c.created_by "
+            + "JOIN pf_user mu ON mu.id = c.modified_by "
+            + "LEFT JOIN pf_audit_dict dcc ON dcc.id = c.created_company_id "
+            + "LEFT JOIN pf_audit_dict dcu ON dcu.id = c.created_unit_id "
+            + "LEFT JOIN pf_audit_dict dcn ON dcn.id = c.created_name_id "
+            + "LEFT JOIN pf_audit_dict dmc ON dmc.id = c.modified_company_id "
+            + "LEFT JOIN pf_audit_dict dmu ON dmu.id = c.modified_unit_id "
+            + "LEFT JOIN pf_audit_dict dmn ON dmn.id = c.modified_name_id ";
+
+    private static final String HISTORY_SQL =
+            "SELECT id, entity_type, entity_id, operation, actor_id, payload::text AS payload, changed_time "
+            + "FROM pf_audit_history WHERE entity_type = :entityType AND entity_id = :entityId "
+            + "AND changed_time >= :start AND changed_time <= :end ORDER BY changed_time, id";
+
+    private static final LocalDateTime MIN_TIME = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private static final LocalDateTime MAX_TIME = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @Autowired
+    private ObjectProvider<AuditArchiveReader> archiveReaderProvider;
+
+    @Value("${audit.archive.hot-days:90}")
+    private int hotDays;
+
+    /**
+     * 所有顧客的審計資訊
+     */
+    public Flux<CustomerAuditRow> customerAudit() {
+        return databaseClient.sql(CUSTOMER_AUDIT_SQL + "ORDER BY c.id")
+                .filter(statement -> statement.fetchSize(FETCH_SIZE))
+                .map(ReactiveAuditQueryService::toCustomerAuditRow)
+                .all();
+    }
+
+    /**
+     * 特定時間範圍內修改的顧客審計資訊
+     */
+    public Flux<CustomerAuditRow> customerAuditModified(LocalDateTime start, LocalDateTime end) {
+        return databaseClient.sql(CUSTOMER_AUDIT_SQL
+                        + "WHERE c.modified_time >= :start AND c.modified_time <= :end ORDER BY c.modified_time, c.id")
+                .bind("start", start)
+                .bind("end", end)
+                .filter(statement -> statement.fetchSize(FETCH_SIZE))
+                .map(ReactiveAuditQueryService::toCustomerAuditRow)
+                .all();
+    }
+
+    /**
+     * 實體的變更歷史
+     * 與 AuditHistoryService 相同：查詢範圍早於熱資料保留期間時先輸出封存段檔的記錄，以歷史編號去重。
+     * 封存記錄本來就整批讀入記憶體，只記住這些編號；熱資料逐列比對後輸出，不保留已輸出的編號
+     */
+    public Flux<AuditHistoryRecord> history(String entityType, Long entityId, LocalDateTime start, LocalDateTime end) {
+        Flux<AuditHistoryRecord> hot = databaseClient.sql(HISTORY_SQL)
+                .bind("entityType", entityType)
+                .bind("entityId", entityId)
+                .bind("start", start != null ? start : MIN_TIME)
+                .bind("end", end != null ? end : MAX_TIME)
+                .filter(statement -> statement.fetchSize(FETCH_SIZE))
+                .map(ReactiveAuditQueryService::toHistoryRecord)
+                .all();
+
+        AuditArchiveReader archiveReader = archiveReaderProvider.getIfAvailable();
+        LocalDateTime hotWindowStart = LocalDateTime.now().minusDays(hotDays);
+        if (archiveReader == null || (start != null && !start.isBefore(hotWindowStart))) {
+            return hot;
+        }
+        // 封存段檔讀取是阻塞的檔案 I/O，放到 boundedElastic 執行
+        return Mono.fromCallable(() -> archiveReader.find(entityType, entityId, start, end))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(records -> {
+                    // 封存作業可能重複寫入同一筆記錄
+                    Map<Long, AuditHistoryRecord> archived = new LinkedHashMap<>();
+                    for (AuditHistoryRecord record : records) {
+                        archived.put(record.getId(), record);
+                    }
+                    return Flux.concat(Flux.fromIterable(archived.values()),
+                            hot.filter(record -> !archived.containsKey(record.getId())));
+                });
+    }
+
+    private static CustomerAuditRow toCustomerAuditRow(Readable row) {
+        return CustomerAuditRow.builder()
+                .customerId(row.get("id", Long.class))
+                .customerName(row.get("name", String.class))
+                .createdBy(row.get("created_by", String.class))
+                .createdByName(row.get("created_by_name", String.class))
+                .createdTime(row.get("created_time", LocalDateTime.class))
+                .createdCompany(row.get("created_company", String.class))
+                .createdUnit(row.get("created_unit", String.class))
+                .createdName(row.get("created_name", String.class))
+                .modifiedBy(row.get("modified_by", String.class))
+                .modifiedByName(row.get("modified_by_name", String.class))
+                .modifiedTime(row.get("modified_time", LocalDateTime.class))
+                .modifiedCompany(row.get("modified_company", String.class))
+                .modifiedUnit(row.get("modified_unit", String.class))
+                .modifiedName(row.get("modified_name", String.class))
+                .build();
+    }
+
+    private static AuditHistoryRecord toHistoryRecord(Readable row) {
+        return AuditHistoryRecord.builder()
+                .id(row.get("id", Long.class))
+                .entityType(row.get("entity_type", String.class))
+                .entityId(row.get("entity_id", Long.class))
+                .operation(row.get("operation", String.class))
+                .actorId(row.get("actor_id", Long.class))
+                .payload(row.get("payload", String.class))
+                .changedTime(row.get("changed_time", LocalDateTime.class))
+                .build();
+    }
+}
@@ -1,8 +1,10 @@
 package com.example.auditingdemo.service;
 
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 
 import org.springframework.stereotype.Service;
 
@@ -73,6 +75,27 @@ public class TokenService {
         user333Info.put("company", "測試公司");
         user333Info.put("unit", "管理部門");
         TOKEN_USER_MAP.put("333", user333Info);
+        
+        // 對應 pf_user 帳號的令牌，審計者依 username 查詢
+        Map<String, String> testUserInfo = new HashMap<>();
+        testUserInfo.put("userId", "1001");
+        testUserInfo.put("username", "test.user");
+        testUserInfo.put("name", "測試使用者");
+        testUserInfo.put("email", "test.user@example.com");
+        testUserInfo.put("company", "測試公司");
+        testUserInfo.put("unit", "研發部門");
+        testUserInfo.put("roles", "ADMIN,USER");
+        TOKEN_USER_MAP.put("test-token", testUserInfo);
+        
+        Map<String, String> adminUserInfo = new HashMap<>();
+        adminUserInfo.put("userId", "1002");
+        adminUserInfo.put("username", "admin.user");
+        adminUserInfo.put("name", "管理員");
+        adminUserInfo.put("email", "admin@example.com");
+        adminUserInfo.put("company", "測試公司");
+        adminUserInfo.put("unit", "管理部門");
+        adminUserInfo.put("roles", "SUPER_ADMIN");
+        TOKEN_USER_MAP.put("admin-token", adminUserInfo);
     }
     
     /**
@@ -95,38 +118,35 @@ public class TokenService {
             return TOKEN_USER_MAP.get(token);
         }
         
-        // 以下是原有的邏輯，作為備選
+        // 未知的令牌使用默認用戶信息
         Map<String, String> userInfo = new HashMap<>();
-        
-        // 模擬不同的用戶令牌返回不同的用戶信息
-        if (token.equals("test-token")) {
-            userInfo.put("userId", "1001");
-            userInfo.put("username", "test.user");
-            userInfo.put("name", "測試使用者");
-            userInfo.put("email", "test.user@example.com");
-            userInfo.put("company", "測試公司");
-            userInfo.put("unit", "研發部門");
-            userInfo.put("roles", "ADMIN,USER");
-        } else if (token.equals("admin-token")) {
-            userInfo.put("userId", "1002");
-            userInfo.put("username", "admin.user");
-            userInfo.put("name", "管理員");
-            userInfo.put("email", "admin@example.com");
-            userInfo.put("company", "測試公司");
-            userInfo.put("unit", "管理部門");
-            userInfo.put("roles", "SUPER_ADMIN");
-        } else {
-            // 默認用戶信息
-            userInfo.put("userId", "0");
-            userInfo.put("username", "system");
-            userInfo.put("name", "系統用戶");
-            userInfo.put("email", "system@example.com");
-            userInfo.put("roles", "SYSTEM");
-        }
+        userInfo.put("userId", "0");
+        userInfo.put("username", "system");
+        userInfo.put("name", "系統用戶");
+        userInfo.put("email", "system@example.com");
+        userInfo.put("roles", "SYSTEM");
         
         return userInfo;
     }
     
+    /**
+     * 令牌是否具有管理員角色（ADMIN 或 SUPER_ADMIN）
+     */
+    public boolean isAdmin(String token) {
+        Map<String, String> userInfo = getUserInfoFromToken(token);
+        String roles = userInfo != null ? userInfo.get("roles") : null;
+        return roles != null && Arrays.stream(roles.split(","))
+                .map(String::trim)
+                .anyMatch(role -> role.equals("ADMIN") || role.equals("SUPER_ADMIN"));
+    }
+    
+    /**
+     * 列出令牌對照表中的所有令牌（包含自定義令牌），供啟動時預熱使用
+     */
+    public Set<String> getKnownTokens() {
+        return new LinkedHashSet<>(TOKEN_USER_MAP.keySet());
+    }
+    
     /**
      * 獲取指定用戶的令牌
      */
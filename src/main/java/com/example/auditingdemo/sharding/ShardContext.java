@@ -0,0 +1,45 @@
+package com.example.auditingdemo.sharding;
+
+/**
+ * 分片上下文
+ * 記錄目前執行緒的資料要讀寫哪一個分片，由 ShardRoutingDataSource 在取得連線時讀取
+ */
+public class ShardContext {
+
+    private static final ThreadLocal<String> currentShard = new ThreadLocal<>();
+
+    /**
+     * 設置目前分片
+     */
+    public static void setCurrentShard(String shard) {
+        currentShard.set(shard);
+    }
+
+    /**
+     * 獲取目前分片，未設置時回傳 null 表示使用預設分片
+     */
+    public static String getCurrentShard() {
+        return currentShard.get();
+    }
+
+    /**
+     * 清除目前分片
+     */
+    public static void clear() {
+        currentShard.remove();
+    }
+
+    /**
+     * 在指定分片上執行，空字串表示預設分片；結束後清除，供排程作業逐一處理各分片
+     */
+    public static void runIn(String shard, Runnable action) {
+        if (shard != null && !shard.isEmpty()) {
+            currentShard.set(shard);
+        }
+        try {
+            action.run();
+        } finally {
+            currentShard.remove();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.auditingdemo.sharding;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+/**
+ * 分片對照表
+ * 公司先查固定對照，未列出的公司以名稱雜湊值對分片數取餘數，
+ * 分片清單依宣告順序固定，同一家公司在每個執行個體上都會落在同一個分片
+ */
+public class ShardRouter implements AutoCloseable {
+
+    private final Map<String, DataSource> shards;
+
+    private final List<String> shardNames;
+
+    private final Map<String, String> companyMap;
+
+    private final String defaultShard;
+
+    public ShardRouter(Map<String, DataSource> shards, Map<String, String> companyMap, String defaultShard) {
+        if (!shards.containsKey(defaultShard)) {
+            throw new IllegalArgumentException("預設分片不存在: " + defaultShard);
+        }
+        for (Map.Entry<String, String> entry : companyMap.entrySet()) {
+            if (!shards.containsKey(entry.getValue())) {
+                throw new IllegalArgumentException("公司 " + entry.getKey() + " 對應的分片不存在: " + entry.getValue());
+            }
+        }
+        this.shards = Collections.unmodifiableMap(new LinkedHashMap<>(shards));
+        this.shardNames = List.copyOf(shards.keySet());
+        this.companyMap = Map.copyOf(companyMap);
+        this.defaultShard = defaultShard;
+    }
+
+    /**
+     * 由分片設定建立對照表
+     */
+    public static ShardRouter of(Map<String, DataSource> shards, ShardingProperties properties) {
+        Map<String, String> companyMap = new HashMap<>();
+        properties.getShards().forEach((name, shard) -> {
+            for (String company : shard.getCompanies()) {
+                String previous = companyMap.put(company, name);
+                if (previous != null) {
+                    throw new IllegalArgumentException("公司 " + company + " 同時分配到分片 " + previous + " 與 " + name);
+                }
+            }
+        });
+        return new ShardRouter(shards, companyMap, properties.getDefaultShard());
+    }
+
+    /**
+     * 取得公司所在的分片
+     */
+    public String shardFor(String company) {
+        if (company == null || company.isEmpty()) {
+            return defaultShard;
+        }
+        String shard = companyMap.get(company);
+        if (shard != null) {
+            return shard;
+        }
+        return shardNames.get(Math.floorMod(company.hashCode(), shardNames.size()));
+    }
+
+    public String getDefaultShard() {
+        return defaultShard;
+    }
+
+    /**
+     * 所有分片名稱與資料來源，跨分片查詢時使用
+     */
+    public Map<String, DataSource> getShards() {
+        return shards;
+    }
+
+    /**
+     * 列出每個分片固定分配的公司
+     */
+    public Map<String, List<String>> describe() {
+        Map<String, List<String>> result = new LinkedHashMap<>();
+        shardNames.forEach(name -> result.put(name, new ArrayList<>()));
+        companyMap.forEach((company, shard) -> result.get(shard).add(company));
+        result.values().forEach(Collections::sort);
+        return result;
+    }
+
+    /**
+     * 關閉所有分片的連線池
+     */
+    @Override
+    public void close() throws Exception {
+        for (DataSource dataSource : shards.values()) {
+            if (dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.auditingdemo.sharding;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * 依分片上下文路由的資料來源
+ * 交易開始取得連線時決定分片，同一交易內的 JPA 與 JdbcTemplate 寫入都落在同一個分片
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        // 回傳 null 時使用預設分片
+        return ShardContext.getCurrentShard();
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.auditingdemo.sharding;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+/**
+ * 分片設定
+ * 每個分片是一個獨立的資料庫，並列出固定分配到該分片的公司
+ */
+@Data
+@ConfigurationProperties(prefix = "sharding")
+public class ShardingProperties {
+
+    /**
+     * 是否啟用依公司分片
+     */
+    private boolean enabled;
+
+    /**
+     * 沒有公司資訊（例如未帶令牌或背景排程）時使用的分片
+     */
+    private String defaultShard = "shard0";
+
+    /**
+     * 跨分片查詢時等待單一分片的逾時（毫秒）
+     */
+    private long scatterTimeoutMs = 10000;
+
+    /**
+     * 分片名稱對應的連線設定，依宣告順序排列
+     */
+    private Map<String, Shard> shards = new LinkedHashMap<>();
+
+    @Data
+    public static class Shard {
+
+        private String url;
+
+        private String username;
+
+        private String password;
+
+        /**
+         * 固定分配到此分片的公司，未列出的公司依雜湊值分配
+         */
+        private List<String> companies = new ArrayList<>();
+    }
+}
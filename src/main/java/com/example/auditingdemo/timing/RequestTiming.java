@@ -0,0 +1,158 @@
+package com.example.auditingdemo.timing;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 單一請求的各階段耗時
+ * 與 UserContext 相同以 ThreadLocal 綁定到處理請求的執行緒；未啟用或不在請求中時 current() 為 null，
+ * 各處的 record 只多一次 ThreadLocal 讀取。各階段可能重疊，例如查詢審計者時執行的 SQL 同時計入 auditor 與 sql。
+ * 串流輸出與分片查詢會把同一份量測綁定到其他執行緒，累加時以物件本身同步（幾乎不會競爭）
+ */
+public final class RequestTiming {
+
+    /**
+     * 量測的階段，name 為 Server-Timing 中的名稱
+     */
+    public enum Phase {
+        // 令牌解析、撤銷檢查與限流
+        TOKEN("token"),
+        // CustomAuditorAware 取得審計者
+        AUDITOR("auditor"),
+        // JDBC 陳述式執行（不含讀取結果集）
+        SQL("sql"),
+        // JSON 回應序列化
+        SERIALIZATION("serialize");
+
+        private final String metricName;
+
+        Phase(String metricName) {
+            this.metricName = metricName;
+        }
+
+        public String getMetricName() {
+            return metricName;
+        }
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private static final ThreadLocal<RequestTiming> CURRENT = new ThreadLocal<>();
+
+    private final long startNanos = System.nanoTime();
+
+    private final long[] phaseNanos = new long[PHASES.length];
+
+    private int sqlCount;
+
+    private final boolean headerRequested;
+
+    private RequestTiming(boolean headerRequested) {
+        this.headerRequested = headerRequested;
+    }
+
+    /**
+     * 開始量測目前執行緒上的請求
+     *
+     * @param headerRequested 是否在回應中加上 Server-Timing 標頭
+     */
+    public static RequestTiming start(boolean headerRequested) {
+        RequestTiming timing = new RequestTiming(headerRequested);
+        CURRENT.set(timing);
+        return timing;
+    }
+
+    /**
+     * 非同步請求重新分派時，把同一份量測綁定到新的執行緒
+     */
+    public static void attach(RequestTiming timing) {
+        CURRENT.set(timing);
+    }
+
+    public static RequestTiming current() {
+        return CURRENT.get();
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    /**
+     * 把自 startNanos 起的時間計入目前請求的階段
+     */
+    public static void record(Phase phase, long startNanos) {
+        RequestTiming timing = CURRENT.get();
+        if (timing != null) {
+            timing.add(phase, System.nanoTime() - startNanos, false);
+        }
+    }
+
+    /**
+     * 記錄一次 SQL 執行
+     */
+    public static void recordSql(long startNanos) {
+        RequestTiming timing = CURRENT.get();
+        if (timing != null) {
+            timing.add(Phase.SQL, System.nanoTime() - startNanos, true);
+        }
+    }
+
+    private synchronized void add(Phase phase, long nanos, boolean statement) {
+        phaseNanos[phase.ordinal()] += nanos;
+        if (statement) {
+            sqlCount++;
+        }
+    }
+
+    public boolean isHeaderRequested() {
+        return headerRequested;
+    }
+
+    public long getElapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    public synchronized long getPhaseNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    public synchronized int getSqlCount() {
+        return sqlCount;
+    }
+
+    /**
+     * 各階段的毫秒數，依 Phase 順序
+     */
+    public synchronized Map<String, Double> getPhaseMillis() {
+        Map<String, Double> millis = new LinkedHashMap<>();
+        for (Phase phase : PHASES) {
+            millis.put(phase.getMetricName(), phaseNanos[phase.ordinal()] / 1e6);
+        }
+        return millis;
+    }
+
+    /**
+     * Server-Timing 標頭值，例如 token;dur=0.12, sql;dur=3.40;desc="4 statements", total;dur=5.01
+     */
+    public synchronized String toServerTiming() {
+        StringBuilder header = new StringBuilder(160);
+        for (Phase phase : PHASES) {
+            long nanos = phaseNanos[phase.ordinal()];
+            if (nanos == 0 && phase != Phase.SQL) {
+                continue;
+            }
+            appendMetric(header, phase.getMetricName(), nanos);
+            if (phase == Phase.SQL) {
+                header.append(";desc=\"").append(sqlCount).append(" statements\"");
+            }
+            header.append(", ");
+        }
+        appendMetric(header, "total", getElapsedNanos());
+        return header.toString();
+    }
+
+    private static void appendMetric(StringBuilder header, String name, long nanos) {
+        header.append(name).append(";dur=").append(String.format(Locale.ROOT, "%.2f", nanos / 1e6));
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.auditingdemo.timing;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * 超過門檻的請求
+ *
+ * @param time 完成時間
+ * @param method HTTP 方法
+ * @param uri 請求路徑（含查詢字串）
+ * @param status 回應狀態碼
+ * @param totalMs 總耗時
+ * @param phasesMs 各階段耗時（可能重疊）
+ * @param sqlCount 執行的 SQL 陳述式數
+ */
+public record SlowRequest(LocalDateTime time, String method, String uri, int status, double totalMs,
+        Map<String, Double> phasesMs, int sqlCount) {
+}
@@ -0,0 +1,72 @@
+package com.example.auditingdemo.timing;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.auditingdemo.util.RingBuffer;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 慢請求記錄
+ * 總耗時超過 slow-threshold-ms 的請求連同各階段耗時與 SQL 次數放入固定容量的無鎖環狀緩衝區，
+ * 只保留最近 slow-capacity 筆，由 GET /api/admin/slow-requests 查詢
+ */
+@Slf4j
+@Component
+public class SlowRequestLog {
+
+    @Value("${request-timing.slow-threshold-ms:500}")
+    private long thresholdMs;
+
+    @Value("${request-timing.slow-capacity:256}")
+    private int capacity;
+
+    private long thresholdNanos;
+
+    private RingBuffer<SlowRequest> buffer;
+
+    @PostConstruct
+    public void init() {
+        thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMs);
+        buffer = new RingBuffer<>(capacity);
+    }
+
+    /**
+     * 請求完成時呼叫，未超過門檻時不配置任何物件
+     */
+    public void complete(RequestTiming timing, HttpServletRequest request, int status) {
+        long elapsedNanos = timing.getElapsedNanos();
+        if (elapsedNanos < thresholdNanos) {
+            return;
+        }
+        String uri = request.getQueryString() != null
+                ? request.getRequestURI() + "?" + request.getQueryString()
+                : request.getRequestURI();
+        SlowRequest slow = new SlowRequest(LocalDateTime.now(), request.getMethod(), uri, status,
+                elapsedNanos / 1e6, timing.getPhaseMillis(), timing.getSqlCount());
+        buffer.add(slow);
+        log.info("慢請求: {} {} {} ms, {} 道 SQL", slow.method(), slow.uri(), Math.round(slow.totalMs()), slow.sqlCount());
+    }
+
+    /**
+     * 由新到舊列出保存中的慢請求
+     */
+    public List<SlowRequest> list() {
+        return buffer.snapshot();
+    }
+
+    public long getTotalCaptured() {
+        return buffer.getTotalAdded();
+    }
+
+    public long getThresholdMs() {
+        return thresholdMs;
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.auditingdemo.timing;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * 計算 SQL 執行時間與次數的資料來源
+ * 連線與陳述式以動態代理包裝，只攔截 execute* 系列方法，其餘呼叫直接轉給原本的物件。
+ * JPA 與 JdbcTemplate 都經由此取得連線；不在請求中時只多一次 ThreadLocal 讀取
+ */
+public class TimingDataSource extends DelegatingDataSource {
+
+    public TimingDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrapConnection(obtainTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrapConnection(obtainTargetDataSource().getConnection(username, password));
+    }
+
+    private static Connection wrapConnection(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(TimingDataSource.class.getClassLoader(),
+                new Class<?>[] {Connection.class}, new ConnectionHandler(connection));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 代理物件本身的 equals/hashCode，其餘方法回傳 null 表示交給原本的物件
+     */
+    private static Object identity(Object proxy, Method method, Object[] args) {
+        return switch (method.getName()) {
+            case "equals" -> proxy == args[0];
+            case "hashCode" -> System.identityHashCode(proxy);
+            default -> null;
+        };
+    }
+
+    private record ConnectionHandler(Connection target) implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object identity = identity(proxy, method, args);
+            if (identity != null) {
+                return identity;
+            }
+            Object result = TimingDataSource.invoke(target, method, args);
+            if (result instanceof Statement statement) {
+                Class<?> type = statement instanceof CallableStatement ? CallableStatement.class
+                        : statement instanceof PreparedStatement ? PreparedStatement.class
+                        : Statement.class;
+                return Proxy.newProxyInstance(TimingDataSource.class.getClassLoader(),
+                        new Class<?>[] {type}, new StatementHandler(statement));
+            }
+            return result;
+        }
+    }
+
+    private record StatementHandler(Statement target) implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object identity = identity(proxy, method, args);
+            if (identity != null) {
+                return identity;
+            }
+            if (!method.getName().startsWith("execute")) {
+                return TimingDataSource.invoke(target, method, args);
+            }
+            long start = System.nanoTime();
+            try {
+                return TimingDataSource.invoke(target, method, args);
+            } finally {
+                RequestTiming.recordSql(start);
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.auditingdemo.timing;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 啟用請求計時時，以 TimingDataSource 包裝應用程式的資料來源（單一資料庫或分片路由資料來源）
+ */
+@Slf4j
+@Component
+public class TimingDataSourcePostProcessor implements BeanPostProcessor {
+
+    @Value("${request-timing.enabled:false}")
+    private boolean enabled;
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (enabled && bean instanceof DataSource dataSource && !(bean instanceof TimingDataSource)) {
+            log.info("以 TimingDataSource 包裝資料來源 {}", beanName);
+            return new TimingDataSource(dataSource);
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.auditingdemo.timing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 記錄序列化時間的 JSON 轉換器
+ * 需要 Server-Timing 標頭的請求先序列化到記憶體，量完序列化時間後才加上標頭並送出，
+ * 標頭因此包含完整的各階段耗時；其他請求照常直接寫出
+ */
+public class TimingJackson2HttpMessageConverter extends MappingJackson2HttpMessageConverter {
+
+    public static final String SERVER_TIMING = "Server-Timing";
+
+    public TimingJackson2HttpMessageConverter(ObjectMapper objectMapper) {
+        super(objectMapper);
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+        RequestTiming timing = RequestTiming.current();
+        long start = System.nanoTime();
+        if (timing == null || !timing.isHeaderRequested()) {
+            try {
+                super.writeInternal(object, type, outputMessage);
+            } finally {
+                RequestTiming.record(RequestTiming.Phase.SERIALIZATION, start);
+            }
+            return;
+        }
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
+        super.writeInternal(object, type, new HttpOutputMessage() {
+            @Override
+            public OutputStream getBody() {
+                return buffer;
+            }
+
+            @Override
+            public HttpHeaders getHeaders() {
+                return outputMessage.getHeaders();
+            }
+        });
+        RequestTiming.record(RequestTiming.Phase.SERIALIZATION, start);
+        outputMessage.getHeaders().set(SERVER_TIMING, timing.toServerTiming());
+        outputMessage.getHeaders().setContentLength(buffer.size());
+        buffer.writeTo(outputMessage.getBody());
+    }
+}
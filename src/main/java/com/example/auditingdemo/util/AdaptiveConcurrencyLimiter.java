@@ -0,0 +1,115 @@
+package com.example.auditingdemo.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 自適應併發限制器
+ * 以梯度演算法依觀察到的延遲調整併發上限：短期延遲相對長期基準上升時按比例收縮，
+ * 延遲穩定且並行數接近上限時以 sqrt(limit) 的幅度探測成長；請求失敗時以乘法減少（AIMD）。
+ * tryAcquire 只做一次 CAS，不持鎖；延遲樣本的更新在短暫的同步區塊中完成。
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    // 長期延遲的 EWMA 權重，約等於最近 100 個樣本
+    private static final double LONG_RTT_ALPHA = 2.0 / 101;
+
+    // 新上限與舊上限的平滑比例
+    private static final double SMOOTHING = 0.2;
+
+    // 發生失敗時的乘法減少係數
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final String name;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    private volatile double limit;
+
+    private double longRttNanos;
+
+    public AdaptiveConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit) {
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = initialLimit;
+    }
+
+    /**
+     * 嘗試取得執行許可
+     *
+     * @return 超過目前上限時回傳 false，呼叫端應立即拒絕請求
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 請求成功完成，釋放許可並以延遲樣本調整上限
+     *
+     * @param rttNanos 請求耗時
+     * @param inFlightAtStart 取得許可時的並行數，用於判斷上限是否真的被用滿
+     */
+    public void onSuccess(long rttNanos, int inFlightAtStart) {
+        inFlight.decrementAndGet();
+        synchronized (this) {
+            if (longRttNanos == 0) {
+                longRttNanos = rttNanos;
+                return;
+            }
+            longRttNanos = longRttNanos * (1 - LONG_RTT_ALPHA) + rttNanos * LONG_RTT_ALPHA;
+
+            // 並行數遠低於上限時，延遲資訊無法代表上限是否合適，不調升
+            double current = limit;
+            if (inFlightAtStart < current / 2 && rttNanos <= longRttNanos) {
+                return;
+            }
+
+            double gradient = Math.max(0.5, Math.min(1.0, longRttNanos / rttNanos));
+            double newLimit = current * gradient + Math.sqrt(current);
+            newLimit = current * (1 - SMOOTHING) + newLimit * SMOOTHING;
+            limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        }
+    }
+
+    /**
+     * 請求失敗（例外或 5xx），釋放許可並以乘法減少上限
+     */
+    public void onDropped() {
+        inFlight.decrementAndGet();
+        synchronized (this) {
+            limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+}
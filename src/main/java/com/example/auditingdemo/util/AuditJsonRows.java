@@ -0,0 +1,84 @@
+package com.example.auditingdemo.util;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+import com.example.auditingdemo.model.Customer;
+import com.example.auditingdemo.model.User;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * 審計資訊 JSON 輸出工具類
+ * 直接以 JsonGenerator 逐欄位輸出審計資訊，不為每列建立 Map，格式器也只建立一次
+ */
+public class AuditJsonRows {
+
+    // DateTimeFormatter 為不可變且執行緒安全，可共用
+    public static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private AuditJsonRows() {
+    }
+
+    /**
+     * 輸出一筆顧客審計資訊
+     */
+    public static void writeCustomerAudit(JsonGenerator gen, Customer customer) throws IOException {
+        gen.writeStartObject();
+        gen.writeNumberField("customerId", customer.getId());
+        gen.writeStringField("customerName", customer.getName());
+        
+        // 創建者信息
+        gen.writeStringField("createdBy", customer.getCreatedBy().getUsername());
+        gen.writeStringField("createdByName", customer.getCreatedBy().getName());
+        gen.writeStringField("createdTime", format(customer.getCreatedTime()));
+        gen.writeStringField("createdCompany", customer.getCreatedCompany());
+        gen.writeStringField("createdUnit", customer.getCreatedUnit());
+        gen.writeStringField("createdName", customer.getCreatedName());
+        
+        // 修改者信息
+        gen.writeStringField("modifiedBy", customer.getModifiedBy().getUsername());
+        gen.writeStringField("modifiedByName", customer.getModifiedBy().getName());
+        gen.writeStringField("modifiedTime", format(customer.getModifiedTime()));
+        gen.writeStringField("modifiedCompany", customer.getModifiedCompany());
+        gen.writeStringField("modifiedUnit", customer.getModifiedUnit());
+        gen.writeStringField("modifiedName", customer.getModifiedName());
+        gen.writeEndObject();
+    }
+
+    /**
+     * 輸出一筆用戶審計資訊
+     *
+     * @param userWriter 輸出 createdBy/modifiedBy 用戶物件的 ObjectWriter
+     */
+    public static void writeUserAudit(JsonGenerator gen, User user, ObjectWriter userWriter) throws IOException {
+        gen.writeStartObject();
+        gen.writeNumberField("userId", user.getId());
+        gen.writeStringField("username", user.getUsername());
+        
+        // 創建者信息
+        gen.writeFieldName("createdBy");
+        userWriter.writeValue(gen, user.getCreatedBy());
+        gen.writeStringField("createdTime", format(user.getCreatedTime()));
+        gen.writeStringField("createdCompany", user.getCreatedCompany());
+        gen.writeStringField("createdUnit", user.getCreatedUnit());
+        gen.writeStringField("createdName", user.getCreatedName());
+        
+        // 修改者信息
+        gen.writeFieldName("modifiedBy");
+        userWriter.writeValue(gen, user.getModifiedBy());
+        gen.writeStringField("modifiedTime", format(user.getModifiedTime()));
+        gen.writeStringField("modifiedCompany", user.getModifiedCompany());
+        gen.writeStringField("modifiedUnit", user.getModifiedUnit());
+        gen.writeStringField("modifiedName", user.getModifiedName());
+        gen.writeEndObject();
+    }
+
+    /**
+     * 格式化時間；格式不含時區，附加 Asia/Taipei 時區不影響結果，因此直接格式化 LocalDateTime
+     */
+    public static String format(LocalDateTime time) {
+        return time != null ? FORMATTER.format(time) : null;
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.auditingdemo.util;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 以 SHA-256 摘要為鍵的 Bloom filter
+ * mightContain 為 false 時鍵一定不在集合中；為 true 時可能誤判，機率約為建立時指定的 falsePositiveRate。
+ * 摘要本身已均勻分布，直接取前 16 位元組作為兩個雜湊值，以 h1 + i * h2 推導 k 個位置（Kirsch–Mitzenmacher），不再重新雜湊。
+ * 位元陣列以 AtomicLongArray 保存，put 與 mightContain 可以並行呼叫
+ */
+public class BloomFilter {
+
+    private final AtomicLongArray bits;
+
+    private final long bitSize;
+
+    private final int hashCount;
+
+    /**
+     * @param expectedInsertions 預計放入的鍵數，超過時誤判率上升
+     * @param falsePositiveRate 目標誤判率
+     */
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        long n = Math.max(1, expectedInsertions);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.max(1, (m + 63) / 64);
+        this.bits = new AtomicLongArray(words);
+        this.bitSize = words * 64L;
+        this.hashCount = (int) Math.max(1, Math.round((double) bitSize / n * Math.log(2)));
+    }
+
+    public void put(byte[] digest) {
+        ByteBuffer buffer = ByteBuffer.wrap(digest);
+        long h1 = buffer.getLong();
+        long h2 = buffer.getLong();
+        for (int i = 0; i < hashCount; i++) {
+            long index = Math.floorMod(h1 + i * h2, bitSize);
+            int word = (int) (index >>> 6);
+            long mask = 1L << index;
+            if ((bits.get(word) & mask) == 0) {
+                bits.getAndAccumulate(word, mask, (current, bit) -> current | bit);
+            }
+        }
+    }
+
+    public boolean mightContain(byte[] digest) {
+        ByteBuffer buffer = ByteBuffer.wrap(digest);
+        long h1 = buffer.getLong();
+        long h2 = buffer.getLong();
+        for (int i = 0; i < hashCount; i++) {
+            long index = Math.floorMod(h1 + i * h2, bitSize);
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long getBitSize() {
+        return bitSize;
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+}
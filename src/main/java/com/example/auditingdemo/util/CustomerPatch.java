@@ -0,0 +1,31 @@
+package com.example.auditingdemo.util;
+
+import com.example.auditingdemo.model.Customer;
+
+/**
+ * 顧客部分更新
+ * 只套用請求中有提供（非 null）的欄位
+ */
+public class CustomerPatch {
+
+    private CustomerPatch() {
+    }
+
+    public static void apply(Customer target, Customer changes) {
+        if (changes.getName() != null) {
+            target.setName(changes.getName());
+        }
+        if (changes.getEmail() != null) {
+            target.setEmail(changes.getEmail());
+        }
+        if (changes.getPhone() != null) {
+            target.setPhone(changes.getPhone());
+        }
+        if (changes.getAddress() != null) {
+            target.setAddress(changes.getAddress());
+        }
+        if (changes.getCompany() != null) {
+            target.setCompany(changes.getCompany());
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.auditingdemo.util;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.WebRequest;
+
+import com.example.auditingdemo.model.EntityVersion;
+import com.example.auditingdemo.model.base.BaseAuditEntity;
+
+/**
+ * ETag 工具類
+ * 以資料版本與修改時間產生強 ETag，並處理 If-Match 比對
+ */
+public class ETagUtils {
+
+    private static final ZoneId ZONE_ID = ZoneId.of("Asia/Taipei");
+
+    private ETagUtils() {
+    }
+
+    public static String etag(EntityVersion version) {
+        return etag(version.getVersion(), version.getModifiedTime());
+    }
+
+    public static String etag(BaseAuditEntity entity) {
+        return etag(entity.getVersion(), entity.getModifiedTime());
+    }
+
+    /**
+     * 修改時間的 epoch 毫秒，用於 Last-Modified
+     */
+    public static long lastModified(EntityVersion version) {
+        return lastModified(version.getModifiedTime());
+    }
+
+    public static long lastModified(BaseAuditEntity entity) {
+        return lastModified(entity.getModifiedTime());
+    }
+
+    /**
+     * 請求是否帶有 If-None-Match 或 If-Modified-Since，沒有時不必先查詢版本
+     */
+    public static boolean isConditional(WebRequest request) {
+        return request.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                || request.getHeader(HttpHeaders.IF_MODIFIED_SINCE) != null;
+    }
+
+    /**
+     * 判斷 If-Match 是否符合目前的 ETag
+     * 依 RFC 9110 使用強比對，弱 ETag（W/ 開頭）永遠不符合
+     *
+     * @param ifMatch If-Match 請求頭，可為逗號分隔的多個 ETag 或 *
+     * @param currentEtag 目前的 ETag
+     */
+    public static boolean matches(String ifMatch, String currentEtag) {
+        for (String candidate : ifMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || tag.equals(currentEtag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String etag(Long version, LocalDateTime modifiedTime) {
+        return "\"" + version + "-" + lastModified(modifiedTime) + "\"";
+    }
+
+    /**
+     * 指定時間的 epoch 毫秒，用於歷史狀態的 Last-Modified
+     */
+    public static long lastModified(LocalDateTime modifiedTime) {
+        return modifiedTime != null ? modifiedTime.atZone(ZONE_ID).toInstant().toEpochMilli() : -1;
+    }
+}
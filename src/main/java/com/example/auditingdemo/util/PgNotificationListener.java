@@ -0,0 +1,113 @@
+package com.example.auditingdemo.util;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Postgres LISTEN/NOTIFY 監聽器
+ * 以一條獨立於連線池的連線 LISTEN 指定頻道，在背景執行緒上逐筆處理通知。
+ * 連線中斷期間可能漏掉通知，子類別應在 onConnected / onDisconnected 中自行補齊（例如清空快取或重新載入）
+ */
+@Slf4j
+public abstract class PgNotificationListener {
+
+    @Autowired
+    private DataSourceProperties dataSourceProperties;
+
+    private final String channel;
+
+    private volatile boolean running;
+
+    private Thread listenerThread;
+
+    protected PgNotificationListener(String channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * 是否需要監聽，未啟用對應功能時不建立連線
+     */
+    protected abstract boolean isActive();
+
+    protected abstract int getListenTimeoutMs();
+
+    protected abstract long getReconnectDelayMs();
+
+    /**
+     * 開始接收通知後呼叫，包含重新連線
+     */
+    protected abstract void onConnected();
+
+    /**
+     * 連線中斷後、重新連線前呼叫
+     */
+    protected void onDisconnected() {
+    }
+
+    protected abstract void onNotification(String payload);
+
+    @PostConstruct
+    public void start() {
+        if (!isActive()) {
+            return;
+        }
+        running = true;
+        listenerThread = Thread.ofPlatform()
+                .name(channel + "-listener")
+                .daemon()
+                .start(this::listenLoop);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+            listenerThread.join(getListenTimeoutMs() * 2L);
+        }
+    }
+
+    private void listenLoop() {
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                    dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword())) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                onConnected();
+                log.info("已開始接收 {} 通知", channel);
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(getListenTimeoutMs());
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            onNotification(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                onDisconnected();
+                log.warn("{} 通知連線中斷，{} ms 後重新連線: {}", channel, getReconnectDelayMs(), e.getMessage());
+                try {
+                    Thread.sleep(getReconnectDelayMs());
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.auditingdemo.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 固定容量的無鎖環狀緩衝區
+ * 寫入以 getAndIncrement 取得序號後直接覆蓋對應的槽位，不持鎖也不等待讀取者；
+ * 容量滿時覆蓋最舊的項目。讀取取得的是近似快照，並行寫入時可能少看到正在寫入的項目
+ */
+public class RingBuffer<T> {
+
+    private final AtomicReferenceArray<T> slots;
+
+    private final int mask;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * @param capacity 容量，調整為不小於此值的 2 的次方
+     */
+    public RingBuffer(int capacity) {
+        int size = capacity <= 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    public void add(T item) {
+        long index = sequence.getAndIncrement();
+        slots.set((int) (index & mask), item);
+    }
+
+    /**
+     * 由新到舊列出目前保存的項目
+     */
+    public List<T> snapshot() {
+        long end = sequence.get();
+        long start = Math.max(0, end - slots.length());
+        List<T> items = new ArrayList<>((int) (end - start));
+        for (long index = end - 1; index >= start; index--) {
+            T item = slots.get((int) (index & mask));
+            if (item != null) {
+                items.add(item);
+            }
+        }
+        return items;
+    }
+
+    /**
+     * 累計寫入的項目數，包含已被覆蓋的
+     */
+    public long getTotalAdded() {
+        return sequence.get();
+    }
+
+    public int getCapacity() {
+        return slots.length();
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.auditingdemo.util;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 依呼叫者分開計算的令牌桶限流器
+ * 每個呼叫者的令牌桶以 GCRA（理論到達時間）表示，只需一個 AtomicLong，取得令牌時以 CAS 更新，
+ * 已知呼叫者的判斷路徑不持鎖也不配置物件。
+ * 呼叫者依 key 雜湊分散到多個分段，每個分段有容量上限；理論到達時間早於現在的令牌桶已完全回滿，
+ * 移除後不影響限流結果，因此閒置呼叫者可隨時淘汰。
+ */
+public class TokenBucketRateLimiter {
+
+    private final long intervalNanos;
+
+    private final long burstNanos;
+
+    private final int stripeCapacity;
+
+    private final ConcurrentHashMap<String, AtomicLong>[] stripes;
+
+    /**
+     * @param ratePerSecond 每秒補充的令牌數
+     * @param burst 令牌桶容量（允許的瞬間突發請求數）
+     * @param maxCallers 追蹤的呼叫者數量上限
+     * @param stripeCount 分段數
+     */
+    @SuppressWarnings("unchecked")
+    public TokenBucketRateLimiter(double ratePerSecond, int burst, int maxCallers, int stripeCount) {
+        this.intervalNanos = (long) (1_000_000_000L / ratePerSecond);
+        this.burstNanos = intervalNanos * burst;
+        this.stripeCapacity = Math.max(1, maxCallers / stripeCount);
+        this.stripes = new ConcurrentHashMap[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ConcurrentHashMap<>();
+        }
+    }
+
+    /**
+     * 嘗試為呼叫者取得一個令牌
+     *
+     * @return 0 表示允許；大於 0 表示被限流，值為需等待的奈秒數
+     */
+    public long tryAcquire(String key) {
+        ConcurrentHashMap<String, AtomicLong> stripe = stripeFor(key);
+        AtomicLong tat = stripe.get(key);
+        if (tat == null) {
+            tat = register(stripe, key);
+        }
+
+        long now = System.nanoTime();
+        while (true) {
+            long current = tat.get();
+            long next = Math.max(current, now) + intervalNanos;
+            long excess = next - now - burstNanos;
+            if (excess > 0) {
+                return excess;
+            }
+            if (tat.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * 歸還一個剛取得的令牌，用於取得令牌後請求仍被其他限制拒絕的情況
+     */
+    public void refund(String key) {
+        AtomicLong tat = stripeFor(key).get(key);
+        if (tat == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        while (true) {
+            long current = tat.get();
+            if (current <= now) {
+                // 令牌桶已回滿
+                return;
+            }
+            if (tat.compareAndSet(current, Math.max(now, current - intervalNanos))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 移除所有閒置（令牌桶已回滿）的呼叫者
+     *
+     * @return 移除的數量
+     */
+    public int evictIdle() {
+        long now = System.nanoTime();
+        int evicted = 0;
+        for (ConcurrentHashMap<String, AtomicLong> stripe : stripes) {
+            evicted += evictIdle(stripe, now);
+        }
+        return evicted;
+    }
+
+    public int size() {
+        int size = 0;
+        for (ConcurrentHashMap<String, AtomicLong> stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    /**
+     * 新呼叫者的慢路徑：分段已滿時先淘汰閒置呼叫者，仍然不足則淘汰任一呼叫者
+     */
+    private AtomicLong register(ConcurrentHashMap<String, AtomicLong> stripe, String key) {
+        if (stripe.size() >= stripeCapacity && evictIdle(stripe, System.nanoTime()) == 0) {
+            Iterator<String> keys = stripe.keySet().iterator();
+            if (keys.hasNext()) {
+                stripe.remove(keys.next());
+            }
+        }
+        // 初始值遠早於任何 nanoTime 讀數，代表令牌桶是滿的
+        return stripe.computeIfAbsent(key, k -> new AtomicLong(Long.MIN_VALUE / 2));
+    }
+
+    private static int evictIdle(Map<String, AtomicLong> stripe, long now) {
+        int evicted = 0;
+        for (Iterator<AtomicLong> it = stripe.values().iterator(); it.hasNext();) {
+            if (it.next().get() <= now) {
+                it.remove();
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    private ConcurrentHashMap<String, AtomicLong> stripeFor(String key) {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16);
+        return stripes[(hash & 0x7fffffff) % stripes.length];
+    }
+}
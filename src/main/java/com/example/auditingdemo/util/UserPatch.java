@@ -0,0 +1,37 @@
+package com.example.auditingdemo.util;
+
+import com.example.auditingdemo.model.User;
+
+/**
+ * 用戶部分更新
+ * 只套用請求中有提供（非 null）的欄位，帳號與密碼不在此修改
+ */
+public class UserPatch {
+
+    private UserPatch() {
+    }
+
+    public static void apply(User target, User changes) {
+        if (changes.getName() != null) {
+            target.setName(changes.getName());
+        }
+        if (changes.getEmail() != null) {
+            target.setEmail(changes.getEmail());
+        }
+        if (changes.getDescription() != null) {
+            target.setDescription(changes.getDescription());
+        }
+        if (changes.getCellphone() != null) {
+            target.setCellphone(changes.getCellphone());
+        }
+        if (changes.getCompanyId() != null) {
+            target.setCompanyId(changes.getCompanyId());
+        }
+        if (changes.getStatusId() != null) {
+            target.setStatusId(changes.getStatusId());
+        }
+        if (changes.getDefaultLanguage() != null) {
+            target.setDefaultLanguage(changes.getDefaultLanguage());
+        }
+    }
+}
@@ -0,0 +1,407 @@
+package com.example.auditingdemo.writebehind;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.auditingdemo.audit.CustomAuditorAware;
+import com.example.auditingdemo.audit.UserContext;
+import com.example.auditingdemo.audit.history.AuditHistoryWriter;
+import com.example.auditingdemo.listener.AuditEntityListener;
+import com.example.auditingdemo.model.Customer;
+import com.example.auditingdemo.repository.CustomerRepository;
+import com.example.auditingdemo.service.TokenService;
+import com.example.auditingdemo.sharding.ShardContext;
+import com.example.auditingdemo.util.CustomerPatch;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 顧客更新合併寫入（write-behind）
+ * 同一顧客在短時間內的多次 PUT 先累積在記憶體，安靜 window-ms 或累積超過 max-staleness-ms 後
+ * 以一個交易、一道 UPDATE 寫入。最後一位寫入者的審計欄位寫入資料列，
+ * 被覆蓋的中間狀態各自以當時的修改者與時間寫入 pf_audit_history。
+ *
+ * 記憶體上限：最多累積 max-pending-ids 個顧客、每個顧客 max-changes-per-id 次修改，
+ * 超過時 submit 回傳 false，由呼叫端改走同步更新。關閉時寫入所有累積的更新。
+ *
+ * 顧客編號只在分片內唯一，累積的修改以（分片, 編號）為鍵。寫入失敗時依 retry-backoff-ms 指數退避後重試，
+ * 重試 max-attempts 次仍失敗的修改已回覆過 202，不能直接丟棄，改以 JSON Lines 追加到 dead-letter-path 供人工補寫。
+ * 修改確實寫入或寫入 dead-letter 之後 written 才完成，重試中的修改由放回的那一筆代為完成，
+ * 同步更新等到重試結束才寫入，舊的修改不會在重試時覆蓋較新的同步更新
+ */
+@Slf4j
+@Component
+public class CustomerWriteBehind {
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private CustomAuditorAware auditorAware;
+
+    @Autowired
+    private AuditEntityListener auditEntityListener;
+
+    @Autowired
+    private AuditHistoryWriter historyWriter;
+
+    @Autowired
+    private TokenService tokenService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${customer.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${customer.write-behind.window-ms:200}")
+    private long windowMs;
+
+    @Value("${customer.write-behind.max-staleness-ms:1000}")
+    private long maxStalenessMs;
+
+    @Value("${customer.write-behind.max-pending-ids:10000}")
+    private int maxPendingIds;
+
+    @Value("${customer.write-behind.max-changes-per-id:100}")
+    private int maxChangesPerId;
+
+    @Value("${customer.write-behind.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${customer.write-behind.retry-backoff-ms:500}")
+    private long retryBackoffMs;
+
+    @Value("${customer.write-behind.flush-timeout-ms:5000}")
+    private long flushTimeoutMs;
+
+    @Value("${customer.write-behind.dead-letter-path:target/write-behind-dead-letter.jsonl}")
+    private String deadLetterPath;
+
+    private final Map<PendingKey, Pending> pending = new ConcurrentHashMap<>();
+
+    private record PendingKey(String shard, Long id) {
+    }
+
+    private record Change(Customer patch, String token, LocalDateTime time) {
+    }
+
+    /**
+     * 單一顧客累積中的修改；closed 之後不再接受新的修改，寫入或寫入 dead-letter 後 written 完成
+     */
+    private static final class Pending {
+
+        private final PendingKey key;
+
+        private final Long id;
+
+        private final String shard;
+
+        private final long firstNanos;
+
+        private final List<Change> changes = new ArrayList<>();
+
+        private final CompletableFuture<Void> written = new CompletableFuture<>();
+
+        private long lastNanos;
+
+        // 重試前的退避期限，排程寫入在此之前略過
+        private long notBeforeNanos;
+
+        private int attempts;
+
+        private boolean closed;
+
+        private Pending(PendingKey key, long firstNanos) {
+            this.key = key;
+            this.id = key.id();
+            this.shard = key.shard();
+            this.firstNanos = firstNanos;
+            this.lastNanos = firstNanos;
+            this.notBeforeNanos = firstNanos;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 目前分片中的顧客是否有累積中的修改
+     */
+    public boolean isPending(Long id) {
+        return pending.containsKey(currentKey(id));
+    }
+
+    /**
+     * 排入一次修改，寫入時使用目前的分片
+     *
+     * @param id 顧客編號
+     * @param patch 要修改的欄位（null 表示不修改）
+     * @param token 寫入者令牌，寫入時用來填入審計欄位
+     * @return false 表示緩衝已滿或該顧客累積的修改已達上限，呼叫端應改為同步更新
+     */
+    public boolean submit(Long id, Customer patch, String token) {
+        long now = System.nanoTime();
+        PendingKey key = currentKey(id);
+        while (true) {
+            Pending entry = pending.get(key);
+            if (entry == null) {
+                if (pending.size() >= maxPendingIds) {
+                    return false;
+                }
+                Pending created = new Pending(key, now);
+                entry = pending.putIfAbsent(key, created);
+                if (entry == null) {
+                    entry = created;
+                }
+            }
+            synchronized (entry) {
+                if (entry.closed) {
+                    // 正在寫入，重新建立一筆
+                    continue;
+                }
+                if (entry.changes.size() >= maxChangesPerId) {
+                    return false;
+                }
+                entry.changes.add(new Change(patch, token, LocalDateTime.now()));
+                entry.lastNanos = now;
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 寫入已安靜超過 window-ms、累積超過 max-staleness-ms 或修改次數已達上限的顧客；
+     * 重試中的顧客在退避期限過後就寫入，不再等待合併時間窗
+     */
+    @Scheduled(fixedDelayString = "${customer.write-behind.flush-interval-ms:50}")
+    public void flushDue() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        long now = System.nanoTime();
+        long windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+        long stalenessNanos = TimeUnit.MILLISECONDS.toNanos(maxStalenessMs);
+        for (Pending entry : pending.values()) {
+            boolean due;
+            synchronized (entry) {
+                due = now - entry.notBeforeNanos >= 0
+                        && (entry.attempts > 0
+                        || now - entry.lastNanos >= windowNanos
+                        || now - entry.firstNanos >= stalenessNanos
+                        || entry.changes.size() >= maxChangesPerId);
+            }
+            if (due) {
+                flush(entry, false);
+            }
+        }
+    }
+
+    /**
+     * 立即寫入目前分片中指定顧客累積的修改並等待完成，供同步更新與刪除前呼叫，避免與累積的修改交錯；
+     * 寫入失敗時等待排程重試寫入或寫入 dead-letter
+     *
+     * @return false 表示 flush-timeout-ms 內仍未完成，呼叫端不能繼續同步寫入
+     */
+    public boolean flush(Long id) {
+        Pending entry = pending.get(currentKey(id));
+        if (entry == null) {
+            return true;
+        }
+        flush(entry, false);
+        try {
+            entry.written.get(flushTimeoutMs, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("等待顧客ID={} 的合併寫入完成失敗: {}", id, e.toString());
+        }
+        return false;
+    }
+
+    /**
+     * 關閉時寫入所有累積的修改，失敗的不再重試，直接寫入 dead-letter 檔案
+     */
+    @PreDestroy
+    public void flushAll() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        int count = pending.size();
+        for (Pending entry : pending.values()) {
+            flush(entry, true);
+        }
+        log.info("關閉前已寫入 {} 個顧客的合併更新", count);
+    }
+
+    private PendingKey currentKey(Long id) {
+        return new PendingKey(ShardContext.getCurrentShard(), id);
+    }
+
+    private void flush(Pending entry, boolean lastChance) {
+        List<Change> changes;
+        synchronized (entry) {
+            if (entry.closed) {
+                return;
+            }
+            entry.closed = true;
+            changes = List.copyOf(entry.changes);
+        }
+        pending.remove(entry.key, entry);
+        try {
+            if (!changes.isEmpty()) {
+                write(entry, changes);
+            }
+            entry.written.complete(null);
+        } catch (RuntimeException e) {
+            if (!lastChance && entry.attempts + 1 < maxAttempts) {
+                log.warn("顧客ID={} 的合併寫入失敗，稍後重試: {}", entry.id, e.getMessage());
+                requeue(entry, changes);
+            } else {
+                log.error("顧客ID={} 的合併寫入失敗 {} 次，{} 次修改寫入 dead-letter", entry.id,
+                        entry.attempts + 1, changes.size(), e);
+                deadLetter(entry, changes, e);
+                entry.written.complete(null);
+            }
+        }
+    }
+
+    /**
+     * 把失敗的修改放回最前面，之後排入的修改仍在其後套用；第 n 次重試前等待 retry-backoff-ms x 2^(n-1)。
+     * 失敗那一筆的 written 在放回的那一筆寫入或寫入 dead-letter 時才完成
+     */
+    private void requeue(Pending failed, List<Change> changes) {
+        int attempts = failed.attempts + 1;
+        long backoffNanos = TimeUnit.MILLISECONDS.toNanos(retryBackoffMs) << Math.min(attempts - 1, 16);
+        while (true) {
+            Pending entry = pending.computeIfAbsent(failed.key, key -> new Pending(key, failed.firstNanos));
+            synchronized (entry) {
+                if (entry.closed) {
+                    continue;
+                }
+                entry.changes.addAll(0, changes);
+                entry.attempts = Math.max(entry.attempts, attempts);
+                entry.notBeforeNanos = System.nanoTime() + backoffNanos;
+                entry.written.whenComplete((result, error) -> failed.written.complete(null));
+                return;
+            }
+        }
+    }
+
+    /**
+     * 把放棄寫入的修改追加到 dead-letter 檔案，每個顧客一行 JSON；只記錄寫入者帳號，不記錄令牌。
+     * 檔案也寫不進去時，內容留在錯誤日誌中
+     */
+    private void deadLetter(Pending entry, List<Change> changes, RuntimeException cause) {
+        List<Map<String, Object>> records = new ArrayList<>(changes.size());
+        for (Change change : changes) {
+            Map<String, String> userInfo = tokenService.getUserInfoFromToken(change.token());
+            Map<String, Object> record = new LinkedHashMap<>();
+            record.put("username", userInfo != null ? userInfo.get("username") : null);
+            record.put("time", change.time());
+            record.put("patch", change.patch());
+            records.add(record);
+        }
+        Map<String, Object> letter = new LinkedHashMap<>();
+        letter.put("shard", entry.shard);
+        letter.put("customerId", entry.id);
+        letter.put("attempts", entry.attempts + 1);
+        letter.put("error", cause.toString());
+        letter.put("changes", records);
+
+        String line;
+        try {
+            line = objectMapper.writeValueAsString(letter);
+        } catch (JsonProcessingException e) {
+            log.error("無法序列化顧客ID={} 的 dead-letter: {}", entry.id, letter, e);
+            return;
+        }
+        synchronized (this) {
+            try {
+                Path file = Paths.get(deadLetterPath);
+                if (file.getParent() != null) {
+                    Files.createDirectories(file.getParent());
+                }
+                Files.writeString(file, line + System.lineSeparator(), StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.DSYNC);
+            } catch (IOException e) {
+                log.error("無法寫入 dead-letter 檔案 {}，顧客ID={} 的修改: {}", deadLetterPath, entry.id, line, e);
+            }
+        }
+    }
+
+    /**
+     * 在一個交易中依序套用所有修改：中間狀態寫入歷史，最後的狀態由 JPA 以一道 UPDATE 寫入，
+     * 審計欄位由監聽器以最後一位寫入者填入。交易開始前就切換到最後一位寫入者，
+     * 觸發器審計模式下的交易變數也是最後一位寫入者
+     */
+    private void write(Pending entry, List<Change> changes) {
+        // flush(id) 會在請求執行緒上執行，結束後還原呼叫端的上下文
+        String previousShard = ShardContext.getCurrentShard();
+        String previousUser = UserContext.getCurrentUser();
+        ShardContext.setCurrentShard(entry.shard);
+        Change last = changes.get(changes.size() - 1);
+        UserContext.setCurrentUser(last.token());
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Optional<Customer> found = customerRepository.findById(entry.id);
+                if (found.isEmpty()) {
+                    log.warn("顧客ID={} 已不存在，捨棄 {} 次合併更新", entry.id, changes.size());
+                    return;
+                }
+                Customer customer = found.get();
+                for (Change change : changes.subList(0, changes.size() - 1)) {
+                    UserContext.setCurrentUser(change.token());
+                    CustomerPatch.apply(customer, change.patch());
+                    customer.setModifiedTime(change.time());
+                    auditorAware.getCurrentAuditor().ifPresent(customer::setModifiedBy);
+                    auditEntityListener.preUpdate(customer);
+                    historyWriter.appendIntermediate(customer);
+                }
+                UserContext.setCurrentUser(last.token());
+                CustomerPatch.apply(customer, last.patch());
+            });
+            log.debug("顧客ID={} 合併寫入 {} 次修改", entry.id, changes.size());
+        } finally {
+            if (previousUser != null) {
+                UserContext.setCurrentUser(previousUser);
+            } else {
+                UserContext.clear();
+            }
+            if (previousShard != null) {
+                ShardContext.setCurrentShard(previousShard);
+            } else {
+                ShardContext.clear();
+            }
+        }
+    }
+}
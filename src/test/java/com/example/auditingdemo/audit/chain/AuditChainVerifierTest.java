@@ -0,0 +1,85 @@
+package com.example.auditingdemo.audit.chain;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 雜湊由應用程式寫入時計算：經由 API 建立與修改的顧客歷史必須串成一條鏈並通過驗證，
+ * 繞過應用程式修改歷史內容後驗證必須找到。
+ * 與 contextLoads 相同需要本機 Postgres（docker compose up -d，含 init-scripts/10-audit-hash-chain.sql）
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class AuditChainVerifierTest {
+
+    private static final String TOKEN = "Bearer test-token";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AuditChainVerifier verifier;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void applicationWrittenHistoryIsChainedAndTamperingIsDetected() throws Exception {
+        String email = "hash-chain-" + UUID.randomUUID() + "@example.com";
+        String created = mockMvc.perform(post("/api/customers").header("Authorization", TOKEN)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"雜湊鏈測試\",\"email\":\"" + email + "\"}"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        long id = objectMapper.readValue(created, JsonNode.class).get("id").asLong();
+        try {
+            for (String address : new String[] {"第一個地址", "第二個地址"}) {
+                mockMvc.perform(put("/api/customers/" + id).header("Authorization", TOKEN).header("If-Match", "*")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"address\":\"" + address + "\"}"))
+                        .andExpect(status().isOk());
+            }
+
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                    "SELECT prev_hash, hash FROM pf_audit_history WHERE entity_type = 'Customer' AND entity_id = ? "
+                    + "ORDER BY id", id);
+            assertEquals(3, rows.size());
+            assertNull(rows.get(0).get("prev_hash"));
+            assertArrayEquals((byte[]) rows.get(0).get("hash"), (byte[]) rows.get(1).get("prev_hash"));
+            assertArrayEquals((byte[]) rows.get(1).get("hash"), (byte[]) rows.get(2).get("prev_hash"));
+            assertTrue(verifier.verify("Customer", 1).isIntact());
+
+            jdbcTemplate.update("UPDATE pf_audit_history SET payload = jsonb_set(payload, '{address}', '\"竄改的地址\"') "
+                    + "WHERE id = (SELECT max(id) FROM pf_audit_history WHERE entity_type = 'Customer' AND entity_id = ?)", id);
+            AuditChainReport tampered = verifier.verify("Customer", 1);
+            assertEquals(1, tampered.breakCount());
+            assertEquals(AuditChainBreak.Kind.HASH_MISMATCH, tampered.breaks().get(0).kind());
+            assertEquals(id, tampered.breaks().get(0).entityId());
+        } finally {
+            jdbcTemplate.update("DELETE FROM pf_audit_history WHERE entity_type = 'Customer' AND entity_id = ?", id);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.auditingdemo.audit.spool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.auditingdemo.audit.outbox.AuditOutboxEvent;
+import com.example.auditingdemo.audit.outbox.AuditOutboxWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+class AuditSpoolTest {
+
+    @TempDir
+    Path dir;
+
+    private final List<Long> delivered = new ArrayList<>();
+
+    @Test
+    void inProgressTransactionDoesNotBlockLaterCommits() throws Exception {
+        AuditSpool spool = newSpool();
+        long slow = spool.nextTransactionId();
+        long fast = spool.nextTransactionId();
+        spool.append(SpoolRecord.event(event(1L), slow, null));
+        spool.append(SpoolRecord.event(event(2L), fast, null));
+        spool.appendOutcome(SpoolRecord.Type.COMMITTED, fast);
+
+        spool.drain();
+        assertEquals(List.of(2L), delivered);
+
+        spool.appendOutcome(SpoolRecord.Type.COMMITTED, slow);
+        spool.drain();
+        assertEquals(List.of(2L, 1L), delivered);
+    }
+
+    @Test
+    void unknownOutcomeIsQuarantinedNotDelivered() throws Exception {
+        AuditSpool spool = newSpool();
+        long rolledBack = spool.nextTransactionId();
+        long unknown = spool.nextTransactionId();
+        spool.append(SpoolRecord.event(event(1L), rolledBack, null));
+        spool.append(SpoolRecord.event(event(2L), unknown, null));
+        spool.appendOutcome(SpoolRecord.Type.ROLLED_BACK, rolledBack);
+        spool.appendOutcome(SpoolRecord.Type.UNKNOWN, unknown);
+
+        spool.drain();
+        assertTrue(delivered.isEmpty());
+        assertEquals(1, Files.readAllLines(dir.resolve("quarantine.jsonl")).size());
+    }
+
+    @Test
+    void transactionWithoutOutcomeFromPreviousRunIsQuarantined() throws Exception {
+        AuditSpool crashed = newSpool();
+        long lost = crashed.nextTransactionId();
+        long committed = crashed.nextTransactionId();
+        crashed.append(SpoolRecord.event(event(1L), lost, null));
+        crashed.append(SpoolRecord.event(event(2L), committed, null));
+        crashed.appendOutcome(SpoolRecord.Type.COMMITTED, committed);
+
+        // 不呼叫 shutdown，模擬程序當機
+        AuditSpool restarted = newSpool();
+        restarted.drain();
+        assertEquals(List.of(2L), delivered);
+        assertEquals(1, Files.readAllLines(dir.resolve("quarantine.jsonl")).size());
+    }
+
+    private AuditSpool newSpool() throws Exception {
+        AuditOutboxWriter writer = new AuditOutboxWriter() {
+            @Override
+            public void insertBatch(List<AuditOutboxEvent> events) {
+                events.forEach(event -> delivered.add(event.getEntityId()));
+            }
+        };
+        AuditSpool spool = new AuditSpool();
+        ReflectionTestUtils.setField(spool, "outboxWriter", writer);
+        ReflectionTestUtils.setField(spool, "transactionTemplate",
+                new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        ReflectionTestUtils.setField(spool, "objectMapper", new ObjectMapper().registerModule(new JavaTimeModule()));
+        ReflectionTestUtils.setField(spool, "dir", dir.toString());
+        ReflectionTestUtils.setField(spool, "segmentSize", 64 * 1024);
+        ReflectionTestUtils.setField(spool, "maxSegments", 4);
+        ReflectionTestUtils.setField(spool, "batchSize", 100);
+        spool.recover();
+        return spool;
+    }
+
+    private static AuditOutboxEvent event(Long entityId) {
+        return AuditOutboxEvent.builder()
+                .entityType("Customer")
+                .entityId(entityId)
+                .operation("UPDATE")
+                .actorId(1L)
+                .payload("{}")
+                .createdTime(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.auditingdemo.audit.spool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SpoolSegmentTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replaysUnconsumedRecordsAfterReopen() throws Exception {
+        Path file = dir.resolve("segment-1.spool");
+        SpoolSegment segment = SpoolSegment.create(file, 1, 4096);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(segment.append(("event-" + i).getBytes(StandardCharsets.UTF_8)));
+        }
+
+        List<byte[]> firstBatch = new ArrayList<>();
+        segment.commit(segment.read(segment.getConsumedOffset(), 2, firstBatch));
+        segment.force();
+
+        SpoolSegment reopened = SpoolSegment.open(file, 1);
+        List<byte[]> replayed = new ArrayList<>();
+        reopened.read(reopened.getConsumedOffset(), 10, replayed);
+
+        assertEquals(3, replayed.size());
+        assertArrayEquals("event-2".getBytes(StandardCharsets.UTF_8), replayed.get(0));
+        assertTrue(reopened.isSealed());
+    }
+
+    @Test
+    void rejectsRecordThatDoesNotFit() throws Exception {
+        SpoolSegment segment = SpoolSegment.create(dir.resolve("segment-2.spool"), 2, 64);
+        assertTrue(segment.append(new byte[32]));
+        assertFalse(segment.append(new byte[32]));
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.auditingdemo.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.crypto.Mac;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.auditingdemo.AuditingDemoApplication;
+import com.example.auditingdemo.audit.chain.AuditChainContent;
+import com.example.auditingdemo.audit.chain.AuditChainKey;
+import com.example.auditingdemo.audit.chain.AuditChainReport;
+import com.example.auditingdemo.audit.chain.AuditChainVerifier;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * 雜湊鏈驗證的平行擴展
+ * 以 JDBC batch 寫入 ENTITIES 個實體、每個 HISTORY_PER_ENTITY 筆歷史（雜湊以與 AuditHistoryWriter 相同的方式計算），
+ * 再以 1、2、4 … CPU 核心數個執行緒驗證，印出每秒驗證筆數與相對單執行緒的加速比。
+ * 最後竄改一筆歷史，確認驗證會找到；結束時刪除
+ * 需要本機 Postgres（docker compose up -d，含 init-scripts/10-audit-hash-chain.sql）
+ * 執行: ./mvnw test -Pbenchmark -Dtest=AuditChainVerifyBenchmark
+ */
+@Tag("benchmark")
+class AuditChainVerifyBenchmark {
+
+    private static final int ENTITIES = Integer.getInteger("benchmark.chain.entities", 100_000);
+
+    private static final int HISTORY_PER_ENTITY = Integer.getInteger("benchmark.chain.history-per-entity", 10);
+
+    private static final String ENTITY_TYPE = "BenchChain";
+
+    private static final String SEED_SQL =
+            "INSERT INTO pf_audit_history (entity_type, entity_id, operation, actor_id, payload, changed_time, prev_hash, hash) "
+            + "VALUES (?, ?, 'UPDATE', 1, CAST(? AS jsonb), ?, ?, ?)";
+
+    private static final LocalDateTime SEED_START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    @Test
+    void scaleWithThreads() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(AuditingDemoApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.hikari.maximum-pool-size=" + (cores + 2),
+                        "spring.jpa.show-sql=false",
+                        "logging.level.com.example.auditingdemo=INFO",
+                        "logging.level.org.springframework.transaction=INFO")
+                .run()) {
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            AuditChainVerifier verifier = context.getBean(AuditChainVerifier.class);
+
+            cleanUp(jdbcTemplate);
+            try {
+                seed(jdbcTemplate, context.getEnvironment().getProperty("audit.chain.hmac-key"));
+                // 暖機
+                verifier.verify(ENTITY_TYPE, cores);
+
+                List<Integer> parallelisms = new ArrayList<>();
+                for (int threads = 1; threads < cores; threads *= 2) {
+                    parallelisms.add(threads);
+                }
+                parallelisms.add(cores);
+
+                double baseline = 0;
+                for (int threads : parallelisms) {
+                    AuditChainReport report = verifier.verify(ENTITY_TYPE, threads);
+                    assertTrue(report.isIntact());
+                    double perSecond = report.records() * 1000.0 / Math.max(report.elapsedMs(), 1);
+                    if (baseline == 0) {
+                        baseline = perSecond;
+                    }
+                    System.out.printf("threads=%-3d records=%,d  %,8d ms  %,12.0f records/s  speedup=%.2fx%n",
+                            threads, report.records(), report.elapsedMs(), perSecond, perSecond / baseline);
+                }
+
+                jdbcTemplate.update("UPDATE pf_audit_history SET actor_id = 2 WHERE id = "
+                        + "(SELECT max(id) FROM pf_audit_history WHERE entity_type = ? AND entity_id = 1)", ENTITY_TYPE);
+                // 以 OFFSET 取同一實體的第二筆
+                jdbcTemplate.update("DELETE FROM pf_audit_history WHERE id = (SELECT id FROM pf_audit_history "
+                        + "WHERE entity_type = ? AND entity_id = 2 ORDER BY id OFFSET 1 LIMIT 1)", ENTITY_TYPE);
+                AuditChainReport tampered = verifier.verify(ENTITY_TYPE, cores);
+                assertEquals(2, tampered.breakCount());
+            } finally {
+                cleanUp(jdbcTemplate);
+            }
+        }
+    }
+
+    private void seed(JdbcTemplate jdbcTemplate, String hmacKey) {
+        long start = System.nanoTime();
+        Mac mac = AuditChainKey.newMac(hmacKey);
+        ObjectMapper objectMapper = new ObjectMapper();
+        List<Object[]> rows = new ArrayList<>();
+        for (long e = 1; e <= ENTITIES; e++) {
+            byte[] prevHash = null;
+            for (int v = 1; v <= HISTORY_PER_ENTITY; v++) {
+                ObjectNode payload = objectMapper.createObjectNode().put("id", e).put("version", v);
+                LocalDateTime changedTime = SEED_START.plusSeconds(v);
+                byte[] hash = AuditChainKey.hash(mac, prevHash,
+                        AuditChainContent.of(ENTITY_TYPE, e, "UPDATE", 1L, payload, changedTime));
+                rows.add(new Object[] {ENTITY_TYPE, e, payload.toString(), Timestamp.valueOf(changedTime), prevHash, hash});
+                prevHash = hash;
+            }
+            if (rows.size() >= 10_000) {
+                jdbcTemplate.batchUpdate(SEED_SQL, rows);
+                rows.clear();
+            }
+        }
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(SEED_SQL, rows);
+        }
+        System.out.printf("seeded %,d history rows in %,d ms%n",
+                (long) ENTITIES * HISTORY_PER_ENTITY, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void cleanUp(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.update("DELETE FROM pf_audit_history WHERE entity_type = ?", ENTITY_TYPE);
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.auditingdemo.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.auditingdemo.AuditingDemoApplication;
+import com.example.auditingdemo.audit.UserContext;
+import com.example.auditingdemo.repository.CustomerRepository;
+import com.example.auditingdemo.service.CustomerBulkService;
+
+/**
+ * 審計模式比較：JPA 監聽器（listener）與資料庫觸發器（trigger）
+ * 依序以兩種模式啟動應用程式，量測逐筆更新（每筆一個交易）與批次修改公司名稱的耗時，並確認兩者寫入的歷史筆數相同。
+ * 種子資料以自動提交寫入，不會觸發審計；結束時刪除
+ * 需要本機 Postgres（docker compose up -d，含 init-scripts/08-audit-triggers.sql）
+ * 執行: ./mvnw test -Pbenchmark -Dtest=AuditModeBenchmark
+ */
+@Tag("benchmark")
+class AuditModeBenchmark {
+
+    private static final int SINGLE_UPDATES = Integer.getInteger("benchmark.audit-mode.single-updates", 2_000);
+
+    private static final int BULK_ROWS = Integer.getInteger("benchmark.audit-mode.bulk-rows", 20_000);
+
+    private static final String COMPANY = "bench-audit-mode";
+
+    private static final String RENAMED = "bench-audit-mode-renamed";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO pf_customer (name, email, company, created_by, modified_by) VALUES (?, ?, ?, 1, 1)";
+
+    @Test
+    void compareAuditModes() {
+        for (String mode : List.of("listener", "trigger")) {
+            try (ConfigurableApplicationContext context = start(mode)) {
+                run(mode, context);
+            }
+        }
+    }
+
+    private ConfigurableApplicationContext start(String mode) {
+        return new SpringApplicationBuilder(AuditingDemoApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "audit.mode=" + mode,
+                        "audit.history.enabled=true",
+                        "spring.jpa.show-sql=false",
+                        "spring.jpa.properties.hibernate.jdbc.batch_size=100",
+                        "logging.level.com.example.auditingdemo=INFO",
+                        "logging.level.org.springframework.transaction=INFO",
+                        "logging.level.org.hibernate.type.descriptor.sql=INFO")
+                .run();
+    }
+
+    private void run(String mode, ConfigurableApplicationContext context) {
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        TransactionTemplate transactionTemplate = context.getBean(TransactionTemplate.class);
+        CustomerRepository customerRepository = context.getBean(CustomerRepository.class);
+        CustomerBulkService bulkService = context.getBean(CustomerBulkService.class);
+
+        cleanUp(jdbcTemplate);
+        seed(jdbcTemplate);
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT id FROM pf_customer WHERE company = ? ORDER BY id LIMIT ?", Long.class, COMPANY, SINGLE_UPDATES);
+        UserContext.setCurrentUser("kenbai");
+        try {
+            // 暖機
+            bulkService.renameCompany(COMPANY, RENAMED);
+            bulkService.renameCompany(RENAMED, COMPANY);
+
+            long start = System.nanoTime();
+            for (Long id : ids) {
+                transactionTemplate.executeWithoutResult(status -> customerRepository.findById(id).ifPresent(customer -> {
+                    customer.setPhone(String.valueOf(System.nanoTime() % 1_000_000_000L));
+                    customerRepository.save(customer);
+                }));
+            }
+            long singleNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int updated = bulkService.renameCompany(COMPANY, RENAMED);
+            long bulkNanos = System.nanoTime() - start;
+
+            Integer history = jdbcTemplate.queryForObject(
+                    "SELECT count(*) FROM pf_audit_history h JOIN pf_customer c ON c.id = h.entity_id "
+                    + "WHERE h.entity_type = 'Customer' AND c.company = ?", Integer.class, RENAMED);
+
+            System.out.printf("%-8s single: %,6d updates %,9.1f ms (%,7.3f ms/update)  bulk: %,7d rows %,9.1f ms  history rows=%,d%n",
+                    mode, ids.size(), singleNanos / 1e6, singleNanos / 1e6 / Math.max(ids.size(), 1),
+                    updated, bulkNanos / 1e6, history);
+        } finally {
+            UserContext.clear();
+            cleanUp(jdbcTemplate);
+        }
+    }
+
+    private void seed(JdbcTemplate jdbcTemplate) {
+        List<Object[]> rows = new ArrayList<>(BULK_ROWS);
+        for (int i = 0; i < BULK_ROWS; i++) {
+            rows.add(new Object[] {"bench-" + i, "bench-" + i + "@example.com", COMPANY});
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+    }
+
+    private void cleanUp(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.update("DELETE FROM pf_audit_history h USING pf_customer c "
+                + "WHERE h.entity_type = 'Customer' AND h.entity_id = c.id AND c.company IN (?, ?)", COMPANY, RENAMED);
+        jdbcTemplate.update("DELETE FROM pf_customer WHERE company IN (?, ?)", COMPANY, RENAMED);
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.auditingdemo.benchmark;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.example.auditingdemo.audit.outbox.AuditOutboxEvent;
+import com.example.auditingdemo.audit.spool.SpoolRecord;
+import com.example.auditingdemo.audit.spool.SpoolRecordCodec;
+import com.example.auditingdemo.audit.spool.SpoolSegment;
+
+/**
+ * 審計 spool 與直接寫入資料庫的吞吐量/延遲比較
+ * 執行: ./mvnw test -Pbenchmark -Dtest=AuditSpoolBenchmark
+ * 設定 -Dbenchmark.jdbc.url=jdbc:postgresql://localhost:5432/auditing 時一併量測直接寫入 pf_audit_outbox
+ */
+@Tag("benchmark")
+class AuditSpoolBenchmark {
+
+    private static final int EVENTS = 200_000;
+
+    private static final int DB_EVENTS = 5_000;
+
+    private static final String PAYLOAD =
+            "{\"id\":42,\"name\":\"測試顧客\",\"email\":\"customer@example.com\",\"company\":\"拓連科技\","
+            + "\"createdCompany\":\"拓連科技\",\"createdUnit\":\"行銷部\",\"createdName\":\"肯白\"}";
+
+    @Test
+    void spoolVersusDirectInsert() throws Exception {
+        AuditOutboxEvent event = AuditOutboxEvent.builder()
+                .entityType("Customer")
+                .entityId(42L)
+                .operation("UPDATE")
+                .actorId(1L)
+                .payload(PAYLOAD)
+                .createdTime(LocalDateTime.now())
+                .build();
+
+        Path dir = Files.createTempDirectory("audit-spool-benchmark");
+        SpoolSegment segment = SpoolSegment.create(dir.resolve("segment-1.spool"), 1, 256 * 1024 * 1024);
+        long[] latencies = new long[EVENTS];
+        long start = System.nanoTime();
+        for (int i = 0; i < EVENTS; i++) {
+            long t0 = System.nanoTime();
+            // 每個事件各自一個交易：事件加上交易結果
+            segment.append(SpoolRecordCodec.encode(SpoolRecord.event(event, i + 1, null)));
+            segment.append(SpoolRecordCodec.encode(SpoolRecord.outcome(SpoolRecord.Type.COMMITTED, i + 1)));
+            latencies[i] = System.nanoTime() - t0;
+        }
+        report("spool", EVENTS, System.nanoTime() - start, latencies);
+
+        String url = System.getProperty("benchmark.jdbc.url");
+        if (url == null) {
+            return;
+        }
+        try (Connection connection = DriverManager.getConnection(url,
+                System.getProperty("benchmark.jdbc.user", "postgres"),
+                System.getProperty("benchmark.jdbc.password", "postgres"));
+                PreparedStatement statement = connection.prepareStatement(
+                        "INSERT INTO pf_audit_outbox (entity_type, entity_id, operation, actor_id, payload, created_time) "
+                        + "VALUES (?, ?, ?, ?, CAST(? AS jsonb), ?)")) {
+            long[] dbLatencies = new long[DB_EVENTS];
+            start = System.nanoTime();
+            for (int i = 0; i < DB_EVENTS; i++) {
+                long t0 = System.nanoTime();
+                statement.setString(1, event.getEntityType());
+                statement.setLong(2, event.getEntityId());
+                statement.setString(3, event.getOperation());
+                statement.setLong(4, event.getActorId());
+                statement.setString(5, event.getPayload());
+                statement.setTimestamp(6, Timestamp.valueOf(event.getCreatedTime()));
+                statement.executeUpdate();
+                dbLatencies[i] = System.nanoTime() - t0;
+            }
+            report("direct-db", DB_EVENTS, System.nanoTime() - start, dbLatencies);
+        }
+    }
+
+    private static void report(String name, int count, long elapsedNanos, long[] latencies) {
+        Arrays.sort(latencies);
+        System.out.printf("%-10s %,12.0f events/s  p50=%,dns  p99=%,dns  p999=%,dns%n",
+                name,
+                count / (elapsedNanos / 1e9),
+                latencies[count / 2],
+                latencies[(int) (count * 0.99)],
+                latencies[(int) (count * 0.999)]);
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.auditingdemo.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurationPackages;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import com.example.auditingdemo.audit.AuditableInterface;
+import com.example.auditingdemo.audit.UserAuditableInterface;
+import com.example.auditingdemo.audit.UserContext;
+import com.example.auditingdemo.audit.dictionary.AuditDictionary;
+import com.example.auditingdemo.audit.metadata.AuditMetadataRegistry;
+import com.example.auditingdemo.listener.AuditEntityListener;
+import com.example.auditingdemo.model.Customer;
+import com.example.auditingdemo.model.User;
+import com.example.auditingdemo.service.TokenService;
+
+/**
+ * 擴展審計欄位填寫方式比較
+ * 改寫前的 instanceof 判斷 + 每次 ApplicationContext.getBean，與 AuditMetadataRegistry 啟動時產生的填寫策略。
+ * 只量測 @PreUpdate 本身，不含資料庫；改寫前的做法不處理 Customer，因此只以 User 比較
+ * 執行: ./mvnw test -Pbenchmark -Dtest=AuditStampingBenchmark
+ */
+@Tag("benchmark")
+class AuditStampingBenchmark {
+
+    private static final int OPERATIONS = 1_000_000;
+
+    private static final int WARMUP = 5;
+
+    private static final int ITERATIONS = 20;
+
+    @Test
+    void compareStamping() {
+        // TokenService 每次查詢都會寫 INFO 日誌，量測時關閉
+        LoggingSystem.get(getClass().getClassLoader()).setLogLevel("com.example.auditingdemo", LogLevel.WARN);
+
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            AutoConfigurationPackages.register(context, "com.example.auditingdemo");
+            context.registerBean(JdbcTemplate.class, () -> new JdbcTemplate(new DriverManagerDataSource()));
+            context.register(TokenService.class, AuditDictionary.class, AuditMetadataRegistry.class, AuditEntityListener.class);
+            context.refresh();
+
+            LegacyAuditEntityListener legacy = new LegacyAuditEntityListener(context);
+            AuditEntityListener listener = context.getBean(AuditEntityListener.class);
+            User user = new User();
+            Customer customer = new Customer();
+
+            UserContext.setCurrentUser("test-token");
+            try {
+                measure("user: instanceof+getBean", () -> legacy.preUpdate(user));
+                measure("user: registry", () -> listener.preUpdate(user));
+                measure("customer: registry", () -> listener.preUpdate(customer));
+            } finally {
+                UserContext.clear();
+            }
+        }
+    }
+
+    private static void measure(String name, Runnable operation) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < WARMUP; i++) {
+            for (int j = 0; j < OPERATIONS; j++) {
+                operation.run();
+            }
+        }
+        long[] latencies = new long[ITERATIONS];
+        long allocated = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long bytesBefore = threads.getCurrentThreadAllocatedBytes();
+            long t0 = System.nanoTime();
+            for (int j = 0; j < OPERATIONS; j++) {
+                operation.run();
+            }
+            latencies[i] = System.nanoTime() - t0;
+            allocated += threads.getCurrentThreadAllocatedBytes() - bytesBefore;
+        }
+        Arrays.sort(latencies);
+        System.out.printf("%-26s %,7.1f ns/op  alloc/op=%,6.1f B  (p50 of %d x %,d ops)%n",
+                name,
+                latencies[ITERATIONS / 2] / (double) OPERATIONS,
+                allocated / (double) ITERATIONS / OPERATIONS,
+                ITERATIONS, OPERATIONS);
+    }
+
+    /**
+     * 與改寫前 AuditEntityListener#preUpdate 相同的做法
+     */
+    private static final class LegacyAuditEntityListener {
+
+        private final ApplicationContext applicationContext;
+
+        LegacyAuditEntityListener(ApplicationContext applicationContext) {
+            this.applicationContext = applicationContext;
+        }
+
+        void preUpdate(Object entity) {
+            if (entity instanceof AuditableInterface auditable) {
+                Map<String, String> userInfo = userInfo();
+                auditable.setModifiedCompany(userInfo != null ? userInfo.get("company") : "系統");
+                auditable.setModifiedUnit(userInfo != null ? userInfo.get("unit") : "系統");
+                AuditDictionary dictionary = applicationContext.getBean(AuditDictionary.class);
+                auditable.setModifiedCompany(dictionary.canonical(auditable.getModifiedCompany()));
+                auditable.setModifiedUnit(dictionary.canonical(auditable.getModifiedUnit()));
+
+                if (entity instanceof UserAuditableInterface userAuditable) {
+                    Map<String, String> info = userInfo();
+                    userAuditable.setModifiedName(info != null ? info.get("name") : "系統");
+                    userAuditable.setModifiedName(applicationContext.getBean(AuditDictionary.class)
+                            .canonical(userAuditable.getModifiedName()));
+                }
+            }
+        }
+
+        private Map<String, String> userInfo() {
+            String token = UserContext.getCurrentUser();
+            if (token == null || token.isEmpty()) {
+                return null;
+            }
+            return applicationContext.getBean(TokenService.class).getUserInfoFromToken(token);
+        }
+    }
+}
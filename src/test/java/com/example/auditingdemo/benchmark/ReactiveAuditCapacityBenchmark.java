@@ -0,0 +1,122 @@
+package com.example.auditingdemo.benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import com.example.auditingdemo.util.AuditJsonRows;
+
+/**
+ * 審計查詢的併發容量比較：阻塞（JPA + servlet 執行緒）與非阻塞（R2DBC + NDJSON）
+ * 刻意把 Tomcat 執行緒數壓低，觀察併發請求數超過執行緒數後兩者的吞吐量與尾端延遲
+ * 需要本機 Postgres（docker compose up -d），資料越多差異越明顯
+ * 執行: ./mvnw test -Pbenchmark -Dtest=ReactiveAuditCapacityBenchmark
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "server.tomcat.threads.max=16",
+        "rate-limit.enabled=false",
+        "concurrency.limit.enabled=false",
+        "spring.jpa.show-sql=false",
+        "logging.level.com.example.auditingdemo=INFO",
+        "logging.level.org.springframework.transaction=INFO",
+        "logging.level.org.hibernate.type.descriptor.sql=INFO"
+})
+class ReactiveAuditCapacityBenchmark {
+
+    private static final int[] CONCURRENCY = {16, 64, 256};
+
+    private static final Duration DURATION = Duration.ofSeconds(15);
+
+    @LocalServerPort
+    private int port;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+
+    @Test
+    void compareConcurrentCapacity() throws Exception {
+        LocalDateTime end = LocalDateTime.now();
+        String range = "?start=" + encode(AuditJsonRows.format(end.minusDays(30)))
+                + "&end=" + encode(AuditJsonRows.format(end));
+        URI blocking = URI.create("http://localhost:" + port + "/api/customers/audit/modified" + range);
+        URI reactive = URI.create("http://localhost:" + port + "/api/reactive/customers/audit/modified" + range);
+
+        // 暖機
+        run(blocking, "application/json", 16, Duration.ofSeconds(5));
+        run(reactive, "application/x-ndjson", 16, Duration.ofSeconds(5));
+
+        for (int concurrency : CONCURRENCY) {
+            report("blocking", concurrency, run(blocking, "application/json", concurrency, DURATION));
+            report("reactive", concurrency, run(reactive, "application/x-ndjson", concurrency, DURATION));
+        }
+    }
+
+    private record Result(Histogram histogram, long completed, long failed) {
+    }
+
+    private Result run(URI uri, String accept, int concurrency, Duration duration) throws InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Accept", accept)
+                .header("Authorization", "Bearer kenbai")
+                .timeout(Duration.ofSeconds(60))
+                .GET()
+                .build();
+        Recorder recorder = new Recorder(Duration.ofMinutes(1).toNanos(), 3);
+        AtomicLong completed = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        long deadline = System.nanoTime() + duration.toNanos();
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < concurrency; i++) {
+                workers.submit(() -> {
+                    while (System.nanoTime() < deadline) {
+                        long t0 = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() == 200) {
+                                completed.incrementAndGet();
+                            } else {
+                                failed.incrementAndGet();
+                            }
+                        } catch (IOException e) {
+                            failed.incrementAndGet();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                        recorder.recordValue(Math.min(System.nanoTime() - t0, Duration.ofMinutes(1).toNanos()));
+                    }
+                });
+            }
+        }
+        return new Result(recorder.getIntervalHistogram(), completed.get(), failed.get());
+    }
+
+    private void report(String name, int concurrency, Result result) {
+        Histogram h = result.histogram();
+        System.out.printf("%-9s concurrency=%4d  %,8.1f req/s  p50=%,8.1f ms  p99=%,8.1f ms  failed=%d%n",
+                name, concurrency, result.completed() / (DURATION.toNanos() / 1e9),
+                h.getValueAtPercentile(50) / 1e6, h.getValueAtPercentile(99) / 1e6, result.failed());
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
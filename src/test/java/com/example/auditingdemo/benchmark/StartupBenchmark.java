@@ -0,0 +1,116 @@
+package com.example.auditingdemo.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 啟動時間量測：從啟動 JVM 到第一個成功（200）的請求
+ * 需要先打包（-Pstartup 才有 AOT + CDS 組合）並啟動資料庫，健康檢查會連線資料庫
+ * 執行: ./mvnw -Pstartup package -DskipTests && ./mvnw test -Pbenchmark -Dtest=StartupBenchmark
+ */
+@Tag("benchmark")
+class StartupBenchmark {
+
+    private static final String JAR_NAME = "auditing-demo-0.0.1-SNAPSHOT.jar";
+
+    private static final int PORT = Integer.getInteger("benchmark.startup.port", 18080);
+
+    private static final int RUNS = Integer.getInteger("benchmark.startup.runs", 5);
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(60);
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofMillis(200))
+            .build();
+
+    @Test
+    void timeToFirstSuccessfulRequest() throws Exception {
+        Path jar = Path.of("target", JAR_NAME);
+        Assumptions.assumeTrue(Files.exists(jar), "請先執行 ./mvnw package");
+        String url = System.getProperty("benchmark.startup.url", "http://localhost:" + PORT + "/actuator/health");
+
+        measure("default", url, List.of("-jar", jar.toString()));
+        measure("fast-startup", url, List.of("-jar", jar.toString(), "--spring.profiles.active=fast-startup"));
+
+        Path startupDir = Path.of("target", "startup");
+        Path archive = startupDir.resolve("application.jsa");
+        if (Files.exists(archive)) {
+            measure("aot+cds+fast-startup", url, List.of(
+                    "-XX:SharedArchiveFile=" + archive,
+                    "-Dspring.aot.enabled=true",
+                    "-jar", startupDir.resolve(JAR_NAME).toString(),
+                    "--spring.profiles.active=fast-startup"));
+        }
+    }
+
+    private void measure(String name, String url, List<String> args) throws Exception {
+        long[] millis = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            millis[i] = startOnce(url, args);
+        }
+        Arrays.sort(millis);
+        System.out.printf("%-24s min=%,6d ms  p50=%,6d ms  max=%,6d ms%n",
+                name, millis[0], millis[RUNS / 2], millis[RUNS - 1]);
+    }
+
+    /**
+     * 啟動一次應用程式，輪詢直到請求成功，回傳經過的毫秒數
+     */
+    private long startOnce(String url, List<String> args) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(args);
+        command.add("--server.port=" + PORT);
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofSeconds(5))
+                .GET()
+                .build();
+
+        long start = System.nanoTime();
+        ProcessBuilder builder = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(new File("target/startup-benchmark.log"));
+        // 未設定雜湊鏈金鑰時應用程式拒絕啟動，量測用的程序使用本機開發的金鑰
+        builder.environment().putIfAbsent("AUDIT_CHAIN_HMAC_KEY", "local-dev-audit-chain-key");
+        Process process = builder.start();
+        try {
+            long deadline = start + TIMEOUT.toNanos();
+            while (System.nanoTime() < deadline) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("應用程式啟動失敗，請查看 target/startup-benchmark.log");
+                }
+                try {
+                    HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                    if (response.statusCode() == 200) {
+                        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    }
+                } catch (IOException e) {
+                    // 尚未開始監聽
+                }
+                Thread.sleep(10);
+            }
+            throw new IllegalStateException("等待第一個成功請求逾時: " + url);
+        } finally {
+            process.destroy();
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.auditingdemo.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.example.auditingdemo.model.Customer;
+import com.example.auditingdemo.model.User;
+import com.example.auditingdemo.util.AuditJsonRows;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+
+/**
+ * 大量清單回應的序列化方式比較（10 萬筆）
+ * 比較舊的「每列 Map + 完整 List」與 JsonGenerator 逐列輸出的配置量與延遲，不含資料庫讀取時間
+ * 執行: ./mvnw test -Pbenchmark -Dtest=StreamingSerializationBenchmark
+ */
+@Tag("benchmark")
+class StreamingSerializationBenchmark {
+
+    private static final int ROWS = 100_000;
+
+    private static final int WARMUP = 5;
+
+    private static final int ITERATIONS = 30;
+
+    @FunctionalInterface
+    private interface Scenario {
+        void run() throws IOException;
+    }
+
+    @Test
+    void compareAuditSerialization() throws Exception {
+        List<Customer> customers = createCustomers();
+        ObjectMapper plain = new ObjectMapper().registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        ObjectMapper blackbird = plain.copy().registerModule(new BlackbirdModule());
+        ObjectWriter customerWriter = blackbird.writerFor(Customer.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        measure("audit: map+list", () -> plain.writeValue(OutputStream.nullOutputStream(), legacyAudit(customers)));
+        measure("audit: generator", () -> {
+            try (JsonGenerator gen = blackbird.getFactory().createGenerator(OutputStream.nullOutputStream())) {
+                gen.writeStartArray();
+                for (Customer customer : customers) {
+                    AuditJsonRows.writeCustomerAudit(gen, customer);
+                }
+                gen.writeEndArray();
+            }
+        });
+        measure("list: reflection", () -> plain.writeValue(OutputStream.nullOutputStream(), customers));
+        measure("list: blackbird stream", () -> {
+            try (JsonGenerator gen = blackbird.getFactory().createGenerator(OutputStream.nullOutputStream())) {
+                gen.writeStartArray();
+                for (Customer customer : customers) {
+                    customerWriter.writeValue(gen, customer);
+                }
+                gen.writeEndArray();
+            }
+        });
+    }
+
+    /**
+     * 與改寫前 getAuditInfo 相同的做法
+     */
+    private static List<Map<String, Object>> legacyAudit(List<Customer> customers) {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+        ZoneId zoneId = ZoneId.of("Asia/Taipei");
+        return customers.stream()
+                .map(customer -> {
+                    Map<String, Object> auditInfo = new HashMap<>();
+                    auditInfo.put("customerId", customer.getId());
+                    auditInfo.put("customerName", customer.getName());
+                    auditInfo.put("createdBy", customer.getCreatedBy().getUsername());
+                    auditInfo.put("createdByName", customer.getCreatedBy().getName());
+                    auditInfo.put("createdTime", customer.getCreatedTime().atZone(zoneId).format(formatter));
+                    auditInfo.put("createdCompany", customer.getCreatedCompany());
+                    auditInfo.put("createdUnit", customer.getCreatedUnit());
+                    auditInfo.put("createdName", customer.getCreatedName());
+                    auditInfo.put("modifiedBy", customer.getModifiedBy().getUsername());
+                    auditInfo.put("modifiedByName", customer.getModifiedBy().getName());
+                    auditInfo.put("modifiedTime", customer.getModifiedTime().atZone(zoneId).format(formatter));
+                    auditInfo.put("modifiedCompany", customer.getModifiedCompany());
+                    auditInfo.put("modifiedUnit", customer.getModifiedUnit());
+                    auditInfo.put("modifiedName", customer.getModifiedName());
+                    return auditInfo;
+                })
+                .collect(Collectors.toList());
+    }
+
+    private static void measure(String name, Scenario scenario) throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < WARMUP; i++) {
+            scenario.run();
+        }
+        long[] latencies = new long[ITERATIONS];
+        long allocated = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long bytesBefore = threads.getCurrentThreadAllocatedBytes();
+            long t0 = System.nanoTime();
+            scenario.run();
+            latencies[i] = System.nanoTime() - t0;
+            allocated += threads.getCurrentThreadAllocatedBytes() - bytesBefore;
+        }
+        Arrays.sort(latencies);
+        System.out.printf("%-24s alloc/op=%,8.1f MB  p50=%,7.1f ms  p99=%,7.1f ms%n",
+                name,
+                allocated / (double) ITERATIONS / (1024 * 1024),
+                latencies[ITERATIONS / 2] / 1e6,
+                latencies[(int) Math.ceil(ITERATIONS * 0.99) - 1] / 1e6);
+    }
+
+    private static List<Customer> createCustomers() {
+        User kenbai = User.builder().id(2L).username("kenbai").name("肯白").build();
+        User peter = User.builder().id(3L).username("peter").name("彼得").build();
+        LocalDateTime now = LocalDateTime.now();
+        List<Customer> customers = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            Customer customer = new Customer();
+            customer.setId((long) i);
+            customer.setName("顧客" + i);
+            customer.setEmail("customer" + i + "@example.com");
+            customer.setPhone("0912" + i);
+            customer.setAddress("台北市信義區" + i + "號");
+            customer.setCompany("拓連科技");
+            customer.setCreatedBy(kenbai);
+            customer.setModifiedBy(peter);
+            customer.setCreatedTime(now.minusDays(i % 365));
+            customer.setModifiedTime(now);
+            customer.setCreatedCompany("拓連科技");
+            customer.setCreatedUnit("行銷部");
+            customer.setCreatedName("肯白");
+            customer.setModifiedCompany("拓連科技");
+            customer.setModifiedUnit("研發部");
+            customer.setModifiedName("彼得");
+            customers.add(customer);
+        }
+        return customers;
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.auditingdemo.idempotency;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * 冪等鍵的認領、回放、衝突與釋放
+ * 本節點只保留 1 byte 的回應內容，完成的鍵立即移出記憶體，回放一律經由 pf_idempotency。
+ * 與 contextLoads 相同需要本機 Postgres（docker compose up -d）
+ */
+@SpringBootTest(properties = "idempotency.max-local-bytes=1")
+class IdempotencyServiceTest {
+
+    private static final String TOKEN = "idempotency-test-token";
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void claimStoresResponseUnderHashedCaller() {
+        String key = UUID.randomUUID().toString();
+        IdempotencyResult<Map<String, Object>> result =
+                idempotencyService.execute(TOKEN, key, hash("a"), () -> Map.of("id", 1));
+
+        assertEquals(IdempotencyResult.Outcome.EXECUTED, result.outcome());
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT caller, state, response_body FROM pf_idempotency WHERE idempotency_key = ?", key);
+        assertEquals(1, rows.size());
+        assertEquals(IdempotencyService.callerHash(TOKEN), rows.get(0).get("caller"));
+        assertEquals("COMPLETED", rows.get(0).get("state"));
+        assertEquals("{\"id\":1}", rows.get(0).get("response_body"));
+    }
+
+    @Test
+    void replayReturnsFirstResponseWithoutRunningAgain() {
+        String key = UUID.randomUUID().toString();
+        AtomicInteger runs = new AtomicInteger();
+        idempotencyService.execute(TOKEN, key, hash("a"), () -> Map.of("id", runs.incrementAndGet()));
+
+        IdempotencyResult<Map<String, Object>> replay =
+                idempotencyService.execute(TOKEN, key, hash("a"), () -> Map.of("id", runs.incrementAndGet()));
+
+        assertEquals(IdempotencyResult.Outcome.REPLAYED, replay.outcome());
+        assertEquals("{\"id\":1}", replay.responseJson());
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void sameKeyWithDifferentRequestIsRejected() {
+        String key = UUID.randomUUID().toString();
+        idempotencyService.execute(TOKEN, key, hash("a"), () -> Map.of("id", 1));
+
+        IdempotencyResult<Map<String, Object>> conflict =
+                idempotencyService.execute(TOKEN, key, hash("b"), () -> Map.of("id", 2));
+
+        assertEquals(IdempotencyResult.Outcome.KEY_REUSED, conflict.outcome());
+        // 其他呼叫者使用同一個鍵互不影響
+        assertEquals(IdempotencyResult.Outcome.EXECUTED,
+                idempotencyService.execute("other-token", key, hash("b"), () -> Map.of("id", 3)).outcome());
+    }
+
+    @Test
+    void failedActionReleasesClaim() {
+        String key = UUID.randomUUID().toString();
+        assertThrows(IllegalStateException.class, () -> idempotencyService.execute(TOKEN, key, hash("a"), () -> {
+            throw new IllegalStateException("寫入失敗");
+        }));
+        assertTrue(jdbcTemplate.queryForList(
+                "SELECT 1 FROM pf_idempotency WHERE idempotency_key = ?", key).isEmpty());
+
+        IdempotencyResult<Map<String, Object>> retry =
+                idempotencyService.execute(TOKEN, key, hash("a"), () -> Map.of("id", 1));
+
+        assertEquals(IdempotencyResult.Outcome.EXECUTED, retry.outcome());
+    }
+
+    @Test
+    void takenOverClaimCannotCompleteOrRelease() {
+        String key = UUID.randomUUID().toString();
+        UUID takeover = UUID.randomUUID();
+        IdempotencyResult<Map<String, Object>> stale = idempotencyService.execute(TOKEN, key, hash("a"), () -> {
+            // 執行逾期，另一個節點以新的 claim_token 接手（獨立連線，模擬其他節點）
+            CompletableFuture.runAsync(() -> jdbcTemplate.update(
+                    "UPDATE pf_idempotency SET claim_token = ? WHERE idempotency_key = ?", takeover, key)).join();
+            return Map.of("id", 1);
+        });
+
+        assertEquals(IdempotencyResult.Outcome.IN_PROGRESS, stale.outcome());
+        Map<String, Object> row = jdbcTemplate.queryForMap(
+                "SELECT state, claim_token FROM pf_idempotency WHERE idempotency_key = ?", key);
+        assertEquals("IN_PROGRESS", row.get("state"));
+        assertEquals(takeover, row.get("claim_token"));
+
+        // 被接手的請求失敗時也不能刪除接手者的認領
+        String failing = UUID.randomUUID().toString();
+        assertThrows(IllegalStateException.class, () -> idempotencyService.execute(TOKEN, failing, hash("a"), () -> {
+            CompletableFuture.runAsync(() -> jdbcTemplate.update(
+                    "UPDATE pf_idempotency SET claim_token = ? WHERE idempotency_key = ?", takeover, failing)).join();
+            throw new IllegalStateException("寫入失敗");
+        }));
+        assertEquals(1, jdbcTemplate.queryForList(
+                "SELECT 1 FROM pf_idempotency WHERE idempotency_key = ?", failing).size());
+    }
+
+    private String hash(String body) {
+        return idempotencyService.requestHash("/api/customers", Map.of("name", body));
+    }
+}
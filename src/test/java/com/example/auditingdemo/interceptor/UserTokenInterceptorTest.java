@@ -0,0 +1,39 @@
+package com.example.auditingdemo.interceptor;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * 被限流的請求不能把身分留給同一條執行緒上的下一個請求
+ * MockMvc 在測試執行緒上依序處理請求，等同於同一條容器執行緒。
+ * 與 contextLoads 相同需要本機 Postgres（docker compose up -d）
+ */
+@SpringBootTest(properties = {
+        "rate-limit.enabled=true",
+        "rate-limit.token.burst=1",
+        "rate-limit.token.rate-per-second=0.001"
+})
+@AutoConfigureMockMvc
+class UserTokenInterceptorTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void rateLimitedRequestDoesNotLeakIdentity() throws Exception {
+        mockMvc.perform(get("/api/admin/slow-requests").header("Authorization", "Bearer test-token"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/admin/slow-requests").header("Authorization", "Bearer test-token"))
+                .andExpect(status().isTooManyRequests());
+
+        // 沒有令牌的請求必須是匿名的，不能以上一個呼叫者的管理員身分執行
+        mockMvc.perform(get("/api/admin/slow-requests"))
+                .andExpect(status().isUnauthorized());
+    }
+}
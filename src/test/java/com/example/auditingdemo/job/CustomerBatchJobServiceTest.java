@@ -0,0 +1,100 @@
+package com.example.auditingdemo.job;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+
+import com.example.auditingdemo.model.Customer;
+
+/**
+ * 非同步批次作業的區塊失敗、保留期限與排隊筆數上限
+ * 每 2 筆一個區塊；完成的作業保留 0 秒，下一次清除即移除。
+ * 與 contextLoads 相同需要本機 Postgres（docker compose up -d）
+ */
+@SpringBootTest(properties = {
+        "job.chunk-size=2",
+        "job.retention-seconds=0",
+        "job.max-queued-items=10",
+        "job.max-per-caller=100"
+})
+class CustomerBatchJobServiceTest {
+
+    private static final String TOKEN = "test-token";
+
+    @Autowired
+    private CustomerBatchJobService jobService;
+
+    @Test
+    void failedChunkRollsBackOnlyItself() throws Exception {
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            customers.add(customer(i));
+        }
+        // 第 2 個區塊（索引 2-3）中的電話超過欄位長度
+        customers.get(3).setPhone("0".repeat(30));
+
+        BatchJobStatus status = await(jobService.submit(customers, TOKEN));
+
+        assertEquals(BatchJob.Status.PARTIALLY_FAILED, status.status());
+        assertEquals(3, status.succeeded());
+        assertEquals(2, status.failed());
+        assertEquals(1, status.failures().size());
+        assertEquals(2, status.failures().get(0).fromIndex());
+        assertEquals(4, status.failures().get(0).toIndex());
+        // 失敗區塊中的另一筆也一起回滾
+        assertNotNull(status.ids().get(1));
+        assertNull(status.ids().get(2));
+        assertNull(status.ids().get(3));
+        assertNotNull(status.ids().get(4));
+    }
+
+    @Test
+    void finishedJobIsPurgedAfterRetention() throws Exception {
+        BatchJob job = jobService.submit(List.of(customer(0)), TOKEN);
+        await(job);
+
+        jobService.purgeFinished();
+
+        assertTrue(jobService.find(job.getId()).isEmpty());
+    }
+
+    @Test
+    void rejectsJobsBeyondQueuedItemLimit() {
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < 11; i++) {
+            customers.add(customer(i));
+        }
+        BatchJobRejectedException rejected =
+                assertThrows(BatchJobRejectedException.class, () -> jobService.submit(customers, TOKEN));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, rejected.getStatus());
+    }
+
+    private BatchJobStatus await(BatchJob job) throws InterruptedException {
+        for (int i = 0; i < 200; i++) {
+            BatchJobStatus status = job.toStatus();
+            if (status.finishedTime() != null) {
+                return status;
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("批次作業 " + job.getId() + " 未在時限內完成");
+    }
+
+    private static Customer customer(int i) {
+        Customer customer = new Customer();
+        customer.setName("批次作業測試 " + i);
+        customer.setEmail("job-" + UUID.randomUUID() + "@example.com");
+        return customer;
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.auditingdemo.loadtest;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.auditingdemo.service.TokenService;
+
+/**
+ * 顧客 API 端到端壓測
+ * 在本機 Postgres（docker compose up -d）上啟動應用程式，以 TokenService 的預設令牌
+ * 混合呼叫清單、新增、批次新增、更新與審計端點，並與 loadtest-baseline.properties 比較。
+ * 清單與審計端點回傳全部顧客，延遲隨資料量成長；測試前後清除壓測建立的顧客，每次都從相同的資料量開始。
+ * 應用程式使用 jsonb、pg_trgm 等 Postgres 專屬功能，無法改用內嵌資料庫。
+ * 執行: ./mvnw test -Ploadtest
+ * 更新基準值: ./mvnw test -Ploadtest -Dloadtest.update-baseline=true（寫到 target/loadtest-baseline.properties）
+ */
+@Tag("loadtest")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        // 所有請求共用少數幾個令牌，關閉呼叫者限流才量得到服務本身的容量
+        "rate-limit.enabled=false",
+        "spring.jpa.show-sql=false",
+        "logging.level.com.example.auditingdemo=INFO",
+        "logging.level.org.springframework.transaction=INFO",
+        "logging.level.org.hibernate.type.descriptor.sql=INFO"
+})
+class CustomerLoadTest {
+
+    private static final String BASELINE = "/loadtest-baseline.properties";
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TokenService tokenService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    @AfterEach
+    void removeLoadTestCustomers() {
+        jdbcTemplate.update("DELETE FROM pf_customer WHERE company = ?", LoadGenerator.COMPANY);
+    }
+
+    @Test
+    void customerEndpointsMeetBaseline() throws Exception {
+        List<String> tokens = new ArrayList<>(tokenService.getKnownTokens());
+        LoadGenerator generator = new LoadGenerator(
+                URI.create("http://localhost:" + port),
+                tokens,
+                Integer.getInteger("loadtest.concurrency", 32),
+                Integer.getInteger("loadtest.batch-size", 20));
+
+        LoadReport report = generator.run(
+                Duration.ofSeconds(Long.getLong("loadtest.warmup-seconds", 10)),
+                Duration.ofSeconds(Long.getLong("loadtest.duration-seconds", 90)));
+        report.print();
+
+        if (Boolean.getBoolean("loadtest.update-baseline")) {
+            writeBaseline(report.toBaseline());
+            return;
+        }
+        double tolerance = Double.parseDouble(System.getProperty("loadtest.tolerance", "1.25"));
+        List<String> regressions = report.regressions(loadBaseline(), tolerance);
+        assertTrue(regressions.isEmpty(), "效能退化: " + regressions);
+    }
+
+    private static Properties loadBaseline() throws IOException {
+        Properties baseline = new Properties();
+        try (InputStream in = CustomerLoadTest.class.getResourceAsStream(BASELINE)) {
+            if (in != null) {
+                baseline.load(in);
+            }
+        }
+        return baseline;
+    }
+
+    private static void writeBaseline(Properties baseline) throws IOException {
+        Path path = Path.of("target", "loadtest-baseline.properties");
+        try (OutputStream out = Files.newOutputStream(path)) {
+            baseline.store(out, "load test baseline, copy to src/test/resources to adopt");
+        }
+        System.out.println("基準值已寫入 " + path.toAbsolutePath());
+    }
+}
@@ -0,0 +1,229 @@
+package com.example.auditingdemo.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.HdrHistogram.Recorder;
+
+/**
+ * HTTP 壓測產生器
+ * 每個虛擬執行緒是一個封閉迴圈的客戶端：送出請求、等待回應、記錄延遲後立即送出下一個。
+ * 暖機期間的結果在正式量測開始時丟棄。
+ * 封閉迴圈在服務變慢時會自動降低送出速率，延遲分佈偏樂觀，比較時要用相同的併發數。
+ */
+class LoadGenerator {
+
+    // 延遲直方圖的最大可記錄值與精度
+    // 壓測建立的顧客都屬於這家公司，測試前後據此清除
+    static final String COMPANY = "壓測公司";
+
+    private static final long MAX_LATENCY_NANOS = Duration.ofMinutes(1).toNanos();
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private static final Pattern ID_PATTERN = Pattern.compile("\"id\"\\s*:\\s*(\\d+)");
+
+    private final URI baseUri;
+
+    private final List<String> tokens;
+
+    private final int concurrency;
+
+    private final int batchSize;
+
+    private final HttpClient client;
+
+    private final LoadOperation[] weightedOperations;
+
+    private final Map<LoadOperation, Recorder> recorders = new EnumMap<>(LoadOperation.class);
+
+    // 依序為成功、被限流（429/503）、失敗
+    private final Map<LoadOperation, AtomicLongArray> outcomes = new EnumMap<>(LoadOperation.class);
+
+    // 壓測中建立的顧客編號，更新請求從中挑選
+    private final AtomicLongArray createdIds = new AtomicLongArray(65_536);
+
+    private final AtomicLong createdCount = new AtomicLong();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    LoadGenerator(URI baseUri, List<String> tokens, int concurrency, int batchSize) {
+        this.baseUri = baseUri;
+        this.tokens = List.copyOf(tokens);
+        this.concurrency = concurrency;
+        this.batchSize = batchSize;
+        this.client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+
+        List<LoadOperation> weighted = new ArrayList<>();
+        for (LoadOperation operation : LoadOperation.values()) {
+            for (int i = 0; i < operation.weight(); i++) {
+                weighted.add(operation);
+            }
+            recorders.put(operation, new Recorder(MAX_LATENCY_NANOS, SIGNIFICANT_DIGITS));
+            outcomes.put(operation, new AtomicLongArray(3));
+        }
+        if (weighted.isEmpty()) {
+            throw new IllegalArgumentException("所有端點的比重都是 0");
+        }
+        this.weightedOperations = weighted.toArray(LoadOperation[]::new);
+    }
+
+    /**
+     * 執行壓測
+     *
+     * @param warmup 暖機時間，結果不列入報表
+     * @param duration 正式量測時間
+     */
+    LoadReport run(Duration warmup, Duration duration) throws InterruptedException {
+        long start = System.nanoTime();
+        long measureStart = start + warmup.toNanos();
+        long deadline = measureStart + duration.toNanos();
+
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < concurrency; i++) {
+                workers.submit(() -> {
+                    while (System.nanoTime() < deadline) {
+                        execute(weightedOperations[ThreadLocalRandom.current().nextInt(weightedOperations.length)]);
+                    }
+                });
+            }
+            Thread.sleep(warmup.toMillis());
+            // 丟棄暖機期間的記錄
+            recorders.values().forEach(Recorder::reset);
+            outcomes.values().forEach(counts -> {
+                for (int i = 0; i < counts.length(); i++) {
+                    counts.set(i, 0);
+                }
+            });
+        }
+        long elapsed = System.nanoTime() - measureStart;
+
+        LoadReport report = new LoadReport(concurrency, Duration.ofNanos(elapsed));
+        for (LoadOperation operation : LoadOperation.values()) {
+            AtomicLongArray counts = outcomes.get(operation);
+            report.add(operation, recorders.get(operation).getIntervalHistogram(),
+                    counts.get(0), counts.get(1), counts.get(2));
+        }
+        return report;
+    }
+
+    private void execute(LoadOperation operation) {
+        HttpRequest request = buildRequest(operation);
+        if (request == null) {
+            // 還沒有可更新的顧客，改為新增
+            operation = LoadOperation.CREATE;
+            request = buildRequest(operation);
+        }
+        long t0 = System.nanoTime();
+        int outcome;
+        try {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            int status = response.statusCode();
+            if (status >= 200 && status < 300) {
+                outcome = 0;
+                if (operation == LoadOperation.CREATE || operation == LoadOperation.BATCH_CREATE) {
+                    rememberIds(response.body());
+                }
+            } else if (status == 429 || status == 503) {
+                outcome = 1;
+            } else {
+                outcome = 2;
+            }
+        } catch (IOException e) {
+            outcome = 2;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        recorders.get(operation).recordValue(Math.min(System.nanoTime() - t0, MAX_LATENCY_NANOS));
+        outcomes.get(operation).incrementAndGet(outcome);
+    }
+
+    private HttpRequest buildRequest(LoadOperation operation) {
+        switch (operation) {
+            case LIST:
+                return authorized("/api/customers").GET().build();
+            case AUDIT:
+                return authorized("/api/customers/audit").GET().build();
+            case CREATE:
+                return json(authorized("/api/customers"))
+                        .POST(HttpRequest.BodyPublishers.ofString(customerJson(sequence.incrementAndGet())))
+                        .build();
+            case BATCH_CREATE:
+                StringBuilder body = new StringBuilder("[");
+                for (int i = 0; i < batchSize; i++) {
+                    if (i > 0) {
+                        body.append(',');
+                    }
+                    body.append(customerJson(sequence.incrementAndGet()));
+                }
+                body.append(']');
+                return json(authorized("/api/customers/batch"))
+                        .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                        .build();
+            case UPDATE:
+                long count = createdCount.get();
+                if (count == 0) {
+                    return null;
+                }
+                int slot = (int) ThreadLocalRandom.current().nextLong(Math.min(count, createdIds.length()));
+                long id = createdIds.get(slot);
+                if (id == 0) {
+                    // 編號已配置但尚未寫入
+                    return null;
+                }
+                String update = "{\"address\":\"更新地址 " + sequence.incrementAndGet() + "\"}";
+                return json(authorized("/api/customers/" + id))
+                        .PUT(HttpRequest.BodyPublishers.ofString(update))
+                        .build();
+            default:
+                throw new IllegalArgumentException("未知的操作: " + operation);
+        }
+    }
+
+    private HttpRequest.Builder authorized(String path) {
+        String token = tokens.get(ThreadLocalRandom.current().nextInt(tokens.size()));
+        return HttpRequest.newBuilder(baseUri.resolve(path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Authorization", "Bearer " + token);
+    }
+
+    private static HttpRequest.Builder json(HttpRequest.Builder builder) {
+        return builder.header("Content-Type", "application/json");
+    }
+
+    private static String customerJson(long n) {
+        return "{\"name\":\"壓測顧客 " + n + "\",\"email\":\"load" + n + "@example.com\","
+                + "\"phone\":\"09" + String.format("%08d", n % 100_000_000) + "\","
+                + "\"address\":\"台北市 " + n + " 號\",\"company\":\"" + COMPANY + "\"}";
+    }
+
+    /**
+     * 記下回應中的顧客編號，環狀覆寫最舊的編號
+     */
+    private void rememberIds(String body) {
+        Matcher matcher = ID_PATTERN.matcher(body);
+        while (matcher.find()) {
+            long index = createdCount.getAndIncrement();
+            createdIds.set((int) (index % createdIds.length()), Long.parseLong(matcher.group(1)));
+        }
+    }
+}
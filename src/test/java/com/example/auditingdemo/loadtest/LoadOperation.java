@@ -0,0 +1,31 @@
+package com.example.auditingdemo.loadtest;
+
+/**
+ * 壓測涵蓋的端點與預設比重
+ * 比重可用 -Dloadtest.mix.<名稱>=<比重> 覆寫，設為 0 表示不執行
+ */
+enum LoadOperation {
+
+    LIST("list", 10),
+    CREATE("create", 30),
+    BATCH_CREATE("batch-create", 5),
+    UPDATE("update", 40),
+    AUDIT("audit", 5);
+
+    private final String key;
+
+    private final int defaultWeight;
+
+    LoadOperation(String key, int defaultWeight) {
+        this.key = key;
+        this.defaultWeight = defaultWeight;
+    }
+
+    String key() {
+        return key;
+    }
+
+    int weight() {
+        return Integer.getInteger("loadtest.mix." + key, defaultWeight);
+    }
+}
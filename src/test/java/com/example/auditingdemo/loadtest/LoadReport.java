@@ -0,0 +1,154 @@
+package com.example.auditingdemo.loadtest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * 壓測報表
+ * 每個端點的吞吐量、延遲百分位數與失敗數，並可與基準值比較找出退化
+ */
+class LoadReport {
+
+    private record OperationStats(Histogram histogram, long succeeded, long rejected, long failed) {
+
+        long total() {
+            return succeeded + rejected + failed;
+        }
+    }
+
+    private final int concurrency;
+
+    private final Duration elapsed;
+
+    private final Map<LoadOperation, OperationStats> stats = new EnumMap<>(LoadOperation.class);
+
+    LoadReport(int concurrency, Duration elapsed) {
+        this.concurrency = concurrency;
+        this.elapsed = elapsed;
+    }
+
+    void add(LoadOperation operation, Histogram histogram, long succeeded, long rejected, long failed) {
+        stats.put(operation, new OperationStats(histogram, succeeded, rejected, failed));
+    }
+
+    /**
+     * 輸出報表
+     */
+    void print() {
+        System.out.printf("併發數 %d，量測 %.1f 秒%n", concurrency, elapsed.toMillis() / 1000.0);
+        System.out.printf("%-14s %9s %10s %10s %10s %10s %9s %7s%n",
+                "endpoint", "requests", "req/s", "p50 ms", "p99 ms", "p999 ms", "rejected", "errors");
+        long total = 0;
+        for (Map.Entry<LoadOperation, OperationStats> entry : stats.entrySet()) {
+            OperationStats s = entry.getValue();
+            if (s.total() == 0) {
+                continue;
+            }
+            total += s.total();
+            System.out.printf("%-14s %,9d %,10.1f %10.2f %10.2f %10.2f %,9d %,7d%n",
+                    entry.getKey().key(), s.total(), throughput(s),
+                    millis(s.histogram(), 50), millis(s.histogram(), 99), millis(s.histogram(), 99.9),
+                    s.rejected(), s.failed());
+        }
+        System.out.printf("%-14s %,9d %,10.1f%n", "total", total, total / seconds());
+    }
+
+    /**
+     * 與基準值比較
+     * 基準鍵值: &lt;端點&gt;.p99-ms、&lt;端點&gt;.p999-ms、&lt;端點&gt;.min-throughput、max-error-rate 與 max-rejected-rate；
+     * 延遲超過基準值乘以容忍倍數、吞吐量低於基準值除以容忍倍數都算退化。
+     * 被限流（429/503）的請求不算失敗，另以 max-rejected-rate 檢查，避免服務大量拒絕時延遲反而變好而通過
+     *
+     * @return 退化項目說明，沒有退化時為空
+     */
+    List<String> regressions(Properties baseline, double tolerance) {
+        List<String> regressions = new ArrayList<>();
+        long requests = 0;
+        long rejected = 0;
+        long failed = 0;
+        for (Map.Entry<LoadOperation, OperationStats> entry : stats.entrySet()) {
+            String key = entry.getKey().key();
+            OperationStats s = entry.getValue();
+            requests += s.total();
+            rejected += s.rejected();
+            failed += s.failed();
+            if (s.total() == 0) {
+                continue;
+            }
+            checkLatency(regressions, baseline, key + ".p99-ms", millis(s.histogram(), 99), tolerance);
+            checkLatency(regressions, baseline, key + ".p999-ms", millis(s.histogram(), 99.9), tolerance);
+            String minThroughput = baseline.getProperty(key + ".min-throughput");
+            if (minThroughput != null && throughput(s) < Double.parseDouble(minThroughput) / tolerance) {
+                regressions.add(String.format("%s.min-throughput: %.1f < %s", key, throughput(s), minThroughput));
+            }
+        }
+        checkRate(regressions, baseline, "max-error-rate", failed, requests);
+        checkRate(regressions, baseline, "max-rejected-rate", rejected, requests);
+        return regressions;
+    }
+
+    /**
+     * 以本次結果產生新的基準值
+     */
+    Properties toBaseline() {
+        Properties properties = new Properties();
+        long requests = 0;
+        long rejected = 0;
+        long failed = 0;
+        for (Map.Entry<LoadOperation, OperationStats> entry : stats.entrySet()) {
+            String key = entry.getKey().key();
+            OperationStats s = entry.getValue();
+            requests += s.total();
+            rejected += s.rejected();
+            failed += s.failed();
+            if (s.total() == 0) {
+                continue;
+            }
+            properties.setProperty(key + ".p99-ms", String.format(Locale.ROOT, "%.2f", millis(s.histogram(), 99)));
+            properties.setProperty(key + ".p999-ms", String.format(Locale.ROOT, "%.2f", millis(s.histogram(), 99.9)));
+            properties.setProperty(key + ".min-throughput", String.format(Locale.ROOT, "%.1f", throughput(s)));
+        }
+        properties.setProperty("max-error-rate", String.format(Locale.ROOT, "%.4f", rate(failed, requests)));
+        properties.setProperty("max-rejected-rate", String.format(Locale.ROOT, "%.4f", rate(rejected, requests)));
+        return properties;
+    }
+
+    private static void checkLatency(List<String> regressions, Properties baseline, String key,
+                                     double actual, double tolerance) {
+        String expected = baseline.getProperty(key);
+        if (expected != null && actual > Double.parseDouble(expected) * tolerance) {
+            regressions.add(String.format("%s: %.2f ms > %s ms", key, actual, expected));
+        }
+    }
+
+    private static void checkRate(List<String> regressions, Properties baseline, String key,
+                                  long count, long requests) {
+        String expected = baseline.getProperty(key);
+        if (expected != null && requests > 0 && rate(count, requests) > Double.parseDouble(expected)) {
+            regressions.add(String.format("%s: %.4f > %s", key, rate(count, requests), expected));
+        }
+    }
+
+    private static double rate(long count, long requests) {
+        return requests == 0 ? 0.0 : (double) count / requests;
+    }
+
+    private double throughput(OperationStats s) {
+        return s.total() / seconds();
+    }
+
+    private double seconds() {
+        return elapsed.toNanos() / 1e9;
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1e6;
+    }
+}
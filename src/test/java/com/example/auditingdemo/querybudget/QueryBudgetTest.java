@@ -0,0 +1,318 @@
+package com.example.auditingdemo.querybudget;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.ThrowingSupplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import com.example.auditingdemo.controller.CustomerController;
+import com.example.auditingdemo.controller.TokenController;
+import com.example.auditingdemo.controller.UserController;
+import com.example.auditingdemo.interceptor.RequestTimingInterceptor;
+import com.example.auditingdemo.timing.RequestTiming;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 各端點的 SQL 陳述式數預算
+ * 以 MockMvc 呼叫 CustomerController、UserController 與 TokenController 的每個端點，
+ * 由 RequestTimingInterceptor 留在請求上的 RequestTiming 讀取該次請求經過 TimingDataSource 的陳述式數
+ * （包含串流輸出與分片查詢在其他執行緒上的 SQL），超過 query-budgets.properties 宣告的預算時測試失敗，
+ * 在合併前攔下 N+1 查詢與多餘的重新載入。
+ * 每個端點先呼叫一次預熱審計者快取與字典，再量測第二次；需要既有資料的端點各自先建立資料，建立的請求不計入。
+ * 與 contextLoads 相同需要本機 Postgres（docker compose up -d）。
+ * 更新預算: ./mvnw test -Dtest=QueryBudgetTest -Dquerybudget.update=true（寫到 target/query-budgets.properties）
+ */
+@Slf4j
+@SpringBootTest(properties = {
+        "request-timing.enabled=true",
+        "rate-limit.enabled=false",
+        // 快取命中與否、合併寫入是否延後都會改變陳述式數，以未啟用時的路徑為準
+        "customer.cache.enabled=false",
+        "customer.write-behind.enabled=false"
+})
+@AutoConfigureMockMvc
+class QueryBudgetTest {
+
+    private static final String BUDGETS = "/query-budgets.properties";
+
+    private static final String TOKEN = "Bearer test-token";
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final Set<Class<?>> CONTROLLERS = Set.of(
+            CustomerController.class, UserController.class, TokenController.class);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    @Qualifier("requestMappingHandlerMapping")
+    private RequestMappingHandlerMapping handlerMapping;
+
+    /**
+     * 單一端點的量測方式：鍵為「方法 路徑樣式」，每次呼叫 request 都重新準備所需的資料
+     */
+    private record BudgetCase(String key, ThrowingSupplier<MockHttpServletRequestBuilder> request) {
+    }
+
+    @Test
+    void endpointsStayWithinQueryBudget() throws Throwable {
+        Map<String, Integer> actual = new TreeMap<>();
+        for (BudgetCase budgetCase : cases()) {
+            countStatements(budgetCase.request().get());
+            actual.put(budgetCase.key(), countStatements(budgetCase.request().get()));
+        }
+        actual.forEach((key, count) -> log.debug("{} {}", key, count));
+
+        if (Boolean.getBoolean("querybudget.update")) {
+            writeBudgets(actual);
+            return;
+        }
+        Properties budgets = loadBudgets();
+        List<String> exceeded = new ArrayList<>();
+        actual.forEach((key, count) -> {
+            String budget = budgets.getProperty(key);
+            if (budget == null) {
+                exceeded.add(key + " 未宣告預算（實際 " + count + "）");
+            } else if (count > Integer.parseInt(budget.trim())) {
+                exceeded.add(key + " 預算 " + budget.trim() + "，實際 " + count);
+            }
+        });
+        assertTrue(exceeded.isEmpty(), "SQL 陳述式數超出預算: " + exceeded);
+    }
+
+    /**
+     * 新增端點時必須同時加上量測方式與預算
+     */
+    @Test
+    void everyEndpointHasBudget() throws IOException {
+        Set<String> measured = new TreeSet<>();
+        cases().forEach(budgetCase -> measured.add(budgetCase.key()));
+        Properties budgets = loadBudgets();
+
+        List<String> missing = new ArrayList<>();
+        handlerMapping.getHandlerMethods().forEach((info, handlerMethod) -> {
+            if (CONTROLLERS.contains(handlerMethod.getBeanType())) {
+                for (String key : keys(info)) {
+                    if (!measured.contains(key) || budgets.getProperty(key) == null) {
+                        missing.add(key);
+                    }
+                }
+            }
+        });
+        assertTrue(missing.isEmpty(), "缺少 SQL 預算的端點: " + missing);
+    }
+
+    private List<BudgetCase> cases() {
+        String start = LocalDateTime.now().minusHours(1).format(TIME_FORMAT);
+        String end = LocalDateTime.now().plusDays(1).format(TIME_FORMAT);
+        return List.of(
+                // 顧客
+                new BudgetCase("GET /api/customers", () -> get("/api/customers")),
+                new BudgetCase("GET /api/customers/search", () -> get("/api/customers/search")
+                        .param("q", "qb").param("mode", "prefix")),
+                new BudgetCase("GET /api/customers/{id}", () -> get("/api/customers/{id}", createCustomer("qb"))),
+                new BudgetCase("GET /api/customers/{id}?asOf", () -> {
+                    Long id = createCustomer("qb");
+                    String asOf = asOfBeforeUpdate(put("/api/customers/{id}", id)
+                            .content("{\"phone\":\"0900-000-000\"}"));
+                    return get("/api/customers/{id}", id).param("asOf", asOf);
+                }),
+                new BudgetCase("POST /api/customers", () -> post("/api/customers")
+                        .header("Authorization", TOKEN)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(customerJson("qb"))),
+                new BudgetCase("POST /api/customers/batch", () -> post("/api/customers/batch")
+                        .header("Authorization", TOKEN)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + String.join(",", customerJson("qb"), customerJson("qb"), customerJson("qb"),
+                                customerJson("qb"), customerJson("qb")) + "]")),
+                new BudgetCase("PUT /api/customers/{id}", () -> put("/api/customers/{id}", createCustomer("qb"))
+                        .header("Authorization", TOKEN)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"phone\":\"0900-000-000\"}")),
+                new BudgetCase("PUT /api/customers/batch/company", () -> {
+                    // 每次改名三位專屬公司的顧客
+                    String company = "qb-" + UUID.randomUUID();
+                    for (int i = 0; i < 3; i++) {
+                        createCustomer(company);
+                    }
+                    return put("/api/customers/batch/company")
+                            .header("Authorization", TOKEN)
+                            .param("from", company)
+                            .param("to", company + "-renamed");
+                }),
+                new BudgetCase("DELETE /api/customers/{id}", () -> delete("/api/customers/{id}", createCustomer("qb"))
+                        .header("Authorization", TOKEN)),
+                new BudgetCase("GET /api/customers/audit", () -> get("/api/customers/audit")),
+                new BudgetCase("GET /api/customers/audit/modified", () -> get("/api/customers/audit/modified")
+                        .param("start", start).param("end", end)),
+                new BudgetCase("GET /api/customers/audit/report", () -> get("/api/customers/audit/report")
+                        .param("start", start).param("end", end)),
+                new BudgetCase("GET /api/customers/{id}/history", () -> get("/api/customers/{id}/history",
+                        createCustomer("qb"))),
+                // 用戶
+                new BudgetCase("GET /api/users", () -> get("/api/users")),
+                new BudgetCase("GET /api/users/{id}", () -> get("/api/users/{id}", 1)),
+                new BudgetCase("GET /api/users/{id}?asOf", () -> {
+                    Long id = createUser();
+                    String asOf = asOfBeforeUpdate(put("/api/users/{id}", id)
+                            .content("{\"description\":\"query budget\"}"));
+                    return get("/api/users/{id}", id).param("asOf", asOf);
+                }),
+                new BudgetCase("POST /api/users", () -> post("/api/users")
+                        .header("Authorization", TOKEN)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(userJson())),
+                new BudgetCase("PUT /api/users/{id}", () -> put("/api/users/{id}", createUser())
+                        .header("Authorization", TOKEN)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"description\":\"query budget\"}")),
+                new BudgetCase("GET /api/users/audit", () -> get("/api/users/audit")),
+                new BudgetCase("GET /api/users/{id}/history", () -> get("/api/users/{id}/history", 1)),
+                // 令牌
+                new BudgetCase("GET /api/tokens/{userId}", () -> get("/api/tokens/{userId}", "kenbai")),
+                new BudgetCase("GET /api/tokens", () -> get("/api/tokens")),
+                new BudgetCase("POST /api/tokens/revocations", () -> {
+                    // 撤銷自己的令牌，每次使用新的令牌
+                    String token = "qb-" + UUID.randomUUID();
+                    return post("/api/tokens/revocations")
+                            .header("Authorization", token)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"token\":\"" + token + "\",\"reason\":\"query budget\"}");
+                }));
+    }
+
+    /**
+     * 執行請求並回傳該次請求的 SQL 陳述式數；串流輸出的端點等非同步輸出完成後再讀取
+     */
+    private int countStatements(MockHttpServletRequestBuilder request) throws Exception {
+        MvcResult result = mockMvc.perform(request).andReturn();
+        if (result.getRequest().isAsyncStarted()) {
+            result.getAsyncResult();
+            result = mockMvc.perform(asyncDispatch(result)).andReturn();
+        }
+        int status = result.getResponse().getStatus();
+        assertTrue(status < 300, result.getRequest().getRequestURI() + " 回應 " + status);
+        Object timing = result.getRequest().getAttribute(RequestTimingInterceptor.COMPLETED_ATTRIBUTE);
+        assertNotNull(timing, "未取得請求計時，確認 request-timing.enabled=true");
+        return ((RequestTiming) timing).getSqlCount();
+    }
+
+    private Long createCustomer(String company) throws Exception {
+        MvcResult result = mockMvc.perform(post("/api/customers")
+                        .header("Authorization", TOKEN)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(customerJson(company)))
+                .andReturn();
+        return objectMapper.readTree(result.getResponse().getContentAsString()).get("id").asLong();
+    }
+
+    private Long createUser() throws Exception {
+        MvcResult result = mockMvc.perform(post("/api/users")
+                        .header("Authorization", TOKEN)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(userJson()))
+                .andReturn();
+        return objectMapper.readTree(result.getResponse().getContentAsString()).get("id").asLong();
+    }
+
+    /**
+     * 取得更新前的時間點再執行更新，讓時間點查詢必須讀取歷史；時間點精確到秒，前後各隔開一秒
+     */
+    private String asOfBeforeUpdate(MockHttpServletRequestBuilder update) throws Exception {
+        Thread.sleep(1100);
+        String asOf = LocalDateTime.now().format(TIME_FORMAT);
+        Thread.sleep(1100);
+        mockMvc.perform(update.header("Authorization", TOKEN).contentType(MediaType.APPLICATION_JSON)).andReturn();
+        return asOf;
+    }
+
+    private static String customerJson(String company) {
+        String name = "qb-" + UUID.randomUUID();
+        return "{\"name\":\"" + name + "\",\"email\":\"" + name + "@example.com\",\"company\":\"" + company + "\"}";
+    }
+
+    /**
+     * pf_user 的 description、password、status_id 不可為 NULL
+     */
+    private static String userJson() {
+        String username = "qb-" + UUID.randomUUID();
+        return "{\"username\":\"" + username + "\",\"name\":\"" + username + "\",\"email\":\"" + username
+                + "@example.com\",\"description\":\"qb\",\"password\":\"query-budget\",\"statusId\":\"ACTIVE\"}";
+    }
+
+    /**
+     * 以必要參數區分同一路徑的不同端點，例如 GET /api/customers/{id}?asOf
+     */
+    private static List<String> keys(RequestMappingInfo info) {
+        String params = info.getParamsCondition().getExpressions().stream()
+                .map(Object::toString)
+                .sorted()
+                .collect(Collectors.joining("&"));
+        List<String> keys = new ArrayList<>();
+        info.getMethodsCondition().getMethods().forEach(method ->
+                info.getPatternValues().forEach(pattern ->
+                        keys.add(method.name() + " " + pattern + (params.isEmpty() ? "" : "?" + params))));
+        return keys;
+    }
+
+    private static Properties loadBudgets() throws IOException {
+        Properties budgets = new Properties();
+        try (InputStream in = QueryBudgetTest.class.getResourceAsStream(BUDGETS)) {
+            if (in != null) {
+                budgets.load(in);
+            }
+        }
+        return budgets;
+    }
+
+    /**
+     * 依端點排序寫出，鍵中的空白以 \ 跳脫
+     */
+    private static void writeBudgets(Map<String, Integer> actual) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("# query budgets, copy to src/test/resources to adopt");
+        actual.forEach((key, count) -> lines.add(key.replace(" ", "\\ ") + "=" + count));
+        Path path = Path.of("target", "query-budgets.properties");
+        Files.write(path, lines);
+        log.info("SQL 預算已寫入 {}", path.toAbsolutePath());
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.auditingdemo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.auditingdemo.model.Customer;
+import com.example.auditingdemo.repository.CustomerRepository;
+
+/**
+ * 觸發器審計模式的批次異動
+ * 單一 UPDATE 不經過 JPA 監聽器，每一列的 outbox 事件由觸發器寫入。
+ * 需要本機 Postgres 並已執行 init-scripts/08-audit-triggers.sql（docker compose up -d）
+ */
+@SpringBootTest(properties = {
+        "audit.mode=trigger",
+        "audit.outbox.enabled=true",
+        "audit.outbox.poll-interval-ms=3600000"
+})
+class CustomerBulkServiceTest {
+
+    private static final String COUNT_SQL = "SELECT count(*) FROM pf_audit_outbox "
+            + "WHERE entity_type = 'Customer' AND operation = ? AND payload->>'company' = ?";
+
+    @Autowired
+    private CustomerBulkService customerBulkService;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void renameCompanyWritesOutboxEventPerRow() {
+        String from = "bulk-" + UUID.randomUUID();
+        String to = "bulk-" + UUID.randomUUID();
+        customerRepository.saveAll(List.of(customer(from, 1), customer(from, 2), customer(from, 3)));
+        // 新增也只由觸發器寫入一次事件
+        assertEquals(3, jdbcTemplate.queryForObject(COUNT_SQL, Long.class, "CREATE", from));
+
+        assertEquals(3, customerBulkService.renameCompany(from, to));
+
+        assertEquals(3, jdbcTemplate.queryForObject(COUNT_SQL, Long.class, "UPDATE", to));
+    }
+
+    private static Customer customer(String company, int n) {
+        Customer customer = new Customer();
+        customer.setName("批次顧客 " + n);
+        customer.setEmail("bulk" + n + "@example.com");
+        customer.setPhone("0900000000");
+        customer.setAddress("台北市");
+        customer.setCompany(company);
+        return customer;
+    }
+}
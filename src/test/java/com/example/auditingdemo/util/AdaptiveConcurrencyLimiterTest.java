@@ -0,0 +1,35 @@
+package com.example.auditingdemo.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    void rejectsWhenLimitReached() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 2, 1, 10);
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertEquals(1, limiter.getRejected());
+    }
+
+    @Test
+    void shrinksWhenLatencyRises() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 10, 1, 100);
+        for (int i = 0; i < 50; i++) {
+            limiter.tryAcquire();
+            limiter.onSuccess(10_000_000L, limiter.getLimit());
+        }
+        int steadyLimit = limiter.getLimit();
+        for (int i = 0; i < 50; i++) {
+            limiter.tryAcquire();
+            limiter.onSuccess(50_000_000L, limiter.getLimit());
+        }
+        assertTrue(limiter.getLimit() < steadyLimit);
+        assertEquals(0, limiter.getInFlight());
+    }
+}
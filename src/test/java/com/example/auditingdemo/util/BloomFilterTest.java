@@ -0,0 +1,42 @@
+package com.example.auditingdemo.util;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.junit.jupiter.api.Test;
+
+class BloomFilterTest {
+
+    @Test
+    void containsEveryInsertedKey() throws NoSuchAlgorithmException {
+        BloomFilter filter = new BloomFilter(1_000, 0.01);
+        for (int i = 0; i < 1_000; i++) {
+            filter.put(sha256("revoked-" + i));
+        }
+        for (int i = 0; i < 1_000; i++) {
+            assertTrue(filter.mightContain(sha256("revoked-" + i)));
+        }
+    }
+
+    @Test
+    void falsePositiveRateNearTarget() throws NoSuchAlgorithmException {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put(sha256("revoked-" + i));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain(sha256("valid-" + i))) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 2_000, "false positives: " + falsePositives);
+    }
+
+    private static byte[] sha256(String value) throws NoSuchAlgorithmException {
+        return MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
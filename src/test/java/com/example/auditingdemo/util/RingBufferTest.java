@@ -0,0 +1,35 @@
+package com.example.auditingdemo.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class RingBufferTest {
+
+    @Test
+    void roundsCapacityToPowerOfTwo() {
+        assertEquals(1, new RingBuffer<String>(1).getCapacity());
+        assertEquals(8, new RingBuffer<String>(5).getCapacity());
+        assertEquals(8, new RingBuffer<String>(8).getCapacity());
+    }
+
+    @Test
+    void keepsNewestItemsWhenFull() {
+        RingBuffer<Integer> buffer = new RingBuffer<>(4);
+        for (int i = 1; i <= 6; i++) {
+            buffer.add(i);
+        }
+        assertEquals(List.of(6, 5, 4, 3), buffer.snapshot());
+        assertEquals(6, buffer.getTotalAdded());
+    }
+
+    @Test
+    void snapshotOfPartiallyFilledBuffer() {
+        RingBuffer<Integer> buffer = new RingBuffer<>(4);
+        buffer.add(1);
+        buffer.add(2);
+        assertEquals(List.of(2, 1), buffer.snapshot());
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.auditingdemo.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class TokenBucketRateLimiterTest {
+
+    @Test
+    void rejectsAfterBurstIsSpent() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 3, 100, 4);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire("caller"));
+        }
+        assertTrue(limiter.tryAcquire("caller") > 0);
+        assertEquals(0, limiter.tryAcquire("other"));
+    }
+
+    @Test
+    void refundReturnsSpentToken() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 2, 100, 4);
+        assertEquals(0, limiter.tryAcquire("caller"));
+        assertEquals(0, limiter.tryAcquire("caller"));
+        limiter.refund("caller");
+        assertEquals(0, limiter.tryAcquire("caller"));
+        assertTrue(limiter.tryAcquire("caller") > 0);
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.auditingdemo.writebehind;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.auditingdemo.repository.CustomerRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 合併寫入失敗後排程重試，期間到達的同步更新必須等重試結束才寫入，
+ * 否則重試會以較舊的修改覆蓋同步更新。
+ * 合併時間窗設得很長，只有重試與同步更新會觸發寫入。
+ * 與 contextLoads 相同需要本機 Postgres（docker compose up -d）
+ */
+@SpringBootTest(properties = {
+        "customer.write-behind.enabled=true",
+        "customer.write-behind.window-ms=60000",
+        "customer.write-behind.max-staleness-ms=60000",
+        "customer.write-behind.retry-backoff-ms=100"
+})
+@AutoConfigureMockMvc
+class CustomerWriteBehindTest {
+
+    private static final String TOKEN = "Bearer test-token";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private CustomerWriteBehind customerWriteBehind;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @AfterEach
+    void restoreTransactionTemplate() {
+        ReflectionTestUtils.setField(customerWriteBehind, "transactionTemplate", transactionTemplate);
+    }
+
+    @Test
+    void syncUpdateWaitsForRetriedWrite() throws Exception {
+        String email = "write-behind-" + UUID.randomUUID() + "@example.com";
+        String created = mockMvc.perform(post("/api/customers").header("Authorization", TOKEN)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"合併寫入測試\",\"email\":\"" + email + "\"}"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        Long id = objectMapper.readValue(created, JsonNode.class).get("id").asLong();
+
+        // 第一次合併寫入失敗，之後恢復
+        AtomicInteger failures = new AtomicInteger(1);
+        ReflectionTestUtils.setField(customerWriteBehind, "transactionTemplate",
+                new TransactionTemplate(transactionManager) {
+                    @Override
+                    public <T> T execute(TransactionCallback<T> action) throws TransactionException {
+                        if (failures.getAndDecrement() > 0) {
+                            throw new TransientDataAccessResourceException("模擬資料庫暫時無法寫入");
+                        }
+                        return super.execute(action);
+                    }
+                });
+
+        mockMvc.perform(put("/api/customers/" + id).header("Authorization", TOKEN)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"address\":\"合併寫入的舊地址\"}"))
+                .andExpect(status().isAccepted());
+
+        // 同步更新先觸發合併寫入（失敗並排入重試），等重試寫入後才套用自己的修改
+        mockMvc.perform(put("/api/customers/" + id).header("Authorization", TOKEN).header("If-Match", "*")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"address\":\"同步更新的新地址\"}"))
+                .andExpect(status().isOk());
+
+        assertFalse(customerWriteBehind.isPending(id));
+        assertEquals("同步更新的新地址", customerRepository.findById(id).orElseThrow().getAddress());
+    }
+}